@@ -8,7 +8,8 @@ public enum Arg {
     HOST("host"),
     HOSTS("hosts"),
     PORT("port"),
-    PORTS("ports");
+    PORTS("ports"),
+    TARGETS_FILE("targets-file");
 
     private final String argumentName;
 
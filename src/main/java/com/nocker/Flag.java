@@ -10,7 +10,20 @@ public enum Flag {
     SYN("sneak", "s"),
     FORMAT("format", "f"),
     OUT("out", "o"),
-    ROBUST("robust", "r");
+    ROBUST("robust", "r"),
+    ENGINE("engine", "e"),
+    STATELESS("stateless", "sl"),
+    RATE("rate", "rt"),
+    STREAM("stream", "sm"),
+    ADAPTIVE("adaptive", "ad"),
+    ADAPTIVE_TIMEOUT("adaptive-timeout", "at"),
+    RETRIES("retries", "rs"),
+    HEDGE("hedge", "hd"),
+    LIVENESS("liveness", "lv"),
+    DISCOVER("discover", "ds"),
+    REVERSE_DNS("reverse-dns", "rd"),
+    EXCLUDE("exclude", "x"),
+    EXCLUDE_FILE("exclude-file", "xf");
 
     private final String full;
     private final String abbr;
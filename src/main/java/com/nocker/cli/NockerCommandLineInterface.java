@@ -8,16 +8,34 @@ import com.nocker.cli.formatter.JsonFormatter;
 import com.nocker.cli.formatter.OutputFormatter;
 import com.nocker.portscanner.PortScanner;
 import com.nocker.portscanner.command.CommandLineInput;
+import com.nocker.portscanner.command.InvalidCommandException;
 import com.nocker.portscanner.command.InvocationRequest;
 import com.nocker.portscanner.command.InvocationResponse;
+import com.nocker.portscanner.control.AdaptiveConcurrency;
+import com.nocker.portscanner.control.AdaptiveTimeouts;
+import com.nocker.portscanner.control.HedgeBudget;
+import com.nocker.portscanner.control.HedgePolicy;
+import com.nocker.portscanner.control.HostLiveness;
+import com.nocker.portscanner.engine.PcapReceiveLoop;
+import com.nocker.portscanner.rate.TokenBucket;
+import com.nocker.portscanner.scheduler.FilteredRetryStage;
+import com.nocker.portscanner.scheduler.PortScanForkJoinSchedulerFactory;
+import com.nocker.portscanner.scheduler.PortScanNioSchedulerFactory;
+import com.nocker.portscanner.scheduler.PortScanSchedulerFactory;
 import com.nocker.portscanner.scheduler.PortScanSynAckSchedulerFactory;
+import com.nocker.portscanner.scheduler.ScanEngine;
+import com.nocker.portscanner.target.ExclusionIndex;
 import com.nocker.writer.NockerFileWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.Marker;
 
 import java.io.IOException;
+import java.io.Reader;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Map;
 import java.util.Objects;
 
@@ -54,16 +72,33 @@ public final class NockerCommandLineInterface {
 
     private static void invokeCommand(InvocationRequest invocationRequest, NockerFileWriter nockerFileWriter) {
         Map<String, String> flags = invocationRequest.getCommandLineInput().getFlags();
-        int concurrency = initConcurrency(flags);
+        ScanEngine engine = initEngine(flags);
+        int concurrency = initConcurrency(flags, engine);
         int timeout = initTimeout(flags);
         boolean syn = initSneakyLink(flags);
         boolean robust = initRobust(flags);
+        boolean stateless = initStateless(flags);
+        TokenBucket rateLimiter = initRateLimiter(flags);
+        boolean stream = initStream(flags);
+        AdaptiveConcurrency adaptiveConcurrency = initAdaptiveConcurrency(flags, engine, concurrency, timeout);
+        AdaptiveTimeouts timeouts = initAdaptiveTimeouts(flags);
+        int retries = initRetries(flags);
+        HedgePolicy hedging = initHedging(flags);
+        HostLiveness liveness = initLiveness(flags);
+        boolean discover = initDiscover(flags);
+        boolean reverseDns = initReverseDns(flags);
+        ExclusionIndex exclusions = initExclusions(flags);
         OutputFormatter outputFormatter = initOutputFormatter(flags);
         PortScannerContext cxt = new PortScannerContext.Builder()
                 .invocationCommand(invocationRequest).nockerFileWriter(nockerFileWriter)
-                .schedulerFactory(new PortScanSynAckSchedulerFactory(invocationRequest,  concurrency))
+                .schedulerFactory(initSchedulerFactory(engine, invocationRequest,
+                        adaptiveConcurrency.isEnabled() ? maxConcurrency(engine) : concurrency))
                 .outputFormatter(outputFormatter).concurrency(concurrency).timeout(timeout)
-                .syn(syn).robust(robust).build();
+                .syn(syn).robust(robust).stateless(stateless)
+                .rateLimiter(rateLimiter).stream(stream).adaptiveConcurrency(adaptiveConcurrency)
+                .timeouts(timeouts).retries(retries).hedging(hedging)
+                .liveness(liveness).discover(discover).reverseDns(reverseDns)
+                .exclusions(exclusions).build();
         PortScanner portScanner = new PortScanner(cxt);
         try {
             String output = InvocationResponse.invoke(invocationRequest, portScanner);
@@ -73,6 +108,8 @@ public final class NockerCommandLineInterface {
                     invocationRequest.getMethod().getClass().getName(),
                     invocationRequest.getMethod().getName(), invocationRequest.getMethod().getParameters(),
                     exception.getMessage());
+        } finally {
+            PcapReceiveLoop.closeAll();
         }
     }
 
@@ -81,9 +118,56 @@ public final class NockerCommandLineInterface {
         return timeout >= TIME_OUT_LOW_LIMIT && timeout <= TIME_OUT_HIGH_LIMIT ? timeout : DEFAULT_TIMEOUT;
     }
 
-    private static int initConcurrency(Map<String, String> flags) {
+    private static int initConcurrency(Map<String, String> flags, ScanEngine engine) {
+        if (engine == ScanEngine.NIO) {
+            // nio concurrency is the number of connects in flight, not threads
+            int concurrency = Integer.parseInt(flags.getOrDefault(CONCURRENCY.getFullName(), String.valueOf(DEFAULT_NIO_CONCURRENCY)));
+            return concurrency >= 2 && concurrency <= MAX_NIO_CONCURRENCY ? concurrency : DEFAULT_NIO_CONCURRENCY;
+        }
         int concurrency = Integer.parseInt(flags.getOrDefault(CONCURRENCY.getFullName(), String.valueOf(PortScanner.DEFAULT_CONCURRENCY)));
-        return concurrency >= 2 && concurrency <= 300 ? concurrency : DEFAULT_CONCURRENCY;
+        return concurrency >= 2 && concurrency <= MAX_CONCURRENCY ? concurrency : DEFAULT_CONCURRENCY;
+    }
+
+    private static int maxConcurrency(ScanEngine engine) {
+        return engine == ScanEngine.NIO ? MAX_NIO_CONCURRENCY : MAX_CONCURRENCY;
+    }
+
+    /**
+     * With the adaptive flag, -c is only the window probes start from. Schedulers are then
+     * sized to the engine's maximum, so the controller, not the thread count, bounds probes.
+     */
+    private static AdaptiveConcurrency initAdaptiveConcurrency(Map<String, String> flags, ScanEngine engine,
+                                                               int concurrency, int timeout) {
+        if (Boolean.parseBoolean(flags.getOrDefault(ADAPTIVE.getFullName(), String.valueOf(false)))) {
+            return new AdaptiveConcurrency(concurrency, maxConcurrency(engine), timeout);
+        }
+        return AdaptiveConcurrency.unlimited();
+    }
+
+    /**
+     * With the adaptive-timeout flag, -t only bounds the first probes to each host. Once a
+     * host has answered a few probes its timeout follows the measured round-trip time.
+     */
+    private static AdaptiveTimeouts initAdaptiveTimeouts(Map<String, String> flags) {
+        if (Boolean.parseBoolean(flags.getOrDefault(ADAPTIVE_TIMEOUT.getFullName(), String.valueOf(false)))) {
+            return AdaptiveTimeouts.adaptive();
+        }
+        return AdaptiveTimeouts.fixed();
+    }
+
+    private static ScanEngine initEngine(Map<String, String> flags) {
+        return ScanEngine.fromEngineName(flags.getOrDefault(ENGINE.getFullName(), ScanEngine.THREAD.getEngineName()));
+    }
+
+    private static PortScanSchedulerFactory initSchedulerFactory(ScanEngine engine, InvocationRequest invocationRequest,
+                                                                 int concurrency) {
+        if (engine == ScanEngine.NIO) {
+            return new PortScanNioSchedulerFactory(invocationRequest, concurrency);
+        }
+        if (engine == ScanEngine.FORKJOIN) {
+            return new PortScanForkJoinSchedulerFactory(invocationRequest, concurrency);
+        }
+        return new PortScanSynAckSchedulerFactory(invocationRequest, concurrency);
     }
 
     private static boolean initSneakyLink(Map<String, String> flags) {
@@ -94,6 +178,76 @@ public final class NockerCommandLineInterface {
         return Boolean.parseBoolean(flags.getOrDefault(ROBUST.getFullName(), String.valueOf(false)));
     }
 
+    private static boolean initStateless(Map<String, String> flags) {
+        return Boolean.parseBoolean(flags.getOrDefault(STATELESS.getFullName(), String.valueOf(false)));
+    }
+
+    private static boolean initStream(Map<String, String> flags) {
+        return Boolean.parseBoolean(flags.getOrDefault(STREAM.getFullName(), String.valueOf(false)));
+    }
+
+    private static int initRetries(Map<String, String> flags) {
+        int retries = Integer.parseInt(flags.getOrDefault(RETRIES.getFullName(), String.valueOf(0)));
+        return retries >= 0 && retries <= FilteredRetryStage.MAX_RETRIES ? retries : 0;
+    }
+
+    /**
+     * With the hedge flag, a probe unanswered after its host's p95 round trip is sent
+     * again, for at most one probe in twenty.
+     */
+    private static HedgePolicy initHedging(Map<String, String> flags) {
+        if (Boolean.parseBoolean(flags.getOrDefault(HEDGE.getFullName(), String.valueOf(false)))) {
+            return new HedgePolicy(HedgePolicy.DEFAULT_PERCENTILE, new HedgeBudget(HedgeBudget.DEFAULT_RATIO));
+        }
+        return HedgePolicy.disabled();
+    }
+
+    /**
+     * With the liveness flag, a host whose first N probes all go unanswered is skipped
+     * for the rest of the scan. Opt-in, a host dropping all but a handful of ports can
+     * look dead from its first probes.
+     */
+    private static HostLiveness initLiveness(Map<String, String> flags) {
+        int threshold = Integer.parseInt(flags.getOrDefault(LIVENESS.getFullName(), String.valueOf(0)));
+        return threshold >= 1 ? new HostLiveness(threshold) : HostLiveness.disabled();
+    }
+
+    private static boolean initDiscover(Map<String, String> flags) {
+        return Boolean.parseBoolean(flags.getOrDefault(DISCOVER.getFullName(), String.valueOf(false)));
+    }
+
+    private static boolean initReverseDns(Map<String, String> flags) {
+        return Boolean.parseBoolean(flags.getOrDefault(REVERSE_DNS.getFullName(), String.valueOf(true)));
+    }
+
+    /**
+     * Compiles the exclusions given inline and in a file into one index. An
+     * exclusion that cannot be read fails the command rather than being dropped,
+     * since dropping it would scan what was meant to be left alone.
+     */
+    private static ExclusionIndex initExclusions(Map<String, String> flags) {
+        ExclusionIndex.Builder exclusions = new ExclusionIndex.Builder();
+        try {
+            if (flags.containsKey(EXCLUDE.getFullName())) {
+                exclusions.add(flags.get(EXCLUDE.getFullName()));
+            }
+            String excludeFile = flags.get(EXCLUDE_FILE.getFullName());
+            if (excludeFile != null) {
+                try (Reader reader = Files.newBufferedReader(Paths.get(excludeFile), StandardCharsets.UTF_8)) {
+                    exclusions.addAll(reader);
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            throw new InvalidCommandException("Invalid exclusions: " + e.getMessage(), e);
+        }
+        return exclusions.build();
+    }
+
+    private static TokenBucket initRateLimiter(Map<String, String> flags) {
+        int rate = Integer.parseInt(flags.getOrDefault(RATE.getFullName(), String.valueOf(0)));
+        return rate >= 1 && rate <= MAX_RATE ? new TokenBucket(rate) : TokenBucket.unlimited();
+    }
+
     private static OutputFormatter initOutputFormatter(Map<String, String> flags) {
         String format = flags.getOrDefault(FORMAT.getFullName(), "txt");
         if (format.equals("txt")) {
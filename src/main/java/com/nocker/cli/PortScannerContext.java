@@ -2,7 +2,13 @@ package com.nocker.cli;
 
 import com.nocker.cli.formatter.OutputFormatter;
 import com.nocker.portscanner.command.InvocationRequest;
+import com.nocker.portscanner.control.AdaptiveConcurrency;
+import com.nocker.portscanner.control.AdaptiveTimeouts;
+import com.nocker.portscanner.control.HedgePolicy;
+import com.nocker.portscanner.control.HostLiveness;
+import com.nocker.portscanner.rate.TokenBucket;
 import com.nocker.portscanner.scheduler.PortScanSchedulerFactory;
+import com.nocker.portscanner.target.ExclusionIndex;
 import com.nocker.writer.NockerFileWriter;
 import com.nocker.portscanner.PortScanner;
 
@@ -34,6 +40,17 @@ public class PortScannerContext {
     private final int timeout;
     private final boolean syn;
     private final boolean robust;
+    private final boolean stateless;
+    private final TokenBucket rateLimiter;
+    private final boolean stream;
+    private final AdaptiveConcurrency adaptiveConcurrency;
+    private final AdaptiveTimeouts timeouts;
+    private final int retries;
+    private final HedgePolicy hedging;
+    private final HostLiveness liveness;
+    private final boolean discover;
+    private final boolean reverseDns;
+    private final ExclusionIndex exclusions;
 
     PortScannerContext(Builder builder) {
         this.invocationRequest = builder.invocationRequest;
@@ -44,6 +61,17 @@ public class PortScannerContext {
         this.timeout = builder.timeout;
         this.syn = builder.syn;
         this.robust = builder.robust;
+        this.stateless = builder.stateless;
+        this.rateLimiter = builder.rateLimiter;
+        this.stream = builder.stream;
+        this.adaptiveConcurrency = builder.adaptiveConcurrency;
+        this.timeouts = builder.timeouts;
+        this.retries = builder.retries;
+        this.hedging = builder.hedging;
+        this.liveness = builder.liveness;
+        this.discover = builder.discover;
+        this.reverseDns = builder.reverseDns;
+        this.exclusions = builder.exclusions;
     }
 
     public InvocationRequest getInvocationCommand() {
@@ -78,6 +106,50 @@ public class PortScannerContext {
         return robust;
     }
 
+    public boolean isStateless() {
+        return stateless;
+    }
+
+    public TokenBucket getRateLimiter() {
+        return rateLimiter;
+    }
+
+    public boolean isStream() {
+        return stream;
+    }
+
+    public AdaptiveConcurrency getAdaptiveConcurrency() {
+        return adaptiveConcurrency;
+    }
+
+    public AdaptiveTimeouts getTimeouts() {
+        return timeouts;
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    public HedgePolicy getHedging() {
+        return hedging;
+    }
+
+    public HostLiveness getLiveness() {
+        return liveness;
+    }
+
+    public boolean isDiscover() {
+        return discover;
+    }
+
+    public boolean isReverseDns() {
+        return reverseDns;
+    }
+
+    public ExclusionIndex getExclusions() {
+        return exclusions;
+    }
+
     public static class Builder {
         private InvocationRequest invocationRequest;
         private NockerFileWriter nockerFileWriter;
@@ -87,6 +159,17 @@ public class PortScannerContext {
         private int timeout;
         private boolean syn;
         private boolean robust;
+        private boolean stateless;
+        private TokenBucket rateLimiter;
+        private boolean stream;
+        private AdaptiveConcurrency adaptiveConcurrency;
+        private AdaptiveTimeouts timeouts;
+        private int retries;
+        private HedgePolicy hedging;
+        private HostLiveness liveness;
+        private boolean discover;
+        private boolean reverseDns = true;
+        private ExclusionIndex exclusions = ExclusionIndex.none();
 
         public Builder invocationCommand(InvocationRequest invocationRequest) {
             this.invocationRequest = invocationRequest;
@@ -128,6 +211,61 @@ public class PortScannerContext {
             return  this;
         }
 
+        public Builder stateless(boolean stateless) {
+            this.stateless = stateless;
+            return this;
+        }
+
+        public Builder rateLimiter(TokenBucket rateLimiter) {
+            this.rateLimiter = rateLimiter;
+            return this;
+        }
+
+        public Builder stream(boolean stream) {
+            this.stream = stream;
+            return this;
+        }
+
+        public Builder adaptiveConcurrency(AdaptiveConcurrency adaptiveConcurrency) {
+            this.adaptiveConcurrency = adaptiveConcurrency;
+            return this;
+        }
+
+        public Builder timeouts(AdaptiveTimeouts timeouts) {
+            this.timeouts = timeouts;
+            return this;
+        }
+
+        public Builder retries(int retries) {
+            this.retries = retries;
+            return this;
+        }
+
+        public Builder hedging(HedgePolicy hedging) {
+            this.hedging = hedging;
+            return this;
+        }
+
+        public Builder liveness(HostLiveness liveness) {
+            this.liveness = liveness;
+            return this;
+        }
+
+        public Builder discover(boolean discover) {
+            this.discover = discover;
+            return this;
+        }
+
+        public Builder reverseDns(boolean reverseDns) {
+            this.reverseDns = reverseDns;
+            return this;
+        }
+
+        public Builder exclusions(ExclusionIndex exclusions) {
+            this.exclusions = exclusions;
+            return this;
+        }
+
         public PortScannerContext build() {
             return new PortScannerContext(this);
         }
@@ -1,5 +1,6 @@
 package com.nocker.cli.formatter;
 
+import com.nocker.portscanner.discovery.DiscoveryReport;
 import com.nocker.portscanner.report.ScanSummary;
 
 import java.io.IOException;
@@ -29,6 +30,11 @@ public class HumanReadableFormatter implements OutputFormatter {
         out.println(scanSummary.toSummary());
     }
 
+    @Override
+    public void write(DiscoveryReport discoveryReport, PrintStream out) {
+        out.println(discoveryReport.toSummary());
+    }
+
     @Override
     public void write(ScanSummary scanSummary, Appendable appendable) {
         try {
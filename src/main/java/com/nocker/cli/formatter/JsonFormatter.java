@@ -1,6 +1,7 @@
 package com.nocker.cli.formatter;
 
 import com.nocker.cli.CommandLineUtil;
+import com.nocker.portscanner.discovery.DiscoveryReport;
 import com.nocker.portscanner.report.ScanSummary;
 import com.nocker.portscanner.report.SummaryNode;
 
@@ -22,6 +23,12 @@ public class JsonFormatter implements OutputFormatter {
         out.println(summaryNodeJson);
     }
 
+    @Override
+    public void write(DiscoveryReport discoveryReport, PrintStream out) {
+        String discoveryReportJson = CommandLineUtil.jsonify(discoveryReport);
+        out.println(discoveryReportJson);
+    }
+
     @Override
     public void write(ScanSummary scanSummary, Appendable appendable) {
 
@@ -1,5 +1,6 @@
 package com.nocker.cli.formatter;
 
+import com.nocker.portscanner.discovery.DiscoveryReport;
 import com.nocker.portscanner.report.ScanSummary;
 import org.apache.commons.lang3.StringUtils;
 
@@ -57,6 +58,17 @@ public interface OutputFormatter {
      */
     void write(ScanSummary scanSummary, Appendable appendable);
 
+    /**
+     * Writes the provided {@link DiscoveryReport} to the specified output
+     * stream.
+     *
+     * @param discoveryReport the outcome of the host discovery sweep run
+     *                        ahead of a port scan, listing the hosts found up
+     * @param out             the output stream where the discovery report
+     *                        will be written
+     */
+    void write(DiscoveryReport discoveryReport, PrintStream out);
+
     /**
      * Writes the provided string content to the specified output stream.
      * The content is printed only if it is not blank.
@@ -1,5 +1,6 @@
 package com.nocker.command;
 
+import com.nocker.portscanner.target.TargetSource;
 import com.nocker.portscanner.wildcard.CidrWildcard;
 import com.nocker.portscanner.wildcard.PortWildcard;
 import org.slf4j.Logger;
@@ -19,7 +20,8 @@ public final class ArgumentConverter {
             Integer.class,
             List.class,
             CidrWildcard.class,
-            PortWildcard.class
+            PortWildcard.class,
+            TargetSource.class
     };
 
     private ArgumentConverter() {
@@ -126,6 +128,9 @@ public final class ArgumentConverter {
         if (type == PortWildcard.class) {
             return new PortWildcard(value);
         }
+        if (type == TargetSource.class) {
+            return new TargetSource(value);
+        }
         LOGGER.error("Unsupported argument type: {}", type);
         throw new IllegalArgumentException("must be one of valid types: " + Arrays.toString(validTypes));
     }
@@ -7,16 +7,42 @@ import com.nocker.portscanner.annotation.arguments.Hosts;
 import com.nocker.portscanner.annotation.arguments.Port;
 import com.nocker.portscanner.command.InvocationRequest;
 import com.nocker.portscanner.annotation.arguments.Ports;
+import com.nocker.portscanner.annotation.arguments.TargetsFile;
 import com.nocker.portscanner.annotation.commands.CIDRScan;
 import com.nocker.portscanner.annotation.commands.Scan;
+import com.nocker.portscanner.control.AdaptiveConcurrency;
+import com.nocker.portscanner.control.HostLiveness;
+import com.nocker.portscanner.dns.HostResolver;
+import com.nocker.portscanner.dns.ReverseDnsStage;
+import com.nocker.portscanner.discovery.DiscoveryReport;
+import com.nocker.portscanner.discovery.HostDiscovery;
 import com.nocker.portscanner.model.HostIdentity;
 import com.nocker.portscanner.model.HostModel;
+import com.nocker.portscanner.packet.SynCookie;
+import com.nocker.portscanner.report.HostShard;
+import com.nocker.portscanner.report.OpenPortStream;
 import com.nocker.portscanner.report.PortScanReport;
 import com.nocker.portscanner.report.PortScanResult;
+import com.nocker.portscanner.report.ResultSink;
 import com.nocker.portscanner.report.ScanSummary;
+import com.nocker.portscanner.scheduler.FilteredRetryStage;
+import com.nocker.portscanner.scheduler.HostAffinity;
+import com.nocker.portscanner.scheduler.HostScanPipeline;
+import com.nocker.portscanner.scheduler.PortScanForkJoinScheduler;
+import com.nocker.portscanner.scheduler.PortScanNioScheduler;
 import com.nocker.portscanner.scheduler.PortScanScheduler;
 import com.nocker.portscanner.scheduler.PortScanSchedulerFactory;
+import com.nocker.portscanner.scheduler.SharedWorkerPool;
 import com.nocker.portscanner.tasks.PortRange;
+import com.nocker.portscanner.tasks.PortScanNioTask;
+import com.nocker.portscanner.tasks.PortScanStatelessSynTask;
+import com.nocker.portscanner.tasks.ProbeContext;
+import com.nocker.portscanner.target.ExclusionIndex;
+import com.nocker.portscanner.target.TargetFeed;
+import com.nocker.portscanner.target.TargetPermutation;
+import com.nocker.portscanner.target.TargetSlice;
+import com.nocker.portscanner.target.TargetSource;
+import com.nocker.portscanner.target.TargetSpace;
 import com.nocker.portscanner.tasks.PortScanSynAckTask;
 import com.nocker.portscanner.tasks.PortScanSynTask;
 import com.nocker.portscanner.wildcard.CidrWildcard;
@@ -26,8 +52,12 @@ import org.apache.commons.lang3.ObjectUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.PrintStream;
 import java.net.Inet4Address;
+import java.security.SecureRandom;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
@@ -47,6 +77,17 @@ public class PortScanner {
     private final PortScanSchedulerFactory schedulerFactory;
     private final boolean sneak;
     private final boolean robust;
+    private final boolean stateless;
+    private final SynCookie synCookie;
+    private final ProbeContext probeContext;
+    private final long permutationSeed;
+    private final ResultSink openPortStream;
+    private final int retries;
+    private final HostDiscovery hostDiscovery;
+    private final HostResolver hostResolver = HostResolver.shared();
+    private final ReverseDnsStage reverseDns;
+    private final ExclusionIndex exclusions;
+    private final int[] remainingPorts; // every port not excluded, when some are
     private PortScanReport report;
 
     /**
@@ -84,9 +125,43 @@ public class PortScanner {
     public static final int DEFAULT_CONCURRENCY = 100;
 
     /**
-     * The maximum number of concurrent {@code PortScanScheduler} instances.
+     * Upper limit of concurrency when scanning with the thread engine.
      */
-    public static final int MAX_SCHEDULERS = 3;
+    public static final int MAX_CONCURRENCY = 300;
+
+    /**
+     * Target number of connects in flight when scanning with the nio engine.
+     */
+    public static final int DEFAULT_NIO_CONCURRENCY = 1000;
+
+    /**
+     * Upper limit of connects in flight when scanning with the nio engine.
+     */
+    public static final int MAX_NIO_CONCURRENCY = 10000;
+
+    /**
+     * Upper limit of probes per second accepted by the rate flag.
+     */
+    public static final int MAX_RATE = 10_000_000;
+
+    /**
+     * The minimum number of concurrent {@code PortScanScheduler} instances a
+     * multi-host scan may use, see {@link #getMaxSchedulers()}.
+     */
+    public static final int MIN_SCHEDULERS = 3;
+
+    /**
+     * Hosts of a block of a target set, scanned together by one scheduler in a
+     * permuted order that scatters probes across the block's hosts.
+     */
+    public static final int HOSTS_PER_BLOCK = 4;
+
+    /**
+     * Hosts of a block of a stateless target set. A stateless sweep waits out
+     * its reply timeout once per block, so blocks are larger, as large as the
+     * block's results can be held in memory.
+     */
+    public static final int STATELESS_HOSTS_PER_BLOCK = 16;
 
     /**
      * Allocator for ephemeral source ports used during scans,
@@ -145,18 +220,42 @@ public class PortScanner {
         this.concurrency = cxt.getConcurrency();
         this.sneak = cxt.isSyn();
         this.robust = cxt.isRobust();
+        this.stateless = cxt.isStateless();
+        this.synCookie = stateless ? SynCookie.newRandomCookie() : null;
+        this.probeContext = new ProbeContext.Builder()
+                .rateLimiter(cxt.getRateLimiter())
+                .adaptiveConcurrency(cxt.getAdaptiveConcurrency())
+                .timeouts(cxt.getTimeouts())
+                .hedging(cxt.getHedging())
+                .liveness(cxt.getLiveness())
+                .build();
+        this.permutationSeed = new SecureRandom().nextLong();
+        this.openPortStream = cxt.isStream() ? newOpenPortStream() : null;
+        this.retries = cxt.getRetries();
+        this.hostDiscovery = cxt.isDiscover() ? new HostDiscovery(timeout, true, probeContext.getRateLimiter()) : null;
+        this.reverseDns = cxt.isReverseDns() && robust
+                ? new ReverseDnsStage(hostResolver, ReverseDnsStage.DEFAULT_JOIN_TIMEOUT_MILLIS)
+                : ReverseDnsStage.disabled();
+        this.exclusions = cxt.getExclusions();
+        this.remainingPorts = exclusions.hasPortExclusions() ? exclusions.remainingPorts(MIN_PORT, MAX_PORT) : null;
+    }
+
+    private ResultSink newOpenPortStream() {
+        List<PrintStream> outs = new ArrayList<>();
+        outs.add(System.out);
+        if (fileWriter != null) {
+            outs.add(fileWriter.getPrintStream());
+        }
+        return new OpenPortStream(outs);
     }
 
     @Scan
     public String scan(@Hosts List<String> hosts, @Port int port) {
-        LinkedHashMap<PortScanReport, HostIdentity> reports = new LinkedHashMap<>();
-        for (String host : hosts) {
-            HostIdentity hostIdentity = getHostIdentity(host);
-            if (hostIdentity != null) {
-                PortScanReport report = singleHostAndSinglePortScan(hostIdentity, port);
-                if (report != null) {
-                    reports.put(report, hostIdentity);
-                }
+        LinkedHashMap<PortScanReport, Inet4Address> reports = new LinkedHashMap<>();
+        for (Inet4Address address : resolveHosts(hosts)) {
+            PortScanReport report = singleHostAndSinglePortScan(address, port);
+            if (report != null) {
+                reports.put(report, address);
             }
         }
         return doGetOutput(reports);
@@ -165,60 +264,80 @@ public class PortScanner {
     @Scan
     // scan complete
     public String scanSingleHostAndSinglePort(@Host String host, @Port int port) {
-        HostIdentity hostIdentity = getHostIdentity(host);
-        if (hostIdentity != null) {
-            report = singleHostAndSinglePortScan(hostIdentity, port);
+        Inet4Address address = resolveHost(host);
+        if (address != null) {
+            report = singleHostAndSinglePortScan(address, port);
             if (report != null) {
-                return triggerResponse(report, hostIdentity);
+                return triggerResponse(report, address);
             }
         }
         return "no output.";
     }
 
-    private PortScanReport singleHostAndSinglePortScan(HostIdentity hostIdentity, int port) {
-        if (ObjectUtils.isNotEmpty(hostIdentity.getHostInet4Address())) {
-            List<PortScanResult> result = submitTask(hostIdentity.getHostInet4Address(),
-                    Collections.singletonList(port));
-            return generatePortScanReportFromPortScanResults(result);
-        } else {
+    private PortScanReport singleHostAndSinglePortScan(Inet4Address address, int port) {
+        if (exclusions.excludesPort(port)) {
+            LOGGER.warn("Port [{}] is excluded, not scanning it", port);
             return null;
         }
+        List<PortScanResult> result = submitTask(address, Collections.singletonList(port));
+        return generatePortScanReportFromPortScanResults(result);
     }
 
     /**
-     * The code below is a simple round-robin strategy to determine schedulers
-     * for tasks. However, there's certainly a better way to do this in more
-     * as Nocker scales(Round Robin strategy here is fine). However, it may
-     * make sense (if MAX_SCHEDULERS increase, hosts to scan increases or chunks
-     * are host-independent) that a host-affine scheduling strategy is introduced.
-     * In this case, tasks will be deterministically routed to schedulers based
-     * on hostIdentity.
-     * <p>
-     * This ensures that all tasks with the same host are handled by the same
-     * scheduler, improves locality, reduces contention, and simplifies the
-     * aggregation of scan results (something currently slowing Nocker down).
-     *<pre>
-     *{@code
-     * PortScanScheduler scheduler = schedulers.get(i % schedulers.size());
-     *}
-     *</pre>
-     * Becomes:
-     * <p>
-     * <pre>
-     *{@code
-     * Math.abs(hostIdentity.hashCode()) % schedulers.size()
-     *}
-     * </pre>
-     * @param hosts
+     * Scans every port of several hosts. Hosts are routed to scheduler lanes with
+     * {@link HostAffinity}, so all tasks of a host run on the same lane and the
+     * lane collects the host's results into its own {@link HostShard}. Each lane
+     * scans its hosts as one permuted space, so its probes are scattered across
+     * those hosts rather than working through one host at a time. Every lane is
+     * submitted to before any is collected, so the lanes scan concurrently, and
+     * each host's report comes straight from its shard without regrouping.
+     * The hosts are resolved in parallel before any is scanned, their names are
+     * looked up alongside the scan. With discovery, only the hosts found up are
+     * scanned.
+     *
+     * @param hosts the hosts to scan
      */
     @Scan
     public String scan(@Hosts List<String> hosts) {
-        List<PortScanScheduler> schedulers = spawnSchedulers(hosts.size());
-        LinkedHashMap<PortScanReport, HostIdentity> reports = new LinkedHashMap<>();
-        for (int i = 0; i < hosts.size(); i++) {
-            HostIdentity hostIdentity = getHostIdentity(hosts.get(i));
-            PortScanScheduler scheduler = schedulers.get(i % schedulers.size());
-            reports.put(singleHostScan(hostIdentity, scheduler), hostIdentity);
+        List<Inet4Address> addresses = resolveHosts(hosts);
+        if (hostDiscovery != null && !addresses.isEmpty()) {
+            addresses = discoverLiveHosts(addresses);
+        }
+        LinkedHashMap<PortScanReport, Inet4Address> reports = new LinkedHashMap<>();
+        if (addresses.isEmpty()) {
+            return doGetOutput(reports);
+        }
+        List<ScanLane> lanes = spawnLanes(addresses.size());
+        List<AtomicInteger> taskCounts = new ArrayList<>();
+        for (int i = 0; i < lanes.size(); i++) {
+            taskCounts.add(new AtomicInteger(0));
+        }
+        List<List<Inet4Address>> laneHosts = new ArrayList<>();
+        for (int i = 0; i < lanes.size(); i++) {
+            laneHosts.add(new ArrayList<>());
+        }
+        for (Inet4Address address : addresses) {
+            laneHosts.get(HostAffinity.laneOf(address, lanes.size())).add(address);
+        }
+        for (int lane = 0; lane < lanes.size(); lane++) {
+            List<Inet4Address> hostsOfLane = laneHosts.get(lane);
+            if (hostsOfLane.isEmpty()) {
+                continue;
+            }
+            TargetSpace targetSpace = newTargetSpace(hostsOfLane, new PortRange(MIN_PORT, MAX_PORT));
+            fireInTheHole(lanes.get(lane).getScheduler(), targetSpace, getBatchSize(hostsOfLane.get(0)),
+                    taskCounts.get(lane));
+        }
+        List<PortScanReport> laneReports = new ArrayList<>();
+        for (int i = 0; i < lanes.size(); i++) {
+            laneReports.add(collect(lanes.get(i), taskCounts.get(i)));
+        }
+        for (Inet4Address address : addresses) {
+            PortScanReport laneReport = laneReports.get(HostAffinity.laneOf(address, lanes.size()));
+            PortScanReport hostReport = laneReport != null ? laneReport.getHostReport(address) : null;
+            if (hostReport != null) {
+                reports.put(hostReport, address);
+            }
         }
         return doGetOutput(reports);
     }
@@ -227,26 +346,22 @@ public class PortScanner {
     // scan complete
     @Scan
     public String scan(@Host String host) {
-        HostIdentity hostIdentity = getHostIdentity(host);
-        PortScanScheduler scanScheduler = schedulerFactory.create();
-        if (hostIdentity != null) {
-            report = singleHostScan(hostIdentity, scanScheduler);
+        Inet4Address address = resolveHost(host);
+        if (address != null) {
+            report = singleHostScan(address, newLane());
             if (report != null) {
-                return triggerResponse(report, hostIdentity);
+                return triggerResponse(report, address);
             }
         }
         return "no output.";
     }
 
-    private PortScanReport singleHostScan(HostIdentity hostIdentity, PortScanScheduler scheduler) {
-        if (ObjectUtils.isNotEmpty(hostIdentity.getHostInet4Address())) {
-            AtomicInteger taskCount = new AtomicInteger(0);
-            int batchSize = getBatchSize(hostIdentity.getHostInet4Address());
-            List<PortRange> chunks = getChunks(MIN_PORT, MAX_PORT, batchSize);
-            fireInTheHole(scheduler, hostIdentity.getHostInet4Address(), chunks, taskCount);
-            return scheduler.shutdownAndCollect(taskCount);
-        }
-        return null;
+    private PortScanReport singleHostScan(Inet4Address address, ScanLane lane) {
+        AtomicInteger taskCount = new AtomicInteger(0);
+        int batchSize = getBatchSize(address);
+        TargetSpace targetSpace = newTargetSpace(address, new PortRange(MIN_PORT, MAX_PORT));
+        fireInTheHole(lane.getScheduler(), targetSpace, batchSize, taskCount);
+        return collect(lane, taskCount);
     }
 
     // any filtering such as : PortScannerUtil.sortStringListPortsToIntegerList(ports)
@@ -255,28 +370,30 @@ public class PortScanner {
     // scan logic complete
     @Scan
     public String scan(@Host String host, @Ports List<String> ports) {
-        HostIdentity hostIdentity = getHostIdentity(host);
-        if (hostIdentity == null) {
+        Inet4Address address = resolveHost(host);
+        if (address == null) {
             // notify
             LOGGER.warn("Cannot scan nonexistent host: {}", host);
             return "null";
         }
-        List<Integer> validPorts = PortScannerUtil.convertListOfPortStringsToIntegers(ports);
-        if (ObjectUtils.isNotEmpty(hostIdentity.getHostInet4Address()) && ObjectUtils.isNotEmpty(validPorts)) {
+        List<Integer> validPorts = exclusions.remainingPorts(PortScannerUtil.convertListOfPortStringsToIntegers(ports));
+        if (ObjectUtils.isNotEmpty(validPorts)) {
             // local scans of ports less than MIN PORTS CURRENCY USAGE
-            if (PortScannerUtil.isLocalHost(hostIdentity.getHostname()) && ports.size() < MIN_PORTS_CONCURRENCY_USAGE) {
-                List<PortScanResult> results = submitTask(hostIdentity.getHostInet4Address(), validPorts);
+            if (address.isLoopbackAddress() && ports.size() < MIN_PORTS_CONCURRENCY_USAGE) {
+                List<PortScanResult> results = submitTask(address, validPorts);
                 report = generatePortScanReportFromPortScanResults(results);
-                return triggerResponse(report, hostIdentity);
+                return triggerResponse(report, address);
             } else {
                 AtomicInteger taskCount = new AtomicInteger(0);
-                int batchSize = getBatchSize(hostIdentity.getHostInet4Address());
-                List<Integer> sortedPorts = PortScannerUtil.sortStringListPortsToIntegerList(ports);
-                List<PortRange> chunks = getChunks(sortedPorts.get(0), sortedPorts.get(sortedPorts.size() - 1), batchSize);
-                PortScanScheduler scanScheduler = schedulerFactory.create();
-                fireInTheHole(scanScheduler, hostIdentity.getHostInet4Address(), chunks, taskCount);
-                report = scanScheduler.shutdownAndCollect(taskCount);
-                return triggerResponse(report, hostIdentity);
+                int batchSize = getBatchSize(address);
+                List<Integer> sortedPorts = PortScannerUtil.sortIntegerListPorts(validPorts).stream()
+                        .distinct()
+                        .collect(Collectors.toList());
+                TargetSpace targetSpace = new TargetSpace(Collections.singletonList(address), sortedPorts);
+                ScanLane lane = newLane();
+                fireInTheHole(lane.getScheduler(), targetSpace, batchSize, taskCount);
+                report = collect(lane, taskCount);
+                return triggerResponse(report, address);
             }
         }
         return "no output.";
@@ -285,56 +402,86 @@ public class PortScanner {
     // scan logic complete
     @Scan
     public String scan(@Host String host, @Ports PortWildcard ports) {
-        HostIdentity hostIdentity = getHostIdentity(host);
-        if (hostIdentity == null) {
+        Inet4Address address = resolveHost(host);
+        if (address == null) {
             // notify
             LOGGER.warn("Cannot scan nonexistent host: {}", host);
             return "no output.";
         }
-        if (ObjectUtils.isNotEmpty(hostIdentity.getHostInet4Address())) {
-            int batchSize = getBatchSize(hostIdentity.getHostInet4Address());
-            AtomicInteger taskCount = new AtomicInteger(0);
-            List<PortRange> chunks = getChunks(ports.getLowPort(), ports.getHighPort(), batchSize);
-            PortScanScheduler scanScheduler = schedulerFactory.create();
-            fireInTheHole(scanScheduler, hostIdentity.getHostInet4Address(), chunks, taskCount);
-            report = scanScheduler.shutdownAndCollect(taskCount);
-            return triggerResponse(report, hostIdentity);
-        } else {
-            PortScannerUtil.logInvalidHost(host);
-            return "no output.";
-        }
+        int batchSize = getBatchSize(address);
+        AtomicInteger taskCount = new AtomicInteger(0);
+        TargetSpace targetSpace = newTargetSpace(address, new PortRange(ports.getLowPort(), ports.getHighPort()));
+        ScanLane lane = newLane();
+        fireInTheHole(lane.getScheduler(), targetSpace, batchSize, taskCount);
+        report = collect(lane, taskCount);
+        return triggerResponse(report, address);
     }
 
     // add (CIDRWildcard hosts, List<String> ports)
     // add (CIDRWildcard hosts, PortWildcard ports)
 
 
-    // too slow - possible performance boost processing both hosts & addresses concurrently
-    // currently only processing ports concurrently, given a single hosts. too slow. This is
-    // stupid slow, most likely coming from building the hostModels
-    // scan logic complete
+    /**
+     * Scans every port of every host of a target set as a {@link HostScanPipeline}:
+     * targets are generated lazily, swept block by block when discovery is on, and
+     * up to {@link #getMaxSchedulers()} blocks of {@link #HOSTS_PER_BLOCK} hosts are
+     * port scanned at once, each by its own scheduler over one permuted space of
+     * the block's hosts and ports. A robust scan emits each host's {@link HostModel}
+     * as soon as its block is done. Otherwise the hosts' summaries are merged into
+     * one summary, shown once every host is done.
+     *
+     * @param hosts the CIDR blocks, ranges and addresses to scan
+     */
     @CIDRScan
     public void cidrScan(@Hosts CidrWildcard hosts) {
         if (hosts.isValidCIDRWildcard()) {
-            if (hosts.getOctets()[3] == 0) {
-                hosts.incrementLastOctet();
-            }
-            Inet4Address hostAddress = PortScannerUtil.getHostInet4Address(hosts.getAddress());
-            int batchSize = getBatchSize(hostAddress);
-            List<PortRange> chunks = getChunks(MIN_PORT, MAX_PORT, batchSize);
-
-            AtomicInteger taskCount = new AtomicInteger(0);
-            PortScanScheduler scanScheduler = schedulerFactory.create();
-            while (hosts.getOctets()[3] < 255) {
-                Inet4Address address = PortScannerUtil.getHostInet4Address(hosts.getAddress());
-                if (ObjectUtils.isNotEmpty(address)) {
-                    fireInTheHole(scanScheduler, hostAddress, chunks, taskCount);
-                }
-                hosts.incrementLastOctet();
-            }
-            report = scanScheduler.shutdownAndCollect(taskCount);
-            List<HostModel> hostModels = collectHostModels(scanScheduler, report.getResults());
-            triggerResponse(report, hostModels);
+            scanTargets(hosts.getTargets().iterator());
+        }
+    }
+
+    /**
+     * Scans every port of every host of a target list, such as an asset inventory,
+     * as a {@link HostScanPipeline} like {@link #cidrScan(CidrWildcard)}. The list is
+     * streamed through a bounded {@link TargetFeed}, so it is read, expanded and
+     * resolved while earlier hosts are scanned, and never held in memory.
+     *
+     * @param targets the file of addresses, CIDR blocks, ranges and host names to
+     *                scan, or {@code -} for standard input
+     */
+    @CIDRScan
+    public void cidrScan(@TargetsFile TargetSource targets) {
+        try (TargetFeed feed = new TargetFeed(targets.open(), hostResolver::resolveAll, TargetFeed.DEFAULT_CAPACITY)) {
+            scanTargets(feed);
+            LOGGER.info("Scanned {} targets of [{}], skipped {}", feed.getProduced(), targets.getValue(),
+                    feed.getSkipped());
+        } catch (IOException e) {
+            LOGGER.error("Cannot read targets file [{}]: {}", targets.getValue(), e.getMessage());
+        }
+    }
+
+    private void scanTargets(Iterator<Inet4Address> targets) {
+        Iterator<Inet4Address> includedHosts = exclusions.filterHosts(targets);
+        Iterator<Inet4Address> liveHosts = hostDiscovery != null
+                ? hostDiscovery.liveHosts(includedHosts, this::doShowOutput)
+                : includedHosts;
+        ScanSummary scanSummary = new ScanSummary(System.nanoTime(), UUID.randomUUID(), invocationRequest);
+        int hostsPerBlock = stateless ? STATELESS_HOSTS_PER_BLOCK : HOSTS_PER_BLOCK;
+        new HostScanPipeline(getMaxSchedulers()).runBlocks(liveHosts, hostsPerBlock, this::scanBlock,
+                (block, hostScans) -> {
+                    for (HostScan hostScan : hostScans) {
+                        ScanSummary hostSummary = hostScan.report.getSummary();
+                        if (hostSummary != null) {
+                            scanSummary.merge(hostSummary);
+                        }
+                        if (hostScan.hostModel != null) {
+                            doShowOutput(hostScan.hostModel);
+                        }
+                    }
+                });
+        scanSummary.stop();
+        report = new PortScanReport(null, Collections.<PortScanResult>emptyList(), scanSummary);
+        if (!robust) {
+            doShowOutput(scanSummary);
         }
     }
 
@@ -356,82 +503,140 @@ public class PortScanner {
 
     public PortScanReport getReport() { return report; }
 
-    private void fireInTheHole(PortScanScheduler scanScheduler, Inet4Address hostAddress, List<PortRange> chunks, AtomicInteger taskCount) {
-        for (PortRange portRange : chunks) {
-            submitTask(scanScheduler, hostAddress, portRange);
+    /**
+     * Sweeps the given addresses with {@link HostDiscovery} and reports the sweep
+     * on its own, ahead of the port scan.
+     *
+     * @param addresses the addresses to sweep
+     * @return the addresses found up, in the order given
+     */
+    private List<Inet4Address> discoverLiveHosts(List<Inet4Address> addresses) {
+        DiscoveryReport discoveryReport = hostDiscovery.discover(addresses);
+        doShowOutput(discoveryReport);
+        return discoveryReport.getLiveHosts();
+    }
+
+    /**
+     * Submits the (host, port) pairs of a target space to a scheduler in a seeded,
+     * scattered order, so that concurrent tasks do not probe the same host and
+     * adjacent ports at the same moment. The permuted order is cut into slices of
+     * {@code batchSize} pairs, one task each. A stateless scan never waits on replies,
+     * so it takes the whole space as a single slice. A fork/join scheduler also takes
+     * the whole space as one task and splits it as its workers go idle.
+     */
+    private void fireInTheHole(PortScanScheduler scanScheduler, TargetSpace targetSpace, int batchSize,
+                               AtomicInteger taskCount) {
+        if (targetSpace.size() == 0) {
+            return; // every port is excluded
+        }
+        TargetPermutation permutation = new TargetPermutation(targetSpace.size(), permutationSeed);
+        if (stateless) {
+            scanScheduler.submit(new PortScanStatelessSynTask(scanScheduler.getSchedulerId(),
+                    new TargetSlice(targetSpace, permutation, 0, targetSpace.size()),
+                    sourcePortAllocator.getAndIncrement(), timeout, synCookie, probeContext));
+            taskCount.incrementAndGet();
+            return;
+        }
+        if (scanScheduler instanceof PortScanForkJoinScheduler) {
+            ((PortScanForkJoinScheduler) scanScheduler).submit(
+                    new TargetSlice(targetSpace, permutation, 0, targetSpace.size()),
+                    targetSlice -> newTask(scanScheduler, targetSlice));
+            taskCount.incrementAndGet();
+            return;
+        }
+        for (TargetSlice targetSlice : targetSpace.slices(permutation, batchSize)) {
+            scanScheduler.submit(newTask(scanScheduler, targetSlice));
             taskCount.incrementAndGet();
         }
     }
 
-    private void submitTask(PortScanScheduler scanScheduler, Inet4Address inet4Address, PortRange portRange) {
-        if (sneak) {
-            scanScheduler.submit(new PortScanSynTask(scanScheduler.getSchedulerId(), inet4Address, portRange,
-                    sourcePortAllocator.getAndIncrement(), timeout));
-        } else {
-            scanScheduler.submit(new PortScanSynAckTask(scanScheduler.getSchedulerId(), inet4Address,
-                    portRange, timeout));
-        }
+    private TargetSpace newTargetSpace(Inet4Address host, PortRange portRange) {
+        return newTargetSpace(Collections.singletonList(host), portRange);
     }
 
-    private void submitTask(PortScanScheduler scanScheduler, Inet4Address inet4Address, List<Integer> ports) {
-        if (sneak) {
-            scanScheduler.submit(new PortScanSynTask(scanScheduler.getSchedulerId(), inet4Address, ports,
-                    sourcePortAllocator.getAndIncrement(), timeout));
-        } else {
-            scanScheduler.submit(new PortScanSynAckTask(scanScheduler.getSchedulerId(), inet4Address,
-                    ports, timeout));
+    /**
+     * Creates the space of hosts and a range of ports, less the excluded ports,
+     * so that an excluded port never becomes a probe.
+     */
+    private TargetSpace newTargetSpace(List<Inet4Address> hosts, PortRange portRange) {
+        if (remainingPorts == null) {
+            return new TargetSpace(hosts, portRange);
         }
+        return portRange.getLow() == MIN_PORT && portRange.getHigh() == MAX_PORT
+                ? new TargetSpace(hosts, remainingPorts)
+                : new TargetSpace(hosts, exclusions.remainingPorts(portRange.getLow(), portRange.getHigh()));
     }
 
-    private List<PortScanResult> submitTask(Inet4Address inet4Address, PortRange portRange) {
+    private Callable<List<PortScanResult>> newTask(PortScanScheduler scanScheduler, TargetSlice targetSlice) {
         if (sneak) {
-            PortScanSynTask task = new PortScanSynTask(null, inet4Address, portRange, sourcePortAllocator.getAndIncrement(),
-                    timeout);
-            return task.call();
+            return new PortScanSynTask(scanScheduler.getSchedulerId(), targetSlice,
+                    sourcePortAllocator.getAndIncrement(), timeout, probeContext);
+        } else if (scanScheduler instanceof PortScanNioScheduler) {
+            return new PortScanNioTask(scanScheduler.getSchedulerId(), targetSlice, timeout,
+                    ((PortScanNioScheduler) scanScheduler).getConnectEngine(), probeContext);
         } else {
-            PortScanSynAckTask task = new PortScanSynAckTask(null, inet4Address, portRange, timeout);
-            return task.call();
+            return new PortScanSynAckTask(scanScheduler.getSchedulerId(), targetSlice, timeout, probeContext);
         }
     }
 
     private List<PortScanResult> submitTask(Inet4Address inet4Address, List<Integer> ports) {
         if (sneak) {
             PortScanSynTask task = new PortScanSynTask(null, inet4Address, ports, sourcePortAllocator.getAndIncrement(),
-                    timeout);
+                    timeout, probeContext);
             return task.call();
         } else {
-            PortScanSynAckTask task = new PortScanSynAckTask(null, inet4Address, ports, timeout);
+            PortScanSynAckTask task = new PortScanSynAckTask(null, inet4Address, ports, timeout, probeContext);
             return task.call();
         }
     }
 
-    // update this: ports are grouped to correct host, but ports are out of order. For json output this matters.
-    // for human-readable output, not so much because nocker should just report on OPEN,CLOSED,FILTERED ports.
-    private List<HostModel> collectHostModels(PortScanScheduler scanScheduler, List<PortScanResult> portScanResults) {
-        Map<Inet4Address, List<PortScanResult>> byHost = portScanResults.stream()
-                .collect(Collectors.groupingBy(PortScanResult::getHostAddress));
-
-        List<HostModel> hostModels = new ArrayList<>();
-        for (Map.Entry<Inet4Address, List<PortScanResult>> entry : byHost.entrySet()) {
-            Inet4Address host = entry.getKey();
-            HostIdentity hostIdentity = getHostIdentity(host.getHostAddress());
-            hostModels.add(responseWithHostModel(scanScheduler, entry.getValue(),
-                    hostIdentity));
+    /**
+     * Scans every port of a block of hosts of a pipeline on a scheduler of its
+     * own, as one permuted space, so concurrent probes are scattered across the
+     * block's hosts and a stateless sweep of the block waits for late replies
+     * once. The hosts' names are requested before their probes are sent and
+     * joined together, against one deadline, once they are collected, and the
+     * hosts' models are built here, on the block's lane, so that waiting for the
+     * names does not hold up the emission of other blocks.
+     *
+     * @param hosts the hosts of the block
+     * @return each host's report, and its model when the scan is robust, for
+     * every host with results
+     */
+    private List<HostScan> scanBlock(List<Inet4Address> hosts) {
+        reverseDns.requestAll(hosts);
+        AtomicInteger taskCount = new AtomicInteger(0);
+        ScanLane lane = newLane();
+        fireInTheHole(lane.getScheduler(), newTargetSpace(hosts, new PortRange(MIN_PORT, MAX_PORT)),
+                getBatchSize(hosts.get(0)), taskCount);
+        PortScanReport blockReport = collect(lane, taskCount);
+        if (blockReport == null) {
+            return Collections.emptyList();
         }
-        return hostModels;
-    }
-
-    private void triggerResponse(PortScanReport report, List<HostModel> batchHostResults) {
-        if (robust) {
-            doShowOutput(batchHostResults);
-        } else {
-            doShowOutput(report.getSummary());
+        Map<Inet4Address, String> hostNames = robust ? reverseDns.hostNames(hosts) : Collections.emptyMap();
+        List<HostScan> hostScans = new ArrayList<>(hosts.size());
+        for (Inet4Address host : hosts) {
+            PortScanReport hostReport = blockReport.getHostReport(host);
+            if (hostReport == null) {
+                continue;
+            }
+            HostModel hostModel = robust
+                    ? responseWithHostModel(lane.getScheduler(), hostReport.getResults(),
+                    toHostIdentity(host, hostNames.get(host)))
+                    : null;
+            hostScans.add(new HostScan(hostReport, hostModel));
         }
+        return hostScans;
     }
 
-    private String triggerResponse(PortScanReport report, HostIdentity hostIdentity) {
+    /**
+     * Writes a host's report. Only robust output names the host, so only then is
+     * its identity built and its name joined.
+     */
+    private String triggerResponse(PortScanReport report, Inet4Address address) {
         if (robust) {
-            HostModel hostModel = responseWithHostModel(report.getPortScanScheduler(), report.getResults(), hostIdentity);
+            HostModel hostModel = responseWithHostModel(report.getPortScanScheduler(), report.getResults(),
+                    toHostIdentity(address, reverseDns.hostName(address)));
             return doGetOutput(hostModel);
         } else {
             return doGetOutput(report.getSummary());
@@ -485,6 +690,18 @@ public class PortScanner {
         writeToFile(listObject);
     }
 
+    private void doShowOutput(HostModel hostModel) {
+        outputFormatter.write(hostModel, System.out);
+        writeToFile(hostModel);
+    }
+
+    private void doShowOutput(DiscoveryReport discoveryReport) {
+        outputFormatter.write(discoveryReport, System.out);
+        if (ObjectUtils.allNotNull(outputFormatter, fileWriter)) {
+            outputFormatter.write(discoveryReport, fileWriter.getPrintStream());
+        }
+    }
+
     private void doShowOutput(ScanSummary scanSummary) {
         outputFormatter.write(scanSummary, System.out);
         writeToFile(scanSummary);
@@ -504,9 +721,9 @@ public class PortScanner {
         return stringBuilder.toString();
     }
 
-    private String doGetOutput(LinkedHashMap<PortScanReport, HostIdentity> reports) {
+    private String doGetOutput(LinkedHashMap<PortScanReport, Inet4Address> reports) {
         StringBuilder builder = new StringBuilder();
-        for (Map.Entry<PortScanReport, HostIdentity> entry : reports.entrySet()) {
+        for (Map.Entry<PortScanReport, Inet4Address> entry : reports.entrySet()) {
             builder.append(triggerResponse(entry.getKey(), entry.getValue())).append("\n");
         }
         return builder.toString();
@@ -516,8 +733,9 @@ public class PortScanner {
      * Generates a {@code PortScanReport} object from the provided list of port scan
      * results along with additional scan metadata such as the invocation command.
      * This method processes the scan results to calculate the total number of open,
-     * filtered, and closed ports, as well as builds a mapping of hostnames to their
-     * corresponding open ports.
+     * filtered, and closed ports, as well as builds a mapping of host addresses to
+     * their corresponding open ports. Hosts are keyed by their numeric address, so
+     * no name is looked up here.
      *
      * @param results a list of {@code PortScanResult} objects representing
      *                the results of a port scan, including port states and
@@ -535,7 +753,7 @@ public class PortScanner {
             totalPortsScanned++;
             if (result.getState().equals(OPEN)) {
                 openPortsCount++;
-                openHostPorts.computeIfAbsent(result.getHostAddress().getHostName(), host -> new HashSet<>())
+                openHostPorts.computeIfAbsent(result.getHostAddress().getHostAddress(), host -> new HashSet<>())
                         .add(port);
             } else if (result.getState().equals(FILTERED)) {
                 filteredPortsCount++;
@@ -560,92 +778,195 @@ public class PortScanner {
     }
 
     /**
-     * Retrieves the identity details of a specified host by resolving
-     * its IPv4 address, host address, and hostname. This method
-     * creates a {@link HostIdentity} instance with the resolved values.
+     * Resolves the address of a specified host and requests its name from the
+     * {@link ReverseDnsStage}, which looks it up while the host is scanned.
      *
      * @param host the hostname or IP address of the host to resolve
-     * @return a {@link HostIdentity} instance containing the resolved
-     * identity details of the specified host
+     * @return the IPv4 address of the host, or {@code null} if it does not
+     * resolve
      */
-    protected HostIdentity getHostIdentity(String host) {
+    protected Inet4Address resolveHost(String host) {
         if (ObjectUtils.isNotEmpty(host)) {
-            Inet4Address hostAddress = PortScannerUtil.getHostInet4Address(host);
-            String hostAddressName = PortScannerUtil.getHostInet4AddressName(hostAddress.getHostAddress());
-            if (ObjectUtils.isNotEmpty(hostAddress) && ObjectUtils.isNotEmpty(hostAddressName)) {
-                return new HostIdentity.Builder()
-                        .hostInet4Address(hostAddress)
-                        .hostAddress(hostAddress.getHostAddress())
-                        .hostname(hostAddressName)
-                        .build();
+            Inet4Address address = hostResolver.resolve(host);
+            if (address != null && exclusions.excludesHost(address)) {
+                LOGGER.warn("Host [{}] is excluded, not scanning it", host);
+                return null;
             }
+            if (address != null) {
+                reverseDns.request(address);
+                return address;
+            }
+            PortScannerUtil.logInvalidHost(host);
         }
         return null;
     }
 
     /**
-     * Spawns a list of {@code PortScanScheduler} instances based
-     * on the requested size, limited to a maximum number defined
-     * by {@code MAX_SCHEDULERS}. The method dynamically creates
-     * the schedulers using the factory method and caps the total
-     * number of schedulers to avoid exceeding the pre-defined
-     * limit.
+     * Resolves the addresses of several hosts at once. Every address is looked
+     * up in parallel through the shared {@link HostResolver}, so a list costs
+     * about as much as its slowest host rather than the sum of all of them, and
+     * every name is requested from the {@link ReverseDnsStage}. Hosts that do
+     * not resolve are logged and left out.
      *
-     * @param requestedSize the number of schedulers to spawn,
-     *                     subject to the {@code MAX_SCHEDULERS}
-     *                     limit
-     * @return a list of {@code PortScanScheduler} instances,
-     * with the size being the lesser of {@code requestedSize}
-     * and the maximum allowed schedulers
+     * @param hosts the hostnames or IP addresses to resolve
+     * @return the distinct addresses of the hosts that resolve, in the order given
      */
-    protected List<PortScanScheduler> spawnSchedulers(int requestedSize) {
-        int count = Math.min(requestedSize, MAX_SCHEDULERS);
-        List<PortScanScheduler> schedulers = new ArrayList<>();
-        for (int i = 0; i < count; i++) {
-            schedulers.add(schedulerFactory.create());
+    private List<Inet4Address> resolveHosts(List<String> hosts) {
+        List<Inet4Address> addresses = new ArrayList<>();
+        for (Map.Entry<String, Inet4Address> address : hostResolver.resolveAll(hosts).entrySet()) {
+            if (address.getValue() != null && exclusions.excludesHost(address.getValue())) {
+                LOGGER.warn("Host [{}] is excluded, not scanning it", address.getKey());
+            } else if (address.getValue() != null) {
+                if (!addresses.contains(address.getValue())) {
+                    addresses.add(address.getValue());
+                }
+            } else {
+                PortScannerUtil.logInvalidHost(address.getKey());
+            }
         }
-        return schedulers;
+        reverseDns.requestAll(addresses);
+        return addresses;
     }
 
     /**
-     * Generates a list of {@code PortRange} objects representing sub-ranges
-     * of ports between a given starting port and ending port, divided into
-     * chunks of a specified batch size.
+     * Builds the identity of a scanned host from its name, as joined from the
+     * {@link ReverseDnsStage}.
      *
-     * @param startPort the starting port number (inclusive)
-     * @param endPort the ending port number (inclusive), which must not be
-     *                less than the starting port number
-     * @param batchSize the maximum size of each chunk of ports
-     * @return a list of {@code PortRange} objects, where each object represents
-     *         a range of ports. The batch size of each range will not exceed
-     *         {@code batchSize}, and all ranges together cover the full range
-     *         from {@code startPort} to {@code endPort}.
-     * @throws IllegalStateException if {@code endPort} is less than
-     * {@code startPort}
-     */
-    protected List<PortRange> getChunks(int startPort, int endPort, int batchSize) {
-        if (endPort < startPort) {
-            throw new IllegalStateException("ending port can not be less than starting port");
-        }
-        int totalSize = (endPort - startPort) + startPort;
-        if (batchSize >= totalSize) {
-            return Collections.singletonList(new PortRange(startPort, endPort));
-        }
-        int remainder = totalSize % batchSize;
-        int segments = remainder == 0 ? totalSize / batchSize : (totalSize / batchSize) + 1;
-        List<PortRange> portRanges = new ArrayList<>();
-        for (int i = 0; i < segments; i++) {
-            int segmentEnd;
-            if (startPort + batchSize - 1 >= endPort) {
-                segmentEnd = endPort;
-                portRanges.add(new PortRange(startPort, segmentEnd));
-                break;
+     * @param address  the address of the host
+     * @param hostName the name of the host, its address when it has no name
+     * @return the identity of the host
+     */
+    private HostIdentity toHostIdentity(Inet4Address address, String hostName) {
+        return new HostIdentity.Builder()
+                .hostInet4Address(address)
+                .hostAddress(address.getHostAddress())
+                .hostname(hostName)
+                .build();
+    }
+
+    /**
+     * Creates a scheduler from the configured factory and registers the scan's
+     * streaming sinks with it. Individual results are only retained for robust
+     * output, a summary needs nothing but the counts. With retries, a
+     * {@link FilteredRetryStage} notes the scheduler's filtered ports, and is
+     * kept with the scheduler in its lane, so lanes of a pipeline never share
+     * any state to find it again.
+     */
+    private ScanLane newLane() {
+        PortScanScheduler scheduler = schedulerFactory.create();
+        scheduler.setRetainResults(robust);
+        if (openPortStream != null) {
+            scheduler.addResultSink(openPortStream);
+        }
+        FilteredRetryStage retryStage = null;
+        if (retries > 0) {
+            retryStage = new FilteredRetryStage(retries);
+            scheduler.addResultSink(retryStage);
+        }
+        return new ScanLane(scheduler, retryStage);
+    }
+
+    /**
+     * Shuts a scheduler down and collects its report. Hosts abandoned as unresponsive
+     * are recorded in the scan's summary and the summary of their shard. With retries,
+     * the ports the sweep left filtered on the other hosts are then re-probed and those
+     * that answer are merged into the report. When concurrency is adaptive, the window
+     * the controller settled on is recorded in the scan's summary and the window of
+     * each host in the summary of its shard.
+     */
+    private PortScanReport collect(ScanLane lane, AtomicInteger taskCount) {
+        PortScanScheduler scheduler = lane.getScheduler();
+        PortScanReport collected = scheduler.shutdownAndCollect(taskCount);
+        FilteredRetryStage retryStage = lane.getRetryStage();
+        HostLiveness liveness = probeContext.getLiveness();
+        if (collected != null && liveness.isEnabled()) {
+            for (HostShard hostShard : collected.getHostShards().values()) {
+                Inet4Address host = hostShard.getHost();
+                if (liveness.isUnresponsive(host)) {
+                    long skippedPorts = liveness.getSkippedProbes(host);
+                    collected.getSummary().markUnresponsive(host.getHostAddress(), skippedPorts);
+                    hostShard.getSummary().markUnresponsive(host.getHostAddress(), skippedPorts);
+                    if (retryStage != null) {
+                        retryStage.forget(host);
+                    }
+                }
             }
-            segmentEnd = startPort + batchSize - 1;
-            portRanges.add(new PortRange(startPort, segmentEnd));
-            startPort = segmentEnd + 1;
         }
-        return portRanges;
+        if (collected != null && retryStage != null) {
+            retryFiltered(scheduler, retryStage, collected);
+        }
+        AdaptiveConcurrency adaptiveConcurrency = probeContext.getAdaptiveConcurrency();
+        if (collected != null && adaptiveConcurrency.isEnabled()) {
+            collected.getSummary().setEffectiveConcurrency(adaptiveConcurrency.getEffectiveConcurrency());
+            for (HostShard hostShard : collected.getHostShards().values()) {
+                hostShard.getSummary().setEffectiveConcurrency(
+                        adaptiveConcurrency.getHostConcurrency(hostShard.getHost()));
+            }
+        }
+        return collected;
+    }
+
+    /**
+     * Runs the retry pass of a collected scheduler on the shared worker pool, at the
+     * scheduler's concurrency. Retries probe with blocking connects, or SYNs when
+     * sneaking, whatever the engine of the sweep was.
+     */
+    private void retryFiltered(PortScanScheduler scheduler, FilteredRetryStage retryStage, PortScanReport collected) {
+        if (retryStage.getFilteredCount() == 0) {
+            return;
+        }
+        List<PortScanResult> recovered = retryStage.run(Math.min(scheduler.getConcurrency(), MAX_CONCURRENCY),
+                (host, ports) -> newRetryTask(scheduler, host, ports));
+        collected.reclassify(recovered);
+        if (openPortStream != null && !recovered.isEmpty()) {
+            openPortStream.accept(recovered);
+            openPortStream.complete();
+        }
+    }
+
+    private Callable<List<PortScanResult>> newRetryTask(PortScanScheduler scanScheduler, Inet4Address host,
+                                                        List<Integer> ports) {
+        if (sneak || stateless) {
+            return new PortScanSynTask(scanScheduler.getSchedulerId(), host, ports,
+                    sourcePortAllocator.getAndIncrement(), timeout, probeContext);
+        }
+        return new PortScanSynAckTask(scanScheduler.getSchedulerId(), host, ports, timeout, probeContext);
+    }
+
+    /**
+     * Retrieves the number of schedulers a multi-host scan may run at once.
+     * Schedulers share the worker threads of the {@link SharedWorkerPool}, so the
+     * limit is as many schedulers of the configured concurrency as the pool has
+     * workers for, and never less than {@code MIN_SCHEDULERS}.
+     *
+     * @return the maximum number of concurrent schedulers
+     */
+    public int getMaxSchedulers() {
+        return Math.max(MIN_SCHEDULERS, SharedWorkerPool.MAX_WORKERS / Math.max(1, concurrency));
+    }
+
+    /**
+     * Spawns a list of {@link ScanLane} instances based on the
+     * requested size, limited to {@link #getMaxSchedulers()}.
+     * The method dynamically creates each lane's scheduler using
+     * the factory method. Schedulers are cheap, they run their
+     * tasks on the shared worker pool rather than threads of
+     * their own.
+     *
+     * @param requestedSize the number of lanes to spawn,
+     *                     subject to the {@link #getMaxSchedulers()}
+     *                     limit
+     * @return a list of {@code ScanLane} instances, with the size
+     * being the lesser of {@code requestedSize} and the maximum
+     * allowed schedulers
+     */
+    protected List<ScanLane> spawnLanes(int requestedSize) {
+        int count = Math.min(requestedSize, getMaxSchedulers());
+        List<ScanLane> lanes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            lanes.add(newLane());
+        }
+        return lanes;
     }
 
     /**
@@ -687,4 +1008,39 @@ public class PortScanner {
     private int calculateRemoteBatchSize() {
         return (int) Math.ceil(Math.max(CHUNK_PORTS_REMOTE_MIN, Math.min(CHUNK_PORTS_REMOTE_MAX, TARGET_TASK_COMPLETION_REMOTE_MS / AVG_REMOTE_SCAN_MS)));
     }
+
+    /**
+     * A scheduler together with the {@link FilteredRetryStage} that notes its
+     * filtered ports, {@code null} without retries.
+     */
+    static final class ScanLane {
+        private final PortScanScheduler scheduler;
+        private final FilteredRetryStage retryStage;
+
+        private ScanLane(PortScanScheduler scheduler, FilteredRetryStage retryStage) {
+            this.scheduler = scheduler;
+            this.retryStage = retryStage;
+        }
+
+        PortScanScheduler getScheduler() {
+            return scheduler;
+        }
+
+        FilteredRetryStage getRetryStage() {
+            return retryStage;
+        }
+    }
+
+    /**
+     * The outcome of one host of a block of a {@link HostScanPipeline}.
+     */
+    private static final class HostScan {
+        private final PortScanReport report;
+        private final HostModel hostModel;
+
+        private HostScan(PortScanReport report, HostModel hostModel) {
+            this.report = report;
+            this.hostModel = hostModel;
+        }
+    }
 }
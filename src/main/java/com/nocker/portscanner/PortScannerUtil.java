@@ -1,5 +1,6 @@
 package com.nocker.portscanner;
 
+import com.nocker.portscanner.dns.HostResolver;
 import com.nocker.portscanner.tasks.PortRange;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -69,24 +70,27 @@ public final class PortScannerUtil {
         return hostAddress;
     }
 
+    /**
+     * Resolves a host through the shared {@link HostResolver}, so repeated
+     * lookups of a host are answered from its cache.
+     */
     public static Inet4Address getHostInet4Address(String host) {
-        Inet4Address hostAddress = null;
-        try {
-            hostAddress = isLocalHost(host) ? (Inet4Address) Inet4Address.getLocalHost() : (Inet4Address) Inet4Address.getByName(host);
-        } catch (UnknownHostException e) {
-            LOGGER.error("Fatality, unknown host [{}]: {}", host, e.getMessage(), e);
-        }
-        return hostAddress;
+        return HostResolver.shared().resolve(host);
     }
 
+    /**
+     * Retrieves the name of a host through the shared {@link HostResolver}. An
+     * address literal or {@code localhost} is looked up in reverse, a name is
+     * returned as given once it resolves.
+     */
     public static String getHostInet4AddressName(String host) {
-        String hostAddressName = null;
-        try {
-            hostAddressName = isLocalHost(host) ? Inet4Address.getLocalHost().getHostName() : Inet4Address.getByName(host).getHostName();
-        } catch (UnknownHostException e) {
-            LOGGER.error("Fatality, unknown host [{}]: {}", host, e.getMessage(), e);
+        Inet4Address hostAddress = getHostInet4Address(host);
+        if (hostAddress == null) {
+            return null;
         }
-        return hostAddressName;
+        return isLocalHost(host) || hostAddress.getHostAddress().equals(host)
+                ? HostResolver.shared().hostName(hostAddress)
+                : host;
     }
 
     public static boolean isLocalHost(String host) {
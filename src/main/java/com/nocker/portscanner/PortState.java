@@ -4,5 +4,6 @@ public enum PortState {
     OPEN,
     CLOSED,
     FILTERED,
-    ERROR
+    ERROR,
+    SKIPPED
 }
@@ -0,0 +1,180 @@
+package com.nocker.portscanner.control;
+
+import com.nocker.portscanner.PortState;
+
+import java.net.Inet4Address;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@code AdaptiveConcurrency} decides how many probes of a scan may be in flight,
+ * in place of a fixed {@code -c}. Every probe takes room in the window of its host
+ * and in a global window, both {@link ConcurrencyWindow}s. A host on a lossy path
+ * shrinks its own window without holding back the others, while losses across
+ * many hosts shrink the global window the way a congested link would. A filtered
+ * probe is a loss for its host only: firewalls dropping probes say nothing about
+ * the link, and a scan of well filtered hosts would otherwise throttle itself.
+ * Errors and slow replies count against both windows.
+ * <p>
+ * A controller is shared by every task of a scan. {@link #unlimited()} gives one
+ * that admits every probe at once and keeps no state, the behavior of a fixed
+ * concurrency.
+ */
+public class AdaptiveConcurrency {
+    private static final AdaptiveConcurrency UNLIMITED = new AdaptiveConcurrency();
+
+    /**
+     * The fewest probes a window is cut down to.
+     */
+    public static final int MIN_WINDOW = 2;
+
+    private final boolean enabled;
+    private final int initial;
+    private final int maximum;
+    private final long slowReplyMillis;
+    private final ConcurrencyWindow globalWindow;
+    private final ConcurrentHashMap<Inet4Address, ConcurrencyWindow> hostWindows = new ConcurrentHashMap<>();
+    private final Permit unlimitedPermit = new Permit(null);
+
+    private AdaptiveConcurrency() {
+        this.enabled = false;
+        this.initial = 0;
+        this.maximum = 0;
+        this.slowReplyMillis = Long.MAX_VALUE;
+        this.globalWindow = null;
+    }
+
+    /**
+     * Creates a controller starting every window at {@code initial} probes.
+     *
+     * @param initial the window a scan starts with, usually the {@code -c} value
+     * @param maximum the widest a window may grow
+     * @param timeoutMillis the probe timeout, replies arriving within its last
+     *                      quarter count as lost
+     */
+    public AdaptiveConcurrency(int initial, int maximum, int timeoutMillis) {
+        this.enabled = true;
+        this.initial = Math.max(MIN_WINDOW, Math.min(initial, maximum));
+        this.maximum = Math.max(MIN_WINDOW, maximum);
+        this.slowReplyMillis = Math.max(1L, timeoutMillis * 3L / 4L);
+        this.globalWindow = new ConcurrencyWindow(this.initial, MIN_WINDOW, this.maximum);
+    }
+
+    /**
+     * Retrieves a controller that never limits probes.
+     *
+     * @return the unlimited {@code AdaptiveConcurrency}
+     */
+    public static AdaptiveConcurrency unlimited() {
+        return UNLIMITED;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Waits for room in the host's window and the global window.
+     *
+     * @param host the host about to be probed
+     * @return the permit to release once the probe completes
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public Permit acquire(Inet4Address host) throws InterruptedException {
+        if (!enabled) {
+            return unlimitedPermit;
+        }
+        ConcurrencyWindow hostWindow = hostWindow(host);
+        hostWindow.acquire();
+        try {
+            globalWindow.acquire();
+        } catch (InterruptedException e) {
+            hostWindow.cancel();
+            throw e;
+        }
+        return new Permit(hostWindow);
+    }
+
+    /**
+     * Takes room for a probe of the host only if both windows have some.
+     *
+     * @param host the host about to be probed
+     * @return the permit, or {@code null} if either window is full
+     */
+    public Permit tryAcquire(Inet4Address host) {
+        if (!enabled) {
+            return unlimitedPermit;
+        }
+        ConcurrencyWindow hostWindow = hostWindow(host);
+        if (!hostWindow.tryAcquire()) {
+            return null;
+        }
+        if (!globalWindow.tryAcquire()) {
+            hostWindow.cancel();
+            return null;
+        }
+        return new Permit(hostWindow);
+    }
+
+    private ConcurrencyWindow hostWindow(Inet4Address host) {
+        return hostWindows.computeIfAbsent(host, h -> new ConcurrencyWindow(initial, MIN_WINDOW, maximum));
+    }
+
+    /**
+     * Retrieves the number of probes the scan allows in flight at present, or
+     * {@code 0} when the controller is not enabled.
+     *
+     * @return the global window
+     */
+    public int getEffectiveConcurrency() {
+        return enabled ? globalWindow.getWindow() : 0;
+    }
+
+    /**
+     * Retrieves the window a host has settled on.
+     *
+     * @param host the probed host
+     * @return the host's window, or {@code 0} if it was never probed
+     */
+    public int getHostConcurrency(Inet4Address host) {
+        ConcurrencyWindow hostWindow = enabled ? hostWindows.get(host) : null;
+        return hostWindow != null ? hostWindow.getWindow() : 0;
+    }
+
+    /**
+     * Room held by one probe in its host's window and the global window.
+     */
+    public final class Permit {
+        private final ConcurrencyWindow hostWindow;
+
+        private Permit(ConcurrencyWindow hostWindow) {
+            this.hostWindow = hostWindow;
+        }
+
+        /**
+         * Releases the room of a completed probe, judging it by its outcome.
+         *
+         * @param state the probed state
+         * @param latencyMillis the time from sending the probe to its outcome
+         */
+        public void release(PortState state, long latencyMillis) {
+            if (hostWindow == null) {
+                return;
+            }
+            boolean filtered = state == PortState.FILTERED;
+            boolean congested = state == PortState.ERROR || (!filtered && latencyMillis >= slowReplyMillis);
+            hostWindow.release(filtered || congested);
+            globalWindow.release(congested);
+        }
+
+        /**
+         * Releases the room of a probe that was never sent.
+         */
+        public void cancel() {
+            if (hostWindow == null) {
+                return;
+            }
+            hostWindow.cancel();
+            globalWindow.cancel();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.nocker.portscanner.control;
+
+import java.net.Inet4Address;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@code AdaptiveTimeouts} chooses the timeout of each probe from the round
+ * trips measured to its host, in place of the single {@code -t} of a scan. Each
+ * host has a {@link RttEstimator} fed by the connect, SYN-ACK and RST timings of
+ * its probes.
+ * <p>
+ * A host starts out calibrating: its first probes wait up to
+ * {@link #CALIBRATION_TIMEOUT_MILLIS}, long enough for distant hosts to answer.
+ * Once {@link #CALIBRATION_SAMPLES} replies have been timed the estimate takes
+ * over, clamped to {@code [MIN_TIMEOUT_MILLIS, MAX_TIMEOUT_MILLIS]}. A host that
+ * leaves {@link #CALIBRATION_PROBES} probes unanswered is most likely filtered,
+ * and goes back to the configured timeout rather than paying the calibration
+ * timeout for every port.
+ * <p>
+ * {@link #fixed()} gives an instance that always answers the configured timeout.
+ */
+public class AdaptiveTimeouts {
+    private static final AdaptiveTimeouts FIXED = new AdaptiveTimeouts(false);
+
+    /**
+     * Replies timed before a host's estimate is trusted.
+     */
+    public static final int CALIBRATION_SAMPLES = 4;
+
+    /**
+     * Probes a host may leave unanswered before calibration is given up.
+     */
+    public static final int CALIBRATION_PROBES = 32;
+
+    /**
+     * Timeout of the probes calibrating a host.
+     */
+    public static final int CALIBRATION_TIMEOUT_MILLIS = 1000;
+
+    /**
+     * Shortest timeout an estimate is given, above timer and scheduling jitter.
+     */
+    public static final int MIN_TIMEOUT_MILLIS = 20;
+
+    /**
+     * Longest timeout an estimate is given.
+     */
+    public static final int MAX_TIMEOUT_MILLIS = 2000;
+
+    private final boolean enabled;
+    private final ConcurrentHashMap<Inet4Address, HostTiming> hostTimings = new ConcurrentHashMap<>();
+
+    private AdaptiveTimeouts(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Creates timeouts that adapt to each host's measured round trips.
+     *
+     * @return a new, enabled {@code AdaptiveTimeouts}
+     */
+    public static AdaptiveTimeouts adaptive() {
+        return new AdaptiveTimeouts(true);
+    }
+
+    /**
+     * Retrieves timeouts that never adapt.
+     *
+     * @return the fixed {@code AdaptiveTimeouts}
+     */
+    public static AdaptiveTimeouts fixed() {
+        return FIXED;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Chooses the timeout of a probe about to be sent to a host, and counts the probe.
+     *
+     * @param host the host about to be probed
+     * @param configuredTimeout the scan's configured timeout, in milliseconds
+     * @return the probe's timeout in milliseconds
+     */
+    public int timeoutFor(Inet4Address host, int configuredTimeout) {
+        if (!enabled) {
+            return configuredTimeout;
+        }
+        HostTiming timing = hostTimings.computeIfAbsent(host, h -> new HostTiming());
+        int probes = timing.probes.incrementAndGet();
+        int samples = timing.estimator.getSamples();
+        if (samples >= CALIBRATION_SAMPLES) {
+            long estimate = Math.round(Math.ceil(timing.estimator.timeoutMillis()));
+            return (int) Math.max(MIN_TIMEOUT_MILLIS, Math.min(MAX_TIMEOUT_MILLIS, estimate));
+        }
+        if (samples == 0 && probes > CALIBRATION_PROBES) {
+            return configuredTimeout;
+        }
+        return Math.max(configuredTimeout, CALIBRATION_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Records the round trip of a probe that was answered, with a SYN-ACK or a RST.
+     *
+     * @param host the host that answered
+     * @param rttNanos the time from sending the probe to its reply, in nanoseconds
+     */
+    public void sample(Inet4Address host, long rttNanos) {
+        if (enabled) {
+            hostTimings.computeIfAbsent(host, h -> new HostTiming()).estimator.sample(rttNanos);
+        }
+    }
+
+    /**
+     * Retrieves the estimator of a host.
+     *
+     * @param host the probed host
+     * @return the host's estimator, or {@code null} if it was never probed
+     */
+    public RttEstimator getEstimator(Inet4Address host) {
+        HostTiming timing = hostTimings.get(host);
+        return timing != null ? timing.estimator : null;
+    }
+
+    private static final class HostTiming {
+        private final RttEstimator estimator = new RttEstimator();
+        private final AtomicInteger probes = new AtomicInteger(0);
+    }
+}
@@ -0,0 +1,113 @@
+package com.nocker.portscanner.control;
+
+/**
+ * {@code ConcurrencyWindow} bounds the number of probes in flight with an
+ * additive-increase, multiplicative-decrease window in the manner of TCP
+ * congestion control. Outcomes are judged in rounds of one window's worth of
+ * completed probes: a round whose share of lost probes exceeds the loss
+ * threshold halves the window, any other round widens it by one probe.
+ * <p>
+ * A probe is lost when it timed out or failed, or when its reply only arrived
+ * close to the timeout, a sign of queues building up on the path.
+ */
+public class ConcurrencyWindow {
+
+    /**
+     * Factor the window is cut by after a lossy round.
+     */
+    public static final double DECREASE_FACTOR = 0.5;
+
+    /**
+     * Probes the window grows by after a clean round.
+     */
+    public static final double INCREASE = 1.0;
+
+    /**
+     * Share of lost probes above which a round is lossy.
+     */
+    public static final double LOSS_THRESHOLD = 0.2;
+
+    private final int minimum;
+    private final int maximum;
+    private double window;
+    private int inFlight = 0;
+    private int roundCompleted = 0;
+    private int roundLost = 0;
+
+    public ConcurrencyWindow(int initial, int minimum, int maximum) {
+        if (minimum < 1 || maximum < minimum) {
+            throw new IllegalArgumentException("window bounds must satisfy 1 <= minimum <= maximum");
+        }
+        this.minimum = minimum;
+        this.maximum = maximum;
+        this.window = clamp(initial);
+    }
+
+    /**
+     * Waits for room in the window and takes it.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized void acquire() throws InterruptedException {
+        while (inFlight >= (int) window) {
+            wait();
+        }
+        inFlight++;
+    }
+
+    /**
+     * Takes room in the window if there is any, without waiting.
+     *
+     * @return {@code true} if room was taken
+     */
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) window) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * Gives back the room of a completed probe and accounts for its outcome.
+     *
+     * @param lost whether the probe counts as lost
+     */
+    public synchronized void release(boolean lost) {
+        inFlight--;
+        roundCompleted++;
+        if (lost) {
+            roundLost++;
+        }
+        if (roundCompleted >= (int) window) {
+            if ((double) roundLost / roundCompleted > LOSS_THRESHOLD) {
+                window = clamp(window * DECREASE_FACTOR);
+            } else {
+                window = clamp(window + INCREASE);
+            }
+            roundCompleted = 0;
+            roundLost = 0;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Gives back room taken for a probe that was never sent, without judging it.
+     */
+    public synchronized void cancel() {
+        inFlight--;
+        notifyAll();
+    }
+
+    public synchronized int getWindow() {
+        return (int) window;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    private double clamp(double size) {
+        return Math.max(minimum, Math.min(maximum, size));
+    }
+}
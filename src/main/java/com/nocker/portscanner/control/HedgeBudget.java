@@ -0,0 +1,102 @@
+package com.nocker.portscanner.control;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@code HedgeBudget} caps the extra traffic hedged probes add to a scan. Every
+ * primary probe deposits {@code ratio} of a hedge into the budget, and a hedge
+ * may only be sent while a whole one is banked, so hedges never exceed that
+ * fraction of the probes sent. At most {@link #MAX_BANKED_HEDGES} are banked, so
+ * a quiet start cannot be spent as a burst of hedges later on.
+ */
+public class HedgeBudget {
+
+    /**
+     * Hedges allowed per primary probe when none is configured.
+     */
+    public static final double DEFAULT_RATIO = 0.05;
+
+    /**
+     * The most hedges the budget holds at once.
+     */
+    public static final int MAX_BANKED_HEDGES = 20;
+
+    private static final long SCALE = 1000L;
+
+    private final long depositPerProbe;
+    private final AtomicLong balance = new AtomicLong(0L);
+    private final AtomicLong probes = new AtomicLong(0L);
+    private final AtomicLong hedges = new AtomicLong(0L);
+
+    /**
+     * Creates a budget allowing {@code ratio} hedges per primary probe.
+     *
+     * @param ratio the share of primary probes that may be hedged, in {@code (0, 1]}
+     */
+    public HedgeBudget(double ratio) {
+        if (!(ratio > 0.0 && ratio <= 1.0)) {
+            throw new IllegalArgumentException("hedge ratio must be in (0, 1]");
+        }
+        this.depositPerProbe = Math.max(1L, Math.round(ratio * SCALE));
+    }
+
+    /**
+     * Counts a primary probe and deposits its share of a hedge.
+     */
+    public void deposit() {
+        probes.incrementAndGet();
+        long current;
+        long next;
+        do {
+            current = balance.get();
+            next = Math.min(MAX_BANKED_HEDGES * SCALE, current + depositPerProbe);
+        } while (!balance.compareAndSet(current, next));
+    }
+
+    /**
+     * Withdraws a hedge if a whole one is banked.
+     *
+     * @return {@code true} if the hedge may be sent
+     */
+    public boolean tryWithdraw() {
+        long current;
+        do {
+            current = balance.get();
+            if (current < SCALE) {
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - SCALE));
+        hedges.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Checks whether a whole hedge is banked, without withdrawing it.
+     *
+     * @return {@code true} if {@link #tryWithdraw()} would likely succeed
+     */
+    public boolean hasBanked() {
+        return balance.get() >= SCALE;
+    }
+
+    /**
+     * Gives back a withdrawn hedge that was not sent after all.
+     */
+    public void refund() {
+        hedges.decrementAndGet();
+        long current;
+        long next;
+        do {
+            current = balance.get();
+            next = Math.min(MAX_BANKED_HEDGES * SCALE, current + SCALE);
+        } while (!balance.compareAndSet(current, next));
+    }
+
+    public long getProbes() {
+        return probes.get();
+    }
+
+    public long getHedges() {
+        return hedges.get();
+    }
+}
@@ -0,0 +1,190 @@
+package com.nocker.portscanner.control;
+
+import java.net.Inet4Address;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code HedgePolicy} decides when a probe that has not been answered yet gets a
+ * second, hedged copy. It learns the distribution of each host's round trips from
+ * the last {@link #WINDOW_SAMPLES} replies, and a probe still unanswered once the
+ * host's {@code percentile} round trip has passed is most likely lost rather than
+ * slow. Sending its hedge then resolves it long before the timeout would. Whichever
+ * copy is answered first decides the port.
+ * <p>
+ * A host is not hedged until {@link #MIN_SAMPLES} replies have been timed, and
+ * every hedge is paid for out of the scan's {@link HedgeBudget}. Callers check
+ * for room to send first, such as a rate limit token, take the hedge out of the
+ * budget last and refund it when the hedge is not sent after all, so a full
+ * engine or rate limit does not drain the budget.
+ * {@link #disabled()} gives a policy that never hedges.
+ */
+public class HedgePolicy {
+    private static final HedgePolicy DISABLED = new HedgePolicy();
+
+    /**
+     * Percentile of a host's round trips after which a probe is hedged.
+     */
+    public static final double DEFAULT_PERCENTILE = 0.95;
+
+    /**
+     * Replies timed before a host's distribution is trusted.
+     */
+    public static final int MIN_SAMPLES = 8;
+
+    /**
+     * Most recent replies of a host the distribution is learned from.
+     */
+    public static final int WINDOW_SAMPLES = 64;
+
+    private final boolean enabled;
+    private final double percentile;
+    private final HedgeBudget budget;
+    private final ConcurrentHashMap<Inet4Address, LatencyWindow> hostLatencies = new ConcurrentHashMap<>();
+
+    private HedgePolicy() {
+        this.enabled = false;
+        this.percentile = DEFAULT_PERCENTILE;
+        this.budget = null;
+    }
+
+    /**
+     * Creates a policy hedging probes after the {@code percentile} round trip of
+     * their host.
+     *
+     * @param percentile the percentile to hedge at, in {@code (0, 1)}
+     * @param budget the budget paying for hedges
+     */
+    public HedgePolicy(double percentile, HedgeBudget budget) {
+        if (!(percentile > 0.0 && percentile < 1.0)) {
+            throw new IllegalArgumentException("hedge percentile must be in (0, 1)");
+        }
+        this.enabled = true;
+        this.percentile = percentile;
+        this.budget = budget;
+    }
+
+    /**
+     * Retrieves a policy that never hedges.
+     *
+     * @return the disabled {@code HedgePolicy}
+     */
+    public static HedgePolicy disabled() {
+        return DISABLED;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Retrieves how long a probe about to be sent to a host waits before it is
+     * hedged, and counts the probe towards the hedge budget.
+     *
+     * @param host the host about to be probed
+     * @return the hedge delay in milliseconds, or {@code 0} if the probe is not
+     * to be hedged
+     */
+    public long hedgeDelayMillis(Inet4Address host) {
+        if (!enabled) {
+            return 0L;
+        }
+        budget.deposit();
+        LatencyWindow latencies = hostLatencies.get(host);
+        long percentileNanos = latencies != null ? latencies.percentileNanos(percentile) : -1L;
+        if (percentileNanos < 0L) {
+            return 0L;
+        }
+        return Math.max(1L, (percentileNanos + TimeUnit.MILLISECONDS.toNanos(1) - 1) / TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    /**
+     * Takes a hedge out of the budget.
+     *
+     * @return {@code true} if the hedge may be sent
+     */
+    public boolean tryHedge() {
+        return enabled && budget.tryWithdraw();
+    }
+
+    /**
+     * Checks whether a hedge could be taken out of the budget, without taking it.
+     *
+     * @return {@code true} if a hedge is banked
+     */
+    public boolean canHedge() {
+        return enabled && budget.hasBanked();
+    }
+
+    /**
+     * Gives back a hedge taken with {@link #tryHedge()} that was not sent.
+     */
+    public void refundHedge() {
+        if (enabled) {
+            budget.refund();
+        }
+    }
+
+    /**
+     * Records the round trip of a probe answered with a SYN-ACK or a RST. Leave
+     * out probes that were hedged, their reply may belong to either copy.
+     *
+     * @param host the host that answered
+     * @param rttNanos the time from sending the probe to its reply, in nanoseconds
+     */
+    public void sample(Inet4Address host, long rttNanos) {
+        if (enabled) {
+            hostLatencies.computeIfAbsent(host, h -> new LatencyWindow()).add(rttNanos);
+        }
+    }
+
+    /**
+     * Retrieves the hedging percentile of a host's round trips.
+     *
+     * @param host the probed host
+     * @return the percentile in nanoseconds, or {@code -1} while the host has
+     * too few samples
+     */
+    public long getPercentileNanos(Inet4Address host) {
+        LatencyWindow latencies = hostLatencies.get(host);
+        return latencies != null ? latencies.percentileNanos(percentile) : -1L;
+    }
+
+    public HedgeBudget getBudget() {
+        return budget;
+    }
+
+    /**
+     * Ring of a host's most recent round trips. The percentile is recomputed
+     * only after new samples arrive, not for every probe.
+     */
+    private static final class LatencyWindow {
+        private final long[] samples = new long[WINDOW_SAMPLES];
+        private int count = 0;
+        private int next = 0;
+        private boolean stale = true;
+        private long cachedNanos = -1L;
+
+        private synchronized void add(long rttNanos) {
+            samples[next] = rttNanos;
+            next = (next + 1) % samples.length;
+            count = Math.min(samples.length, count + 1);
+            stale = true;
+        }
+
+        private synchronized long percentileNanos(double percentile) {
+            if (count < MIN_SAMPLES) {
+                return -1L;
+            }
+            if (stale) {
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                int index = (int) Math.ceil(percentile * count) - 1;
+                cachedNanos = sorted[Math.max(0, Math.min(count - 1, index))];
+                stale = false;
+            }
+            return cachedNanos;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.nocker.portscanner.control;
+
+import com.nocker.portscanner.PortState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.Inet4Address;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@code HostLiveness} gives up on hosts that are down or drop every probe. Tasks
+ * report how each probe of a host resolved, and once the first {@code threshold}
+ * probes of a host have all timed out, without a single SYN-ACK or RST, the host is
+ * marked unresponsive. From then on tasks skip its remaining ports instead of
+ * waiting out a timeout on each, and report them as {@link PortState#SKIPPED} so
+ * the scan still accounts for every port it was given.
+ * <p>
+ * Scans probe targets in a permuted order, so a host's first probes are spread
+ * across its whole port range rather than bunched at its low ports. A host that
+ * has answered even once is never abandoned. {@link #disabled()} gives a tracker
+ * that never abandons a host.
+ */
+public class HostLiveness {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HostLiveness.class);
+
+    private static final HostLiveness DISABLED = new HostLiveness();
+
+    private final boolean enabled;
+    private final int threshold;
+    private final ConcurrentHashMap<Inet4Address, HostState> hostStates = new ConcurrentHashMap<>();
+
+    private HostLiveness() {
+        this.enabled = false;
+        this.threshold = Integer.MAX_VALUE;
+    }
+
+    /**
+     * Creates a tracker abandoning hosts after {@code threshold} unanswered probes.
+     *
+     * @param threshold the number of probes that must all time out, positive
+     */
+    public HostLiveness(int threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("liveness threshold must be positive");
+        }
+        this.enabled = true;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Retrieves a tracker that never abandons a host.
+     *
+     * @return the disabled {@code HostLiveness}
+     */
+    public static HostLiveness disabled() {
+        return DISABLED;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Records how a probe of a host resolved.
+     *
+     * @param host the probed host
+     * @param state the state the probe resolved to
+     */
+    public void record(Inet4Address host, PortState state) {
+        if (!enabled) {
+            return;
+        }
+        HostState hostState = hostStates.computeIfAbsent(host, h -> new HostState());
+        if (state == PortState.OPEN || state == PortState.CLOSED) {
+            hostState.answered = true;
+        } else if (state == PortState.FILTERED) {
+            int silent = hostState.silentProbes.incrementAndGet();
+            if (silent == threshold && !hostState.answered) {
+                hostState.unresponsive = true;
+                LOGGER.info("{} answered none of its first {} probes, skipping its remaining ports",
+                        host.getHostAddress(), threshold);
+            }
+        }
+    }
+
+    /**
+     * Decides whether the next probe of a host is skipped, and counts it if so.
+     *
+     * @param host the host about to be probed
+     * @return {@code true} if the host is unresponsive and the probe must not be sent
+     */
+    public boolean skip(Inet4Address host) {
+        if (!enabled) {
+            return false;
+        }
+        HostState hostState = hostStates.get(host);
+        if (hostState == null || !hostState.unresponsive) {
+            return false;
+        }
+        hostState.skippedProbes.incrementAndGet();
+        return true;
+    }
+
+    public boolean isUnresponsive(Inet4Address host) {
+        HostState hostState = hostStates.get(host);
+        return hostState != null && hostState.unresponsive;
+    }
+
+    /**
+     * Retrieves the number of probes of a host that were skipped.
+     *
+     * @param host the probed host
+     * @return the skipped probes, {@code 0} if the host was never abandoned
+     */
+    public long getSkippedProbes(Inet4Address host) {
+        HostState hostState = hostStates.get(host);
+        return hostState != null ? hostState.skippedProbes.get() : 0L;
+    }
+
+    /**
+     * Retrieves every host marked unresponsive so far.
+     *
+     * @return the unresponsive hosts
+     */
+    public List<Inet4Address> getUnresponsiveHosts() {
+        List<Inet4Address> unresponsive = new ArrayList<>();
+        for (Map.Entry<Inet4Address, HostState> entry : hostStates.entrySet()) {
+            if (entry.getValue().unresponsive) {
+                unresponsive.add(entry.getKey());
+            }
+        }
+        return unresponsive;
+    }
+
+    private static final class HostState {
+        private final AtomicInteger silentProbes = new AtomicInteger(0);
+        private final AtomicLong skippedProbes = new AtomicLong(0L);
+        private volatile boolean answered = false;
+        private volatile boolean unresponsive = false;
+    }
+}
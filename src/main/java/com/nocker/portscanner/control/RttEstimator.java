@@ -0,0 +1,69 @@
+package com.nocker.portscanner.control;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code RttEstimator} keeps a smoothed round-trip time and its mean deviation
+ * for one host, updated from each reply the way TCP does (Jacobson/Karels,
+ * RFC 6298), and derives a retransmission-style timeout from them:
+ * {@code srtt + 4 * rttvar}.
+ */
+public class RttEstimator {
+
+    /**
+     * Weight of a new sample in the smoothed round-trip time.
+     */
+    public static final double ALPHA = 1.0 / 8.0;
+
+    /**
+     * Weight of a new sample's deviation in the round-trip variance.
+     */
+    public static final double BETA = 1.0 / 4.0;
+
+    /**
+     * Multiple of the round-trip variance added to the smoothed round-trip time.
+     */
+    public static final int K = 4;
+
+    private double smoothedRttMillis = 0.0;
+    private double rttVarianceMillis = 0.0;
+    private int samples = 0;
+
+    /**
+     * Folds a measured round-trip time into the estimate.
+     *
+     * @param rttNanos the time from sending a probe to its reply, in nanoseconds
+     */
+    public synchronized void sample(long rttNanos) {
+        double rttMillis = rttNanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        if (samples == 0) {
+            smoothedRttMillis = rttMillis;
+            rttVarianceMillis = rttMillis / 2.0;
+        } else {
+            rttVarianceMillis = (1.0 - BETA) * rttVarianceMillis + BETA * Math.abs(smoothedRttMillis - rttMillis);
+            smoothedRttMillis = (1.0 - ALPHA) * smoothedRttMillis + ALPHA * rttMillis;
+        }
+        samples++;
+    }
+
+    /**
+     * Retrieves the timeout the estimate suggests, before any clamping.
+     *
+     * @return {@code srtt + 4 * rttvar} in milliseconds
+     */
+    public synchronized double timeoutMillis() {
+        return smoothedRttMillis + K * rttVarianceMillis;
+    }
+
+    public synchronized double getSmoothedRttMillis() {
+        return smoothedRttMillis;
+    }
+
+    public synchronized double getRttVarianceMillis() {
+        return rttVarianceMillis;
+    }
+
+    public synchronized int getSamples() {
+        return samples;
+    }
+}
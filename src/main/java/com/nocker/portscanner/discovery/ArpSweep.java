@@ -0,0 +1,376 @@
+package com.nocker.portscanner.discovery;
+
+import com.nocker.portscanner.PortScannerUtil;
+import com.nocker.portscanner.engine.PcapReceiveLoop;
+import com.nocker.portscanner.rate.TokenBucket;
+import org.pcap4j.core.*;
+import org.pcap4j.packet.namednumber.DataLinkType;
+import org.pcap4j.util.LinkLayerAddress;
+import org.pcap4j.util.MacAddress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code ArpSweep} finds the live hosts of a range on the same link as this
+ * host by ARP, which is answered by the target's network stack in microseconds
+ * and cannot be filtered the way TCP probes are.
+ * <p>
+ * {@link #onLink(List)} opens a sweep only when every target lies in the subnet
+ * of the Ethernet interface chosen by
+ * {@link PortScannerUtil#resolveNetworkInterfaceFromSourceIp(InetAddress)} for
+ * the route to the targets. Requests are broadcast at the scan's rate from one
+ * capture handle, and every reply is collected on a second handle shared by the
+ * whole sweep, filtered to ARP replies. A target that has not answered after
+ * {@link #ATTEMPTS} rounds of requests is down, on-link there is nothing in the
+ * way to drop its reply.
+ */
+public final class ArpSweep implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArpSweep.class);
+
+    /**
+     * Rounds of requests sent to targets that have not answered yet.
+     */
+    public static final int ATTEMPTS = 2;
+
+    /**
+     * Time waited for replies after each round, in milliseconds.
+     */
+    public static final long REPLY_WAIT_MILLIS = 100L;
+
+    static final int FRAME_LENGTH = 42; // ethernet header and an ARP payload for IPv4
+    static final int OPERATION_REQUEST = 1;
+    static final int OPERATION_REPLY = 2;
+
+    private static final int SNAPLEN = 64;
+    private static final int READ_TIMEOUT_MILLIS = 10;
+    private static final int ETHER_TYPE_ARP = 0x0806;
+    private static final int ETHER_TYPE_IPV4 = 0x0800;
+    private static final int HARDWARE_TYPE_ETHERNET = 1;
+    private static final int ARP_OFFSET = 14;
+    private static final String FILTER = "arp and arp[6:2] = " + OPERATION_REPLY;
+
+    private final PcapNetworkInterface networkInterface;
+    private final byte[] sourceMac;
+    private final int sourceAddress;
+    private final PcapHandle receiveHandle;
+    private final PcapHandle sendHandle;
+    private final Map<Integer, Long> sentNanos = new ConcurrentHashMap<>();
+    private final Map<Integer, Reply> replies = new ConcurrentHashMap<>();
+    private volatile boolean closed = false;
+
+    private ArpSweep(PcapNetworkInterface networkInterface, byte[] sourceMac, int sourceAddress)
+            throws PcapNativeException, NotOpenException {
+        this.networkInterface = networkInterface;
+        this.sourceMac = sourceMac;
+        this.sourceAddress = sourceAddress;
+        this.receiveHandle = openHandle(networkInterface);
+        try {
+            if (!DataLinkType.EN10MB.equals(receiveHandle.getDlt())) {
+                throw new IllegalStateException("not an Ethernet interface: " + networkInterface.getName());
+            }
+            this.receiveHandle.setFilter(FILTER, BpfProgram.BpfCompileMode.OPTIMIZE);
+            this.sendHandle = openHandle(networkInterface);
+        } catch (PcapNativeException | NotOpenException | RuntimeException e) {
+            receiveHandle.close();
+            throw e;
+        }
+        Thread thread = new Thread(this::receive, "nocker-arp-" + networkInterface.getName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Opens a sweep of the given targets when all of them are on the link of
+     * the interface that routes to them.
+     *
+     * @param targets the addresses to sweep
+     * @return the open sweep, or {@code null} when the targets are not all
+     * on-link, the interface is not Ethernet or cannot be captured on, for
+     * example without the privilege to
+     */
+    public static ArpSweep onLink(List<Inet4Address> targets) {
+        if (targets.isEmpty() || targets.get(0).isLoopbackAddress()) {
+            return null;
+        }
+        try {
+            Inet4Address source = PortScannerUtil.resolveSourceIpAddress(targets.get(0));
+            PcapNetworkInterface networkInterface = PortScannerUtil.resolveNetworkInterfaceFromSourceIp(source);
+            if (networkInterface == null || networkInterface.isLoopBack()) {
+                return null;
+            }
+            byte[] sourceMac = macAddress(networkInterface);
+            InetAddress netmask = netmask(networkInterface, source);
+            if (sourceMac == null || !(netmask instanceof Inet4Address)) {
+                return null;
+            }
+            int sourceAddress = PcapReceiveLoop.toInt(source);
+            if (!isOnLink(sourceAddress, PcapReceiveLoop.toInt((Inet4Address) netmask), targets)) {
+                LOGGER.debug("Targets are not all on the link of [{}]", networkInterface.getName());
+                return null;
+            }
+            return new ArpSweep(networkInterface, sourceMac, sourceAddress);
+        } catch (PcapNativeException | NotOpenException | RuntimeException | LinkageError e) {
+            // a missing libpcap surfaces as a linkage error
+            LOGGER.debug("ARP sweep unavailable, falling back to probes: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Broadcasts an ARP request for every target, paced by the rate limiter,
+     * and collects the replies.
+     *
+     * @param targets the addresses to sweep, all on-link
+     * @param rateLimiter the scan's rate limit, one token per request
+     * @return the outcome of every target, in the order given
+     */
+    public List<DiscoveredHost> sweep(List<Inet4Address> targets, TokenBucket rateLimiter) {
+        byte[] frame = new byte[FRAME_LENGTH];
+        for (int attempt = 1; attempt <= ATTEMPTS && !closed; attempt++) {
+            int sent = 0;
+            for (Inet4Address target : targets) {
+                int targetAddress = PcapReceiveLoop.toInt(target);
+                if (targetAddress == sourceAddress || replies.containsKey(targetAddress)) {
+                    continue;
+                }
+                rateLimiter.acquire();
+                writeRequest(frame, sourceMac, sourceAddress, targetAddress);
+                sentNanos.putIfAbsent(targetAddress, System.nanoTime());
+                try {
+                    sendHandle.sendPacket(frame, FRAME_LENGTH);
+                    sent++;
+                } catch (PcapNativeException | NotOpenException e) {
+                    LOGGER.warn("Failed to send ARP request to [{}]: {}", target.getHostAddress(), e.getMessage());
+                }
+            }
+            if (sent == 0) {
+                break;
+            }
+            try {
+                Thread.sleep(REPLY_WAIT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        List<DiscoveredHost> discovered = new ArrayList<>(targets.size());
+        for (Inet4Address target : targets) {
+            int targetAddress = PcapReceiveLoop.toInt(target);
+            Reply reply = replies.get(targetAddress);
+            if (targetAddress == sourceAddress) {
+                discovered.add(DiscoveredHost.up(target, "local", 0L, formatMac(sourceMac, 0)));
+            } else if (reply != null) {
+                discovered.add(DiscoveredHost.up(target, "arp", reply.rttMillis, reply.macAddress));
+            } else {
+                discovered.add(DiscoveredHost.down(target));
+            }
+        }
+        return discovered;
+    }
+
+    public PcapNetworkInterface getNetworkInterface() {
+        return networkInterface;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            receiveHandle.breakLoop();
+        } catch (NotOpenException e) {
+            LOGGER.debug("Receive handle already closed: {}", e.getMessage());
+        }
+        sendHandle.close();
+    }
+
+    private void receive() {
+        try {
+            receiveHandle.loop(-1, (RawPacketListener) this::gotFrame);
+        } catch (InterruptedException e) {
+            LOGGER.debug("ARP sweep on [{}] stopped", networkInterface.getName());
+        } catch (PcapNativeException | NotOpenException e) {
+            LOGGER.error("ARP sweep on [{}] failed: {}", networkInterface.getName(), e.getMessage());
+        } finally {
+            receiveHandle.close();
+        }
+    }
+
+    private void gotFrame(byte[] frame) {
+        if (!isReplyTo(frame, sourceAddress)) {
+            return;
+        }
+        int senderAddress = senderAddress(frame);
+        Long sent = sentNanos.get(senderAddress);
+        if (sent == null) {
+            return; // unsolicited, or for a host this sweep did not ask about
+        }
+        long rttMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sent);
+        replies.putIfAbsent(senderAddress, new Reply(rttMillis, formatMac(frame, ARP_OFFSET + 8)));
+    }
+
+    /**
+     * Checks every target lies in the subnet of the source address.
+     *
+     * @param sourceAddress the local address as an {@code int}
+     * @param netmask the netmask of the local address as an {@code int}
+     * @param targets the targets to check
+     * @return whether every target is on-link
+     */
+    static boolean isOnLink(int sourceAddress, int netmask, List<Inet4Address> targets) {
+        if (netmask == -1) {
+            return false; // a /32 has no neighbours
+        }
+        for (Inet4Address target : targets) {
+            if ((PcapReceiveLoop.toInt(target) & netmask) != (sourceAddress & netmask)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes a broadcast ARP request asking who has {@code targetAddress}.
+     *
+     * @param frame the frame to write, at least {@link #FRAME_LENGTH} bytes
+     * @param sourceMac the hardware address of the sending interface
+     * @param sourceAddress the sending address as an {@code int}
+     * @param targetAddress the address asked about as an {@code int}
+     */
+    static void writeRequest(byte[] frame, byte[] sourceMac, int sourceAddress, int targetAddress) {
+        for (int i = 0; i < 6; i++) {
+            frame[i] = (byte) 0xFF;
+        }
+        System.arraycopy(sourceMac, 0, frame, 6, 6);
+        writeShort(frame, 12, ETHER_TYPE_ARP);
+        writeShort(frame, ARP_OFFSET, HARDWARE_TYPE_ETHERNET);
+        writeShort(frame, ARP_OFFSET + 2, ETHER_TYPE_IPV4);
+        frame[ARP_OFFSET + 4] = 6;
+        frame[ARP_OFFSET + 5] = 4;
+        writeShort(frame, ARP_OFFSET + 6, OPERATION_REQUEST);
+        System.arraycopy(sourceMac, 0, frame, ARP_OFFSET + 8, 6);
+        writeInt(frame, ARP_OFFSET + 14, sourceAddress);
+        for (int i = 0; i < 6; i++) {
+            frame[ARP_OFFSET + 18 + i] = 0;
+        }
+        writeInt(frame, ARP_OFFSET + 24, targetAddress);
+    }
+
+    /**
+     * Checks a captured frame is an Ethernet ARP reply for IPv4 addressed to
+     * {@code sourceAddress}.
+     *
+     * @param frame the captured frame
+     * @param sourceAddress the local address as an {@code int}
+     * @return whether the frame answers one of this host's requests
+     */
+    static boolean isReplyTo(byte[] frame, int sourceAddress) {
+        return frame.length >= FRAME_LENGTH
+                && readShort(frame, 12) == ETHER_TYPE_ARP
+                && readShort(frame, ARP_OFFSET) == HARDWARE_TYPE_ETHERNET
+                && readShort(frame, ARP_OFFSET + 2) == ETHER_TYPE_IPV4
+                && readShort(frame, ARP_OFFSET + 6) == OPERATION_REPLY
+                && readInt(frame, ARP_OFFSET + 24) == sourceAddress;
+    }
+
+    /**
+     * Reads the address that sent an ARP frame.
+     *
+     * @param frame the ARP frame
+     * @return the sender's protocol address as an {@code int}
+     */
+    static int senderAddress(byte[] frame) {
+        return readInt(frame, ARP_OFFSET + 14);
+    }
+
+    /**
+     * Formats six bytes as a colon separated hardware address.
+     *
+     * @param bytes the bytes holding the address
+     * @param offset the offset of the address in {@code bytes}
+     * @return the address, such as {@code 00:1a:2b:3c:4d:5e}
+     */
+    static String formatMac(byte[] bytes, int offset) {
+        StringBuilder sb = new StringBuilder(17);
+        for (int i = 0; i < 6; i++) {
+            if (i > 0) {
+                sb.append(':');
+            }
+            sb.append(String.format("%02x", bytes[offset + i] & 0xFF));
+        }
+        return sb.toString();
+    }
+
+    private static byte[] macAddress(PcapNetworkInterface networkInterface) {
+        for (LinkLayerAddress address : networkInterface.getLinkLayerAddresses()) {
+            if (address instanceof MacAddress) {
+                return address.getAddress();
+            }
+        }
+        return null;
+    }
+
+    private static InetAddress netmask(PcapNetworkInterface networkInterface, Inet4Address source) {
+        for (PcapAddress address : networkInterface.getAddresses()) {
+            if (source.equals(address.getAddress())) {
+                return address.getNetmask();
+            }
+        }
+        return null;
+    }
+
+    private static PcapHandle openHandle(PcapNetworkInterface networkInterface) throws PcapNativeException {
+        return new PcapHandle.Builder(networkInterface.getName())
+                .snaplen(SNAPLEN)
+                .promiscuousMode(PcapNetworkInterface.PromiscuousMode.NONPROMISCUOUS)
+                .immediateMode(true)
+                .timeoutMillis(READ_TIMEOUT_MILLIS)
+                .build();
+    }
+
+    /**
+     * The first reply of a target: how long after the first request it came,
+     * and the hardware address it came from.
+     */
+    private static final class Reply {
+        private final long rttMillis;
+        private final String macAddress;
+
+        private Reply(long rttMillis, String macAddress) {
+            this.rttMillis = rttMillis;
+            this.macAddress = macAddress;
+        }
+    }
+
+    private static void writeShort(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 8);
+        bytes[offset + 1] = (byte) value;
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static int readShort(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16)
+                | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+    }
+}
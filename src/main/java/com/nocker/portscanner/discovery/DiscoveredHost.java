@@ -0,0 +1,91 @@
+package com.nocker.portscanner.discovery;
+
+import java.net.Inet4Address;
+
+/**
+ * {@code DiscoveredHost} is the outcome of the discovery sweep for a single
+ * address: whether it is up, which probe first showed it, and how long that
+ * probe took to be answered. Hosts found by ARP also carry their hardware
+ * address.
+ */
+public final class DiscoveredHost {
+    private final Inet4Address host;
+    private final boolean up;
+    private final String method;
+    private final long rttMillis;
+    private final String macAddress;
+
+    private DiscoveredHost(Inet4Address host, boolean up, String method, long rttMillis, String macAddress) {
+        this.host = host;
+        this.up = up;
+        this.method = method;
+        this.rttMillis = rttMillis;
+        this.macAddress = macAddress;
+    }
+
+    /**
+     * Creates the outcome of a host that answered.
+     *
+     * @param host the address that answered
+     * @param method the probe that was answered, such as {@code tcp/443} or {@code echo}
+     * @param rttMillis the time until the answer, in milliseconds
+     * @return the up host
+     */
+    static DiscoveredHost up(Inet4Address host, String method, long rttMillis) {
+        return up(host, method, rttMillis, null);
+    }
+
+    /**
+     * Creates the outcome of a host that answered from a known hardware address.
+     *
+     * @param host the address that answered
+     * @param method the probe that was answered, such as {@code arp}
+     * @param rttMillis the time until the answer, in milliseconds
+     * @param macAddress the hardware address the answer came from
+     * @return the up host
+     */
+    static DiscoveredHost up(Inet4Address host, String method, long rttMillis, String macAddress) {
+        return new DiscoveredHost(host, true, method, rttMillis, macAddress);
+    }
+
+    /**
+     * Creates the outcome of a host that answered none of the discovery probes.
+     *
+     * @param host the silent address
+     * @return the down host
+     */
+    static DiscoveredHost down(Inet4Address host) {
+        return new DiscoveredHost(host, false, null, -1L, null);
+    }
+
+    public Inet4Address getHost() {
+        return host;
+    }
+
+    public boolean isUp() {
+        return up;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public long getRttMillis() {
+        return rttMillis;
+    }
+
+    public String getMacAddress() {
+        return macAddress;
+    }
+
+    @Override
+    public String toString() {
+        return "DiscoveredHost{" +
+                "host=" + host.getHostAddress() +
+                ", up=" + up +
+                ", method=" + method +
+                ", rttMillis=" + rttMillis +
+                ", macAddress=" + macAddress +
+                '}';
+    }
+}
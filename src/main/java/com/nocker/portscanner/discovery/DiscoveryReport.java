@@ -0,0 +1,73 @@
+package com.nocker.portscanner.discovery;
+
+import java.net.Inet4Address;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@code DiscoveryReport} holds the outcome of a discovery sweep, one
+ * {@link DiscoveredHost} per swept address in the order the addresses were
+ * given. It is reported on its own, ahead of the port scan of the hosts it
+ * found up.
+ */
+public class DiscoveryReport {
+    private static final String NEW_LINE = "\n";
+
+    private final List<DiscoveredHost> hosts;
+    private final long durationMillis;
+
+    public DiscoveryReport(List<DiscoveredHost> hosts, long durationMillis) {
+        this.hosts = Collections.unmodifiableList(new ArrayList<>(hosts));
+        this.durationMillis = durationMillis;
+    }
+
+    public List<DiscoveredHost> getHosts() {
+        return hosts;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * Retrieves the addresses found up, in sweep order.
+     *
+     * @return the live hosts to port scan
+     */
+    public List<Inet4Address> getLiveHosts() {
+        List<Inet4Address> liveHosts = new ArrayList<>();
+        for (DiscoveredHost host : hosts) {
+            if (host.isUp()) {
+                liveHosts.add(host.getHost());
+            }
+        }
+        return liveHosts;
+    }
+
+    /**
+     * Generates a text summary of the sweep: how many of the swept addresses
+     * are up, and for each live host the probe that found it.
+     *
+     * @return the discovery summary
+     */
+    public String toSummary() {
+        List<Inet4Address> liveHosts = getLiveHosts();
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Host Discovery: %d of %d hosts up", liveHosts.size(), hosts.size()))
+                .append(NEW_LINE)
+                .append(String.format("Duration: %d", durationMillis))
+                .append(NEW_LINE);
+        for (DiscoveredHost host : hosts) {
+            if (host.isUp()) {
+                sb.append(String.format("Host: %s    [up, %s, %d ms", host.getHost().getHostAddress(),
+                        host.getMethod(), host.getRttMillis()));
+                if (host.getMacAddress() != null) {
+                    sb.append(", ").append(host.getMacAddress());
+                }
+                sb.append("]").append(NEW_LINE);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,253 @@
+package com.nocker.portscanner.discovery;
+
+import com.nocker.portscanner.PortState;
+import com.nocker.portscanner.engine.NioConnectEngine;
+import com.nocker.portscanner.rate.TokenBucket;
+import com.nocker.portscanner.scheduler.ScanJob;
+import com.nocker.portscanner.scheduler.SharedWorkerPool;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+
+/**
+ * {@code HostDiscovery} sweeps a set of addresses for live hosts ahead of a port
+ * scan, so only hosts that are up get all their ports probed. Every address is sent
+ * a non-blocking connect to each of a few {@link #DISCOVERY_PORTS}, all of them in
+ * flight together on a {@link NioConnectEngine}. A SYN-ACK or a RST to any of them
+ * shows the host is up, whether the port is open or closed. With {@code echo}, each
+ * address is also checked with {@link Inet4Address#isReachable(int)}, which sends an
+ * ICMP echo request when the process is privileged to, and otherwise tries the TCP
+ * echo port. Each check blocks a worker while it waits, so only
+ * {@link #ECHO_CONCURRENCY} run at once, and all of a sweep's checks share a
+ * deadline of {@link #ECHO_TIMEOUTS} timeouts. Checks that cannot start before
+ * it are left unanswered, so on a large block of dead addresses echo only
+ * covers the first few hundred and the connect probes decide the rest.
+ * <p>
+ * Targets that all lie on the link of the interface routing to them are swept
+ * by {@link ArpSweep} instead, which answers in a fraction of the time and
+ * reports each live host's hardware address. Without the privilege to capture,
+ * those targets are swept with probes like any other.
+ * <p>
+ * Once a host has answered, its remaining discovery probes are not sent. The
+ * connects of a sweep cost about one timeout for every {@link #MAX_IN_FLIGHT} of
+ * them, the echo checks at most {@link #ECHO_TIMEOUTS} timeouts alongside, and
+ * the port scan after it costs live hosts times ports rather than addresses
+ * times ports.
+ */
+public class HostDiscovery {
+
+    /**
+     * Ports every address is probed on, the services most likely to be
+     * listening, or at least answered with a RST.
+     */
+    public static final List<Integer> DISCOVERY_PORTS = Collections.unmodifiableList(
+            Arrays.asList(80, 443, 22, 445, 3389, 8080));
+
+    /**
+     * Shortest timeout of a discovery probe. The sweep is sent once, so it waits
+     * longer than a port scan probe does.
+     */
+    public static final int MIN_TIMEOUT_MILLIS = 300;
+
+    /**
+     * Most discovery connects in flight at once.
+     */
+    public static final int MAX_IN_FLIGHT = 1024;
+
+    /**
+     * Most echo checks running at once, each holds a worker while it waits.
+     */
+    public static final int ECHO_CONCURRENCY = 64;
+
+    /**
+     * Most timeouts the echo checks of a sweep wait for in all.
+     */
+    public static final int ECHO_TIMEOUTS = 2;
+
+    /**
+     * Most addresses swept at once when discovery feeds a pipeline.
+     */
+    public static final int BLOCK_SIZE = 1024;
+
+    private final int timeoutMillis;
+    private final boolean echo;
+    private final TokenBucket rateLimiter;
+    private final List<Integer> ports;
+    private final BiPredicate<Inet4Address, Integer> echoCheck;
+
+    /**
+     * Creates a sweep waiting {@code timeoutMillis}, but no less than
+     * {@link #MIN_TIMEOUT_MILLIS}, for each probe.
+     *
+     * @param timeoutMillis the scan's probe timeout, in milliseconds
+     * @param echo whether to also check each address for an echo reply
+     * @param rateLimiter the scan's rate limit, discovery connects are paced by it
+     */
+    public HostDiscovery(int timeoutMillis, boolean echo, TokenBucket rateLimiter) {
+        this(timeoutMillis, echo, rateLimiter, DISCOVERY_PORTS, HostDiscovery::isEchoReachable);
+    }
+
+    HostDiscovery(int timeoutMillis, boolean echo, TokenBucket rateLimiter, List<Integer> ports,
+                  BiPredicate<Inet4Address, Integer> echoCheck) {
+        this.timeoutMillis = Math.max(MIN_TIMEOUT_MILLIS, timeoutMillis);
+        this.echo = echo;
+        this.rateLimiter = rateLimiter;
+        this.ports = ports;
+        this.echoCheck = echoCheck;
+    }
+
+    /**
+     * Sweeps the given addresses and waits for every one of them to be found up
+     * or to leave all its probes unanswered.
+     *
+     * @param hosts the addresses to sweep
+     * @return the outcome of every address, in the order given
+     */
+    public DiscoveryReport discover(List<Inet4Address> hosts) {
+        long start = System.nanoTime();
+        Map<Inet4Address, HostSweep> sweeps = new LinkedHashMap<>();
+        for (Inet4Address host : hosts) {
+            sweeps.putIfAbsent(host, new HostSweep(host, ports.size() + (echo ? 1 : 0)));
+        }
+        List<DiscoveredHost> discovered = new ArrayList<>(sweeps.size());
+        if (sweeps.isEmpty()) {
+            return new DiscoveryReport(discovered, 0L);
+        }
+        List<Inet4Address> targets = new ArrayList<>(sweeps.keySet());
+        ArpSweep arpSweep = ArpSweep.onLink(targets);
+        if (arpSweep != null) {
+            try {
+                discovered.addAll(arpSweep.sweep(targets, rateLimiter));
+            } finally {
+                arpSweep.close();
+            }
+            return new DiscoveryReport(discovered, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+        ScanJob echoJob = echo ? SharedWorkerPool.shared().newJob(ECHO_CONCURRENCY) : null;
+        int inFlight = (int) Math.max(1, Math.min(MAX_IN_FLIGHT, (long) sweeps.size() * ports.size()));
+        try (NioConnectEngine connectEngine = new NioConnectEngine(inFlight)) {
+            if (echoJob != null) {
+                long echoDeadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(
+                        (long) ECHO_TIMEOUTS * timeoutMillis);
+                for (HostSweep sweep : sweeps.values()) {
+                    echoJob.execute(() -> echo(sweep, echoDeadlineNanos));
+                }
+            }
+            // port by port, so consecutive connects go to different hosts
+            for (int port : ports) {
+                for (HostSweep sweep : sweeps.values()) {
+                    if (sweep.outcome.isDone()) {
+                        continue;
+                    }
+                    rateLimiter.acquire();
+                    long sentNanos = System.nanoTime();
+                    connectEngine.connect(sweep.host, port, timeoutMillis).thenAccept(state ->
+                            sweep.resolve(state == PortState.OPEN || state == PortState.CLOSED, "tcp/" + port,
+                                    sentNanos));
+                }
+            }
+            for (HostSweep sweep : sweeps.values()) {
+                discovered.add(sweep.outcome.join());
+            }
+        } finally {
+            if (echoJob != null) {
+                echoJob.shutdownNow();
+            }
+        }
+        return new DiscoveryReport(discovered, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Sweeps a stream of addresses block by block, as the hosts found up are
+     * read. The next block is swept only once every live host of the previous
+     * one has been taken, so a large range is never held in memory at once and
+     * port scanning of a block overlaps the sweep of the next.
+     *
+     * @param hosts the addresses to sweep
+     * @param onReport receives the report of each block as it is swept
+     * @return the addresses found up, in the order given
+     */
+    public Iterator<Inet4Address> liveHosts(Iterator<Inet4Address> hosts, Consumer<DiscoveryReport> onReport) {
+        return new Iterator<Inet4Address>() {
+            private final Deque<Inet4Address> liveHosts = new ArrayDeque<>();
+
+            @Override
+            public boolean hasNext() {
+                while (liveHosts.isEmpty() && hosts.hasNext()) {
+                    List<Inet4Address> block = new ArrayList<>(BLOCK_SIZE);
+                    while (block.size() < BLOCK_SIZE && hosts.hasNext()) {
+                        block.add(hosts.next());
+                    }
+                    DiscoveryReport discoveryReport = discover(block);
+                    onReport.accept(discoveryReport);
+                    liveHosts.addAll(discoveryReport.getLiveHosts());
+                }
+                return !liveHosts.isEmpty();
+            }
+
+            @Override
+            public Inet4Address next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return liveHosts.poll();
+            }
+        };
+    }
+
+    /**
+     * Checks an address for an echo reply, waiting no longer than the timeout
+     * and no later than the sweep's echo deadline. An address already found up,
+     * or reached after the deadline, is not checked.
+     */
+    private void echo(HostSweep sweep, long echoDeadlineNanos) {
+        long sentNanos = System.nanoTime();
+        long remainingMillis = TimeUnit.NANOSECONDS.toMillis(echoDeadlineNanos - sentNanos);
+        if (sweep.outcome.isDone() || remainingMillis <= 0) {
+            sweep.resolve(false, "echo", sentNanos);
+            return;
+        }
+        boolean answered = echoCheck.test(sweep.host, (int) Math.min(timeoutMillis, remainingMillis));
+        sweep.resolve(answered, "echo", sentNanos);
+    }
+
+    private static boolean isEchoReachable(Inet4Address host, int timeoutMillis) {
+        try {
+            return host.isReachable(timeoutMillis);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Outcome of an address in the making. The first probe answered decides the
+     * host is up, the host is down once every probe has gone unanswered.
+     */
+    private static final class HostSweep {
+        private final Inet4Address host;
+        private final CompletableFuture<DiscoveredHost> outcome = new CompletableFuture<>();
+        private int pendingProbes;
+
+        private HostSweep(Inet4Address host, int probes) {
+            this.host = host;
+            this.pendingProbes = probes;
+        }
+
+        private synchronized void resolve(boolean answered, String method, long sentNanos) {
+            if (outcome.isDone()) {
+                return;
+            }
+            if (answered) {
+                outcome.complete(DiscoveredHost.up(host, method,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sentNanos)));
+            } else if (--pendingProbes == 0) {
+                outcome.complete(DiscoveredHost.down(host));
+            }
+        }
+    }
+}
@@ -0,0 +1,453 @@
+package com.nocker.portscanner.dns;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@code DnsMessage} is a DNS message as sent over UDP (RFC 1035, section 4):
+ * a header, the questions and the answer and authority records. Only what a
+ * stub resolver needs is modelled, {@code A}, {@code CNAME}, {@code PTR} and
+ * {@code SOA} records of class {@code IN}. Records of any other type are
+ * decoded with their name, type and time to live only, and the additional
+ * section is skipped.
+ * <p>
+ * Names are written uncompressed and read with compression pointers followed.
+ * Names are held without their trailing dot.
+ */
+public final class DnsMessage {
+
+    public static final int TYPE_A = 1;
+    public static final int TYPE_CNAME = 5;
+    public static final int TYPE_SOA = 6;
+    public static final int TYPE_PTR = 12;
+
+    public static final int CLASS_IN = 1;
+
+    public static final int RCODE_NOERROR = 0;
+    public static final int RCODE_SERVFAIL = 2;
+    public static final int RCODE_NXDOMAIN = 3;
+
+    /**
+     * Largest message a DNS server sends over UDP without EDNS.
+     */
+    public static final int MAX_UDP_SIZE = 512;
+
+    private static final int HEADER_SIZE = 12;
+    private static final int FLAG_RESPONSE = 0x8000;
+    private static final int FLAG_TRUNCATED = 0x0200;
+    private static final int FLAG_RECURSION_DESIRED = 0x0100;
+    private static final int FLAG_RECURSION_AVAILABLE = 0x0080;
+    private static final int RCODE_MASK = 0x000F;
+    private static final int MAX_LABEL_LENGTH = 63;
+    private static final int MAX_NAME_LENGTH = 255;
+    private static final int MAX_POINTER_JUMPS = 32;
+
+    private final int id;
+    private final int flags;
+    private final List<Question> questions;
+    private final List<Record> answers;
+    private final List<Record> authorities;
+
+    DnsMessage(int id, int flags, List<Question> questions, List<Record> answers, List<Record> authorities) {
+        this.id = id & 0xFFFF;
+        this.flags = flags & 0xFFFF;
+        this.questions = Collections.unmodifiableList(questions);
+        this.answers = Collections.unmodifiableList(answers);
+        this.authorities = Collections.unmodifiableList(authorities);
+    }
+
+    /**
+     * Creates a recursive query for one name.
+     *
+     * @param id the query identifier, matched against the response
+     * @param name the name to query
+     * @param type the record type to query
+     * @return the query
+     */
+    public static DnsMessage query(int id, String name, int type) {
+        return new DnsMessage(id, FLAG_RECURSION_DESIRED, Collections.singletonList(new Question(name, type)),
+                Collections.<Record>emptyList(), Collections.<Record>emptyList());
+    }
+
+    /**
+     * Creates the response to this query, as a server would send it.
+     *
+     * @param rcode the response code
+     * @param answers the answer records
+     * @param authorities the authority records
+     * @return the response
+     */
+    public DnsMessage respond(int rcode, List<Record> answers, List<Record> authorities) {
+        return new DnsMessage(id, FLAG_RESPONSE | FLAG_RECURSION_DESIRED | FLAG_RECURSION_AVAILABLE | rcode,
+                new ArrayList<>(questions), new ArrayList<>(answers), new ArrayList<>(authorities));
+    }
+
+    /**
+     * Retrieves the name a reverse lookup of an address queries, such as
+     * {@code 4.3.2.1.in-addr.arpa} for {@code 1.2.3.4}.
+     *
+     * @param address the address to look up
+     * @return the {@code in-addr.arpa} name of the address
+     */
+    public static String reverseName(Inet4Address address) {
+        byte[] bytes = address.getAddress();
+        return (bytes[3] & 0xFF) + "." + (bytes[2] & 0xFF) + "." + (bytes[1] & 0xFF) + "." + (bytes[0] & 0xFF)
+                + ".in-addr.arpa";
+    }
+
+    /**
+     * Encodes the message in wire format.
+     *
+     * @return the encoded message
+     * @throws IllegalArgumentException if a name is too long to encode
+     */
+    public byte[] encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_UDP_SIZE * 4);
+        buffer.putShort((short) id);
+        buffer.putShort((short) flags);
+        buffer.putShort((short) questions.size());
+        buffer.putShort((short) answers.size());
+        buffer.putShort((short) authorities.size());
+        buffer.putShort((short) 0);
+        for (Question question : questions) {
+            writeName(buffer, question.name);
+            buffer.putShort((short) question.type);
+            buffer.putShort((short) CLASS_IN);
+        }
+        for (Record record : answers) {
+            record.write(buffer);
+        }
+        for (Record record : authorities) {
+            record.write(buffer);
+        }
+        byte[] encoded = new byte[buffer.position()];
+        buffer.flip();
+        buffer.get(encoded);
+        return encoded;
+    }
+
+    /**
+     * Decodes a message in wire format.
+     *
+     * @param buffer the message, from its position to its limit
+     * @return the decoded message
+     * @throws IllegalArgumentException if the message is malformed
+     */
+    public static DnsMessage decode(ByteBuffer buffer) {
+        ByteBuffer message = buffer.slice();
+        try {
+            if (message.remaining() < HEADER_SIZE) {
+                throw new IllegalArgumentException("DNS message shorter than its header");
+            }
+            int id = message.getShort() & 0xFFFF;
+            int flags = message.getShort() & 0xFFFF;
+            int questionCount = message.getShort() & 0xFFFF;
+            int answerCount = message.getShort() & 0xFFFF;
+            int authorityCount = message.getShort() & 0xFFFF;
+            message.getShort(); // additional records are not needed
+            List<Question> questions = new ArrayList<>(questionCount);
+            for (int i = 0; i < questionCount; i++) {
+                String name = readName(message);
+                int type = message.getShort() & 0xFFFF;
+                message.getShort(); // class
+                questions.add(new Question(name, type));
+            }
+            List<Record> answers = new ArrayList<>(answerCount);
+            for (int i = 0; i < answerCount; i++) {
+                answers.add(Record.read(message));
+            }
+            List<Record> authorities = new ArrayList<>(authorityCount);
+            for (int i = 0; i < authorityCount; i++) {
+                authorities.add(Record.read(message));
+            }
+            return new DnsMessage(id, flags, questions, answers, authorities);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated DNS message");
+        }
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public boolean isResponse() {
+        return (flags & FLAG_RESPONSE) != 0;
+    }
+
+    public boolean isTruncated() {
+        return (flags & FLAG_TRUNCATED) != 0;
+    }
+
+    public int getRcode() {
+        return flags & RCODE_MASK;
+    }
+
+    public List<Question> getQuestions() {
+        return questions;
+    }
+
+    public List<Record> getAnswers() {
+        return answers;
+    }
+
+    public List<Record> getAuthorities() {
+        return authorities;
+    }
+
+    /**
+     * Checks whether this response answers the question of a query.
+     *
+     * @param query the query that was sent
+     * @return {@code true} if the identifier and question match
+     */
+    public boolean answers(DnsMessage query) {
+        return isResponse() && id == query.id && questions.size() == 1 && query.questions.size() == 1
+                && questions.get(0).type == query.questions.get(0).type
+                && questions.get(0).name.equalsIgnoreCase(query.questions.get(0).name);
+    }
+
+    private static void writeName(ByteBuffer buffer, String name) {
+        String trimmed = name.endsWith(".") ? name.substring(0, name.length() - 1) : name;
+        int start = buffer.position();
+        if (!trimmed.isEmpty()) {
+            for (String label : trimmed.split("\\.", -1)) {
+                byte[] bytes = label.getBytes(StandardCharsets.US_ASCII);
+                if (bytes.length == 0 || bytes.length > MAX_LABEL_LENGTH) {
+                    throw new IllegalArgumentException("Invalid DNS label in name: " + name);
+                }
+                buffer.put((byte) bytes.length);
+                buffer.put(bytes);
+            }
+        }
+        buffer.put((byte) 0);
+        if (buffer.position() - start > MAX_NAME_LENGTH) {
+            throw new IllegalArgumentException("DNS name too long: " + name);
+        }
+    }
+
+    private static String readName(ByteBuffer message) {
+        StringBuilder name = new StringBuilder();
+        int position = message.position();
+        int resumeAt = -1;
+        int jumps = 0;
+        while (true) {
+            int length = message.get(position) & 0xFF;
+            if ((length & 0xC0) == 0xC0) {
+                if (++jumps > MAX_POINTER_JUMPS) {
+                    throw new IllegalArgumentException("DNS name compression loop");
+                }
+                if (resumeAt < 0) {
+                    resumeAt = position + 2;
+                }
+                position = ((length & 0x3F) << 8) | (message.get(position + 1) & 0xFF);
+                continue;
+            }
+            if ((length & 0xC0) != 0) {
+                throw new IllegalArgumentException("Unsupported DNS label type");
+            }
+            position++;
+            if (length == 0) {
+                break;
+            }
+            if (name.length() > 0) {
+                name.append('.');
+            }
+            for (int i = 0; i < length; i++) {
+                name.append((char) (message.get(position + i) & 0xFF));
+            }
+            position += length;
+            if (name.length() > MAX_NAME_LENGTH) {
+                throw new IllegalArgumentException("DNS name too long");
+            }
+        }
+        message.position(resumeAt >= 0 ? resumeAt : position);
+        return name.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "DnsMessage{" +
+                "id=" + id +
+                ", rcode=" + getRcode() +
+                ", questions=" + questions +
+                ", answers=" + answers +
+                '}';
+    }
+
+    /**
+     * A question of a message, always of class {@code IN}.
+     */
+    public static final class Question {
+        private final String name;
+        private final int type;
+
+        public Question(String name, int type) {
+            this.name = name;
+            this.type = type;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getType() {
+            return type;
+        }
+
+        @Override
+        public String toString() {
+            return name + "/" + type;
+        }
+    }
+
+    /**
+     * A resource record of a message. An {@code A} record carries its address,
+     * a {@code CNAME} or {@code PTR} record the name it points to and an
+     * {@code SOA} record the minimum time to live of negative answers.
+     */
+    public static final class Record {
+        private final String name;
+        private final int type;
+        private final long ttlSeconds;
+        private final Inet4Address address;
+        private final String target;
+        private final long minimumSeconds;
+
+        private Record(String name, int type, long ttlSeconds, Inet4Address address, String target,
+                       long minimumSeconds) {
+            this.name = name;
+            this.type = type;
+            this.ttlSeconds = ttlSeconds;
+            this.address = address;
+            this.target = target;
+            this.minimumSeconds = minimumSeconds;
+        }
+
+        public static Record a(String name, long ttlSeconds, Inet4Address address) {
+            return new Record(name, TYPE_A, ttlSeconds, address, null, 0);
+        }
+
+        public static Record cname(String name, long ttlSeconds, String target) {
+            return new Record(name, TYPE_CNAME, ttlSeconds, null, target, 0);
+        }
+
+        public static Record ptr(String name, long ttlSeconds, String target) {
+            return new Record(name, TYPE_PTR, ttlSeconds, null, target, 0);
+        }
+
+        public static Record soa(String name, long ttlSeconds, long minimumSeconds) {
+            return new Record(name, TYPE_SOA, ttlSeconds, null, null, minimumSeconds);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getType() {
+            return type;
+        }
+
+        public long getTtlSeconds() {
+            return ttlSeconds;
+        }
+
+        public Inet4Address getAddress() {
+            return address;
+        }
+
+        public String getTarget() {
+            return target;
+        }
+
+        public long getMinimumSeconds() {
+            return minimumSeconds;
+        }
+
+        private void write(ByteBuffer buffer) {
+            writeName(buffer, name);
+            buffer.putShort((short) type);
+            buffer.putShort((short) CLASS_IN);
+            buffer.putInt((int) ttlSeconds);
+            int lengthAt = buffer.position();
+            buffer.putShort((short) 0);
+            switch (type) {
+                case TYPE_A:
+                    buffer.put(address.getAddress());
+                    break;
+                case TYPE_CNAME:
+                case TYPE_PTR:
+                    writeName(buffer, target);
+                    break;
+                case TYPE_SOA:
+                    writeName(buffer, "");
+                    writeName(buffer, "");
+                    buffer.putInt(1).putInt(0).putInt(0).putInt(0).putInt((int) minimumSeconds);
+                    break;
+                default:
+                    break;
+            }
+            buffer.putShort(lengthAt, (short) (buffer.position() - lengthAt - 2));
+        }
+
+        private static Record read(ByteBuffer message) {
+            String name = readName(message);
+            int type = message.getShort() & 0xFFFF;
+            message.getShort(); // class
+            long ttlSeconds = message.getInt() & 0xFFFFFFFFL;
+            int length = message.getShort() & 0xFFFF;
+            int end = message.position() + length;
+            if (end > message.limit()) {
+                throw new IllegalArgumentException("Truncated DNS record");
+            }
+            Record record;
+            switch (type) {
+                case TYPE_A:
+                    if (length != 4) {
+                        throw new IllegalArgumentException("Invalid A record length: " + length);
+                    }
+                    byte[] bytes = new byte[4];
+                    message.get(bytes);
+                    record = a(name, ttlSeconds, toAddress(bytes));
+                    break;
+                case TYPE_CNAME:
+                    record = cname(name, ttlSeconds, readName(message));
+                    break;
+                case TYPE_PTR:
+                    record = ptr(name, ttlSeconds, readName(message));
+                    break;
+                case TYPE_SOA:
+                    readName(message);
+                    readName(message);
+                    message.position(message.position() + 16);
+                    record = soa(name, ttlSeconds, message.getInt() & 0xFFFFFFFFL);
+                    break;
+                default:
+                    record = new Record(name, type, ttlSeconds, null, null, 0);
+                    break;
+            }
+            message.position(end);
+            return record;
+        }
+
+        private static Inet4Address toAddress(byte[] bytes) {
+            try {
+                return (Inet4Address) InetAddress.getByAddress(bytes);
+            } catch (UnknownHostException e) {
+                throw new IllegalStateException(e); // four bytes are always a valid address
+            }
+        }
+
+        @Override
+        public String toString() {
+            String data = address != null ? address.getHostAddress() : target != null ? target : "";
+            return name + " " + ttlSeconds + " " + type + " " + data;
+        }
+    }
+}
@@ -0,0 +1,438 @@
+package com.nocker.portscanner.dns;
+
+import com.nocker.portscanner.PortScannerUtil;
+import com.nocker.portscanner.scheduler.ScanJob;
+import com.nocker.portscanner.scheduler.SharedWorkerPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.security.Security;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * {@code HostResolver} resolves host names to IPv4 addresses and addresses back
+ * to host names once per time to live, for every scan of this process. Names that
+ * resolve are cached for the positive time to live, names that do not for the
+ * negative one, the same {@code networkaddress.cache.ttl} and
+ * {@code networkaddress.cache.negative.ttl} security properties the JDK reads. A
+ * lookup already in flight is joined rather than repeated, so no host is looked up
+ * twice however many tasks ask for it at once.
+ * <p>
+ * Names are looked up through the {@link StubResolver} of this host, which keeps
+ * many queries in flight on one socket rather than one blocked thread per lookup.
+ * <p>
+ * {@link #resolveAll(Collection)} and {@link #hostNamesOf(Collection)} send the
+ * query of every name of a list to the stub resolver at once and wait for the
+ * answers together, so a list holds no thread per name and one slow name costs
+ * one lookup's time rather than holding up every name after it. Only the names
+ * the stub resolver cannot answer, such as address literals, local names or
+ * failed queries, are looked up through the JDK, in parallel on a bounded
+ * {@link ScanJob} of the shared worker pool.
+ */
+public final class HostResolver {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HostResolver.class);
+
+    /**
+     * Time to live of a resolved name when the security property is not set,
+     * the JDK's own default.
+     */
+    public static final long DEFAULT_POSITIVE_TTL_MILLIS = 30_000L;
+
+    /**
+     * Time to live of a name that did not resolve when the security property is
+     * not set, the JDK's own default.
+     */
+    public static final long DEFAULT_NEGATIVE_TTL_MILLIS = 10_000L;
+
+    /**
+     * Most lookups of a list run at once.
+     */
+    public static final int MAX_PARALLEL_LOOKUPS = 32;
+
+    /**
+     * Lookups between two prunings of expired entries, so a long target list
+     * does not grow the cache without bound.
+     */
+    public static final int PRUNE_INTERVAL = 65_536;
+
+    private static final HostResolver SHARED = new HostResolver(
+            ttlMillis("networkaddress.cache.ttl", DEFAULT_POSITIVE_TTL_MILLIS),
+            ttlMillis("networkaddress.cache.negative.ttl", DEFAULT_NEGATIVE_TTL_MILLIS));
+
+    private final long positiveTtlMillis;
+    private final long negativeTtlMillis;
+    private final Function<String, CompletableFuture<Inet4Address>> addressQuery;
+    private final Function<String, Inet4Address> addressLookup;
+    private final Function<Inet4Address, CompletableFuture<String>> hostNameQuery;
+    private final Function<Inet4Address, String> hostNameLookup;
+    private final LongSupplier clock;
+    private final ConcurrentHashMap<String, Lookup<Inet4Address>> addresses = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Inet4Address, Lookup<String>> hostNames = new ConcurrentHashMap<>();
+    private final AtomicLong lookups = new AtomicLong();
+
+    public HostResolver(long positiveTtlMillis, long negativeTtlMillis) {
+        this(positiveTtlMillis, negativeTtlMillis, HostResolver::queryAddress, HostResolver::lookupAddress,
+                HostResolver::queryHostName, HostResolver::lookupHostName, System::currentTimeMillis);
+    }
+
+    HostResolver(long positiveTtlMillis, long negativeTtlMillis, Function<String, Inet4Address> addressLookup,
+                 Function<Inet4Address, String> hostNameLookup, LongSupplier clock) {
+        this(positiveTtlMillis, negativeTtlMillis, host -> null, addressLookup, address -> null, hostNameLookup,
+                clock);
+    }
+
+    /**
+     * Creates a resolver from its lookups. A query answers asynchronously, or
+     * returns {@code null} for keys it cannot answer, and the blocking lookup is
+     * used for those keys and whenever the query fails or has no answer.
+     */
+    HostResolver(long positiveTtlMillis, long negativeTtlMillis,
+                 Function<String, CompletableFuture<Inet4Address>> addressQuery,
+                 Function<String, Inet4Address> addressLookup,
+                 Function<Inet4Address, CompletableFuture<String>> hostNameQuery,
+                 Function<Inet4Address, String> hostNameLookup, LongSupplier clock) {
+        if (positiveTtlMillis < 0 || negativeTtlMillis < 0) {
+            throw new IllegalArgumentException("time to live must not be negative");
+        }
+        this.positiveTtlMillis = positiveTtlMillis;
+        this.negativeTtlMillis = negativeTtlMillis;
+        this.addressQuery = addressQuery;
+        this.addressLookup = addressLookup;
+        this.hostNameQuery = hostNameQuery;
+        this.hostNameLookup = hostNameLookup;
+        this.clock = clock;
+    }
+
+    /**
+     * Retrieves the resolver shared by every scan of this process.
+     *
+     * @return the shared {@code HostResolver}
+     */
+    public static HostResolver shared() {
+        return SHARED;
+    }
+
+    /**
+     * Resolves a host name or address literal to its IPv4 address, from the
+     * cache when a live entry exists.
+     *
+     * @param host the host name or address literal
+     * @return the first IPv4 address of the host, or {@code null} if it has none
+     */
+    public Inet4Address resolve(String host) {
+        return lookup(addresses, host, addressQuery, addressLookup);
+    }
+
+    /**
+     * Resolves an address back to its host name, from the cache when a live
+     * entry exists.
+     *
+     * @param address the address to look up
+     * @return the host name, or the address literal when it has none
+     */
+    public String hostName(Inet4Address address) {
+        return lookup(hostNames, address, hostNameQuery, hostNameLookup);
+    }
+
+    /**
+     * Resolves every host of a list at once.
+     *
+     * @param hosts the host names or address literals to resolve
+     * @return each distinct host mapped to its address, or to {@code null} if it
+     * has none, in the order given
+     */
+    public Map<String, Inet4Address> resolveAll(Collection<String> hosts) {
+        return lookupAll(hosts, addresses, addressQuery, addressLookup);
+    }
+
+    /**
+     * Resolves every address of a list back to its host name at once.
+     *
+     * @param addresses the addresses to look up
+     * @return each distinct address mapped to its host name, in the order given
+     */
+    public Map<Inet4Address, String> hostNamesOf(Collection<Inet4Address> addresses) {
+        return lookupAll(addresses, hostNames, hostNameQuery, hostNameLookup);
+    }
+
+    /**
+     * Drops every cached name and address.
+     */
+    public void invalidate() {
+        addresses.clear();
+        hostNames.clear();
+    }
+
+    public long getPositiveTtlMillis() {
+        return positiveTtlMillis;
+    }
+
+    public long getNegativeTtlMillis() {
+        return negativeTtlMillis;
+    }
+
+    private <K, V> V lookup(ConcurrentHashMap<K, Lookup<V>> cache, K key, Function<K, CompletableFuture<V>> query,
+                            Function<K, V> lookup) {
+        Lookup<V> fresh = new Lookup<>();
+        Lookup<V> entry = startLookup(cache, key, fresh);
+        if (entry != fresh) {
+            return entry.join();
+        }
+        V value = null;
+        try {
+            CompletableFuture<V> answer = query.apply(key);
+            if (answer != null) {
+                try {
+                    value = answer.get();
+                } catch (ExecutionException e) {
+                    LOGGER.debug("DNS lookup of [{}] failed: {}", key, e.getCause().getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+            if (value == null) {
+                value = lookup.apply(key);
+            }
+        } finally {
+            complete(entry, value);
+        }
+        return value;
+    }
+
+    /**
+     * Sends the queries of a list at once and joins their answers together,
+     * falling back to blocking lookups on the job only for the keys that have no
+     * answer.
+     */
+    private <K, V> Map<K, V> lookupAll(Collection<K> keys, ConcurrentHashMap<K, Lookup<V>> cache,
+                                       Function<K, CompletableFuture<V>> query, Function<K, V> lookup) {
+        Set<K> distinct = new LinkedHashSet<>(keys);
+        Map<K, V> results = new LinkedHashMap<>();
+        if (distinct.size() < 2) {
+            for (K key : distinct) {
+                results.put(key, lookup(cache, key, query, lookup));
+            }
+            return results;
+        }
+        ScanJob job = SharedWorkerPool.shared().newJob(Math.min(MAX_PARALLEL_LOOKUPS, distinct.size()));
+        Map<K, Lookup<V>> entries = new LinkedHashMap<>();
+        Map<K, Lookup<V>> started = new HashMap<>();
+        try {
+            for (K key : distinct) {
+                Lookup<V> fresh = new Lookup<>();
+                Lookup<V> entry = startLookup(cache, key, fresh);
+                if (entry == fresh) {
+                    started.put(key, entry);
+                    lookupAsync(entry, key, query, lookup, job);
+                }
+                entries.put(key, entry);
+            }
+            CompletableFuture.allOf(entries.values().stream()
+                    .map(entry -> entry.value)
+                    .toArray(CompletableFuture<?>[]::new)).get();
+            for (Map.Entry<K, Lookup<V>> entry : entries.entrySet()) {
+                results.put(entry.getKey(), entry.getValue().join());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOGGER.warn("Lookup of a list failed: {}", e.getCause().getMessage());
+        } finally {
+            job.shutdownNow();
+            // lookups dropped with the job must not stay pending in the cache
+            for (Map.Entry<K, Lookup<V>> entry : started.entrySet()) {
+                if (!entry.getValue().value.isDone()) {
+                    cache.remove(entry.getKey(), entry.getValue());
+                    entry.getValue().complete(null, 0L);
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Completes a pending entry from the answer of its query, or from a blocking
+     * lookup on the job when the query has none.
+     */
+    private <K, V> void lookupAsync(Lookup<V> entry, K key, Function<K, CompletableFuture<V>> query,
+                                    Function<K, V> lookup, ScanJob job) {
+        CompletableFuture<V> answer = query.apply(key);
+        if (answer == null) {
+            lookupOn(job, entry, key, lookup);
+            return;
+        }
+        answer.whenComplete((value, failure) -> {
+            if (failure == null && value != null) {
+                complete(entry, value);
+                return;
+            }
+            if (failure != null) {
+                LOGGER.debug("DNS lookup of [{}] failed: {}", key, failure.getMessage());
+            }
+            lookupOn(job, entry, key, lookup);
+        });
+    }
+
+    private <K, V> void lookupOn(ScanJob job, Lookup<V> entry, K key, Function<K, V> lookup) {
+        try {
+            job.execute(() -> {
+                V value = null;
+                try {
+                    value = lookup.apply(key);
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Lookup of [{}] failed: {}", key, e.getMessage());
+                } finally {
+                    complete(entry, value);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // the list was abandoned, its pending entries are dropped
+        }
+    }
+
+    /**
+     * Retrieves the live entry of a key, or puts the fresh one, whose lookup the
+     * caller then starts.
+     */
+    private <K, V> Lookup<V> startLookup(ConcurrentHashMap<K, Lookup<V>> cache, K key, Lookup<V> fresh) {
+        long now = clock.getAsLong();
+        Lookup<V> entry = cache.compute(key, (k, current) ->
+                current == null || current.isExpired(now) ? fresh : current);
+        if (entry != fresh) {
+            return entry;
+        }
+        if (lookups.incrementAndGet() % PRUNE_INTERVAL == 0) {
+            cache.values().removeIf(cached -> cached.isExpired(now));
+        }
+        return entry;
+    }
+
+    private <V> void complete(Lookup<V> entry, V value) {
+        entry.complete(value, clock.getAsLong() + (value != null ? positiveTtlMillis : negativeTtlMillis));
+    }
+
+    /**
+     * Queries the {@link StubResolver} of this host for a fully qualified name.
+     * Address literals, local and single label names, which {@code /etc/hosts}
+     * or a search domain may answer, have no query.
+     */
+    private static CompletableFuture<Inet4Address> queryAddress(String host) {
+        StubResolver stubResolver = StubResolver.system();
+        if (stubResolver == null || !isQualifiedName(host)) {
+            return null;
+        }
+        return stubResolver.lookupAddresses(host).thenApply(found -> found.isEmpty() ? null : found.get(0));
+    }
+
+    /**
+     * Looks up a name through the JDK, blocking the calling thread.
+     */
+    private static Inet4Address lookupAddress(String host) {
+        try {
+            if (PortScannerUtil.isLocalHost(host)) {
+                InetAddress localHost = InetAddress.getLocalHost();
+                return localHost instanceof Inet4Address ? (Inet4Address) localHost : null;
+            }
+            for (InetAddress address : InetAddress.getAllByName(host)) {
+                if (address instanceof Inet4Address) {
+                    return (Inet4Address) address;
+                }
+            }
+            LOGGER.error("No IPv4 address for host [{}]", host);
+        } catch (UnknownHostException e) {
+            LOGGER.error("Fatality, unknown host [{}]: {}", host, e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Queries the {@link StubResolver} of this host for the name of an address.
+     * Loopback addresses, which only {@code /etc/hosts} names, have no query.
+     */
+    private static CompletableFuture<String> queryHostName(Inet4Address address) {
+        StubResolver stubResolver = StubResolver.system();
+        if (stubResolver == null || address.isLoopbackAddress()) {
+            return null;
+        }
+        return stubResolver.lookupHostName(address)
+                .thenApply(hostName -> hostName != null ? hostName : address.getHostAddress());
+    }
+
+    /**
+     * Looks up the name of an address through the JDK, blocking the calling
+     * thread.
+     */
+    private static String lookupHostName(Inet4Address address) {
+        try {
+            // a fresh address carries no name, so this is a reverse lookup even for
+            // addresses that were resolved from a name
+            return InetAddress.getByAddress(address.getAddress()).getHostName();
+        } catch (UnknownHostException e) {
+            return address.getHostAddress();
+        }
+    }
+
+    private static boolean isQualifiedName(String host) {
+        if (host == null || !host.contains(".") || PortScannerUtil.isLocalHost(host)) {
+            return false;
+        }
+        for (int i = 0; i < host.length(); i++) {
+            char c = host.charAt(i);
+            if (c != '.' && !Character.isDigit(c)) {
+                return c != ':'; // letters make a name, a colon an IPv6 literal
+            }
+        }
+        return false; // an IPv4 literal
+    }
+
+    /**
+     * Reads a time to live security property, in seconds, where a negative
+     * value caches forever.
+     */
+    static long ttlMillis(String property, long defaultMillis) {
+        String value = Security.getProperty(property);
+        if (value == null) {
+            return defaultMillis;
+        }
+        try {
+            long seconds = Long.parseLong(value.trim());
+            return seconds < 0 ? Long.MAX_VALUE / 2 : seconds * 1000L;
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Ignoring invalid {}: {}", property, value);
+            return defaultMillis;
+        }
+    }
+
+    /**
+     * A cache entry, pending until its lookup completes. A pending entry never
+     * expires, so it is joined rather than looked up again.
+     */
+    private static final class Lookup<V> {
+        private final CompletableFuture<V> value = new CompletableFuture<>();
+        private volatile long expiresAtMillis = Long.MAX_VALUE;
+
+        private boolean isExpired(long nowMillis) {
+            return nowMillis >= expiresAtMillis;
+        }
+
+        private void complete(V result, long expiresAtMillis) {
+            this.expiresAtMillis = expiresAtMillis;
+            value.complete(result);
+        }
+
+        private V join() {
+            return value.join();
+        }
+    }
+}
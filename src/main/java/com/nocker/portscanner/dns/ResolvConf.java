@@ -0,0 +1,148 @@
+package com.nocker.portscanner.dns;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@code ResolvConf} is the resolver configuration of this host as written in
+ * {@code /etc/resolv.conf}: the name servers to query and the {@code timeout}
+ * and {@code attempts} options. Only address literals are accepted as name
+ * servers, and the limits and defaults are those of the C library resolver.
+ * Search domains are not used, names are queried as given.
+ */
+public final class ResolvConf {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResolvConf.class);
+
+    /**
+     * Location of the resolver configuration.
+     */
+    public static final Path RESOLV_CONF = Paths.get("/etc/resolv.conf");
+
+    /**
+     * Most name servers the C library resolver queries.
+     */
+    public static final int MAX_NAMESERVERS = 3;
+
+    public static final int DEFAULT_TIMEOUT_SECONDS = 5;
+    public static final int MAX_TIMEOUT_SECONDS = 30;
+    public static final int DEFAULT_ATTEMPTS = 2;
+    public static final int MAX_ATTEMPTS = 5;
+
+    private final List<InetAddress> nameservers;
+    private final int timeoutSeconds;
+    private final int attempts;
+
+    ResolvConf(List<InetAddress> nameservers, int timeoutSeconds, int attempts) {
+        this.nameservers = Collections.unmodifiableList(nameservers);
+        this.timeoutSeconds = timeoutSeconds;
+        this.attempts = attempts;
+    }
+
+    /**
+     * Reads the resolver configuration of this host.
+     *
+     * @return the current configuration, without name servers when
+     * {@code /etc/resolv.conf} does not exist or cannot be read
+     */
+    public static ResolvConf read() {
+        if (!Files.isReadable(RESOLV_CONF)) {
+            return parse(Collections.<String>emptyList());
+        }
+        try {
+            return parse(Files.readAllLines(RESOLV_CONF, StandardCharsets.US_ASCII));
+        } catch (IOException e) {
+            LOGGER.warn("Failed to read {}: {}", RESOLV_CONF, e.getMessage());
+            return parse(Collections.<String>emptyList());
+        }
+    }
+
+    /**
+     * Parses the lines of {@code /etc/resolv.conf}. Comments, unknown keywords,
+     * name servers that are not address literals and malformed options are
+     * ignored.
+     *
+     * @param lines the lines of the file
+     * @return the configuration the lines describe
+     */
+    public static ResolvConf parse(List<String> lines) {
+        List<InetAddress> nameservers = new ArrayList<>();
+        int timeoutSeconds = DEFAULT_TIMEOUT_SECONDS;
+        int attempts = DEFAULT_ATTEMPTS;
+        for (String line : lines) {
+            String[] fields = line.trim().split("\\s+");
+            if (fields.length < 2 || fields[0].startsWith("#") || fields[0].startsWith(";")) {
+                continue;
+            }
+            if ("nameserver".equals(fields[0])) {
+                InetAddress nameserver = parseLiteral(fields[1]);
+                if (nameserver != null && nameservers.size() < MAX_NAMESERVERS) {
+                    nameservers.add(nameserver);
+                }
+            } else if ("options".equals(fields[0])) {
+                for (int i = 1; i < fields.length; i++) {
+                    if (fields[i].startsWith("timeout:")) {
+                        timeoutSeconds = parseOption(fields[i], timeoutSeconds, 1, MAX_TIMEOUT_SECONDS);
+                    } else if (fields[i].startsWith("attempts:")) {
+                        attempts = parseOption(fields[i], attempts, 1, MAX_ATTEMPTS);
+                    }
+                }
+            }
+        }
+        return new ResolvConf(nameservers, timeoutSeconds, attempts);
+    }
+
+    public List<InetAddress> getNameservers() {
+        return nameservers;
+    }
+
+    public int getTimeoutSeconds() {
+        return timeoutSeconds;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    private static InetAddress parseLiteral(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (Character.digit(c, 16) < 0 && c != '.' && c != ':') {
+                return null; // never resolve a name server through DNS
+            }
+        }
+        try {
+            return InetAddress.getByName(value);
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    private static int parseOption(String option, int current, int min, int max) {
+        try {
+            int value = Integer.parseInt(option.substring(option.indexOf(':') + 1));
+            return Math.max(min, Math.min(max, value));
+        } catch (NumberFormatException e) {
+            return current;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ResolvConf{" +
+                "nameservers=" + nameservers +
+                ", timeoutSeconds=" + timeoutSeconds +
+                ", attempts=" + attempts +
+                '}';
+    }
+}
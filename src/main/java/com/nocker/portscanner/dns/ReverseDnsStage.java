@@ -0,0 +1,236 @@
+package com.nocker.portscanner.dns;
+
+import com.nocker.portscanner.scheduler.ScanJob;
+import com.nocker.portscanner.scheduler.SharedWorkerPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.Inet4Address;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * {@code ReverseDnsStage} looks up the names of scanned hosts alongside the
+ * scan rather than ahead of it. A host's name is requested when the host is
+ * resolved, looked up in the background in batches through the
+ * {@link HostResolver}, and only joined when the host's output is written. The
+ * scan itself works on numeric addresses alone, so a slow or broken reverse zone
+ * never holds up a probe.
+ * <p>
+ * Each address is looked up once per request, and forgotten once its name is
+ * joined, so the stage holds only the hosts in flight however many are scanned.
+ * A name that is not known by the time it is joined, after waiting at most the
+ * join timeout, is written as the address itself. The names of several hosts
+ * are joined against one shared deadline, so a block of hosts waits at most
+ * one join timeout for all of its names, not one per host. A disabled stage never looks
+ * anything up and names every host by its address.
+ */
+public final class ReverseDnsStage {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReverseDnsStage.class);
+
+    /**
+     * Most addresses looked up together, in parallel.
+     */
+    public static final int BATCH_SIZE = 64;
+
+    /**
+     * Longest a name is waited for once its host's output is written.
+     */
+    public static final long DEFAULT_JOIN_TIMEOUT_MILLIS = 2_000L;
+
+    private static final ReverseDnsStage DISABLED = new ReverseDnsStage(null, 0L, false);
+
+    private final HostResolver hostResolver;
+    private final long joinTimeoutMillis;
+    private final boolean enabled;
+    private final ConcurrentHashMap<Inet4Address, CompletableFuture<String>> hostNames = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Request> requested = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private final ScanJob lookups;
+
+    public ReverseDnsStage(HostResolver hostResolver, long joinTimeoutMillis) {
+        this(hostResolver, joinTimeoutMillis, true);
+    }
+
+    private ReverseDnsStage(HostResolver hostResolver, long joinTimeoutMillis, boolean enabled) {
+        if (joinTimeoutMillis < 0) {
+            throw new IllegalArgumentException("join timeout must not be negative");
+        }
+        this.hostResolver = hostResolver;
+        this.joinTimeoutMillis = joinTimeoutMillis;
+        this.enabled = enabled;
+        this.lookups = enabled ? SharedWorkerPool.shared().newJob(1) : null;
+    }
+
+    /**
+     * Retrieves a stage that never looks up a name.
+     *
+     * @return the disabled stage
+     */
+    public static ReverseDnsStage disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * Starts looking up the name of an address in the background, unless it has
+     * been requested before.
+     *
+     * @param address the address to name
+     */
+    public void request(Inet4Address address) {
+        if (!enabled) {
+            return;
+        }
+        CompletableFuture<String> hostName = new CompletableFuture<>();
+        if (hostNames.putIfAbsent(address, hostName) != null) {
+            return;
+        }
+        requested.add(new Request(address, hostName));
+        scheduleDrain();
+    }
+
+    /**
+     * Starts looking up the names of several addresses in the background.
+     *
+     * @param addresses the addresses to name
+     */
+    public void requestAll(Collection<Inet4Address> addresses) {
+        for (Inet4Address address : addresses) {
+            request(address);
+        }
+    }
+
+    /**
+     * Joins the name of an address, requesting it first if needed.
+     *
+     * @param address the address to name
+     * @return the name of the address, or the address itself when it has no
+     * name, the stage is disabled or the lookup does not finish in time
+     */
+    public String hostName(Inet4Address address) {
+        if (!enabled) {
+            return address.getHostAddress();
+        }
+        return join(address, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(joinTimeoutMillis));
+    }
+
+    /**
+     * Joins the names of several addresses, requesting them first if needed. All
+     * of them are waited for until one deadline, a join timeout from now.
+     *
+     * @param addresses the addresses to name
+     * @return the name of each address, in the order given, or the address
+     * itself when it has no name, the stage is disabled or the lookup does not
+     * finish in time
+     */
+    public Map<Inet4Address, String> hostNames(Collection<Inet4Address> addresses) {
+        Map<Inet4Address, String> names = new LinkedHashMap<>();
+        if (!enabled) {
+            for (Inet4Address address : addresses) {
+                names.put(address, address.getHostAddress());
+            }
+            return names;
+        }
+        requestAll(addresses);
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(joinTimeoutMillis);
+        for (Inet4Address address : addresses) {
+            if (!names.containsKey(address)) {
+                names.put(address, join(address, deadlineNanos));
+            }
+        }
+        return names;
+    }
+
+    private String join(Inet4Address address, long deadlineNanos) {
+        request(address);
+        CompletableFuture<String> hostName = hostNames.remove(address);
+        if (hostName == null) {
+            return address.getHostAddress(); // joined concurrently
+        }
+        try {
+            return hostName.get(Math.max(0L, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            LOGGER.debug("Reverse lookup of [{}] still pending, writing the address", address.getHostAddress());
+        } catch (ExecutionException e) {
+            LOGGER.debug("Reverse lookup of [{}] failed: {}", address.getHostAddress(), e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return address.getHostAddress();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getJoinTimeoutMillis() {
+        return joinTimeoutMillis;
+    }
+
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            lookups.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        try {
+            List<Request> batch = new ArrayList<>(BATCH_SIZE);
+            Request request;
+            while ((request = requested.poll()) != null) {
+                batch.add(request);
+                if (batch.size() == BATCH_SIZE) {
+                    lookUp(batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                lookUp(batch);
+            }
+        } finally {
+            draining.set(false);
+        }
+        if (!requested.isEmpty()) {
+            scheduleDrain(); // requested after the queue was last polled
+        }
+    }
+
+    private void lookUp(List<Request> batch) {
+        List<Inet4Address> addresses = new ArrayList<>(batch.size());
+        for (Request request : batch) {
+            addresses.add(request.address);
+        }
+        Map<Inet4Address, String> names;
+        try {
+            names = hostResolver.hostNamesOf(addresses);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Reverse lookups failed: {}", e.getMessage());
+            names = Collections.emptyMap();
+        }
+        for (Request request : batch) {
+            String name = names.get(request.address);
+            request.hostName.complete(name != null ? name : request.address.getHostAddress());
+        }
+    }
+
+    private static final class Request {
+        private final Inet4Address address;
+        private final CompletableFuture<String> hostName;
+
+        private Request(Inet4Address address, CompletableFuture<String> hostName) {
+            this.address = address;
+            this.hostName = hostName;
+        }
+    }
+}
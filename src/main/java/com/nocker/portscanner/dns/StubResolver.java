@@ -0,0 +1,420 @@
+package com.nocker.portscanner.dns;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code StubResolver} is an asynchronous DNS stub resolver. It sends
+ * recursive {@code A} and {@code PTR} queries to the name servers of
+ * {@code /etc/resolv.conf} over a single non-blocking {@link DatagramChannel}
+ * and matches each response to its query by identifier, source and question,
+ * so up to {@link #MAX_IN_FLIGHT} queries are outstanding at once and no
+ * thread waits on any of them. Unlike {@link InetAddress#getByName(String)},
+ * a lookup never blocks its caller and never queues behind another lookup.
+ * <p>
+ * A query that is not answered within the timeout, or is answered with a
+ * server failure, is sent again to the next name server, for the configured
+ * number of attempts on each server. Answers are cached for the smallest time
+ * to live of their records, and negative answers for the minimum time to live
+ * of the zone's {@code SOA} record, so a name is queried at most once per time
+ * to live. Concurrent lookups of a name share one query.
+ */
+public final class StubResolver implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StubResolver.class);
+
+    public static final int DNS_PORT = 53;
+
+    /**
+     * Most queries sent and not yet answered at once, further queries wait for
+     * a slot.
+     */
+    public static final int MAX_IN_FLIGHT = 256;
+
+    /**
+     * Time to live of a negative answer that carries no {@code SOA} record.
+     */
+    public static final long DEFAULT_NEGATIVE_TTL_SECONDS = 60L;
+
+    /**
+     * Longest an answer is cached, whatever the time to live of its records.
+     */
+    public static final long MAX_TTL_SECONDS = 86_400L;
+
+    /**
+     * Number of cached answers past which expired answers are pruned.
+     */
+    public static final int MAX_CACHED_ANSWERS = 65_536;
+
+    private static final int RECEIVE_BUFFER_SIZE = 4096;
+
+    private final List<InetSocketAddress> servers;
+    private final long timeoutNanos;
+    private final int attempts;
+    private final DatagramChannel channel;
+    private final Selector selector;
+    private final ConcurrentLinkedQueue<Query> submitted = new ConcurrentLinkedQueue<>();
+    private final ConcurrentHashMap<String, CachedAnswer> cache = new ConcurrentHashMap<>();
+    private volatile boolean closed = false;
+
+    // owned by the resolver thread
+    private final Map<Integer, Query> inFlight = new HashMap<>();
+    private final ArrayDeque<Query> waiting = new ArrayDeque<>();
+    private final PriorityQueue<Query> deadlines = new PriorityQueue<>(
+            Comparator.comparingLong((Query query) -> query.deadlineNanos));
+    private final Random ids = new SecureRandom();
+    private final ByteBuffer receiveBuffer = ByteBuffer.allocate(RECEIVE_BUFFER_SIZE);
+
+    /**
+     * Opens a resolver on an ephemeral local port.
+     *
+     * @param servers the name servers to query, in order of preference
+     * @param timeoutMillis the time to wait for each response
+     * @param attempts the number of times each server is tried
+     * @throws IOException if the channel cannot be opened
+     */
+    public StubResolver(List<InetSocketAddress> servers, int timeoutMillis, int attempts) throws IOException {
+        if (servers.isEmpty() || timeoutMillis < 1 || attempts < 1) {
+            throw new IllegalArgumentException("servers, timeout and attempts must be positive");
+        }
+        this.servers = Collections.unmodifiableList(new ArrayList<>(servers));
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.attempts = attempts;
+        this.selector = Selector.open();
+        try {
+            this.channel = DatagramChannel.open();
+            channel.configureBlocking(false);
+            channel.bind(null);
+            channel.register(selector, SelectionKey.OP_READ);
+        } catch (IOException e) {
+            selector.close();
+            throw e;
+        }
+        Thread thread = new Thread(this::run, "nocker-dns-resolver");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Retrieves the resolver of this host's {@code /etc/resolv.conf}, opened on
+     * first use and shared by every scan of this process.
+     *
+     * @return the system resolver, or {@code null} when no name server is
+     * configured or the resolver cannot be opened
+     */
+    public static StubResolver system() {
+        return SystemResolver.INSTANCE;
+    }
+
+    /**
+     * Looks up the IPv4 addresses of a name.
+     *
+     * @param name the fully qualified name to look up
+     * @return a future completed with the addresses of the name, empty when it
+     * has none, or completed exceptionally when no server answers
+     */
+    public CompletableFuture<List<Inet4Address>> lookupAddresses(String name) {
+        return query(name, DnsMessage.TYPE_A).thenApply(StubResolver::addressesOf);
+    }
+
+    /**
+     * Looks up the name of an address in reverse.
+     *
+     * @param address the address to look up
+     * @return a future completed with the name of the address, {@code null}
+     * when it has none, or completed exceptionally when no server answers
+     */
+    public CompletableFuture<String> lookupHostName(Inet4Address address) {
+        return query(DnsMessage.reverseName(address), DnsMessage.TYPE_PTR).thenApply(StubResolver::hostNameOf);
+    }
+
+    public List<InetSocketAddress> getServers() {
+        return servers;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Stops the resolver thread. Lookups still outstanding are completed
+     * exceptionally.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        selector.wakeup();
+    }
+
+    private CompletableFuture<DnsMessage> query(String name, int type) {
+        if (closed) {
+            CompletableFuture<DnsMessage> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IOException("StubResolver is closed"));
+            return failed;
+        }
+        String key = type + " " + name.toLowerCase(Locale.ROOT);
+        long now = System.nanoTime();
+        CachedAnswer fresh = new CachedAnswer();
+        CachedAnswer entry = cache.compute(key, (k, current) ->
+                current == null || current.isExpired(now) ? fresh : current);
+        if (entry == fresh) {
+            if (cache.size() > MAX_CACHED_ANSWERS) {
+                cache.values().removeIf(answer -> answer.isExpired(now));
+            }
+            Query query = new Query(key, name, type, entry);
+            submitted.add(query);
+            selector.wakeup();
+            if (closed && submitted.remove(query)) {
+                cache.remove(key, entry);
+                entry.response.completeExceptionally(new IOException("StubResolver is closed"));
+            }
+        }
+        return entry.response;
+    }
+
+    private void run() {
+        try {
+            while (!closed) {
+                Query query;
+                while ((query = submitted.poll()) != null) {
+                    waiting.add(query);
+                }
+                while (inFlight.size() < MAX_IN_FLIGHT && !waiting.isEmpty()) {
+                    send(waiting.poll());
+                }
+                selector.select(nextSelectTimeoutMillis());
+                selector.selectedKeys().clear();
+                receive();
+                expire(System.nanoTime());
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            LOGGER.error("DNS resolver failed: {}", e.getMessage());
+        } finally {
+            failOutstanding();
+        }
+    }
+
+    private void send(Query query) {
+        int id;
+        do {
+            id = ids.nextInt(0x10000);
+        } while (inFlight.containsKey(id));
+        query.id = id;
+        query.message = DnsMessage.query(id, query.name, query.type);
+        query.server = servers.get(query.sends % servers.size());
+        query.sends++;
+        query.deadlineNanos = System.nanoTime() + timeoutNanos;
+        inFlight.put(id, query);
+        deadlines.add(query);
+        try {
+            channel.send(ByteBuffer.wrap(query.message.encode()), query.server);
+        } catch (IllegalArgumentException e) {
+            fail(query, new IOException("Cannot query " + query.name + ": " + e.getMessage()));
+        } catch (IOException e) {
+            LOGGER.debug("Failed sending DNS query for {} to {}: {}", query.name, query.server, e.getMessage());
+            // left to time out and be sent again
+        }
+    }
+
+    private void receive() throws IOException {
+        SocketAddress source;
+        while ((source = receiveFrom()) != null) {
+            DnsMessage response;
+            try {
+                response = DnsMessage.decode(receiveBuffer);
+            } catch (IllegalArgumentException e) {
+                LOGGER.debug("Ignoring malformed DNS response from {}: {}", source, e.getMessage());
+                continue;
+            }
+            Query query = inFlight.get(response.getId());
+            if (query == null || !source.equals(query.server) || !response.answers(query.message)) {
+                continue; // late, duplicate or spoofed
+            }
+            int rcode = response.getRcode();
+            boolean usable = rcode == DnsMessage.RCODE_NOERROR || rcode == DnsMessage.RCODE_NXDOMAIN;
+            if (usable && !(response.isTruncated() && response.getAnswers().isEmpty())) {
+                finish(query);
+                long ttlSeconds = Math.min(MAX_TTL_SECONDS, ttlSecondsOf(response));
+                query.answer.complete(response, System.nanoTime() + TimeUnit.SECONDS.toNanos(ttlSeconds));
+            } else {
+                retry(query);
+            }
+        }
+    }
+
+    private SocketAddress receiveFrom() throws IOException {
+        receiveBuffer.clear();
+        SocketAddress source = channel.receive(receiveBuffer);
+        receiveBuffer.flip();
+        return source;
+    }
+
+    private long nextSelectTimeoutMillis() {
+        Query next = deadlines.peek();
+        if (next == null) {
+            return 0L; // nothing to expire, block until woken
+        }
+        long remaining = TimeUnit.NANOSECONDS.toMillis(next.deadlineNanos - System.nanoTime());
+        return Math.max(1L, remaining);
+    }
+
+    private void expire(long now) {
+        while (!deadlines.isEmpty() && deadlines.peek().deadlineNanos <= now) {
+            retry(deadlines.peek());
+        }
+    }
+
+    private void retry(Query query) {
+        finish(query);
+        if (query.sends < attempts * servers.size()) {
+            send(query);
+        } else {
+            fail(query, new IOException("No answer from name servers for " + query.name));
+        }
+    }
+
+    private void finish(Query query) {
+        inFlight.remove(query.id);
+        deadlines.remove(query);
+    }
+
+    private void fail(Query query, IOException cause) {
+        finish(query);
+        cache.remove(query.key, query.answer);
+        query.answer.response.completeExceptionally(cause);
+    }
+
+    private void failOutstanding() {
+        IOException cause = new IOException("StubResolver is closed");
+        List<Query> outstanding = new ArrayList<>(inFlight.values());
+        outstanding.addAll(waiting);
+        Query query;
+        while ((query = submitted.poll()) != null) {
+            outstanding.add(query);
+        }
+        for (Query pending : outstanding) {
+            fail(pending, cause);
+        }
+        waiting.clear();
+        try {
+            channel.close();
+            selector.close();
+        } catch (IOException e) {
+            LOGGER.debug("Failed closing DNS channel: {}", e.getMessage());
+        }
+    }
+
+    private static long ttlSecondsOf(DnsMessage response) {
+        long ttl = Long.MAX_VALUE;
+        for (DnsMessage.Record record : response.getAnswers()) {
+            ttl = Math.min(ttl, record.getTtlSeconds());
+        }
+        if (!addressesOf(response).isEmpty() || hostNameOf(response) != null) {
+            return ttl;
+        }
+        for (DnsMessage.Record record : response.getAuthorities()) {
+            if (record.getType() == DnsMessage.TYPE_SOA) {
+                return Math.min(record.getTtlSeconds(), record.getMinimumSeconds());
+            }
+        }
+        return DEFAULT_NEGATIVE_TTL_SECONDS;
+    }
+
+    private static List<Inet4Address> addressesOf(DnsMessage response) {
+        List<Inet4Address> addresses = new ArrayList<>();
+        for (DnsMessage.Record record : response.getAnswers()) {
+            if (record.getType() == DnsMessage.TYPE_A) {
+                addresses.add(record.getAddress());
+            }
+        }
+        return addresses;
+    }
+
+    private static String hostNameOf(DnsMessage response) {
+        for (DnsMessage.Record record : response.getAnswers()) {
+            if (record.getType() == DnsMessage.TYPE_PTR) {
+                return record.getTarget();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A cached response, pending until its query is answered. A pending answer
+     * never expires, so it is joined rather than queried again.
+     */
+    private static final class CachedAnswer {
+        private final CompletableFuture<DnsMessage> response = new CompletableFuture<>();
+        private volatile long expiresAtNanos;
+
+        private boolean isExpired(long nowNanos) {
+            return response.isDone() && nowNanos - expiresAtNanos >= 0;
+        }
+
+        private void complete(DnsMessage message, long expiresAtNanos) {
+            this.expiresAtNanos = expiresAtNanos;
+            response.complete(message);
+        }
+    }
+
+    private static final class Query {
+        private final String key;
+        private final String name;
+        private final int type;
+        private final CachedAnswer answer;
+        private int id;
+        private DnsMessage message;
+        private InetSocketAddress server;
+        private int sends;
+        private long deadlineNanos;
+
+        private Query(String key, String name, int type, CachedAnswer answer) {
+            this.key = key;
+            this.name = name;
+            this.type = type;
+            this.answer = answer;
+        }
+    }
+
+    private static final class SystemResolver {
+        private static final StubResolver INSTANCE = open();
+
+        private static StubResolver open() {
+            ResolvConf conf = ResolvConf.read();
+            if (conf.getNameservers().isEmpty()) {
+                return null;
+            }
+            List<InetSocketAddress> servers = new ArrayList<>();
+            for (InetAddress nameserver : conf.getNameservers()) {
+                servers.add(new InetSocketAddress(nameserver, DNS_PORT));
+            }
+            try {
+                return new StubResolver(servers, (int) TimeUnit.SECONDS.toMillis(conf.getTimeoutSeconds()),
+                        conf.getAttempts());
+            } catch (IOException e) {
+                LOGGER.warn("DNS resolver unavailable: {}", e.getMessage());
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.nocker.portscanner.engine;
+
+import com.nocker.portscanner.PortState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ConnectException;
+import java.net.Inet4Address;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@code NioConnectEngine} performs TCP connect probes on non-blocking
+ * {@link SocketChannel}s that are multiplexed over a small, fixed number
+ * of {@link Selector} threads. A probe resolves to {@link PortState#OPEN}
+ * when the handshake completes, {@link PortState#CLOSED} when the connect
+ * is refused, {@link PortState#FILTERED} when no answer arrives before the
+ * probe's deadline and {@link PortState#ERROR} for any other failure.
+ * <p>
+ * Unlike {@code PortScanSynAckTask}, no thread waits on an individual
+ * connect. The number of probes in flight is bounded by {@code maxInFlight};
+ * once the bound is reached {@link #connect(Inet4Address, int, int)} blocks
+ * the caller until a probe resolves, which gives submitting tasks natural
+ * back-pressure.
+ */
+public class NioConnectEngine implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(NioConnectEngine.class);
+
+    private final SelectorLoop[] loops;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final AtomicInteger nextLoop = new AtomicInteger(0);
+    private volatile boolean closed = false;
+
+    /**
+     * Default number of selector threads, a handful is enough to drive
+     * thousands of concurrent connects.
+     */
+    public static final int DEFAULT_SELECTOR_THREADS = Math.max(1, Math.min(4,
+            Runtime.getRuntime().availableProcessors()));
+
+    public NioConnectEngine(int maxInFlight) {
+        this(maxInFlight, DEFAULT_SELECTOR_THREADS);
+    }
+
+    public NioConnectEngine(int maxInFlight, int selectorThreads) {
+        if (maxInFlight < 1 || selectorThreads < 1) {
+            throw new IllegalArgumentException("in-flight connects and selector threads must be positive");
+        }
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.loops = new SelectorLoop[selectorThreads];
+        for (int i = 0; i < selectorThreads; i++) {
+            loops[i] = new SelectorLoop(i);
+        }
+    }
+
+    /**
+     * Starts a non-blocking connect to the given host and port. The returned
+     * future completes with the resulting {@link PortState} once the connect
+     * resolves or {@code timeoutMillis} elapses. This call blocks only while
+     * the engine is at its in-flight bound.
+     *
+     * @param host the destination address
+     * @param port the destination port
+     * @param timeoutMillis the time to wait for the handshake, in milliseconds
+     * @return a future completed with the probed port state
+     * @throws IllegalStateException if the engine has been closed
+     */
+    public CompletableFuture<PortState> connect(Inet4Address host, int port, int timeoutMillis) {
+        if (closed) {
+            throw new IllegalStateException("NioConnectEngine is closed");
+        }
+        CompletableFuture<PortState> result = new CompletableFuture<>();
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.complete(PortState.ERROR);
+            return result;
+        }
+        start(host, port, timeoutMillis, result);
+        return result;
+    }
+
+    /**
+     * Starts a non-blocking connect like {@link #connect(Inet4Address, int, int)},
+     * but only if the engine is below its in-flight bound. Used for probes that
+     * must not queue behind the others, such as hedges.
+     *
+     * @param host the destination address
+     * @param port the destination port
+     * @param timeoutMillis the time to wait for the handshake, in milliseconds
+     * @return a future completed with the probed port state, or {@code null} if
+     * the engine is at its bound or closed
+     */
+    public CompletableFuture<PortState> tryConnect(Inet4Address host, int port, int timeoutMillis) {
+        if (closed || !inFlight.tryAcquire()) {
+            return null;
+        }
+        CompletableFuture<PortState> result = new CompletableFuture<>();
+        start(host, port, timeoutMillis, result);
+        return result;
+    }
+
+    private void start(Inet4Address host, int port, int timeoutMillis, CompletableFuture<PortState> result) {
+        ConnectProbe probe = new ConnectProbe(result, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+        try {
+            probe.channel = SocketChannel.open();
+            probe.channel.configureBlocking(false);
+            // reset instead of FIN on close, avoids parking thousands of sockets in TIME_WAIT
+            probe.channel.setOption(StandardSocketOptions.SO_LINGER, 0);
+            if (probe.channel.connect(new InetSocketAddress(host, port))) {
+                probe.complete(PortState.OPEN);
+            } else {
+                loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)].register(probe);
+            }
+        } catch (ConnectException e) {
+            probe.complete(PortState.CLOSED);
+        } catch (IOException e) {
+            LOGGER.debug("Connect probe failed: {}:{} - {}", host.getHostAddress(), port, e.getMessage());
+            probe.complete(PortState.ERROR);
+        }
+    }
+
+    /**
+     * Retrieves the maximum number of connects the engine keeps in flight.
+     *
+     * @return the in-flight bound
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Retrieves the number of connects currently in flight.
+     *
+     * @return the number of unresolved probes
+     */
+    public int getInFlight() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Stops the selector threads. Probes still in flight are completed
+     * with {@link PortState#ERROR}.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (SelectorLoop loop : loops) {
+            loop.selector.wakeup();
+        }
+    }
+
+    private final class ConnectProbe {
+        private final CompletableFuture<PortState> result;
+        private final long deadlineNanos;
+        private SocketChannel channel;
+
+        private ConnectProbe(CompletableFuture<PortState> result, long deadlineNanos) {
+            this.result = result;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        private void complete(PortState state) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    LOGGER.debug("Failed closing probe channel: {}", e.getMessage());
+                }
+            }
+            if (result.complete(state)) {
+                inFlight.release();
+            }
+        }
+    }
+
+    private final class SelectorLoop implements Runnable {
+        private final Selector selector;
+        private final ConcurrentLinkedQueue<ConnectProbe> pending = new ConcurrentLinkedQueue<>();
+        private final PriorityQueue<ConnectProbe> deadlines = new PriorityQueue<>(
+                Comparator.comparingLong((ConnectProbe probe) -> probe.deadlineNanos));
+
+        private SelectorLoop(int index) {
+            try {
+                this.selector = Selector.open();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open connect selector", e);
+            }
+            Thread thread = new Thread(this, "nocker-nio-connect-" + index);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void register(ConnectProbe probe) {
+            pending.add(probe);
+            selector.wakeup();
+            if (closed && pending.remove(probe)) {
+                probe.complete(PortState.ERROR);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!closed) {
+                    registerPending();
+                    selector.select(nextSelectTimeoutMillis());
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        finishConnect(key);
+                    }
+                    expire(System.nanoTime());
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                LOGGER.error("Connect selector failed: {}", e.getMessage());
+            } finally {
+                failOutstanding();
+            }
+        }
+
+        private void registerPending() {
+            ConnectProbe probe;
+            while ((probe = pending.poll()) != null) {
+                try {
+                    probe.channel.register(selector, SelectionKey.OP_CONNECT, probe);
+                    deadlines.add(probe);
+                } catch (IOException e) {
+                    probe.complete(PortState.ERROR);
+                }
+            }
+        }
+
+        private long nextSelectTimeoutMillis() {
+            ConnectProbe next = deadlines.peek();
+            if (next == null) {
+                return 0L; // nothing to expire, block until woken
+            }
+            long remaining = TimeUnit.NANOSECONDS.toMillis(next.deadlineNanos - System.nanoTime());
+            return Math.max(1L, remaining);
+        }
+
+        private void finishConnect(SelectionKey key) {
+            ConnectProbe probe = (ConnectProbe) key.attachment();
+            key.cancel();
+            try {
+                if (probe.channel.finishConnect()) {
+                    probe.complete(PortState.OPEN);
+                }
+            } catch (ConnectException e) {
+                probe.complete(PortState.CLOSED);
+            } catch (IOException e) {
+                probe.complete(PortState.ERROR);
+            }
+        }
+
+        private void expire(long now) {
+            while (!deadlines.isEmpty() && deadlines.peek().deadlineNanos <= now) {
+                ConnectProbe probe = deadlines.poll();
+                if (!probe.result.isDone()) {
+                    probe.complete(PortState.FILTERED);
+                }
+            }
+        }
+
+        private void failOutstanding() {
+            ConnectProbe probe;
+            while ((probe = pending.poll()) != null) {
+                probe.complete(PortState.ERROR);
+            }
+            while ((probe = deadlines.poll()) != null) {
+                probe.complete(PortState.ERROR);
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                LOGGER.debug("Failed closing connect selector: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package com.nocker.portscanner.engine;
+
+import com.nocker.portscanner.PortState;
+import com.nocker.portscanner.SourcePortAllocator;
+import org.pcap4j.core.*;
+import org.pcap4j.packet.Packet;
+import org.pcap4j.packet.namednumber.DataLinkType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.net.Inet4Address;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@code PcapReceiveLoop} is a long-lived capture loop, one per
+ * {@link PcapNetworkInterface}, shared by every SYN probe sent through that
+ * interface. The loop opens a single capture handle with a single filter that
+ * covers every reply a scan can receive (SYN-ACK or RST addressed to one of the
+ * ephemeral source ports handed out by {@link SourcePortAllocator}) and blocks
+ * in {@code pcap_loop} rather than polling for packets.
+ * <p>
+ * Probes register interest with {@link #expect(Inet4Address, int, int)} before
+ * the SYN is sent. Replies are routed back to the waiting probe by the
+ * (address, destination port, source port) triple of the probe.
+ */
+public class PcapReceiveLoop implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PcapReceiveLoop.class);
+
+    private static final ConcurrentHashMap<String, PcapReceiveLoop> RECEIVE_LOOPS = new ConcurrentHashMap<>();
+
+    private final PcapNetworkInterface networkInterface;
+    private final PcapHandle receiveHandle;
+    private final PcapHandle sendHandle;
+    private final int linkHeaderLength;
+    private final ConcurrentHashMap<Long, CompletableFuture<PortState>> waitingProbes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, TcpReplyListener> replyListeners = new ConcurrentHashMap<>();
+    private volatile boolean closed = false;
+
+    private static final int SNAPLEN = 128; // link, ip and tcp headers are all the loop reads
+    private static final int READ_TIMEOUT_MILLIS = 10;
+    static final int ETHERNET_HEADER_LENGTH = 14;
+    private static final int VLAN_TAG_LENGTH = 4;
+    private static final int NULL_HEADER_LENGTH = 4;
+    private static final int LINUX_SLL_HEADER_LENGTH = 16;
+    private static final int ETHER_TYPE_IPV4 = 0x0800;
+    private static final int ETHER_TYPE_VLAN = 0x8100;
+    private static final int IP_PROTOCOL_TCP = 6;
+    private static final int TCP_FLAG_RST = 0x04;
+    private static final int TCP_FLAG_SYN = 0x02;
+    private static final int TCP_FLAG_ACK = 0x10;
+
+    PcapReceiveLoop(PcapNetworkInterface networkInterface) throws PcapNativeException, NotOpenException {
+        this.networkInterface = networkInterface;
+        this.receiveHandle = openHandle(networkInterface);
+        this.sendHandle = openHandle(networkInterface);
+        this.receiveHandle.setFilter(generateFilter(), BpfProgram.BpfCompileMode.OPTIMIZE);
+        this.linkHeaderLength = linkHeaderLength(receiveHandle.getDlt());
+        Thread thread = new Thread(this::receive, "nocker-pcap-" + networkInterface.getName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Creates a loop that opens no handles and captures nothing, for frames
+     * handed to {@link #gotPacket(byte[])} directly.
+     *
+     * @param linkHeaderLength the link header length of those frames
+     */
+    PcapReceiveLoop(int linkHeaderLength) {
+        this.networkInterface = null;
+        this.receiveHandle = null;
+        this.sendHandle = null;
+        this.linkHeaderLength = linkHeaderLength;
+    }
+
+    /**
+     * Retrieves the receive loop of the given interface, opening it on
+     * first use.
+     *
+     * @param networkInterface the interface probes are sent through
+     * @return the shared {@code PcapReceiveLoop} of the interface
+     * @throws IllegalStateException if the capture handles cannot be opened
+     */
+    public static PcapReceiveLoop forInterface(PcapNetworkInterface networkInterface) {
+        return RECEIVE_LOOPS.computeIfAbsent(networkInterface.getName(), name -> {
+            try {
+                return new PcapReceiveLoop(networkInterface);
+            } catch (PcapNativeException | NotOpenException e) {
+                LOGGER.error("Failed to open receive loop on interface [{}]: {}", name, e.getMessage());
+                throw new IllegalStateException("Failed to open receive loop on interface " + name, e);
+            }
+        });
+    }
+
+    /**
+     * Closes every receive loop opened by {@link #forInterface(PcapNetworkInterface)}.
+     */
+    public static void closeAll() {
+        for (PcapReceiveLoop receiveLoop : RECEIVE_LOOPS.values()) {
+            receiveLoop.close();
+        }
+        RECEIVE_LOOPS.clear();
+    }
+
+    /**
+     * Registers a probe waiting for a reply from {@code destination:destinationPort}
+     * to the local {@code sourcePort}. Must be called before the probe is sent so
+     * that an immediate reply cannot be missed.
+     *
+     * @param destination the probed address
+     * @param destinationPort the probed port
+     * @param sourcePort the local port the probe is sent from
+     * @return a future completed with {@link PortState#OPEN} on SYN-ACK or
+     * {@link PortState#CLOSED} on RST. It is never completed when no reply
+     * arrives, callers apply their own timeout.
+     */
+    public CompletableFuture<PortState> expect(Inet4Address destination, int destinationPort, int sourcePort) {
+        CompletableFuture<PortState> reply = new CompletableFuture<>();
+        waitingProbes.put(probeKey(toInt(destination), destinationPort, sourcePort), reply);
+        return reply;
+    }
+
+    /**
+     * Removes a waiting probe, typically once its timeout elapsed.
+     *
+     * @param destination the probed address
+     * @param destinationPort the probed port
+     * @param sourcePort the local port the probe was sent from
+     */
+    public void cancel(Inet4Address destination, int destinationPort, int sourcePort) {
+        waitingProbes.remove(probeKey(toInt(destination), destinationPort, sourcePort));
+    }
+
+    /**
+     * Registers a listener for every reply addressed to the local {@code sourcePort}
+     * that does not match a probe registered with {@link #expect(Inet4Address, int, int)}.
+     * Stateless scans use a listener instead of registering each probe.
+     *
+     * @param sourcePort the local port the scan sends its probes from
+     * @param replyListener the listener to call for each reply
+     */
+    public void addReplyListener(int sourcePort, TcpReplyListener replyListener) {
+        replyListeners.put(sourcePort, replyListener);
+    }
+
+    /**
+     * Removes the listener registered for the local {@code sourcePort}.
+     *
+     * @param sourcePort the local port the scan sent its probes from
+     */
+    public void removeReplyListener(int sourcePort) {
+        replyListeners.remove(sourcePort);
+    }
+
+    /**
+     * Sends a packet through the interface of this loop.
+     *
+     * @param packet the packet to send
+     */
+    public void send(Packet packet) throws PcapNativeException, NotOpenException {
+        sendHandle.sendPacket(packet);
+    }
+
+    /**
+     * Sends raw bytes through the interface of this loop.
+     *
+     * @param packet the bytes to send
+     * @param length the number of bytes of {@code packet} to send
+     */
+    public void send(byte[] packet, int length) throws PcapNativeException, NotOpenException {
+        sendHandle.sendPacket(packet, length);
+    }
+
+    public PcapNetworkInterface getNetworkInterface() {
+        return networkInterface;
+    }
+
+    /**
+     * Retrieves the number of probes still waiting for a reply.
+     *
+     * @return the number of registered probes
+     */
+    public int getWaitingProbes() {
+        return waitingProbes.size();
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (receiveHandle == null) {
+            return;
+        }
+        try {
+            receiveHandle.breakLoop();
+        } catch (NotOpenException e) {
+            LOGGER.debug("Receive handle already closed: {}", e.getMessage());
+        }
+        sendHandle.close();
+    }
+
+    private void receive() {
+        try {
+            receiveHandle.loop(-1, (RawPacketListener) this::gotPacket);
+        } catch (InterruptedException e) {
+            LOGGER.debug("Receive loop on [{}] stopped", networkInterface.getName());
+        } catch (PcapNativeException | NotOpenException e) {
+            LOGGER.error("Receive loop on [{}] failed: {}", networkInterface.getName(), e.getMessage());
+        } finally {
+            receiveHandle.close();
+        }
+    }
+
+    /**
+     * Routes a captured frame to the probe or listener waiting for it, and drops
+     * frames that are not a SYN-ACK or RST over IPv4.
+     */
+    void gotPacket(byte[] frame) {
+        int ip = ipOffset(frame, linkHeaderLength);
+        if (ip < 0 || frame.length < ip + 20 || (frame[ip] & 0xF0) != 0x40 || (frame[ip + 9] & 0xFF) != IP_PROTOCOL_TCP) {
+            return;
+        }
+        int tcp = ip + (frame[ip] & 0x0F) * 4;
+        if (frame.length < tcp + 14) {
+            return;
+        }
+        PortState state = replyState(frame[tcp + 13] & 0xFF);
+        if (state == null) {
+            return;
+        }
+        int sourceAddress = readInt(frame, ip + 12);
+        int remotePort = readShort(frame, tcp);
+        int localPort = readShort(frame, tcp + 2);
+        CompletableFuture<PortState> reply = waitingProbes.remove(probeKey(sourceAddress, remotePort, localPort));
+        if (reply != null) {
+            reply.complete(state);
+            return;
+        }
+        TcpReplyListener replyListener = replyListeners.get(localPort);
+        if (replyListener != null) {
+            replyListener.gotReply(sourceAddress, remotePort, localPort, state, readInt(frame, tcp + 8));
+        }
+    }
+
+    /**
+     * Classifies a reply by its TCP flags.
+     *
+     * @param flags the flags byte of the TCP header
+     * @return {@link PortState#CLOSED} for a RST, {@link PortState#OPEN} for a
+     * SYN-ACK, or {@code null} for any other segment
+     */
+    static PortState replyState(int flags) {
+        if ((flags & TCP_FLAG_RST) != 0) {
+            return PortState.CLOSED;
+        }
+        if ((flags & (TCP_FLAG_SYN | TCP_FLAG_ACK)) == (TCP_FLAG_SYN | TCP_FLAG_ACK)) {
+            return PortState.OPEN;
+        }
+        return null;
+    }
+
+    /**
+     * Finds the IPv4 header of a frame, past an Ethernet header and an optional
+     * VLAN tag, or past a fixed link header of any other data link.
+     *
+     * @return the offset of the IPv4 header, or {@code -1} if the frame carries none
+     */
+    static int ipOffset(byte[] frame, int linkHeaderLength) {
+        if (linkHeaderLength != ETHERNET_HEADER_LENGTH) {
+            return linkHeaderLength;
+        }
+        if (frame.length < ETHERNET_HEADER_LENGTH) {
+            return -1;
+        }
+        int etherType = readShort(frame, 12);
+        if (etherType == ETHER_TYPE_VLAN && frame.length >= ETHERNET_HEADER_LENGTH + VLAN_TAG_LENGTH) {
+            etherType = readShort(frame, 16);
+            return etherType == ETHER_TYPE_IPV4 ? ETHERNET_HEADER_LENGTH + VLAN_TAG_LENGTH : -1;
+        }
+        return etherType == ETHER_TYPE_IPV4 ? ETHERNET_HEADER_LENGTH : -1;
+    }
+
+    private static PcapHandle openHandle(PcapNetworkInterface networkInterface) throws PcapNativeException {
+        LOGGER.info("Attempting to initialize PcapHandle with interface: {}", networkInterface.getName());
+        return new PcapHandle.Builder(networkInterface.getName())
+                .snaplen(SNAPLEN)
+                .promiscuousMode(PcapNetworkInterface.PromiscuousMode.NONPROMISCUOUS)
+                .immediateMode(true)
+                .timeoutMillis(READ_TIMEOUT_MILLIS)
+                .build();
+    }
+
+    /**
+     * Generates the single capture filter of the loop: SYN-ACK or RST segments
+     * addressed to the ephemeral source port range used by scans.
+     *
+     * @return the BPF filter expression
+     */
+    static String generateFilter() {
+        return "tcp and dst portrange " + SourcePortAllocator.MIN_EPHEMERAL_PORT + "-" +
+                SourcePortAllocator.MAX_EPHEMERAL_PORT +
+                " and ((tcp[tcpflags] & tcp-rst != 0) or " +
+                "(tcp[tcpflags] & (tcp-syn|tcp-ack) == (tcp-syn|tcp-ack)))";
+    }
+
+    private static int linkHeaderLength(DataLinkType dataLinkType) {
+        if (DataLinkType.EN10MB.equals(dataLinkType)) {
+            return ETHERNET_HEADER_LENGTH;
+        }
+        if (DataLinkType.NULL.equals(dataLinkType)) {
+            return NULL_HEADER_LENGTH;
+        }
+        if (DataLinkType.LINUX_SLL.equals(dataLinkType)) {
+            return LINUX_SLL_HEADER_LENGTH;
+        }
+        if (DataLinkType.RAW.equals(dataLinkType)) {
+            return 0;
+        }
+        LOGGER.warn("Unrecognized data link type [{}], assuming no link header", dataLinkType);
+        return 0;
+    }
+
+    static long probeKey(int address, int remotePort, int localPort) {
+        return ((address & 0xFFFFFFFFL) << 32) | ((long) (remotePort & 0xFFFF) << 16) | (localPort & 0xFFFF);
+    }
+
+    public static int toInt(Inet4Address address) {
+        return readInt(address.getAddress(), 0);
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16)
+                | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+    }
+
+    private static int readShort(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+    }
+}
@@ -0,0 +1,25 @@
+package com.nocker.portscanner.engine;
+
+import com.nocker.portscanner.PortState;
+
+/**
+ * {@code TcpReplyListener} receives SYN-ACK and RST replies captured by a
+ * {@link PcapReceiveLoop} that did not belong to a probe registered with
+ * {@link PcapReceiveLoop#expect(java.net.Inet4Address, int, int)}. Listeners
+ * are registered per local source port and are called on the capture thread,
+ * so implementations must be fast and thread-safe.
+ */
+@FunctionalInterface
+public interface TcpReplyListener {
+
+    /**
+     * Handles a captured reply.
+     *
+     * @param sourceAddress the replying IPv4 address as an {@code int}
+     * @param sourcePort the replying (originally probed) port
+     * @param destinationPort the local port the reply was sent to
+     * @param state {@link PortState#OPEN} for a SYN-ACK or {@link PortState#CLOSED} for a RST
+     * @param acknowledgmentNumber the acknowledgment number of the reply
+     */
+    void gotReply(int sourceAddress, int sourcePort, int destinationPort, PortState state, int acknowledgmentNumber);
+}
@@ -1,6 +1,7 @@
 package com.nocker.portscanner.packet;
 
-import com.nocker.portscanner.PortScannerUtil;
+import com.nocker.portscanner.route.ResolvedRoute;
+import com.nocker.portscanner.route.RouteCache;
 import org.pcap4j.core.PcapNativeException;
 import org.pcap4j.core.PcapNetworkInterface;
 import org.pcap4j.packet.IpV4Packet;
@@ -26,12 +27,16 @@ public class Ipv4TcpSynPacket {
     public Ipv4TcpSynPacket(TcpSynSegment tcpSynSegment, Inet4Address destinationAddress) throws PcapNativeException, SocketException {
         this.tcpSynSegment = tcpSynSegment;
         this.destinationAddress = destinationAddress;
-        this.sourceAddress = PortScannerUtil.resolveSourceIpAddress(destinationAddress);
-        this.networkInterface = PortScannerUtil.resolveNetworkInterfaceFromSourceIp(sourceAddress);
+        ResolvedRoute route = RouteCache.shared().resolve(destinationAddress);
+        if (route == null) {
+            throw new SocketException("No interface routes to " + destinationAddress.getHostAddress());
+        }
+        this.sourceAddress = route.getSourceAddress();
+        this.networkInterface = route.getNetworkInterface();
     }
 
     public IpV4Packet createIpv4Packet() {
-        TcpPacket tcpPacketSegment = tcpSynSegment.createTcpSynSegment();
+        TcpPacket tcpPacketSegment = tcpSynSegment.createTcpSynSegment(sourceAddress);
         return new IpV4Packet.Builder()
                 .version(IP_VERSION)
                 .tos(IPV4_RFC)
@@ -0,0 +1,103 @@
+package com.nocker.portscanner.packet;
+
+import java.security.SecureRandom;
+
+/**
+ * {@code SynCookie} derives the initial sequence number of a SYN probe from a
+ * keyed hash (SipHash-2-4) of the probe's destination address, destination port
+ * and source port. A genuine SYN-ACK or RST to the probe acknowledges
+ * {@code ISN + 1}, so a reply can be validated from its own headers without
+ * keeping any state for the probe that caused it.
+ */
+public final class SynCookie {
+    private final long k0;
+    private final long k1;
+
+    public SynCookie(long k0, long k1) {
+        this.k0 = k0;
+        this.k1 = k1;
+    }
+
+    /**
+     * Creates a cookie with a random key, one per scan.
+     *
+     * @return a new {@code SynCookie}
+     */
+    public static SynCookie newRandomCookie() {
+        SecureRandom random = new SecureRandom();
+        return new SynCookie(random.nextLong(), random.nextLong());
+    }
+
+    /**
+     * Computes the initial sequence number for a probe.
+     *
+     * @param destinationAddress the probed IPv4 address as an {@code int}
+     * @param destinationPort the probed port
+     * @param sourcePort the port the probe is sent from
+     * @return the sequence number to place in the SYN
+     */
+    public int sequenceNumber(int destinationAddress, int destinationPort, int sourcePort) {
+        long message = ((destinationAddress & 0xFFFFFFFFL) << 32)
+                | ((long) (destinationPort & 0xFFFF) << 16)
+                | (sourcePort & 0xFFFF);
+        return (int) sipHash24(message);
+    }
+
+    /**
+     * Validates the acknowledgment number of a reply. The address and ports are
+     * those of the original probe, i.e. the reply's source address, source port
+     * and destination port.
+     *
+     * @param destinationAddress the probed IPv4 address as an {@code int}
+     * @param destinationPort the probed port
+     * @param sourcePort the port the probe was sent from
+     * @param acknowledgmentNumber the acknowledgment number of the reply
+     * @return {@code true} if the reply acknowledges a probe sent with this cookie
+     */
+    public boolean isValidAcknowledgment(int destinationAddress, int destinationPort, int sourcePort,
+                                         int acknowledgmentNumber) {
+        return acknowledgmentNumber == sequenceNumber(destinationAddress, destinationPort, sourcePort) + 1;
+    }
+
+    private long sipHash24(long message) {
+        long v0 = k0 ^ 0x736f6d6570736575L;
+        long v1 = k1 ^ 0x646f72616e646f6dL;
+        long v2 = k0 ^ 0x6c7967656e657261L;
+        long v3 = k1 ^ 0x7465646279746573L;
+        long[] v = {v0, v1, v2, v3};
+
+        v[3] ^= message;
+        sipRound(v);
+        sipRound(v);
+        v[0] ^= message;
+
+        long last = 8L << 56; // message length, no trailing bytes
+        v[3] ^= last;
+        sipRound(v);
+        sipRound(v);
+        v[0] ^= last;
+
+        v[2] ^= 0xFF;
+        for (int i = 0; i < 4; i++) {
+            sipRound(v);
+        }
+        return v[0] ^ v[1] ^ v[2] ^ v[3];
+    }
+
+    private static void sipRound(long[] v) {
+        v[0] += v[1];
+        v[1] = Long.rotateLeft(v[1], 13);
+        v[1] ^= v[0];
+        v[0] = Long.rotateLeft(v[0], 32);
+        v[2] += v[3];
+        v[3] = Long.rotateLeft(v[3], 16);
+        v[3] ^= v[2];
+        v[0] += v[3];
+        v[3] = Long.rotateLeft(v[3], 21);
+        v[3] ^= v[0];
+        v[2] += v[1];
+        v[1] = Long.rotateLeft(v[1], 17);
+        v[1] ^= v[2];
+        v[2] = Long.rotateLeft(v[2], 32);
+    }
+}
@@ -0,0 +1,169 @@
+package com.nocker.portscanner.packet;
+
+import java.net.Inet4Address;
+
+/**
+ * {@code SynPacketTemplate} is a pre-built IPv4 + TCP SYN packet for a single
+ * (source address, destination address) pair. The headers are laid out and
+ * checksummed once, the same packet {@link Ipv4TcpSynPacket} builds. Each probe
+ * then copies or reuses a buffer from {@link #newPacket()} and calls
+ * {@link #patch(byte[], int, int, int, int)}, which rewrites the ports, sequence
+ * number and IP identification and adjusts both checksums incrementally
+ * (RFC 1624) instead of recomputing them.
+ * <p>
+ * A template is immutable and may be shared, a packet buffer belongs to the
+ * thread that patches and sends it.
+ */
+public final class SynPacketTemplate {
+    private final Inet4Address sourceAddress;
+    private final Inet4Address destinationAddress;
+    private final byte[] template;
+
+    /**
+     * Length of the packet, a 20 byte IPv4 header and a 20 byte TCP header.
+     */
+    public static final int PACKET_LENGTH = 40;
+
+    static final int IP_IDENTIFICATION_OFFSET = 4;
+    static final int IP_CHECKSUM_OFFSET = 10;
+    static final int TCP_OFFSET = 20;
+    static final int TCP_SOURCE_PORT_OFFSET = TCP_OFFSET;
+    static final int TCP_DESTINATION_PORT_OFFSET = TCP_OFFSET + 2;
+    static final int TCP_SEQUENCE_OFFSET = TCP_OFFSET + 4;
+    static final int TCP_CHECKSUM_OFFSET = TCP_OFFSET + 16;
+
+    private static final int IP_VERSION_AND_HEADER_LENGTH = 0x45;
+    private static final int TTL = 64;
+    private static final int PROTOCOL_TCP = 6;
+    private static final int TCP_DATA_OFFSET = 0x50; // 5 words, no options
+    private static final int TCP_FLAG_SYN = 0x02;
+    private static final int WINDOW = 65535;
+
+    public SynPacketTemplate(Inet4Address sourceAddress, Inet4Address destinationAddress) {
+        this.sourceAddress = sourceAddress;
+        this.destinationAddress = destinationAddress;
+        this.template = build(sourceAddress.getAddress(), destinationAddress.getAddress());
+    }
+
+    /**
+     * Creates a packet buffer holding a copy of the template.
+     *
+     * @return a new buffer of {@code PACKET_LENGTH} bytes
+     */
+    public byte[] newPacket() {
+        return template.clone();
+    }
+
+    /**
+     * Rewrites the per-probe fields of a buffer created by {@link #newPacket()}.
+     * The checksums are updated from the values currently in the buffer, so the
+     * same buffer can be patched and sent over and over.
+     *
+     * @param packet the packet buffer to patch
+     * @param sourcePort the TCP source port
+     * @param destinationPort the TCP destination port
+     * @param sequenceNumber the TCP initial sequence number
+     * @param identification the IPv4 identification
+     */
+    public void patch(byte[] packet, int sourcePort, int destinationPort, int sequenceNumber, int identification) {
+        int ipChecksum = readShort(packet, IP_CHECKSUM_OFFSET);
+        ipChecksum = patchWord(packet, IP_IDENTIFICATION_OFFSET, identification, ipChecksum);
+        writeShort(packet, IP_CHECKSUM_OFFSET, ipChecksum);
+
+        int tcpChecksum = readShort(packet, TCP_CHECKSUM_OFFSET);
+        tcpChecksum = patchWord(packet, TCP_SOURCE_PORT_OFFSET, sourcePort, tcpChecksum);
+        tcpChecksum = patchWord(packet, TCP_DESTINATION_PORT_OFFSET, destinationPort, tcpChecksum);
+        tcpChecksum = patchWord(packet, TCP_SEQUENCE_OFFSET, sequenceNumber >>> 16, tcpChecksum);
+        tcpChecksum = patchWord(packet, TCP_SEQUENCE_OFFSET + 2, sequenceNumber, tcpChecksum);
+        writeShort(packet, TCP_CHECKSUM_OFFSET, tcpChecksum);
+    }
+
+    public Inet4Address getSourceAddress() {
+        return sourceAddress;
+    }
+
+    public Inet4Address getDestinationAddress() {
+        return destinationAddress;
+    }
+
+    /**
+     * Updates a one's complement checksum for a single 16-bit word changing from
+     * {@code oldWord} to {@code newWord}, per RFC 1624 eqn. 3:
+     * {@code HC' = ~(~HC + ~m + m')}.
+     *
+     * @param checksum the current checksum
+     * @param oldWord the word covered by the checksum before the change
+     * @param newWord the word after the change
+     * @return the updated checksum
+     */
+    static int updateChecksum(int checksum, int oldWord, int newWord) {
+        int sum = (~checksum & 0xFFFF) + (~oldWord & 0xFFFF) + (newWord & 0xFFFF);
+        sum = (sum & 0xFFFF) + (sum >>> 16);
+        sum = (sum & 0xFFFF) + (sum >>> 16);
+        return ~sum & 0xFFFF;
+    }
+
+    /**
+     * Computes the internet checksum (RFC 1071) of {@code length} bytes, starting
+     * from the given partial sum.
+     */
+    static int checksum(byte[] data, int offset, int length, int initialSum) {
+        long sum = initialSum;
+        for (int i = 0; i + 1 < length; i += 2) {
+            sum += readShort(data, offset + i);
+        }
+        if ((length & 1) != 0) {
+            sum += (data[offset + length - 1] & 0xFF) << 8;
+        }
+        while ((sum >>> 16) != 0) {
+            sum = (sum & 0xFFFF) + (sum >>> 16);
+        }
+        return (int) (~sum & 0xFFFF);
+    }
+
+    /**
+     * Sums the TCP pseudo header of a packet.
+     */
+    static int pseudoHeaderSum(byte[] source, byte[] destination, int tcpLength) {
+        int sum = 0;
+        for (int i = 0; i < 4; i += 2) {
+            sum += ((source[i] & 0xFF) << 8) | (source[i + 1] & 0xFF);
+            sum += ((destination[i] & 0xFF) << 8) | (destination[i + 1] & 0xFF);
+        }
+        return sum + PROTOCOL_TCP + tcpLength;
+    }
+
+    private static byte[] build(byte[] source, byte[] destination) {
+        byte[] packet = new byte[PACKET_LENGTH];
+        packet[0] = (byte) IP_VERSION_AND_HEADER_LENGTH;
+        writeShort(packet, 2, PACKET_LENGTH);
+        packet[8] = (byte) TTL;
+        packet[9] = (byte) PROTOCOL_TCP;
+        System.arraycopy(source, 0, packet, 12, 4);
+        System.arraycopy(destination, 0, packet, 16, 4);
+        writeShort(packet, IP_CHECKSUM_OFFSET, checksum(packet, 0, TCP_OFFSET, 0));
+
+        packet[TCP_OFFSET + 12] = (byte) TCP_DATA_OFFSET;
+        packet[TCP_OFFSET + 13] = (byte) TCP_FLAG_SYN;
+        writeShort(packet, TCP_OFFSET + 14, WINDOW);
+        int tcpLength = PACKET_LENGTH - TCP_OFFSET;
+        writeShort(packet, TCP_CHECKSUM_OFFSET, checksum(packet, TCP_OFFSET, tcpLength,
+                pseudoHeaderSum(source, destination, tcpLength)));
+        return packet;
+    }
+
+    private static int patchWord(byte[] packet, int offset, int newWord, int checksum) {
+        int oldWord = readShort(packet, offset);
+        writeShort(packet, offset, newWord);
+        return updateChecksum(checksum, oldWord, newWord & 0xFFFF);
+    }
+
+    static int readShort(byte[] data, int offset) {
+        return ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+    }
+
+    private static void writeShort(byte[] data, int offset, int value) {
+        data[offset] = (byte) (value >>> 8);
+        data[offset + 1] = (byte) value;
+    }
+}
@@ -10,9 +10,10 @@ public class TcpSynSegment {
     private final TcpPort sourcePort;
     private final TcpPort destinationPort;
     private final Inet4Address destinationAddress;
+    private final int sequenceNumber;
 
     private final static boolean IS_SYN_SCAN = true; // sends syn without completing full TCP 3-way
-    private final static int SEQ_NUMBER = 100; // TCP initial sequence number that's acknowledged
+    public final static int DEFAULT_SEQ_NUMBER = 100; // TCP initial sequence number that's acknowledged
     private final static int ACK_NUMBER = 0;   // ACK field in tcp header - no ack for syn scan
     private final static short WINDOW = (short) 65535; // receivable byte size
     private final static boolean DO_CHECKSUM_AT_BUILD = true; // pcap computes checksum
@@ -22,22 +23,39 @@ public class TcpSynSegment {
     private final static String TCP_PORT_DESTINATION_NAME = "destination_port";
 
     public TcpSynSegment(short sourcePort, short destinationPort, Inet4Address destinationAddress) {
+        this(sourcePort, destinationPort, destinationAddress, DEFAULT_SEQ_NUMBER);
+    }
+
+    /**
+     * Creates a SYN segment carrying the given initial sequence number, for
+     * example one derived from a {@link SynCookie}.
+     */
+    public TcpSynSegment(short sourcePort, short destinationPort, Inet4Address destinationAddress, int sequenceNumber) {
         this.sourcePort = new TcpPort(sourcePort, TCP_PORT_SOURCE_NAME);
         this.destinationPort = new TcpPort(destinationPort, TCP_PORT_DESTINATION_NAME);
         this.destinationAddress = destinationAddress;
+        this.sequenceNumber = sequenceNumber;
     }
 
     public TcpPacket createTcpSynSegment() {
+        return createTcpSynSegment(PortScannerUtil.resolveSourceIpAddress(destinationAddress));
+    }
+
+    /**
+     * Builds the segment for an already resolved source address, which is only
+     * needed for the checksum pseudo header.
+     */
+    public TcpPacket createTcpSynSegment(Inet4Address sourceAddress) {
         return new TcpPacket.Builder()
                 .srcPort(sourcePort)
                 .dstPort(destinationPort)
-                .srcAddr(PortScannerUtil.resolveSourceIpAddress(destinationAddress))
+                .srcAddr(sourceAddress)
                 .dstAddr(destinationAddress)
                 .syn(IS_SYN_SCAN)
                 .window(WINDOW)
                 .correctChecksumAtBuild(DO_CHECKSUM_AT_BUILD)
                 .correctLengthAtBuild(DO_LENGTH_AT_BUILD)
-                .sequenceNumber(SEQ_NUMBER)
+                .sequenceNumber(sequenceNumber)
                 .acknowledgmentNumber(ACK_NUMBER)
                 .build();
     }
@@ -51,4 +69,8 @@ public class TcpSynSegment {
     }
 
     public Inet4Address getDestinationAddress() { return destinationAddress; }
+
+    public int getSequenceNumber() {
+        return sequenceNumber;
+    }
 }
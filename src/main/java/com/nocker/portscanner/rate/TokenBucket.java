@@ -0,0 +1,156 @@
+package com.nocker.portscanner.rate;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@code TokenBucket} paces probes to a fixed rate per second, shared by every
+ * task of every scheduler that holds it.
+ * <p>
+ * Tokens are refilled in batches, once per refill interval, rather than on
+ * every call. The interval is one millisecond, or the time between two tokens
+ * when the rate is below a thousand per second, and the bucket never holds more
+ * than one batch, so probes cannot burst beyond a millisecond's worth. A caller
+ * that finds the bucket empty reserves its token anyway, driving the balance
+ * negative, and parks with {@link LockSupport#parkNanos(Object, long)} until the
+ * batch that covers it is due. Later callers queue behind that reservation,
+ * which keeps probes evenly spaced across threads instead of letting them race
+ * for each refill. {@link #tryAcquire()} never reserves: it takes a token only
+ * when one is left after every reservation, for callers such as hedges that
+ * would rather not send than wait.
+ */
+public final class TokenBucket {
+    private static final TokenBucket UNLIMITED = new TokenBucket();
+
+    private static final long MIN_REFILL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final int ratePerSecond;
+    private final double tokensPerNano;
+    private final long refillIntervalNanos;
+    private final double capacity;
+    private double tokens;
+    private long lastRefillNanos;
+
+    private TokenBucket() {
+        this.ratePerSecond = 0;
+        this.tokensPerNano = 0;
+        this.refillIntervalNanos = 0;
+        this.capacity = 0;
+    }
+
+    /**
+     * Creates a bucket allowing {@code ratePerSecond} permits per second.
+     *
+     * @param ratePerSecond the sustained rate, must be positive
+     */
+    public TokenBucket(int ratePerSecond) {
+        if (ratePerSecond < 1) {
+            throw new IllegalArgumentException("rate must be positive");
+        }
+        this.ratePerSecond = ratePerSecond;
+        this.tokensPerNano = ratePerSecond / (double) TimeUnit.SECONDS.toNanos(1);
+        long nanosPerToken = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        this.refillIntervalNanos = Math.max(MIN_REFILL_INTERVAL_NANOS, nanosPerToken);
+        this.capacity = Math.max(1.0, refillIntervalNanos * tokensPerNano);
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Retrieves a bucket that never blocks, used when no rate is configured.
+     *
+     * @return the unlimited {@code TokenBucket}
+     */
+    public static TokenBucket unlimited() {
+        return UNLIMITED;
+    }
+
+    /**
+     * Blocks until a single probe may be sent.
+     */
+    public void acquire() {
+        acquire(1);
+    }
+
+    /**
+     * Blocks until {@code permits} probes may be sent. An interrupted caller
+     * returns early with its interrupt status set.
+     *
+     * @param permits the number of probes about to be sent
+     */
+    public void acquire(int permits) {
+        if (isUnlimited()) {
+            return;
+        }
+        long deadline;
+        synchronized (this) {
+            deadline = reserve(permits, System.nanoTime());
+        }
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, remaining);
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Takes the token of a single probe if one is available now, without
+     * waiting or reserving.
+     *
+     * @return {@code true} if the probe may be sent
+     */
+    public boolean tryAcquire() {
+        if (isUnlimited()) {
+            return true;
+        }
+        synchronized (this) {
+            refill(System.nanoTime());
+            if (tokens < 1) {
+                return false;
+            }
+            tokens -= 1;
+            return true;
+        }
+    }
+
+    public boolean isUnlimited() {
+        return ratePerSecond == 0;
+    }
+
+    public int getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    /**
+     * Takes {@code permits} tokens and returns the time, on the {@link System#nanoTime()}
+     * clock, at which the caller may proceed.
+     */
+    private long reserve(int permits, long now) {
+        refill(now);
+        tokens -= permits;
+        if (tokens >= 0) {
+            return now;
+        }
+        long deficitNanos = (long) Math.ceil(-tokens / tokensPerNano);
+        long batches = (deficitNanos + refillIntervalNanos - 1) / refillIntervalNanos;
+        return lastRefillNanos + batches * refillIntervalNanos;
+    }
+
+    private void refill(long now) {
+        long elapsed = now - lastRefillNanos;
+        if (elapsed >= refillIntervalNanos) {
+            long refilled = (elapsed / refillIntervalNanos) * refillIntervalNanos;
+            tokens = Math.min(capacity, tokens + refilled * tokensPerNano);
+            lastRefillNanos += refilled;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TokenBucket{" +
+                "ratePerSecond=" + (isUnlimited() ? "unlimited" : ratePerSecond) +
+                '}';
+    }
+}
@@ -0,0 +1,80 @@
+package com.nocker.portscanner.report;
+
+import java.net.Inet4Address;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+
+/**
+ * {@code HostShard} holds the results and the summary of a single host, as
+ * collected by the scheduler lane the host is routed to. Results are added
+ * to the shard of their host while the lane collects them, so a host's
+ * report is complete as soon as its lane finishes and never has to be
+ * regrouped from a combined result list.
+ */
+public class HostShard {
+    private final Inet4Address host;
+    private final List<PortScanResult> results = new ArrayList<>();
+    private final ScanSummary summary;
+    private final boolean retainResults;
+
+    public HostShard(Inet4Address host, ScanSummary summary) {
+        this(host, summary, true);
+    }
+
+    /**
+     * Creates a shard that, unless {@code retainResults} is set, only counts its
+     * host's results in the summary and keeps none of them.
+     */
+    public HostShard(Inet4Address host, ScanSummary summary, boolean retainResults) {
+        this.host = host;
+        this.summary = summary;
+        this.retainResults = retainResults;
+    }
+
+    /**
+     * Adds a result of this shard's host and counts it in the host's summary.
+     * Shards are filled by the single thread dispatching a lane's results.
+     *
+     * @param result the result to add
+     */
+    public void add(PortScanResult result) {
+        if (retainResults) {
+            results.add(result);
+        }
+        summary.update(result);
+    }
+
+    /**
+     * Replaces the filtered results of ports a retry recovered, and moves them
+     * to their new state in the host's summary.
+     *
+     * @param retried the recovered results of this shard's host, keyed by port
+     */
+    public void reclassify(Map<Integer, PortScanResult> retried) {
+        for (PortScanResult result : retried.values()) {
+            summary.reclassify(result);
+        }
+        ListIterator<PortScanResult> iterator = results.listIterator();
+        while (iterator.hasNext()) {
+            PortScanResult result = retried.get(iterator.next().getPort());
+            if (result != null) {
+                iterator.set(result);
+            }
+        }
+    }
+
+    public Inet4Address getHost() {
+        return host;
+    }
+
+    public List<PortScanResult> getResults() {
+        return Collections.unmodifiableList(results);
+    }
+
+    public ScanSummary getSummary() {
+        return summary;
+    }
+}
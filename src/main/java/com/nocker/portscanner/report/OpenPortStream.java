@@ -0,0 +1,38 @@
+package com.nocker.portscanner.report;
+
+import com.nocker.portscanner.PortState;
+
+import java.io.PrintStream;
+import java.util.List;
+
+/**
+ * {@code OpenPortStream} is a {@link ResultSink} printing every open port the
+ * moment its task completes, one {@code host:port open} line each, so open
+ * ports show up long before the scan's report.
+ */
+public class OpenPortStream implements ResultSink {
+    private final List<PrintStream> outs;
+
+    public OpenPortStream(List<PrintStream> outs) {
+        this.outs = outs;
+    }
+
+    @Override
+    public void accept(List<PortScanResult> results) {
+        for (PortScanResult result : results) {
+            if (result.getState() == PortState.OPEN) {
+                String line = result.getHostAddress().getHostAddress() + ":" + result.getPort() + " open";
+                for (PrintStream out : outs) {
+                    out.println(line);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void complete() {
+        for (PrintStream out : outs) {
+            out.flush();
+        }
+    }
+}
@@ -2,17 +2,25 @@ package com.nocker.portscanner.report;
 
 import com.nocker.portscanner.scheduler.PortScanScheduler;
 
-import java.util.List;
+import java.net.Inet4Address;
+import java.util.*;
 
 public class PortScanReport {
     private final PortScanScheduler portScanScheduler;
     private final List<PortScanResult> results;
     private final ScanSummary summary;
+    private final Map<Inet4Address, HostShard> hostShards;
 
     public PortScanReport(PortScanScheduler scheduler, List<PortScanResult> results, ScanSummary summary) {
+        this(scheduler, results, summary, Collections.<Inet4Address, HostShard>emptyMap());
+    }
+
+    public PortScanReport(PortScanScheduler scheduler, List<PortScanResult> results, ScanSummary summary,
+                          Map<Inet4Address, HostShard> hostShards) {
         this.portScanScheduler = scheduler;
         this.results = results;
         this.summary = summary;
+        this.hostShards = hostShards;
     }
 
     public PortScanScheduler getPortScanScheduler() {
@@ -26,4 +34,67 @@ public class PortScanReport {
     public ScanSummary getSummary() {
         return this.summary;
     }
+
+    /**
+     * Retrieves the per-host shards collected by the scheduler, in the order
+     * their hosts first reported a result.
+     *
+     * @return the shards keyed by host, empty when the report was not
+     * produced by a scheduler
+     */
+    public Map<Inet4Address, HostShard> getHostShards() {
+        return this.hostShards;
+    }
+
+    /**
+     * Merges the results of a retry pass into the report. Each recovered port
+     * replaces its filtered result and is moved to its new state in the scan's
+     * summary and the summary of its host's shard. The summaries are stopped
+     * again, so their durations include the retry pass.
+     *
+     * @param retried the results of the ports a retry recovered
+     */
+    public void reclassify(List<PortScanResult> retried) {
+        if (retried.isEmpty()) {
+            return;
+        }
+        Map<Inet4Address, Map<Integer, PortScanResult>> byHost = new HashMap<>();
+        for (PortScanResult result : retried) {
+            byHost.computeIfAbsent(result.getHostAddress(), host -> new HashMap<>()).put(result.getPort(), result);
+            summary.reclassify(result);
+        }
+        ListIterator<PortScanResult> iterator = results.listIterator();
+        while (iterator.hasNext()) {
+            PortScanResult result = iterator.next();
+            Map<Integer, PortScanResult> hostRetried = byHost.get(result.getHostAddress());
+            PortScanResult retriedResult = hostRetried != null ? hostRetried.get(result.getPort()) : null;
+            if (retriedResult != null) {
+                iterator.set(retriedResult);
+            }
+        }
+        summary.stop();
+        for (Map.Entry<Inet4Address, Map<Integer, PortScanResult>> entry : byHost.entrySet()) {
+            HostShard hostShard = hostShards.get(entry.getKey());
+            if (hostShard != null) {
+                hostShard.reclassify(entry.getValue());
+                hostShard.getSummary().stop();
+            }
+        }
+    }
+
+    /**
+     * Retrieves a report narrowed to a single host of this report.
+     *
+     * @param host the host to report on
+     * @return a report of the host's shard, or {@code null} if the host has
+     * no results in this report
+     */
+    public PortScanReport getHostReport(Inet4Address host) {
+        HostShard hostShard = hostShards.get(host);
+        if (hostShard == null) {
+            return null;
+        }
+        return new PortScanReport(portScanScheduler, hostShard.getResults(), hostShard.getSummary(),
+                Collections.singletonMap(host, hostShard));
+    }
 }
@@ -0,0 +1,30 @@
+package com.nocker.portscanner.report;
+
+import java.util.List;
+
+/**
+ * {@code ResultSink} consumes the results of a scan while it runs. A scheduler
+ * hands every sink registered with it the results of each task as soon as the
+ * task completes, rather than once the whole scan is collected.
+ * <p>
+ * Sinks of a scheduler are called from a single dispatching thread, one batch
+ * at a time, so a sink does not have to be thread-safe. A slow sink holds up
+ * the dispatcher and, once the scheduler's pipeline is full, the tasks
+ * producing results.
+ */
+@FunctionalInterface
+public interface ResultSink {
+
+    /**
+     * Consumes the results of a completed task.
+     *
+     * @param results the task's results, never empty
+     */
+    void accept(List<PortScanResult> results);
+
+    /**
+     * Called once after the last batch of the scan has been accepted.
+     */
+    default void complete() {
+    }
+}
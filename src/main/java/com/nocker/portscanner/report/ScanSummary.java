@@ -33,6 +33,8 @@ public class ScanSummary {
     private final long startTime;
     private long stopTime;
     private final long durationMillis;
+    private volatile int effectiveConcurrency = 0;
+    private final ConcurrentHashMap<String, Long> unresponsiveHosts = new ConcurrentHashMap<>();
 
     private static final String NEW_LINE = "\n";
 
@@ -104,6 +106,51 @@ public class ScanSummary {
         }
     }
 
+    /**
+     * Moves a port counted as filtered to the state a retry found it in.
+     * The total number of ports scanned is unchanged, the port was
+     * already counted once. Retries that still found no answer leave
+     * the summary as it is.
+     *
+     * @param result the retry's result for a port this summary counted
+     *               as filtered
+     */
+    public void reclassify(PortScanResult result) {
+        PortState state = result.getState();
+        if (!state.equals(OPEN) && !state.equals(CLOSED)) {
+            return;
+        }
+        filteredPortsCount.decrementAndGet();
+        if (state.equals(OPEN)) {
+            openHostPorts.computeIfAbsent(result.getHostAddress().getHostAddress(), host -> ConcurrentHashMap.newKeySet())
+                    .add(result.getPort());
+            openPortsCount.incrementAndGet();
+        } else {
+            closedPortsCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Adds the counts, open ports and unresponsive hosts of another
+     * summary to this one, such as the summary of a single host scanned
+     * as part of a larger scan. The effective concurrency kept is the
+     * highest of the two.
+     *
+     * @param other the summary to fold into this one
+     */
+    public void merge(ScanSummary other) {
+        openPortsCount.addAndGet(other.getOpenPortsCount());
+        filteredPortsCount.addAndGet(other.getFilteredPortsCount());
+        closedPortsCount.addAndGet(other.getClosedPortsCount());
+        totalPortsScanned.addAndGet(other.getTotalPortsScanned());
+        for (Map.Entry<String, Set<Integer>> entry : other.getOpenHostPorts().entrySet()) {
+            openHostPorts.computeIfAbsent(entry.getKey(), host -> ConcurrentHashMap.newKeySet())
+                    .addAll(entry.getValue());
+        }
+        unresponsiveHosts.putAll(other.getUnresponsiveHosts());
+        effectiveConcurrency = Math.max(effectiveConcurrency, other.getEffectiveConcurrency());
+    }
+
     /**
      * Calculates and returns the duration of the scan
      * in milliseconds. If the duration has been
@@ -131,6 +178,50 @@ public class ScanSummary {
         this.stopTime = System.nanoTime();
     }
 
+    /**
+     * Records the number of probes in flight an adaptive concurrency
+     * controller settled on during the scan.
+     *
+     * @param effectiveConcurrency the settled concurrency, {@code 0}
+     *                             if concurrency was fixed
+     */
+    public void setEffectiveConcurrency(int effectiveConcurrency) {
+        this.effectiveConcurrency = effectiveConcurrency;
+    }
+
+    /**
+     * Retrieves the number of probes in flight an adaptive concurrency
+     * controller settled on during the scan.
+     *
+     * @return the settled concurrency, or {@code 0} if concurrency was
+     * fixed by the user
+     */
+    public int getEffectiveConcurrency() {
+        return effectiveConcurrency;
+    }
+
+    /**
+     * Records a host that answered none of its first probes and was
+     * abandoned, along with the number of its ports that were never
+     * probed as a result.
+     *
+     * @param host the address of the abandoned host
+     * @param skippedPorts the ports of the host left unprobed
+     */
+    public void markUnresponsive(String host, long skippedPorts) {
+        unresponsiveHosts.put(host, skippedPorts);
+    }
+
+    /**
+     * Retrieves the hosts abandoned as unresponsive during the scan.
+     *
+     * @return a map of host addresses to the number of their ports
+     * left unprobed, empty if no host was abandoned
+     */
+    public Map<String, Long> getUnresponsiveHosts() {
+        return unresponsiveHosts;
+    }
+
     /**
      * Retrieves the count of ports identified as open during
      * the scan.
@@ -250,8 +341,18 @@ public class ScanSummary {
                 .append(String.format("Closed Ports Count: %d", closedPortsCount.get()))
                 .append(NEW_LINE)
                 .append(String.format("Filtered Ports Count: %d", filteredPortsCount.get()))
-                .append(NEW_LINE)
-                .append("Breakdown of Open Ports by host: ").append(NEW_LINE);
+                .append(NEW_LINE);
+        if (effectiveConcurrency > 0) {
+            sb.append(String.format("Effective Concurrency: %d", effectiveConcurrency)).append(NEW_LINE);
+        }
+        if (!unresponsiveHosts.isEmpty()) {
+            sb.append(String.format("Unresponsive Hosts: %d", unresponsiveHosts.size())).append(NEW_LINE);
+            for (Map.Entry<String, Long> entry : unresponsiveHosts.entrySet()) {
+                sb.append(String.format("Host: %s    [%d ports skipped]", entry.getKey(), entry.getValue()))
+                        .append(NEW_LINE);
+            }
+        }
+        sb.append("Breakdown of Open Ports by host: ").append(NEW_LINE);
 
         for (Map.Entry<String, Set<Integer>> entry : openHostPorts.entrySet()) {
             sb.append(String.format("Host: %s    [%s]", entry.getKey(), entry.getValue())).append(NEW_LINE);
@@ -265,13 +366,14 @@ public class ScanSummary {
      * initiated the scan, the command used, the duration of the scan, the
      * scheduler ID, the total number of ports scanned, and the counts of
      * open, closed, and filtered ports. It also includes the mapping of hosts
-     * to their open ports.
+     * to their open ports, any effective concurrency and any hosts abandoned
+     * as unresponsive.
      *
      * @return a {@link SummaryNode} object encapsulating the details of the
      * scan summary
      */
     public SummaryNode toSummaryNode() {
-        return new SummaryNode(
+        SummaryNode summaryNode = new SummaryNode(
                 OperatingSystemUtils.currentUser(),
                 invocationRequest.getCommandLineInput().getCommand(),
                 durationMillis(),
@@ -282,5 +384,10 @@ public class ScanSummary {
                 filteredPortsCount.get(),
                 openHostPorts
         );
+        summaryNode.setEffectiveConcurrency(effectiveConcurrency);
+        if (!unresponsiveHosts.isEmpty()) {
+            summaryNode.setUnresponsiveHosts(unresponsiveHosts);
+        }
+        return summaryNode;
     }
 }
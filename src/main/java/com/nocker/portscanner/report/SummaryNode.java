@@ -14,6 +14,8 @@ public class SummaryNode {
     private int closedPortsCount;
     private int filteredPortsCount;
     private Map<String, Set<Integer>> openPortsByHost;
+    private int effectiveConcurrency;
+    private Map<String, Long> unresponsiveHosts;
 
     public SummaryNode() {}
 
@@ -108,4 +110,20 @@ public class SummaryNode {
     public void setOpenPortsByHost(Map<String, Set<Integer>> openPortsByHost) {
         this.openPortsByHost = openPortsByHost;
     }
+
+    public int getEffectiveConcurrency() {
+        return effectiveConcurrency;
+    }
+
+    public void setEffectiveConcurrency(int effectiveConcurrency) {
+        this.effectiveConcurrency = effectiveConcurrency;
+    }
+
+    public Map<String, Long> getUnresponsiveHosts() {
+        return unresponsiveHosts;
+    }
+
+    public void setUnresponsiveHosts(Map<String, Long> unresponsiveHosts) {
+        this.unresponsiveHosts = unresponsiveHosts;
+    }
 }
@@ -0,0 +1,42 @@
+package com.nocker.portscanner.route;
+
+import org.pcap4j.core.PcapNetworkInterface;
+
+import java.net.Inet4Address;
+
+/**
+ * {@code ResolvedRoute} is the outcome of routing a destination: the local
+ * source address probes to it are sent from and the {@link PcapNetworkInterface}
+ * they leave through.
+ */
+public final class ResolvedRoute {
+    private final Inet4Address sourceAddress;
+    private final PcapNetworkInterface networkInterface;
+    private final long expiresAtMillis;
+
+    ResolvedRoute(Inet4Address sourceAddress, PcapNetworkInterface networkInterface, long expiresAtMillis) {
+        this.sourceAddress = sourceAddress;
+        this.networkInterface = networkInterface;
+        this.expiresAtMillis = expiresAtMillis;
+    }
+
+    public Inet4Address getSourceAddress() {
+        return sourceAddress;
+    }
+
+    public PcapNetworkInterface getNetworkInterface() {
+        return networkInterface;
+    }
+
+    boolean isExpired(long nowMillis) {
+        return nowMillis >= expiresAtMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "ResolvedRoute{" +
+                "sourceAddress=" + sourceAddress.getHostAddress() +
+                ", networkInterface=" + networkInterface.getName() +
+                '}';
+    }
+}
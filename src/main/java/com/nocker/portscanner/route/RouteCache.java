@@ -0,0 +1,256 @@
+package com.nocker.portscanner.route;
+
+import com.nocker.portscanner.PortScannerUtil;
+import org.pcap4j.core.PcapAddress;
+import org.pcap4j.core.PcapNativeException;
+import org.pcap4j.core.PcapNetworkInterface;
+import org.pcap4j.core.Pcaps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@code RouteCache} resolves the source address and {@link PcapNetworkInterface}
+ * of a destination once and hands the result to every task and scheduler that
+ * probes it, until the entry's time to live elapses.
+ * <p>
+ * On Linux the destination is matched against {@code /proc/net/route} (see
+ * {@link RouteTable}), which is itself re-read once per time to live, together
+ * with the addresses of this host. Routes are resolved once per route rather than
+ * once per destination, and the capture interface once per interface name, so a
+ * scan of many destinations behind a few routes looks each interface up once.
+ * The source address is the interface address on the subnet of the route's next
+ * hop. Loopback and local destinations, destinations no route matches and other
+ * platforms fall back to a connected {@code DatagramSocket}, with the interface
+ * lookup for the resulting source address cached so that
+ * {@link Pcaps#findAllDevs()} runs once per source rather than once per probe.
+ * Those routes are cached per destination, up to
+ * {@link #MAX_CACHED_DESTINATIONS}, and pruned once expired.
+ */
+public final class RouteCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RouteCache.class);
+
+    /**
+     * Default time to live of a resolved route, in milliseconds.
+     */
+    public static final long DEFAULT_TTL_MILLIS = 30_000L;
+
+    /**
+     * Most destinations whose socket resolved routes are cached at once.
+     */
+    public static final int MAX_CACHED_DESTINATIONS = 65_536;
+
+    /**
+     * Routes resolved through sockets between two prunings of expired ones.
+     */
+    private static final int PRUNE_INTERVAL = 4_096;
+
+    private static final RouteCache SHARED = new RouteCache(DEFAULT_TTL_MILLIS);
+
+    private final long ttlMillis;
+    private final ConcurrentHashMap<Inet4Address, ResolvedRoute> routes = new ConcurrentHashMap<>();
+    // keyed by the routes and interfaces of the current table, cleared when the table is re-read
+    private final ConcurrentHashMap<RouteTable.Route, ResolvedRoute> routesByTableRoute = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, PcapNetworkInterface> interfacesByName = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Inet4Address, PcapNetworkInterface> interfacesBySource = new ConcurrentHashMap<>();
+    private final AtomicLong socketResolutions = new AtomicLong();
+    private volatile RouteTable routeTable;
+    private volatile Set<InetAddress> localAddresses = Collections.emptySet();
+    private volatile long routeTableExpiresAtMillis;
+
+    public RouteCache(long ttlMillis) {
+        if (ttlMillis < 1) {
+            throw new IllegalArgumentException("route time to live must be positive");
+        }
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Retrieves the route cache shared by every scan of this process.
+     *
+     * @return the shared {@code RouteCache}
+     */
+    public static RouteCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Resolves the route to a destination, from the cache when a live entry exists.
+     *
+     * @param destination the destination address
+     * @return the resolved route or {@code null} when no capture interface owns
+     * the source address of the destination
+     * @throws PcapNativeException if the capture interfaces cannot be listed
+     * @throws RuntimeException if the source address cannot be resolved
+     */
+    public ResolvedRoute resolve(Inet4Address destination) throws PcapNativeException {
+        long now = System.currentTimeMillis();
+        ResolvedRoute route = resolveFromRouteTable(destination, now);
+        if (route != null) {
+            return route;
+        }
+        route = routes.get(destination);
+        if (route != null && !route.isExpired(now)) {
+            return route;
+        }
+        route = resolveFromSocket(destination, now);
+        if (route != null) {
+            cacheDestination(destination, route, now);
+        }
+        return route;
+    }
+
+    /**
+     * Drops every cached route and interface, for example after the host's
+     * network configuration changed.
+     */
+    public void invalidate() {
+        routes.clear();
+        routesByTableRoute.clear();
+        interfacesByName.clear();
+        interfacesBySource.clear();
+        routeTable = null;
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    private ResolvedRoute resolveFromRouteTable(Inet4Address destination, long now) throws PcapNativeException {
+        if (destination.isLoopbackAddress()) {
+            return null;
+        }
+        RouteTable table = currentRouteTable(now);
+        if (localAddresses.contains(destination)) {
+            return null;
+        }
+        RouteTable.Route route = table.lookup(destination);
+        if (route == null) {
+            return null;
+        }
+        ResolvedRoute resolved = routesByTableRoute.get(route);
+        if (resolved != null) {
+            return resolved;
+        }
+        PcapNetworkInterface networkInterface = interfaceByName(route.getInterfaceName());
+        if (networkInterface == null) {
+            return null;
+        }
+        int nextHop = route.getGateway() != 0 ? route.getGateway() : toInt(destination);
+        Inet4Address sourceAddress = selectSourceAddress(networkInterface.getAddresses(), nextHop);
+        if (sourceAddress == null) {
+            return null;
+        }
+        resolved = new ResolvedRoute(sourceAddress, networkInterface, routeTableExpiresAtMillis);
+        routesByTableRoute.put(route, resolved);
+        return resolved;
+    }
+
+    private PcapNetworkInterface interfaceByName(String name) throws PcapNativeException {
+        PcapNetworkInterface networkInterface = interfacesByName.get(name);
+        if (networkInterface == null) {
+            networkInterface = Pcaps.getDevByName(name);
+            if (networkInterface != null) {
+                interfacesByName.put(name, networkInterface);
+            }
+        }
+        return networkInterface;
+    }
+
+    /**
+     * Picks the source address of a route: the IPv4 address of the interface
+     * whose subnet holds the route's next hop, the gateway or, on link, the
+     * destination itself, and the interface's first IPv4 address when no subnet
+     * holds it.
+     *
+     * @param addresses the addresses of the interface
+     * @param nextHop the next hop as an {@code int} in network byte order
+     * @return the source address, or {@code null} when the interface has no IPv4 address
+     */
+    static Inet4Address selectSourceAddress(List<PcapAddress> addresses, int nextHop) {
+        Inet4Address first = null;
+        for (PcapAddress address : addresses) {
+            if (!(address.getAddress() instanceof Inet4Address)) {
+                continue;
+            }
+            Inet4Address candidate = (Inet4Address) address.getAddress();
+            if (first == null) {
+                first = candidate;
+            }
+            if (address.getNetmask() instanceof Inet4Address) {
+                int mask = toInt((Inet4Address) address.getNetmask());
+                if ((toInt(candidate) & mask) == (nextHop & mask)) {
+                    return candidate;
+                }
+            }
+        }
+        return first;
+    }
+
+    private ResolvedRoute resolveFromSocket(Inet4Address destination, long now) throws PcapNativeException {
+        Inet4Address sourceAddress = PortScannerUtil.resolveSourceIpAddress(destination);
+        PcapNetworkInterface networkInterface = interfacesBySource.get(sourceAddress);
+        if (networkInterface == null) {
+            networkInterface = PortScannerUtil.resolveNetworkInterfaceFromSourceIp(sourceAddress);
+            if (networkInterface == null) {
+                return null;
+            }
+            interfacesBySource.put(sourceAddress, networkInterface);
+        }
+        return new ResolvedRoute(sourceAddress, networkInterface, now + ttlMillis);
+    }
+
+    /**
+     * Caches a route resolved through a socket, pruning expired routes every
+     * {@code PRUNE_INTERVAL} resolutions and caching nothing more while
+     * {@link #MAX_CACHED_DESTINATIONS} live routes are cached.
+     */
+    private void cacheDestination(Inet4Address destination, ResolvedRoute route, long now) {
+        if (socketResolutions.incrementAndGet() % PRUNE_INTERVAL == 0) {
+            routes.values().removeIf(cached -> cached.isExpired(now));
+        }
+        if (routes.size() < MAX_CACHED_DESTINATIONS) {
+            routes.put(destination, route);
+        }
+    }
+
+    private RouteTable currentRouteTable(long now) {
+        RouteTable table = routeTable;
+        if (table == null || now >= routeTableExpiresAtMillis) {
+            table = RouteTable.read();
+            localAddresses = readLocalAddresses();
+            routesByTableRoute.clear();
+            interfacesByName.clear();
+            interfacesBySource.clear();
+            routeTable = table;
+            routeTableExpiresAtMillis = now + ttlMillis;
+            LOGGER.debug("Loaded {} routes from {}", table.getRoutes().size(), RouteTable.PROC_NET_ROUTE);
+        }
+        return table;
+    }
+
+    private static Set<InetAddress> readLocalAddresses() {
+        Set<InetAddress> addresses = new HashSet<>();
+        try {
+            Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+            while (interfaces != null && interfaces.hasMoreElements()) {
+                addresses.addAll(Collections.list(interfaces.nextElement().getInetAddresses()));
+            }
+        } catch (SocketException e) {
+            LOGGER.debug("Cannot list the addresses of this host: {}", e.getMessage());
+        }
+        return addresses;
+    }
+
+    private static int toInt(Inet4Address address) {
+        byte[] bytes = address.getAddress();
+        return ((bytes[0] & 0xFF) << 24) | ((bytes[1] & 0xFF) << 16) | ((bytes[2] & 0xFF) << 8) | (bytes[3] & 0xFF);
+    }
+}
@@ -0,0 +1,184 @@
+package com.nocker.portscanner.route;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@code RouteTable} is a snapshot of the kernel's IPv4 main routing table as
+ * published in {@code /proc/net/route} on Linux. Addresses in that file are
+ * hexadecimal in host (little-endian) byte order.
+ * <p>
+ * Only the main table is present, so loopback and local addresses never
+ * match a route here and must be resolved by other means.
+ */
+public final class RouteTable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RouteTable.class);
+
+    /**
+     * Location of the routing table on Linux.
+     */
+    public static final Path PROC_NET_ROUTE = Paths.get("/proc/net/route");
+
+    private static final int RTF_UP = 0x0001;
+
+    private final List<Route> routes;
+
+    RouteTable(List<Route> routes) {
+        this.routes = Collections.unmodifiableList(routes);
+    }
+
+    /**
+     * Reads the routing table of this host.
+     *
+     * @return the current routing table, empty when {@code /proc/net/route}
+     * does not exist or cannot be read
+     */
+    public static RouteTable read() {
+        if (!Files.isReadable(PROC_NET_ROUTE)) {
+            return new RouteTable(Collections.<Route>emptyList());
+        }
+        try {
+            return parse(Files.readAllLines(PROC_NET_ROUTE, StandardCharsets.US_ASCII));
+        } catch (IOException e) {
+            LOGGER.warn("Failed to read {}: {}", PROC_NET_ROUTE, e.getMessage());
+            return new RouteTable(Collections.<Route>emptyList());
+        }
+    }
+
+    /**
+     * Parses the lines of {@code /proc/net/route}. The header line and routes
+     * that are not up are skipped, malformed lines are ignored.
+     *
+     * @param lines the lines of the file, header included
+     * @return the parsed routing table
+     */
+    public static RouteTable parse(List<String> lines) {
+        List<Route> routes = new ArrayList<>();
+        for (String line : lines) {
+            String[] fields = line.trim().split("\\s+");
+            if (fields.length < 8 || fields[0].equals("Iface")) {
+                continue;
+            }
+            try {
+                int flags = Integer.parseInt(fields[3], 16);
+                if ((flags & RTF_UP) == 0) {
+                    continue;
+                }
+                routes.add(new Route(
+                        fields[0],
+                        parseAddress(fields[1]),
+                        parseAddress(fields[2]),
+                        parseAddress(fields[7]),
+                        Integer.parseInt(fields[6])
+                ));
+            } catch (NumberFormatException e) {
+                LOGGER.debug("Skipping malformed route: {}", line);
+            }
+        }
+        return new RouteTable(routes);
+    }
+
+    /**
+     * Finds the route to a destination by longest prefix match, the lowest
+     * metric wins between routes of equal prefix length.
+     *
+     * @param destination the destination address
+     * @return the matching route or {@code null} when no route matches
+     */
+    public Route lookup(Inet4Address destination) {
+        byte[] bytes = destination.getAddress();
+        int address = ((bytes[0] & 0xFF) << 24) | ((bytes[1] & 0xFF) << 16) | ((bytes[2] & 0xFF) << 8) | (bytes[3] & 0xFF);
+        Route best = null;
+        for (Route route : routes) {
+            if ((address & route.getMask()) != route.getDestination()) {
+                continue;
+            }
+            if (best == null || route.getPrefixLength() > best.getPrefixLength()
+                    || (route.getPrefixLength() == best.getPrefixLength() && route.getMetric() < best.getMetric())) {
+                best = route;
+            }
+        }
+        return best;
+    }
+
+    public List<Route> getRoutes() {
+        return routes;
+    }
+
+    public boolean isEmpty() {
+        return routes.isEmpty();
+    }
+
+    private static int parseAddress(String hex) {
+        return Integer.reverseBytes((int) Long.parseLong(hex, 16));
+    }
+
+    /**
+     * A single route, addresses are {@code int}s in network byte order.
+     */
+    public static final class Route {
+        private final String interfaceName;
+        private final int destination;
+        private final int gateway;
+        private final int mask;
+        private final int metric;
+
+        Route(String interfaceName, int destination, int gateway, int mask, int metric) {
+            this.interfaceName = interfaceName;
+            this.destination = destination;
+            this.gateway = gateway;
+            this.mask = mask;
+            this.metric = metric;
+        }
+
+        public String getInterfaceName() {
+            return interfaceName;
+        }
+
+        public int getDestination() {
+            return destination;
+        }
+
+        public int getGateway() {
+            return gateway;
+        }
+
+        public int getMask() {
+            return mask;
+        }
+
+        public int getMetric() {
+            return metric;
+        }
+
+        public int getPrefixLength() {
+            return Integer.bitCount(mask);
+        }
+
+        @Override
+        public String toString() {
+            return "Route{" +
+                    "interfaceName='" + interfaceName + '\'' +
+                    ", destination=" + toText(destination) +
+                    ", gateway=" + toText(gateway) +
+                    ", prefixLength=" + getPrefixLength() +
+                    ", metric=" + metric +
+                    '}';
+        }
+
+        private static String toText(int address) {
+            return ((address >>> 24) & 0xFF) + "." + ((address >>> 16) & 0xFF) + "."
+                    + ((address >>> 8) & 0xFF) + "." + (address & 0xFF);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.nocker.portscanner.scheduler;
+
+import com.nocker.portscanner.PortState;
+import com.nocker.portscanner.report.PortScanResult;
+import com.nocker.portscanner.report.ResultSink;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.Inet4Address;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+
+/**
+ * {@code FilteredRetryStage} gives probes that went unanswered a second chance.
+ * Registered as a {@link ResultSink} of a scheduler, it notes the (host, port)
+ * pairs of every {@link PortState#FILTERED} result of the primary sweep. Once
+ * the sweep is collected, {@link #run(int, BiFunction)} re-probes only those
+ * pairs, up to {@code retries} times, on a {@link ScanJob} of the shared worker
+ * pool.
+ * <p>
+ * Each attempt waits an exponentially growing backoff first, so a host that
+ * dropped probes under load has time to recover. A pair that answers
+ * {@link PortState#OPEN} or {@link PortState#CLOSED} is recovered and not
+ * probed again. Pairs still unanswered after the last attempt stay filtered.
+ */
+public class FilteredRetryStage implements ResultSink {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FilteredRetryStage.class);
+
+    /**
+     * Most retries a scan may ask for.
+     */
+    public static final int MAX_RETRIES = 5;
+
+    /**
+     * Backoff before the first retry, doubled for every retry after it.
+     */
+    public static final long BASE_BACKOFF_MILLIS = 100L;
+
+    /**
+     * Longest backoff before a retry.
+     */
+    public static final long MAX_BACKOFF_MILLIS = 1600L;
+
+    /**
+     * Most ports of a host re-probed by a single retry task.
+     */
+    public static final int PORTS_PER_TASK = 256;
+
+    private final int retries;
+    private final Map<Inet4Address, Set<Integer>> filtered = new LinkedHashMap<>();
+
+    public FilteredRetryStage(int retries) {
+        if (retries < 0) {
+            throw new IllegalArgumentException("retries must not be negative");
+        }
+        this.retries = retries;
+    }
+
+    @Override
+    public void accept(List<PortScanResult> results) {
+        for (PortScanResult result : results) {
+            if (result.getState() == PortState.FILTERED) {
+                filtered.computeIfAbsent(result.getHostAddress(), host -> new TreeSet<>()).add(result.getPort());
+            }
+        }
+    }
+
+    /**
+     * Re-probes the filtered pairs of the primary sweep. Only call once the
+     * pipeline feeding this stage is closed.
+     *
+     * @param concurrency the number of retry tasks to run at once
+     * @param retryTask creates the task probing the given ports of a host
+     * @return the results of every pair a retry recovered, in the order recovered
+     */
+    public List<PortScanResult> run(int concurrency, BiFunction<Inet4Address, List<Integer>,
+            Callable<List<PortScanResult>>> retryTask) {
+        List<PortScanResult> recovered = new ArrayList<>();
+        for (int attempt = 1; attempt <= retries && !filtered.isEmpty(); attempt++) {
+            if (!backOff(attempt)) {
+                break;
+            }
+            int before = recovered.size();
+            for (PortScanResult result : probe(concurrency, retryTask)) {
+                PortState state = result.getState();
+                if (state == PortState.OPEN || state == PortState.CLOSED) {
+                    recovered.add(result);
+                    Set<Integer> ports = filtered.get(result.getHostAddress());
+                    if (ports != null && ports.remove(result.getPort()) && ports.isEmpty()) {
+                        filtered.remove(result.getHostAddress());
+                    }
+                }
+            }
+            LOGGER.debug("Retry {} of {} recovered {} ports, {} still filtered", attempt, retries,
+                    recovered.size() - before, getFilteredCount());
+        }
+        return recovered;
+    }
+
+    /**
+     * Stops retrying the filtered ports of a host, such as one already given
+     * up on as unresponsive.
+     *
+     * @param host the host to forget
+     */
+    public void forget(Inet4Address host) {
+        filtered.remove(host);
+    }
+
+    /**
+     * Retrieves the number of pairs still filtered.
+     *
+     * @return the pairs that no probe has answered yet
+     */
+    public int getFilteredCount() {
+        int count = 0;
+        for (Set<Integer> ports : filtered.values()) {
+            count += ports.size();
+        }
+        return count;
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    /**
+     * Retrieves the backoff before a retry.
+     *
+     * @param attempt the retry, starting at {@code 1}
+     * @return the backoff in milliseconds
+     */
+    static long backoffMillis(int attempt) {
+        int shift = Math.min(attempt - 1, 30);
+        return Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << shift);
+    }
+
+    private static boolean backOff(int attempt) {
+        try {
+            Thread.sleep(backoffMillis(attempt));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private List<PortScanResult> probe(int concurrency, BiFunction<Inet4Address, List<Integer>,
+            Callable<List<PortScanResult>>> retryTask) {
+        ScanJob job = SharedWorkerPool.shared().newJob(concurrency);
+        List<Future<List<PortScanResult>>> futures = new ArrayList<>();
+        List<PortScanResult> results = new ArrayList<>();
+        try {
+            for (Map.Entry<Inet4Address, Set<Integer>> entry : filtered.entrySet()) {
+                List<Integer> ports = new ArrayList<>(entry.getValue());
+                for (int from = 0; from < ports.size(); from += PORTS_PER_TASK) {
+                    List<Integer> chunk = new ArrayList<>(ports.subList(from, Math.min(ports.size(), from + PORTS_PER_TASK)));
+                    futures.add(job.submit(retryTask.apply(entry.getKey(), chunk)));
+                }
+            }
+            for (Future<List<PortScanResult>> future : futures) {
+                try {
+                    results.addAll(future.get());
+                } catch (ExecutionException e) {
+                    LOGGER.warn("Retry task failed: {}", e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            job.shutdownNow();
+        }
+        return results;
+    }
+}
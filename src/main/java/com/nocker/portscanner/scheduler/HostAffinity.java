@@ -0,0 +1,44 @@
+package com.nocker.portscanner.scheduler;
+
+import java.net.Inet4Address;
+
+/**
+ * {@code HostAffinity} routes a host to one of a fixed number of scheduler
+ * lanes. The lane depends only on the host's address and the number of
+ * lanes, so every task of a host lands on the same lane and the lane can
+ * keep the host's results together.
+ */
+public final class HostAffinity {
+
+    private HostAffinity() {
+    }
+
+    /**
+     * Computes the lane of a host.
+     *
+     * @param host the host address
+     * @param lanes the number of lanes, must be positive
+     * @return a lane in {@code [0, lanes)}
+     */
+    public static int laneOf(Inet4Address host, int lanes) {
+        if (lanes < 1) {
+            throw new IllegalArgumentException("lanes must be positive");
+        }
+        byte[] bytes = host.getAddress();
+        int address = ((bytes[0] & 0xFF) << 24) | ((bytes[1] & 0xFF) << 16) | ((bytes[2] & 0xFF) << 8) | (bytes[3] & 0xFF);
+        return Math.floorMod(mix(address), lanes);
+    }
+
+    /**
+     * The 32-bit finalizer of MurmurHash3, so that neighbouring addresses
+     * spread across lanes instead of following the last octet.
+     */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -0,0 +1,137 @@
+package com.nocker.portscanner.scheduler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.Inet4Address;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * {@code HostScanPipeline} scans many hosts as a pipeline rather than as one
+ * scheduler fed every host's chunks and regrouped at the end. A fixed number of
+ * lanes pull the next block of consecutive hosts from a lazily generated stream
+ * of hosts, scan it and emit its results, then pull the next. So up to
+ * {@code hostsInFlight} blocks are scanned at once, a block's results are emitted
+ * as soon as that block is done, and hosts are generated no faster than they are
+ * scanned.
+ * <p>
+ * With {@link #runBlocks}, each block is scanned by a scheduler of its own, as
+ * one permuted space of its (host, port) pairs, so its probes are scattered
+ * across its hosts and a stateless sweep waits out its reply timeout once per
+ * block rather than once per host. The scanner sizes blocks at
+ * {@code PortScanner.HOSTS_PER_BLOCK} hosts, or
+ * {@code PortScanner.STATELESS_HOSTS_PER_BLOCK} for a stateless sweep. The
+ * scheduler's concurrency is a per-block cap, and the ports of every block in
+ * flight run on the workers of the {@link SharedWorkerPool} across all cores.
+ * {@link #run} is the special case of blocks of a single host.
+ * <p>
+ * Lanes are threads of their own, not pool workers, because they block while
+ * their block's scheduler is collected.
+ */
+public class HostScanPipeline {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HostScanPipeline.class);
+
+    private final int hostsInFlight;
+    private final Object emitLock = new Object();
+
+    public HostScanPipeline(int hostsInFlight) {
+        if (hostsInFlight < 1) {
+            throw new IllegalArgumentException("hosts in flight must be positive");
+        }
+        this.hostsInFlight = hostsInFlight;
+    }
+
+    /**
+     * Scans every host the iterator yields and returns once each of them has
+     * been emitted. A host whose scan fails is logged and skipped.
+     *
+     * @param hosts the hosts to scan, only ever read by one lane at a time
+     * @param scanHost scans a single host, called on a lane, several at once
+     * @param emit receives each host's result in the order hosts finish, one at a time
+     * @param <R> the result of scanning a host
+     * @return the number of hosts emitted
+     */
+    public <R> int run(Iterator<Inet4Address> hosts, Function<Inet4Address, R> scanHost,
+                       BiConsumer<Inet4Address, R> emit) {
+        return runBlocks(hosts, 1, block -> scanHost.apply(block.get(0)),
+                (block, result) -> emit.accept(block.get(0), result));
+    }
+
+    /**
+     * Scans every host the iterator yields, a block of consecutive hosts at a
+     * time per lane, and returns once each block has been emitted. A block whose
+     * scan fails is logged and skipped.
+     *
+     * @param hosts the hosts to scan, only ever read by one lane at a time
+     * @param hostsPerBlock the most hosts of a block, the last block may have fewer
+     * @param scanBlock scans a block of hosts, called on a lane, several at once
+     * @param emit receives each block's result in the order blocks finish, one at a time
+     * @param <R> the result of scanning a block
+     * @return the number of hosts emitted
+     */
+    public <R> int runBlocks(Iterator<Inet4Address> hosts, int hostsPerBlock,
+                             Function<List<Inet4Address>, R> scanBlock, BiConsumer<List<Inet4Address>, R> emit) {
+        if (hostsPerBlock < 1) {
+            throw new IllegalArgumentException("hosts per block must be positive");
+        }
+        AtomicInteger emitted = new AtomicInteger();
+        Thread[] lanes = new Thread[hostsInFlight];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Thread(() -> drain(hosts, hostsPerBlock, scanBlock, emit, emitted),
+                    "nocker-host-lane-" + i);
+            lanes[i].setDaemon(true);
+            lanes[i].start();
+        }
+        try {
+            for (Thread lane : lanes) {
+                lane.join();
+            }
+        } catch (InterruptedException e) {
+            for (Thread lane : lanes) {
+                lane.interrupt();
+            }
+            Thread.currentThread().interrupt();
+        }
+        return emitted.get();
+    }
+
+    public int getHostsInFlight() {
+        return hostsInFlight;
+    }
+
+    private <R> void drain(Iterator<Inet4Address> hosts, int hostsPerBlock, Function<List<Inet4Address>, R> scanBlock,
+                           BiConsumer<List<Inet4Address>, R> emit, AtomicInteger emitted) {
+        List<Inet4Address> block;
+        while (!Thread.currentThread().isInterrupted() && !(block = next(hosts, hostsPerBlock)).isEmpty()) {
+            try {
+                R result = scanBlock.apply(block);
+                synchronized (emitLock) {
+                    emit.accept(block, result);
+                }
+                emitted.addAndGet(block.size());
+            } catch (RuntimeException e) {
+                LOGGER.warn("Scan of [{}] failed: {}", describe(block), e.getMessage());
+            }
+        }
+    }
+
+    private static List<Inet4Address> next(Iterator<Inet4Address> hosts, int hostsPerBlock) {
+        List<Inet4Address> block = new ArrayList<>(hostsPerBlock);
+        synchronized (hosts) {
+            while (block.size() < hostsPerBlock && hosts.hasNext()) {
+                block.add(hosts.next());
+            }
+        }
+        return block;
+    }
+
+    private static String describe(List<Inet4Address> block) {
+        String first = block.get(0).getHostAddress();
+        return block.size() == 1 ? first : first + " .. " + block.get(block.size() - 1).getHostAddress();
+    }
+}
@@ -0,0 +1,55 @@
+package com.nocker.portscanner.scheduler;
+
+import com.nocker.portscanner.PortScanner;
+import com.nocker.portscanner.command.InvocationRequest;
+import com.nocker.portscanner.report.PortScanResult;
+import com.nocker.portscanner.target.TargetSlice;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+/**
+ * {@code PortScanForkJoinScheduler} schedules scan tasks on a work-stealing
+ * {@link ForkJoinPool}. Rather than cutting a target space into fixed chunks up
+ * front, a whole space is submitted as one {@link SplittingScanTask}, which halves
+ * itself whenever other workers run out of work. A half that lands on a filtered
+ * region is stolen apart by idle workers instead of leaving a single thread to
+ * time out on every port of it, so no chunk size needs to be guessed.
+ */
+public class PortScanForkJoinScheduler extends PortScanSynAckScheduler {
+
+    private static final long serialVersionUID = 1L;
+
+    public PortScanForkJoinScheduler(InvocationRequest invocationRequest) {
+        this(PortScanner.DEFAULT_CONCURRENCY, invocationRequest);
+    }
+
+    public PortScanForkJoinScheduler(int concurrency, InvocationRequest invocationRequest) {
+        super(new ForkJoinPool(concurrency), concurrency, invocationRequest);
+    }
+
+    /**
+     * Submits every target of a slice as a single splitting task. Each leaf
+     * streams its results to the scheduler's sinks as it completes.
+     *
+     * @param targetSlice the targets to probe
+     * @param leafTasks creates the task probing a run of targets too small to split
+     */
+    public void submit(TargetSlice targetSlice, Function<TargetSlice, Callable<List<PortScanResult>>> leafTasks) {
+        SplittingScanTask rootTask = new SplittingScanTask(targetSlice, leaf -> streamed(leafTasks.apply(leaf)));
+        submit(rootTask::invoke);
+    }
+
+    @Override
+    public String toString() {
+        ForkJoinPool pool = (ForkJoinPool) getExecutorService();
+        return "PortScanForkJoinScheduler{" +
+                "schedulerId=" + getSchedulerId() +
+                ", concurrency=" + getConcurrency() +
+                ", steals=" + pool.getStealCount() +
+                ", executorServiceStatus=" + (pool.isShutdown() ? "SHUTDOWN" : "ACTIVE") +
+                '}';
+    }
+}
@@ -0,0 +1,37 @@
+package com.nocker.portscanner.scheduler;
+
+import com.nocker.portscanner.PortScanner;
+import com.nocker.portscanner.command.InvocationRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@code PortScanForkJoinSchedulerFactory} is responsible for creating instances of
+ * {@code PortScanForkJoinScheduler}. The configured concurrency is the parallelism
+ * of each scheduler's work-stealing pool.
+ */
+public class PortScanForkJoinSchedulerFactory implements PortScanSchedulerFactory {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PortScanForkJoinSchedulerFactory.class);
+
+    private final InvocationRequest invocationRequest;
+    private final int concurrency;
+
+    public PortScanForkJoinSchedulerFactory(InvocationRequest invocationRequest, int concurrency) {
+        this.invocationRequest = invocationRequest;
+        this.concurrency = concurrency;
+    }
+
+    public PortScanForkJoinSchedulerFactory(InvocationRequest invocationRequest) {
+        this(invocationRequest, PortScanner.DEFAULT_CONCURRENCY);
+    }
+
+    @Override
+    public PortScanScheduler create() {
+        try {
+            return new PortScanForkJoinScheduler(concurrency, invocationRequest);
+        } catch (Exception e) {
+            LOGGER.error("Error creating PortScanScheduler: {}", e.getMessage());
+            throw e;
+        }
+    }
+}
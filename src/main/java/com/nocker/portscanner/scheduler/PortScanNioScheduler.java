@@ -0,0 +1,63 @@
+package com.nocker.portscanner.scheduler;
+
+import com.nocker.portscanner.PortScanner;
+import com.nocker.portscanner.command.InvocationRequest;
+import com.nocker.portscanner.engine.NioConnectEngine;
+import com.nocker.portscanner.report.PortScanReport;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@code PortScanNioScheduler} schedules connect scan tasks on top of a
+ * {@link NioConnectEngine}. Tasks only hand their ports to the engine and
+ * wait for the outcome, so a few worker threads are enough and the
+ * scheduler's concurrency describes the number of connects in flight
+ * rather than the number of threads.
+ */
+public class PortScanNioScheduler extends PortScanSynAckScheduler {
+    private final transient NioConnectEngine connectEngine;
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Number of worker threads feeding the connect engine.
+     */
+    public static final int DEFAULT_WORKER_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    public PortScanNioScheduler(InvocationRequest invocationRequest) {
+        this(PortScanner.DEFAULT_NIO_CONCURRENCY, invocationRequest);
+    }
+
+    public PortScanNioScheduler(int concurrency, InvocationRequest invocationRequest) {
+        super(SharedWorkerPool.shared().newJob(DEFAULT_WORKER_THREADS), concurrency, invocationRequest);
+        this.connectEngine = new NioConnectEngine(concurrency);
+    }
+
+    @Override
+    public PortScanReport shutdownAndCollect(AtomicInteger taskCount) {
+        try {
+            return super.shutdownAndCollect(taskCount);
+        } finally {
+            connectEngine.close();
+        }
+    }
+
+    /**
+     * Retrieves the {@link NioConnectEngine} tasks of this scheduler probe with.
+     *
+     * @return the connect engine owned by this scheduler
+     */
+    public NioConnectEngine getConnectEngine() {
+        return connectEngine;
+    }
+
+    @Override
+    public String toString() {
+        return "PortScanNioScheduler{" +
+                "schedulerId=" + getSchedulerId() +
+                ", concurrency=" + getConcurrency() +
+                ", connectsInFlight=" + connectEngine.getInFlight() +
+                ", executorServiceStatus=" + (getExecutorService().isShutdown() ? "SHUTDOWN" : "ACTIVE") +
+                '}';
+    }
+}
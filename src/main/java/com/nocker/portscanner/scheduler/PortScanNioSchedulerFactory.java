@@ -0,0 +1,37 @@
+package com.nocker.portscanner.scheduler;
+
+import com.nocker.portscanner.PortScanner;
+import com.nocker.portscanner.command.InvocationRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@code PortScanNioSchedulerFactory} is responsible for creating instances of
+ * {@code PortScanNioScheduler}. The configured concurrency is the number of
+ * connects each scheduler keeps in flight.
+ */
+public class PortScanNioSchedulerFactory implements PortScanSchedulerFactory {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PortScanNioSchedulerFactory.class);
+
+    private final InvocationRequest invocationRequest;
+    private final int concurrency;
+
+    public PortScanNioSchedulerFactory(InvocationRequest invocationRequest, int concurrency) {
+        this.invocationRequest = invocationRequest;
+        this.concurrency = concurrency;
+    }
+
+    public PortScanNioSchedulerFactory(InvocationRequest invocationRequest) {
+        this(invocationRequest, PortScanner.DEFAULT_NIO_CONCURRENCY);
+    }
+
+    @Override
+    public PortScanScheduler create() {
+        try {
+            return new PortScanNioScheduler(concurrency, invocationRequest);
+        } catch (Exception e) {
+            LOGGER.error("Error creating PortScanScheduler: {}", e.getMessage());
+            throw e;
+        }
+    }
+}
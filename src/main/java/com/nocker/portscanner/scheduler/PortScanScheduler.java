@@ -3,6 +3,7 @@ package com.nocker.portscanner.scheduler;
 import com.nocker.portscanner.command.InvocationRequest;
 import com.nocker.portscanner.report.PortScanReport;
 import com.nocker.portscanner.report.PortScanResult;
+import com.nocker.portscanner.report.ResultSink;
 
 import java.io.Serializable;
 import java.util.List;
@@ -22,6 +23,24 @@ public interface PortScanScheduler extends Serializable {
      */
     void submit(Callable<List<PortScanResult>> task);
 
+    /**
+     * Registers a sink receiving the results of every task of this scheduler as
+     * the task completes. Sinks must be added before the first task is submitted
+     * to see all results.
+     *
+     * @param sink the sink to register
+     */
+    void addResultSink(ResultSink sink);
+
+    /**
+     * Sets whether the report collected by {@link #shutdownAndCollect(AtomicInteger)}
+     * retains every individual result or only the summaries. Results are retained
+     * by default, and the setting must be made before the first task is submitted.
+     *
+     * @param retainResults {@code true} to retain the results of every probe
+     */
+    void setRetainResults(boolean retainResults);
+
     /**
      * Shuts down the scheduler, waits for the completion of all submitted tasks, gathers their results,
      * and compiles a comprehensive port scan report.
@@ -4,8 +4,10 @@ import com.nocker.portscanner.command.InvocationRequest;
 import com.nocker.portscanner.report.PortScanReport;
 import com.nocker.portscanner.report.PortScanResult;
 import com.nocker.portscanner.PortScanner;
-import com.nocker.portscanner.report.ScanSummary;
+import com.nocker.portscanner.report.ResultSink;
 import org.apache.logging.log4j.core.util.UuidUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.*;
 import java.util.concurrent.*;
@@ -13,10 +15,17 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * {@code PortScanSynAckScheduler} schedules valid SYN or SYN ACK tasks.
+ * {@code PortScanSynAckScheduler} schedules valid SYN or SYN ACK tasks. The
+ * results of every task are streamed to the scheduler's {@link ResultSink}s as
+ * the task completes, the report is aggregated from that same stream.
+ * <p>
+ * Tasks run as a {@link ScanJob} on the process-wide {@link SharedWorkerPool}.
+ * Shutting the scheduler down ends its job, not the worker threads.
  */
 // review: duration times - because of update
 public class PortScanSynAckScheduler implements PortScanScheduler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PortScanSynAckScheduler.class);
+
     private final transient ExecutorService executorService;
     private final transient CompletionService<List<PortScanResult>> completionService;
     private final int concurrency; // adjustable
@@ -27,6 +36,10 @@ public class PortScanSynAckScheduler implements PortScanScheduler {
     private final transient AtomicLong latestStartNanos = new AtomicLong(0);
     private final transient AtomicLong stopNanos = new AtomicLong(0);
 
+    private final transient ResultPipeline resultPipeline = new ResultPipeline(ResultPipeline.DEFAULT_CAPACITY);
+    private transient ReportAggregator reportAggregator;
+    private volatile boolean retainResults = true;
+
     private static final long serialVersionUID = 1L;
 
     public PortScanSynAckScheduler(InvocationRequest invocationRequest) {
@@ -34,8 +47,12 @@ public class PortScanSynAckScheduler implements PortScanScheduler {
     }
 
     public PortScanSynAckScheduler(int concurrency, InvocationRequest invocationRequest) {
+        this(SharedWorkerPool.shared().newJob(concurrency), concurrency, invocationRequest);
+    }
+
+    protected PortScanSynAckScheduler(ExecutorService executorService, int concurrency, InvocationRequest invocationRequest) {
          this.concurrency = concurrency;
-         this.executorService = Executors.newFixedThreadPool(concurrency);
+         this.executorService = executorService;
          this.completionService = new ExecutorCompletionService<>(executorService);
          this.invocationRequest = invocationRequest;
     }
@@ -43,38 +60,64 @@ public class PortScanSynAckScheduler implements PortScanScheduler {
     @Override
     public void submit(Callable<List<PortScanResult>> task) {
         long now = System.nanoTime();
-        startNanos.compareAndSet(0, now);
-        completionService.submit(task);
+        if (startNanos.compareAndSet(0, now)) {
+            startAggregating(now);
+        }
+        completionService.submit(streamed(task));
+    }
+
+    /**
+     * Wraps a task so that its results are published to the scheduler's
+     * {@link ResultSink}s as soon as it completes, rather than being held by its
+     * future until the scan is collected.
+     *
+     * @param task the task to wrap
+     * @return a task publishing the results of {@code task} and returning none
+     */
+    protected Callable<List<PortScanResult>> streamed(Callable<List<PortScanResult>> task) {
+        return () -> {
+            resultPipeline.publish(task.call());
+            return Collections.emptyList();
+        };
+    }
+
+    private synchronized void startAggregating(long startNanos) {
+        if (reportAggregator == null) {
+            reportAggregator = new ReportAggregator(startNanos, schedulerId, invocationRequest, retainResults);
+            resultPipeline.addSink(reportAggregator);
+        }
+    }
+
+    @Override
+    public void addResultSink(ResultSink sink) {
+        resultPipeline.addSink(sink);
+    }
+
+    @Override
+    public void setRetainResults(boolean retainResults) {
+        this.retainResults = retainResults;
     }
 
     @Override
     public PortScanReport shutdownAndCollect(AtomicInteger taskCount) {
-        List<PortScanResult> results = new ArrayList<>();
-        ScanSummary scanSummary = new ScanSummary(startNanos.get(), schedulerId, invocationRequest);
         try {
             for (int i = 0; i < taskCount.get(); i++) {
-                Future<List<PortScanResult>> future = completionService.
-                        poll(100, TimeUnit.MILLISECONDS);
-                if (future != null) {
-                    List<PortScanResult> tasksResults = future.get();
-                    if (tasksResults != null) {
-                        for (PortScanResult result : tasksResults) {
-                            scanSummary.update(result);
-                            results.add(result);
-                        }
-                    }
+                Future<List<PortScanResult>> future = completionService.take();
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    LOGGER.warn("Scan task failed: {}", e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
                 }
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-        } catch (ExecutionException e) {
-            // log something useful
         } finally {
             executorService.shutdownNow();
+            startAggregating(startNanos.get());
+            resultPipeline.close();
         }
         stopNanos.set(System.nanoTime());
-        scanSummary.stop();
-        return new PortScanReport(this, results, scanSummary);
+        return reportAggregator.toReport(this);
     }
 
     @Override
@@ -0,0 +1,64 @@
+package com.nocker.portscanner.scheduler;
+
+import com.nocker.portscanner.command.InvocationRequest;
+import com.nocker.portscanner.report.HostShard;
+import com.nocker.portscanner.report.PortScanReport;
+import com.nocker.portscanner.report.PortScanResult;
+import com.nocker.portscanner.report.ResultSink;
+import com.nocker.portscanner.report.ScanSummary;
+
+import java.net.Inet4Address;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * {@code ReportAggregator} is the {@link ResultSink} a scheduler builds its
+ * {@link PortScanReport} from. It counts every result into the scan's summary
+ * and the summary of the result's {@link HostShard}. Individual results are
+ * kept only when {@code retainResults} is set, so a scan reporting nothing but
+ * its summary holds no more memory for 65k ports than for one.
+ */
+class ReportAggregator implements ResultSink {
+    private final UUID schedulerId;
+    private final InvocationRequest invocationRequest;
+    private final long startNanos;
+    private final boolean retainResults;
+    private final ScanSummary scanSummary;
+    private final List<PortScanResult> results = new ArrayList<>();
+    private final Map<Inet4Address, HostShard> hostShards = new LinkedHashMap<>();
+
+    ReportAggregator(long startNanos, UUID schedulerId, InvocationRequest invocationRequest, boolean retainResults) {
+        this.startNanos = startNanos;
+        this.schedulerId = schedulerId;
+        this.invocationRequest = invocationRequest;
+        this.retainResults = retainResults;
+        this.scanSummary = new ScanSummary(startNanos, schedulerId, invocationRequest);
+    }
+
+    @Override
+    public void accept(List<PortScanResult> batch) {
+        for (PortScanResult result : batch) {
+            scanSummary.update(result);
+            if (retainResults) {
+                results.add(result);
+            }
+            hostShards.computeIfAbsent(result.getHostAddress(), host -> new HostShard(host,
+                    new ScanSummary(startNanos, schedulerId, invocationRequest), retainResults)).add(result);
+        }
+    }
+
+    /**
+     * Stops the summaries and builds the report. Only call once the pipeline
+     * feeding this aggregator is closed.
+     */
+    PortScanReport toReport(PortScanScheduler scheduler) {
+        scanSummary.stop();
+        for (HostShard hostShard : hostShards.values()) {
+            hostShard.getSummary().stop();
+        }
+        return new PortScanReport(scheduler, results, scanSummary, hostShards);
+    }
+}
@@ -0,0 +1,99 @@
+package com.nocker.portscanner.scheduler;
+
+import com.nocker.portscanner.report.PortScanResult;
+import com.nocker.portscanner.report.ResultSink;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * {@code ResultPipeline} carries the results of completed tasks to the
+ * {@link ResultSink}s of a scheduler. Tasks publish their results into a bounded
+ * queue and a single dispatcher thread delivers them to every sink in order.
+ * When the sinks fall behind and the queue fills up, publishing blocks, which
+ * slows the tasks down instead of letting results pile up in memory. The
+ * dispatcher runs on the dispatch threads of the {@link SharedWorkerPool}.
+ */
+class ResultPipeline {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResultPipeline.class);
+
+    /**
+     * Number of task results the pipeline holds before publishers block.
+     */
+    static final int DEFAULT_CAPACITY = 64;
+
+    private static final List<PortScanResult> END_OF_SCAN = Collections.emptyList();
+
+    private final BlockingQueue<List<PortScanResult>> queue;
+    private final List<ResultSink> sinks = new CopyOnWriteArrayList<>();
+    private final Future<?> dispatcher;
+
+    ResultPipeline(int capacity) {
+        this(capacity, SharedWorkerPool.shared().getDispatchers());
+    }
+
+    ResultPipeline(int capacity, ExecutorService dispatchers) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.dispatcher = dispatchers.submit(this::dispatch);
+    }
+
+    void addSink(ResultSink sink) {
+        sinks.add(sink);
+    }
+
+    /**
+     * Queues the results of a task for the sinks, blocking while the pipeline is full.
+     *
+     * @param results the results of a completed task
+     * @throws InterruptedException if interrupted while waiting for room
+     */
+    void publish(List<PortScanResult> results) throws InterruptedException {
+        if (results != null && !results.isEmpty()) {
+            queue.put(results);
+        }
+    }
+
+    /**
+     * Ends the pipeline once every published batch has been delivered, and
+     * completes the sinks.
+     */
+    void close() {
+        try {
+            queue.put(END_OF_SCAN);
+            dispatcher.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOGGER.warn("Result pipeline failed: {}", e.getMessage());
+        }
+    }
+
+    private void dispatch() {
+        try {
+            List<PortScanResult> results;
+            while ((results = queue.take()) != END_OF_SCAN) {
+                for (ResultSink sink : sinks) {
+                    try {
+                        sink.accept(results);
+                    } catch (RuntimeException e) {
+                        LOGGER.warn("Result sink {} failed: {}", sink, e.getMessage());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (ResultSink sink : sinks) {
+                sink.complete();
+            }
+        }
+    }
+}
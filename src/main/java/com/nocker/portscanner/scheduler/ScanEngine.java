@@ -0,0 +1,53 @@
+package com.nocker.portscanner.scheduler;
+
+import java.util.Arrays;
+
+/**
+ * {@code ScanEngine} names the scheduler implementations a scan can run on.
+ * The engine is chosen with the {@code engine} flag, for example:
+ * <pre>
+ * {@code
+ * nocker scan --host=scanme.nmap.org -engine nio -c 2000
+ * }
+ * </pre>
+ */
+public enum ScanEngine {
+    /**
+     * One blocking probe per worker thread, see {@link PortScanSynAckScheduler}.
+     */
+    THREAD("thread"),
+
+    /**
+     * Non-blocking connects multiplexed over selectors, see {@link PortScanNioScheduler}.
+     */
+    NIO("nio"),
+
+    /**
+     * Work-stealing pool splitting target spaces on demand, see {@link PortScanForkJoinScheduler}.
+     */
+    FORKJOIN("forkjoin");
+
+    private final String engineName;
+
+    private ScanEngine(String engineName) {
+        this.engineName = engineName;
+    }
+
+    public String getEngineName() {
+        return this.engineName;
+    }
+
+    /**
+     * Resolves the engine with the given name.
+     *
+     * @param engineName the name supplied with the {@code engine} flag
+     * @return the matching {@code ScanEngine}, or {@link #THREAD} if no
+     * engine carries the given name
+     */
+    public static ScanEngine fromEngineName(String engineName) {
+        return Arrays.stream(values())
+                .filter(engine -> engine.getEngineName().equalsIgnoreCase(engineName))
+                .findFirst()
+                .orElse(THREAD);
+    }
+}
@@ -0,0 +1,138 @@
+package com.nocker.portscanner.scheduler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code ScanJob} is the lifecycle of one scan on the {@link SharedWorkerPool}.
+ * It is an {@link java.util.concurrent.ExecutorService} of its own: tasks are
+ * submitted to the job, at most {@code concurrency} of them run on the shared
+ * workers at once and the rest wait in the job's queue. Shutting a job down only
+ * ends that job, its queued tasks are dropped and its running tasks interrupted,
+ * while the workers stay alive for the next job.
+ */
+public class ScanJob extends AbstractExecutorService {
+    private final Executor workers;
+    private final int concurrency;
+    private final ArrayDeque<Runnable> queued = new ArrayDeque<>();
+    private final Set<Thread> runningThreads = new HashSet<>();
+    private int running = 0;
+    private boolean shutdown = false;
+
+    ScanJob(Executor workers, int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be positive");
+        }
+        this.workers = workers;
+        this.concurrency = concurrency;
+    }
+
+    @Override
+    public synchronized void execute(Runnable command) {
+        if (shutdown) {
+            throw new RejectedExecutionException("scan job is shut down");
+        }
+        if (running < concurrency) {
+            running++;
+            dispatch(command);
+        } else {
+            queued.add(command);
+        }
+    }
+
+    private void dispatch(Runnable command) {
+        workers.execute(() -> {
+            enter();
+            try {
+                command.run();
+            } finally {
+                leave();
+            }
+        });
+    }
+
+    private synchronized void enter() {
+        runningThreads.add(Thread.currentThread());
+    }
+
+    /**
+     * Hands the worker to the job's next queued task, or returns it to the pool.
+     * A pending interrupt from {@link #shutdownNow()} is cleared so it does not
+     * leak into the next job the worker runs.
+     */
+    private synchronized void leave() {
+        runningThreads.remove(Thread.currentThread());
+        Thread.interrupted();
+        Runnable next = queued.poll();
+        if (next != null) {
+            dispatch(next);
+        } else {
+            running--;
+            if (running == 0) {
+                notifyAll();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void shutdown() {
+        shutdown = true;
+        if (running == 0) {
+            notifyAll();
+        }
+    }
+
+    @Override
+    public synchronized List<Runnable> shutdownNow() {
+        shutdown = true;
+        List<Runnable> dropped = new ArrayList<>(queued);
+        queued.clear();
+        for (Thread thread : runningThreads) {
+            thread.interrupt();
+        }
+        return dropped;
+    }
+
+    @Override
+    public synchronized boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public synchronized boolean isTerminated() {
+        return shutdown && running == 0;
+    }
+
+    @Override
+    public synchronized boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!isTerminated()) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return true;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Retrieves the number of the job's tasks running on the shared workers.
+     *
+     * @return the running task count
+     */
+    public synchronized int getRunning() {
+        return running;
+    }
+}
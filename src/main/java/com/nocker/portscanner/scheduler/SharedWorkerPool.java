@@ -0,0 +1,92 @@
+package com.nocker.portscanner.scheduler;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@code SharedWorkerPool} holds the worker threads of every scan in the process.
+ * Schedulers no longer start and stop a thread pool of their own, each runs its
+ * tasks as a {@link ScanJob} on this pool instead, so hosts and scans that follow
+ * one another reuse warm threads. A job bounds how many of its tasks run at once,
+ * the pool bounds how many run across all jobs.
+ * <p>
+ * Result dispatching runs on a separate, unbounded set of threads. A worker
+ * blocked publishing results must never wait on a dispatcher queued behind it.
+ */
+public final class SharedWorkerPool {
+
+    /**
+     * Maximum number of scan tasks running at once across every job.
+     */
+    public static final int MAX_WORKERS = 1024;
+
+    /**
+     * Time an idle thread stays warm before it exits.
+     */
+    public static final long KEEP_ALIVE_SECONDS = 60L;
+
+    private static final SharedWorkerPool SHARED = new SharedWorkerPool(MAX_WORKERS);
+
+    private final ThreadPoolExecutor workers;
+    private final ThreadPoolExecutor dispatchers;
+
+    SharedWorkerPool(int maxWorkers) {
+        this.workers = new ThreadPoolExecutor(maxWorkers, maxWorkers, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), daemonThreads("nocker-worker-"));
+        this.workers.allowCoreThreadTimeOut(true);
+        this.dispatchers = new ThreadPoolExecutor(0, Integer.MAX_VALUE, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), daemonThreads("nocker-dispatch-"));
+    }
+
+    /**
+     * Retrieves the pool shared by every scan of the process.
+     *
+     * @return the shared worker pool
+     */
+    public static SharedWorkerPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * Starts a job running at most {@code concurrency} of its tasks at once on
+     * this pool's workers.
+     *
+     * @param concurrency the maximum number of the job's tasks running at once
+     * @return the new job
+     */
+    public ScanJob newJob(int concurrency) {
+        return new ScanJob(workers, concurrency);
+    }
+
+    /**
+     * Retrieves the threads result pipelines dispatch on.
+     *
+     * @return the dispatcher executor
+     */
+    ExecutorService getDispatchers() {
+        return dispatchers;
+    }
+
+    /**
+     * Retrieves the number of worker threads currently alive, busy or idle.
+     *
+     * @return the live worker count
+     */
+    public int getWorkerCount() {
+        return workers.getPoolSize();
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger(0);
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
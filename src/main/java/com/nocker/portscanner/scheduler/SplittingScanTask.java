@@ -0,0 +1,88 @@
+package com.nocker.portscanner.scheduler;
+
+import com.nocker.portscanner.report.PortScanResult;
+import com.nocker.portscanner.target.TargetSlice;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+/**
+ * {@code SplittingScanTask} owns a {@link TargetSlice} and probes it in leaves of
+ * at most {@link #LEAF_TARGETS} targets. Before each leaf it checks whether the
+ * pool is short of queued work, and if so forks the upper half of what it has
+ * left for an idle worker to steal. Slow regions are therefore split for as long
+ * as there are workers to take them, and fast ones never pay for splitting.
+ */
+class SplittingScanTask extends RecursiveTask<List<PortScanResult>> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SplittingScanTask.class);
+
+    /**
+     * Number of targets probed by a single leaf, the smallest unit of work.
+     */
+    static final int LEAF_TARGETS = 16;
+
+    /**
+     * Queued tasks a worker may hold beyond its own before it stops splitting.
+     */
+    static final int SURPLUS_TASKS = 2;
+
+    private final TargetSlice targetSlice;
+    private final transient Function<TargetSlice, Callable<List<PortScanResult>>> leafTasks;
+
+    private static final long serialVersionUID = 1L;
+
+    SplittingScanTask(TargetSlice targetSlice, Function<TargetSlice, Callable<List<PortScanResult>>> leafTasks) {
+        this.targetSlice = targetSlice;
+        this.leafTasks = leafTasks;
+    }
+
+    @Override
+    protected List<PortScanResult> compute() {
+        List<PortScanResult> results = new ArrayList<>();
+        Deque<SplittingScanTask> forked = new ArrayDeque<>();
+        long from = targetSlice.getFromPosition();
+        long to = targetSlice.getToPosition();
+        while (to - from > LEAF_TARGETS) {
+            if (getSurplusQueuedTaskCount() <= SURPLUS_TASKS) {
+                long middle = from + (to - from) / 2;
+                SplittingScanTask upperHalf = new SplittingScanTask(subSlice(middle, to), leafTasks);
+                upperHalf.fork();
+                forked.push(upperHalf);
+                to = middle;
+            } else {
+                probe(results, from, from + LEAF_TARGETS);
+                from += LEAF_TARGETS;
+            }
+        }
+        probe(results, from, to);
+        while (!forked.isEmpty()) {
+            results.addAll(forked.pop().join());
+        }
+        return results;
+    }
+
+    private void probe(List<PortScanResult> results, long from, long to) {
+        if (from >= to) {
+            return;
+        }
+        try {
+            List<PortScanResult> leafResults = leafTasks.apply(subSlice(from, to)).call();
+            if (leafResults != null) {
+                results.addAll(leafResults);
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Scan error on leaf: [{}, {}) - {}", from, to, e.getMessage());
+        }
+    }
+
+    private TargetSlice subSlice(long from, long to) {
+        return targetSlice.subSlice(from, to);
+    }
+}
@@ -0,0 +1,272 @@
+package com.nocker.portscanner.target;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.net.Inet4Address;
+import java.util.*;
+
+import static com.nocker.portscanner.PortScanner.MAX_PORT;
+import static com.nocker.portscanner.PortScanner.MIN_PORT;
+
+/**
+ * {@code ExclusionIndex} holds the hosts and ports a scan must never probe, such
+ * as protected subnets and fragile services. Exclusions are CIDR blocks of any
+ * prefix ({@code 10.20.0.0/16}), dash ranges ({@code 10.0.0.5-10.0.1.20} or
+ * {@code 10.0.0.5-20}) and addresses, which exclude hosts, and ports
+ * ({@code 22}) and port ranges ({@code 8000-8100}), which exclude those ports on
+ * every host. Unlike scan targets, an excluded block covers its network and
+ * broadcast addresses too.
+ * <p>
+ * Hosts and ports are each compiled into an {@link IntervalSet}, so checking a
+ * target is a binary search over the merged exclusions, and tens of thousands
+ * of them cost a few comparisons per target. The scan applies the index while it
+ * iterates its targets, so an excluded host or port never becomes a probe.
+ */
+public final class ExclusionIndex {
+    private static final ExclusionIndex NONE = new ExclusionIndex(IntervalSet.empty(), IntervalSet.empty());
+
+    private static final String COMMENT = "#";
+    private static final String SEPARATORS = "[\\s,]+";
+    private static final String RANGE_SEPARATOR = "-";
+
+    private final IntervalSet hosts;
+    private final IntervalSet ports;
+
+    private ExclusionIndex(IntervalSet hosts, IntervalSet ports) {
+        this.hosts = hosts;
+        this.ports = ports;
+    }
+
+    /**
+     * Retrieves the index that excludes nothing.
+     *
+     * @return the empty index
+     */
+    public static ExclusionIndex none() {
+        return NONE;
+    }
+
+    /**
+     * Parses a list of exclusions.
+     *
+     * @param spec exclusions separated by commas or whitespace
+     * @return the index of the exclusions
+     * @throws IllegalArgumentException if any exclusion is invalid
+     */
+    public static ExclusionIndex parse(String spec) {
+        return new Builder().add(spec).build();
+    }
+
+    /**
+     * Checks whether a host is excluded.
+     *
+     * @param address the host
+     * @return {@code true} if no port of the host may be probed
+     */
+    public boolean excludesHost(Inet4Address address) {
+        return hosts.contains(Ipv4TargetSet.toLong(address));
+    }
+
+    /**
+     * Checks whether a port is excluded.
+     *
+     * @param port the port
+     * @return {@code true} if the port may not be probed on any host
+     */
+    public boolean excludesPort(int port) {
+        return ports.contains(port);
+    }
+
+    /**
+     * Skips the excluded hosts of a stream of targets, as they are taken.
+     *
+     * @param targets the hosts to filter
+     * @return the hosts that are not excluded, in the same order
+     */
+    public Iterator<Inet4Address> filterHosts(Iterator<Inet4Address> targets) {
+        if (hosts.isEmpty()) {
+            return targets;
+        }
+        return new Iterator<Inet4Address>() {
+            private Inet4Address next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && targets.hasNext()) {
+                    Inet4Address target = targets.next();
+                    if (!excludesHost(target)) {
+                        next = target;
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public Inet4Address next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Inet4Address target = next;
+                next = null;
+                return target;
+            }
+        };
+    }
+
+    /**
+     * Retrieves the ports of a range that are not excluded.
+     *
+     * @param low the lowest port of the range
+     * @param high the highest port of the range
+     * @return the remaining ports, in ascending order
+     */
+    public int[] remainingPorts(int low, int high) {
+        int[] remaining = new int[Math.max(0, high - low + 1)];
+        int count = 0;
+        for (int port = low; port <= high; port++) {
+            if (!excludesPort(port)) {
+                remaining[count++] = port;
+            }
+        }
+        return count == remaining.length ? remaining : Arrays.copyOf(remaining, count);
+    }
+
+    /**
+     * Retrieves the ports of a list that are not excluded.
+     *
+     * @param candidates the ports to filter
+     * @return the remaining ports, in the same order
+     */
+    public List<Integer> remainingPorts(List<Integer> candidates) {
+        if (ports.isEmpty()) {
+            return candidates;
+        }
+        List<Integer> remaining = new ArrayList<>(candidates.size());
+        for (Integer port : candidates) {
+            if (!excludesPort(port)) {
+                remaining.add(port);
+            }
+        }
+        return remaining;
+    }
+
+    public boolean hasHostExclusions() {
+        return !hosts.isEmpty();
+    }
+
+    public boolean hasPortExclusions() {
+        return !ports.isEmpty();
+    }
+
+    public boolean isEmpty() {
+        return hosts.isEmpty() && ports.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "ExclusionIndex{" +
+                "hostRanges=" + hosts.intervalCount() +
+                ", portRanges=" + ports.intervalCount() +
+                '}';
+    }
+
+    /**
+     * Collects exclusions from any number of lists and files before they are
+     * compiled into an index.
+     */
+    public static class Builder {
+        private final List<long[]> hostRanges = new ArrayList<>();
+        private final List<long[]> portRanges = new ArrayList<>();
+
+        /**
+         * Adds a list of exclusions.
+         *
+         * @param spec exclusions separated by commas or whitespace
+         * @return this builder
+         * @throws IllegalArgumentException if any exclusion is invalid
+         */
+        public Builder add(String spec) {
+            if (spec == null || spec.trim().isEmpty()) {
+                throw new IllegalArgumentException("Missing exclusions");
+            }
+            for (String exclusion : spec.trim().split(SEPARATORS)) {
+                addExclusion(exclusion);
+            }
+            return this;
+        }
+
+        /**
+         * Adds the exclusions of a file, one or more per line, with {@code #}
+         * starting a comment.
+         *
+         * @param source the file, read to its end but not closed
+         * @return this builder
+         * @throws IOException if the file cannot be read
+         * @throws IllegalArgumentException if any exclusion is invalid
+         */
+        public Builder addAll(Reader source) throws IOException {
+            BufferedReader reader = new BufferedReader(source);
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                int comment = line.indexOf(COMMENT);
+                String exclusions = (comment >= 0 ? line.substring(0, comment) : line).trim();
+                if (exclusions.isEmpty()) {
+                    continue;
+                }
+                try {
+                    add(exclusions);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("line " + lineNumber + ": " + e.getMessage(), e);
+                }
+            }
+            return this;
+        }
+
+        public ExclusionIndex build() {
+            if (hostRanges.isEmpty() && portRanges.isEmpty()) {
+                return NONE;
+            }
+            return new ExclusionIndex(IntervalSet.of(hostRanges), IntervalSet.of(portRanges));
+        }
+
+        private void addExclusion(String exclusion) {
+            if (exclusion.contains(".")) {
+                hostRanges.add(Ipv4TargetSet.parseRange(exclusion, false));
+            } else {
+                portRanges.add(parsePortRange(exclusion));
+            }
+        }
+
+        private static long[] parsePortRange(String exclusion) {
+            String[] pieces = exclusion.split(RANGE_SEPARATOR, -1);
+            if (pieces.length > 2) {
+                throw new IllegalArgumentException("Invalid port range: " + exclusion);
+            }
+            int low = parsePort(pieces[0], exclusion);
+            int high = pieces.length == 2 ? parsePort(pieces[1], exclusion) : low;
+            if (high < low) {
+                throw new IllegalArgumentException("Port range ends before it starts: " + exclusion);
+            }
+            return new long[] {low, high};
+        }
+
+        private static int parsePort(String digits, String exclusion) {
+            if (digits.isEmpty() || digits.length() > 5) {
+                throw new IllegalArgumentException("Invalid port exclusion: " + exclusion);
+            }
+            for (int i = 0; i < digits.length(); i++) {
+                if (!Character.isDigit(digits.charAt(i))) {
+                    throw new IllegalArgumentException("Invalid port exclusion: " + exclusion);
+                }
+            }
+            int port = Integer.parseInt(digits);
+            if (port < MIN_PORT || port > MAX_PORT) {
+                throw new IllegalArgumentException("Port out of range: " + exclusion);
+            }
+            return port;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.nocker.portscanner.target;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * {@code IntervalSet} is an immutable set of {@code long} values held as sorted,
+ * merged, closed intervals. Overlapping and adjacent intervals are merged once,
+ * when the set is built, so a lookup is a binary search over the disjoint
+ * intervals however many were given.
+ */
+public final class IntervalSet {
+    private static final IntervalSet EMPTY = new IntervalSet(new long[0], new long[0]);
+
+    private final long[] lows;
+    private final long[] highs;
+
+    private IntervalSet(long[] lows, long[] highs) {
+        this.lows = lows;
+        this.highs = highs;
+    }
+
+    /**
+     * Builds the set of every value covered by some interval.
+     *
+     * @param intervals closed intervals, each the pair {@code {low, high}}
+     * @return the merged set
+     * @throws IllegalArgumentException if an interval ends before it starts
+     */
+    public static IntervalSet of(Collection<long[]> intervals) {
+        if (intervals.isEmpty()) {
+            return EMPTY;
+        }
+        List<long[]> sorted = new ArrayList<>(intervals);
+        sorted.sort(Comparator.comparingLong(interval -> interval[0]));
+        List<long[]> merged = new ArrayList<>();
+        for (long[] interval : sorted) {
+            if (interval[1] < interval[0]) {
+                throw new IllegalArgumentException("interval ends before it starts: ["
+                        + interval[0] + ", " + interval[1] + "]");
+            }
+            long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && interval[0] <= last[1] + 1) {
+                last[1] = Math.max(last[1], interval[1]);
+            } else {
+                merged.add(new long[] {interval[0], interval[1]});
+            }
+        }
+        long[] lows = new long[merged.size()];
+        long[] highs = new long[merged.size()];
+        for (int i = 0; i < merged.size(); i++) {
+            lows[i] = merged.get(i)[0];
+            highs[i] = merged.get(i)[1];
+        }
+        return new IntervalSet(lows, highs);
+    }
+
+    public static IntervalSet empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Checks whether some interval of the set covers a value.
+     *
+     * @param value the value to look for
+     * @return {@code true} if the value is in the set
+     */
+    public boolean contains(long value) {
+        int low = 0;
+        int high = lows.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (value < lows[mid]) {
+                high = mid - 1;
+            } else if (value > highs[mid]) {
+                low = mid + 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Retrieves the number of disjoint intervals the given ones merged into.
+     *
+     * @return the interval count
+     */
+    public int intervalCount() {
+        return lows.length;
+    }
+
+    public boolean isEmpty() {
+        return lows.length == 0;
+    }
+
+    /**
+     * Retrieves the lowest value of an interval, intervals being in ascending order.
+     */
+    long low(int interval) {
+        return lows[interval];
+    }
+
+    /**
+     * Retrieves the highest value of an interval, intervals being in ascending order.
+     */
+    long high(int interval) {
+        return highs[interval];
+    }
+
+    @Override
+    public String toString() {
+        return "IntervalSet{" +
+                "intervals=" + lows.length +
+                '}';
+    }
+}
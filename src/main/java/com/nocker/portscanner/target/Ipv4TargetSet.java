@@ -0,0 +1,345 @@
+package com.nocker.portscanner.target;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * {@code Ipv4TargetSet} is a set of IPv4 addresses given as a comma separated
+ * list of CIDR blocks ({@code 10.0.0.0/16}), dash ranges ({@code 10.0.0.5-10.0.1.20}
+ * or {@code 10.0.0.5-20} for the last octet) and single addresses. Prefixes from
+ * {@code /8} to {@code /32} are accepted. Blocks up to {@code /30} leave out their
+ * network and broadcast addresses.
+ * <p>
+ * The set is held as an {@link IntervalSet} of unsigned {@code int} addresses,
+ * with the index of the first address of each range, so it takes the same memory
+ * for a {@code /8} as for a single host. The address at
+ * any index is computed on demand, and {@link #spliterator()} splits the index
+ * space in halves for parallel streams. Addresses are created from their bytes,
+ * never resolved through DNS.
+ */
+public final class Ipv4TargetSet implements Iterable<Inet4Address> {
+
+    /**
+     * Shortest prefix accepted, a {@code /8} is about 16.7 million hosts.
+     */
+    public static final int MIN_PREFIX = 8;
+
+    /**
+     * Longest prefix accepted, a single host.
+     */
+    public static final int MAX_PREFIX = 32;
+
+    private static final String LIST_SEPARATOR = ",";
+    private static final String RANGE_SEPARATOR = "-";
+    private static final String PREFIX_SEPARATOR = "/";
+
+    private final IntervalSet ranges;
+    private final long[] offsets; // index of the first address of each range
+    private final long size;
+
+    private Ipv4TargetSet(List<long[]> ranges) {
+        this.ranges = IntervalSet.of(ranges);
+        this.offsets = new long[this.ranges.intervalCount()];
+        long total = 0;
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = total;
+            total += this.ranges.high(i) - this.ranges.low(i) + 1;
+        }
+        this.size = total;
+    }
+
+    /**
+     * Parses a target specification.
+     *
+     * @param spec comma separated CIDR blocks, dash ranges and addresses
+     * @return the set of every address the specification covers
+     * @throws IllegalArgumentException if any part of the specification is invalid
+     */
+    public static Ipv4TargetSet parse(String spec) {
+        if (spec == null || spec.trim().isEmpty()) {
+            throw new IllegalArgumentException("Missing targets");
+        }
+        List<long[]> ranges = new ArrayList<>();
+        for (String part : spec.split(LIST_SEPARATOR, -1)) {
+            ranges.add(parseRange(part.trim(), true));
+        }
+        return new Ipv4TargetSet(ranges);
+    }
+
+    /**
+     * Retrieves the number of addresses in the set.
+     *
+     * @return the address count
+     */
+    public long size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Retrieves the address at an index of the set, in ascending address order.
+     *
+     * @param index an index in {@code [0, size())}
+     * @return the address at that index
+     * @throws IndexOutOfBoundsException if {@code index} is out of range
+     */
+    public Inet4Address get(long index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + " outside [0, " + size + ")");
+        }
+        int range = rangeOf(index);
+        return toAddress(ranges.low(range) + (index - offsets[range]));
+    }
+
+    /**
+     * Checks whether the set holds an address.
+     *
+     * @param address the address to look for
+     * @return {@code true} if the address is in the set
+     */
+    public boolean contains(Inet4Address address) {
+        return ranges.contains(toLong(address));
+    }
+
+    /**
+     * Retrieves a read-only list view of the set. Nothing is copied, each
+     * element is computed when it is read.
+     *
+     * @return the addresses as a random access list
+     * @throws IllegalStateException if the set holds more addresses than a list can index
+     */
+    public List<Inet4Address> asList() {
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Too many addresses for a list: " + size);
+        }
+        return new AddressList();
+    }
+
+    @Override
+    public Iterator<Inet4Address> iterator() {
+        return Spliterators.iterator(spliterator());
+    }
+
+    @Override
+    public Spliterator<Inet4Address> spliterator() {
+        return new AddressSpliterator(0, size);
+    }
+
+    public Stream<Inet4Address> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    public Stream<Inet4Address> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * Creates the address of an unsigned {@code int} value from its bytes.
+     *
+     * @param value the address in {@code [0, 2^32)}
+     * @return the address, without any lookup
+     */
+    public static Inet4Address toAddress(long value) {
+        byte[] bytes = {(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+        try {
+            return (Inet4Address) InetAddress.getByAddress(bytes);
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException(e); // four bytes are always a valid address
+        }
+    }
+
+    /**
+     * Retrieves the unsigned {@code int} value of an address.
+     *
+     * @param address the address
+     * @return the address in {@code [0, 2^32)}
+     */
+    public static long toLong(Inet4Address address) {
+        byte[] bytes = address.getAddress();
+        return ((bytes[0] & 0xFFL) << 24) | ((bytes[1] & 0xFFL) << 16) | ((bytes[2] & 0xFFL) << 8) | (bytes[3] & 0xFFL);
+    }
+
+    private int rangeOf(long index) {
+        int range = Arrays.binarySearch(offsets, index);
+        return range >= 0 ? range : -range - 2;
+    }
+
+    /**
+     * Parses one CIDR block, dash range or address of a list into the unsigned
+     * bounds of the addresses it covers.
+     *
+     * @param part the block, range or address
+     * @param hostsOnly whether blocks leave out their network and broadcast
+     *                  addresses and must be at least a {@code /8}, as scan targets
+     *                  do, rather than cover every address of any prefix
+     * @return the lowest and highest address covered
+     * @throws IllegalArgumentException if the part is invalid
+     */
+    static long[] parseRange(String part, boolean hostsOnly) {
+        if (part.isEmpty()) {
+            throw new IllegalArgumentException("Empty target in list");
+        }
+        if (part.contains(PREFIX_SEPARATOR)) {
+            String[] pieces = part.split(PREFIX_SEPARATOR, -1);
+            if (pieces.length != 2) {
+                throw new IllegalArgumentException("Invalid CIDR: " + part);
+            }
+            int prefix = parseNumber(pieces[1], "Unsupported CIDR: " + PREFIX_SEPARATOR + pieces[1]);
+            if (prefix < (hostsOnly ? MIN_PREFIX : 0) || prefix > MAX_PREFIX) {
+                throw new IllegalArgumentException("Unsupported CIDR: " + PREFIX_SEPARATOR + pieces[1]);
+            }
+            long mask = prefix == 0 ? 0L : (0xFFFFFFFFL << (32 - prefix)) & 0xFFFFFFFFL;
+            long network = parseAddress(pieces[0]) & mask;
+            long broadcast = network | (~mask & 0xFFFFFFFFL);
+            return hostsOnly && prefix <= 30 ? new long[] {network + 1, broadcast - 1} : new long[] {network, broadcast};
+        }
+        if (part.contains(RANGE_SEPARATOR)) {
+            String[] pieces = part.split(RANGE_SEPARATOR, -1);
+            if (pieces.length != 2) {
+                throw new IllegalArgumentException("Invalid range: " + part);
+            }
+            long low = parseAddress(pieces[0]);
+            long high;
+            if (pieces[1].contains(".")) {
+                high = parseAddress(pieces[1]);
+            } else {
+                int lastOctet = parseNumber(pieces[1], "Invalid range: " + part);
+                if (lastOctet > 255) {
+                    throw new IllegalArgumentException("Invalid range: " + part);
+                }
+                high = (low & 0xFFFFFF00L) | lastOctet;
+            }
+            if (high < low) {
+                throw new IllegalArgumentException("Range ends before it starts: " + part);
+            }
+            return new long[] {low, high};
+        }
+        long address = parseAddress(part);
+        return new long[] {address, address};
+    }
+
+    private static long parseAddress(String address) {
+        String[] octets = address.split("\\.", -1);
+        if (octets.length != 4) {
+            throw new IllegalArgumentException("Invalid IP address: " + address);
+        }
+        long value = 0;
+        for (String octet : octets) {
+            int octetValue = parseNumber(octet, "Invalid IP address: " + address);
+            if (octetValue > 255) {
+                throw new IllegalArgumentException("Invalid IP address: " + address);
+            }
+            value = (value << 8) | octetValue;
+        }
+        return value;
+    }
+
+    private static int parseNumber(String digits, String message) {
+        if (digits.isEmpty() || digits.length() > 3) {
+            throw new IllegalArgumentException(message);
+        }
+        for (int i = 0; i < digits.length(); i++) {
+            if (!Character.isDigit(digits.charAt(i))) {
+                throw new IllegalArgumentException(message);
+            }
+        }
+        return Integer.parseInt(digits);
+    }
+
+    @Override
+    public String toString() {
+        return "Ipv4TargetSet{" +
+                "ranges=" + ranges.intervalCount() +
+                ", size=" + size +
+                '}';
+    }
+
+    private final class AddressList extends AbstractList<Inet4Address> implements RandomAccess {
+
+        @Override
+        public Inet4Address get(int index) {
+            return Ipv4TargetSet.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return (int) size;
+        }
+
+        @Override
+        public Spliterator<Inet4Address> spliterator() {
+            return Ipv4TargetSet.this.spliterator();
+        }
+    }
+
+    /**
+     * Walks the indices {@code [index, end)} range by range, and splits them in
+     * halves.
+     */
+    private final class AddressSpliterator implements Spliterator<Inet4Address> {
+        private long index;
+        private final long end;
+        private int range;
+
+        private AddressSpliterator(long index, long end) {
+            this.index = index;
+            this.end = end;
+            this.range = index < size ? rangeOf(index) : offsets.length;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Inet4Address> action) {
+            if (index >= end) {
+                return false;
+            }
+            action.accept(next());
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Inet4Address> action) {
+            while (index < end) {
+                action.accept(next());
+            }
+        }
+
+        @Override
+        public Spliterator<Inet4Address> trySplit() {
+            long mid = (index + end) >>> 1;
+            if (mid <= index) {
+                return null;
+            }
+            AddressSpliterator prefix = new AddressSpliterator(index, mid);
+            index = mid;
+            range = rangeOf(mid);
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | DISTINCT | NONNULL | IMMUTABLE | SIZED | SUBSIZED;
+        }
+
+        private Inet4Address next() {
+            long value = ranges.low(range) + (index - offsets[range]);
+            if (value == ranges.high(range)) {
+                range++;
+            }
+            index++;
+            return toAddress(value);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.nocker.portscanner.target;
+
+import java.net.Inet4Address;
+
+/**
+ * {@code Target} is a single (host, port) pair to probe.
+ */
+public final class Target {
+    private final Inet4Address host;
+    private final int port;
+
+    public Target(Inet4Address host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    public Inet4Address getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    @Override
+    public String toString() {
+        return host.getHostAddress() + ":" + port;
+    }
+}
@@ -0,0 +1,235 @@
+package com.nocker.portscanner.target;
+
+import com.nocker.portscanner.PortScannerUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.net.Inet4Address;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * {@code TargetFeed} streams the targets of a list, such as an asset inventory,
+ * into a scan. The list holds addresses, CIDR blocks, dash ranges and host
+ * names, separated by lines, whitespace or commas, with {@code #} starting a
+ * comment. A producer thread reads the list line by line, expands blocks and
+ * ranges address by address and resolves names in parallel batches, and hands
+ * the addresses over through a bounded queue. So the list is never held in
+ * memory, whatever its length, and targets are produced while earlier ones are
+ * scanned, no faster than they are taken.
+ * <p>
+ * Addresses come out in the order of the list, except that names come out once
+ * their batch is resolved. Targets that are malformed or do not resolve are
+ * logged and skipped, and duplicates are not removed.
+ */
+public final class TargetFeed implements Iterator<Inet4Address>, Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TargetFeed.class);
+
+    /**
+     * Addresses produced ahead of the scan by default.
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /**
+     * Most names resolved together.
+     */
+    public static final int NAME_BATCH_SIZE = 256;
+
+    private static final String COMMENT = "#";
+    private static final String SEPARATORS = "[\\s,]+";
+
+    // marks the end of the list, only ever compared by identity
+    private final Inet4Address end = Ipv4TargetSet.toAddress(0);
+    private final Reader source;
+    private final Function<Collection<String>, Map<String, Inet4Address>> resolver;
+    private final BlockingQueue<Inet4Address> queue;
+    private final Thread producer;
+    private final AtomicLong produced = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private Inet4Address next;
+    private boolean finished = false;
+
+    /**
+     * Starts producing the targets of a list.
+     *
+     * @param source the list, closed once it is read
+     * @param resolver resolves a batch of names, to {@code null} for a name that does not resolve
+     * @param capacity the most addresses produced ahead of the scan
+     */
+    public TargetFeed(Reader source, Function<Collection<String>, Map<String, Inet4Address>> resolver, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.source = source;
+        this.resolver = resolver;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.producer = new Thread(this::produce, "nocker-target-feed");
+        producer.setDaemon(true);
+        producer.start();
+    }
+
+    /**
+     * Waits until the next target is produced or the list ends.
+     *
+     * @return {@code true} if there is another target
+     */
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+        if (finished) {
+            return false;
+        }
+        try {
+            Inet4Address address = queue.take();
+            if (address == end) {
+                finished = true;
+                return false;
+            }
+            next = address;
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finished = true;
+            return false;
+        }
+    }
+
+    @Override
+    public Inet4Address next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Inet4Address address = next;
+        next = null;
+        return address;
+    }
+
+    /**
+     * Retrieves the number of addresses produced so far.
+     *
+     * @return the produced address count
+     */
+    public long getProduced() {
+        return produced.get();
+    }
+
+    /**
+     * Retrieves the number of targets skipped so far because they are malformed
+     * or do not resolve.
+     *
+     * @return the skipped target count
+     */
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    /**
+     * Stops producing and closes the list.
+     */
+    @Override
+    public void close() {
+        producer.interrupt();
+        finished = true;
+    }
+
+    private void produce() {
+        try (BufferedReader reader = new BufferedReader(source)) {
+            List<String> names = new ArrayList<>(NAME_BATCH_SIZE);
+            String line;
+            while ((line = reader.readLine()) != null && !Thread.currentThread().isInterrupted()) {
+                int comment = line.indexOf(COMMENT);
+                String targets = (comment >= 0 ? line.substring(0, comment) : line).trim();
+                if (targets.isEmpty()) {
+                    continue;
+                }
+                for (String target : targets.split(SEPARATORS)) {
+                    if (isAddressTarget(target)) {
+                        produce(target);
+                    } else {
+                        names.add(target);
+                        if (names.size() == NAME_BATCH_SIZE) {
+                            produceNames(names);
+                            names.clear();
+                        }
+                    }
+                }
+            }
+            produceNames(names);
+        } catch (IOException e) {
+            LOGGER.error("Failed reading targets: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            finish();
+        }
+    }
+
+    private void produce(String target) throws InterruptedException {
+        Ipv4TargetSet addresses;
+        try {
+            addresses = Ipv4TargetSet.parse(target);
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Skipping target [{}]: {}", target, e.getMessage());
+            skipped.incrementAndGet();
+            return;
+        }
+        for (Inet4Address address : addresses) {
+            put(address);
+        }
+    }
+
+    private void produceNames(List<String> names) throws InterruptedException {
+        if (names.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<String, Inet4Address> address : resolver.apply(names).entrySet()) {
+            if (address.getValue() != null) {
+                put(address.getValue());
+            } else {
+                PortScannerUtil.logInvalidHost(address.getKey());
+                skipped.incrementAndGet();
+            }
+        }
+    }
+
+    private void put(Inet4Address address) throws InterruptedException {
+        queue.put(address);
+        produced.incrementAndGet();
+    }
+
+    private void finish() {
+        if (Thread.interrupted()) {
+            queue.clear(); // closed, nothing is taken any more
+        }
+        try {
+            queue.put(end);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Checks whether a target is an address, block or range rather than a name.
+     */
+    private static boolean isAddressTarget(String target) {
+        if (!Character.isDigit(target.charAt(0))) {
+            return false;
+        }
+        for (int i = 0; i < target.length(); i++) {
+            char c = target.charAt(i);
+            if (!Character.isDigit(c) && c != '.' && c != '/' && c != '-') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,96 @@
+package com.nocker.portscanner.target;
+
+import java.util.SplittableRandom;
+
+/**
+ * {@code TargetPermutation} is a seeded bijection over the indices
+ * {@code [0, size)}. It is a four round balanced Feistel network over the
+ * smallest power-of-four domain that holds {@code size} indices, with cycle
+ * walking: an output outside {@code [0, size)} is encrypted again until it
+ * lands inside. Since the domain is less than four times {@code size}, a
+ * permuted index costs a handful of rounds on average.
+ * <p>
+ * Nothing is materialized, so the permutation takes constant memory for any
+ * size, and index {@code i} can be computed without visiting {@code 0..i-1},
+ * which makes iteration resumable from any position. The same seed always
+ * produces the same order.
+ */
+public final class TargetPermutation {
+    private static final int ROUNDS = 4;
+
+    private final long size;
+    private final long seed;
+    private final int halfBits;
+    private final long halfMask;
+    private final long[] roundKeys = new long[ROUNDS];
+
+    /**
+     * Creates a permutation of {@code [0, size)}.
+     *
+     * @param size the number of indices, must be positive
+     * @param seed the seed that selects the order
+     */
+    public TargetPermutation(long size, long seed) {
+        if (size < 1) {
+            throw new IllegalArgumentException("permutation size must be positive");
+        }
+        this.size = size;
+        this.seed = seed;
+        int bits = Math.max(2, 64 - Long.numberOfLeadingZeros(size - 1));
+        if ((bits & 1) != 0) {
+            bits++;
+        }
+        this.halfBits = bits / 2;
+        this.halfMask = (1L << halfBits) - 1;
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < ROUNDS; i++) {
+            roundKeys[i] = random.nextLong();
+        }
+    }
+
+    /**
+     * Maps a position in the visiting order to the index visited there.
+     *
+     * @param position a position in {@code [0, size)}
+     * @return the index in {@code [0, size)} visited at that position
+     * @throws IndexOutOfBoundsException if {@code position} is out of range
+     */
+    public long permute(long position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("position " + position + " outside [0, " + size + ")");
+        }
+        long index = encrypt(position);
+        while (index >= size) {
+            index = encrypt(index);
+        }
+        return index;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    private long encrypt(long value) {
+        long left = value >>> halfBits;
+        long right = value & halfMask;
+        for (long roundKey : roundKeys) {
+            long next = left ^ (mix(right ^ roundKey) & halfMask);
+            left = right;
+            right = next;
+        }
+        return (left << halfBits) | right;
+    }
+
+    /**
+     * The finalizer of SplitMix64, a cheap well mixed round function.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
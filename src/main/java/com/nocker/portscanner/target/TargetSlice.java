@@ -0,0 +1,113 @@
+package com.nocker.portscanner.target;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * {@code TargetSlice} is the run of positions {@code [fromPosition, toPosition)}
+ * of a permuted {@link TargetSpace}. Iterating it yields the targets at those
+ * positions, in scattered order, without holding them in memory.
+ */
+public final class TargetSlice implements Iterable<Target> {
+    private final TargetSpace space;
+    private final TargetPermutation permutation;
+    private final long fromPosition;
+    private final long toPosition;
+
+    public TargetSlice(TargetSpace space, TargetPermutation permutation, long fromPosition, long toPosition) {
+        if (fromPosition < 0 || toPosition > space.size() || fromPosition > toPosition) {
+            throw new IllegalArgumentException("slice [" + fromPosition + ", " + toPosition
+                    + ") outside target space of " + space.size());
+        }
+        this.space = space;
+        this.permutation = permutation;
+        this.fromPosition = fromPosition;
+        this.toPosition = toPosition;
+    }
+
+    @Override
+    public TargetIterator iterator() {
+        return new TargetIterator(fromPosition);
+    }
+
+    /**
+     * Iterates the slice from a position reached earlier, for example one
+     * recorded with {@link TargetIterator#getPosition()} before an interruption.
+     *
+     * @param position the position to resume from, within the slice
+     * @return an iterator starting at {@code position}
+     */
+    public TargetIterator resumeFrom(long position) {
+        if (position < fromPosition || position > toPosition) {
+            throw new IllegalArgumentException("position " + position + " outside slice");
+        }
+        return new TargetIterator(position);
+    }
+
+    /**
+     * Narrows the slice to the positions {@code [fromPosition, toPosition)}, which
+     * keep the slice's permuted order.
+     *
+     * @return the sub-slice, within this slice
+     */
+    public TargetSlice subSlice(long fromPosition, long toPosition) {
+        if (fromPosition < this.fromPosition || toPosition > this.toPosition) {
+            throw new IllegalArgumentException("sub-slice [" + fromPosition + ", " + toPosition + ") outside slice");
+        }
+        return new TargetSlice(space, permutation, fromPosition, toPosition);
+    }
+
+    public long size() {
+        return toPosition - fromPosition;
+    }
+
+    public long getFromPosition() {
+        return fromPosition;
+    }
+
+    public long getToPosition() {
+        return toPosition;
+    }
+
+    public TargetSpace getSpace() {
+        return space;
+    }
+
+    @Override
+    public String toString() {
+        return "TargetSlice{" +
+                "from=" + fromPosition +
+                ", to=" + toPosition +
+                ", space=" + space +
+                '}';
+    }
+
+    /**
+     * Iterator over a slice. {@link #getPosition()} is the position of the next
+     * target, the point to resume from.
+     */
+    public final class TargetIterator implements Iterator<Target> {
+        private long position;
+
+        private TargetIterator(long position) {
+            this.position = position;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return position < toPosition;
+        }
+
+        @Override
+        public Target next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return space.getTarget(permutation.permute(position++));
+        }
+
+        public long getPosition() {
+            return position;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.nocker.portscanner.target;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * {@code TargetSource} is the {@code --targets-file} argument of
+ * {@code cidr-scan}: a file of targets, or {@code -} for standard input. The
+ * source is only checked here, it is read lazily by a {@link TargetFeed} while
+ * the scan runs.
+ */
+public class TargetSource {
+
+    /**
+     * Value that reads the targets from standard input.
+     */
+    public static final String STDIN = "-";
+
+    private final String value;
+
+    public TargetSource(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException("Missing targets file");
+        }
+        this.value = value.trim();
+        if (!isStdin() && !Files.isReadable(getPath())) {
+            throw new IllegalArgumentException("Cannot read targets file: " + value);
+        }
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public boolean isStdin() {
+        return STDIN.equals(value);
+    }
+
+    /**
+     * Opens the source for reading.
+     *
+     * @return a reader of the file, or of standard input
+     * @throws IOException if the file cannot be opened
+     */
+    public Reader open() throws IOException {
+        return isStdin()
+                ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+                : Files.newBufferedReader(getPath(), StandardCharsets.UTF_8);
+    }
+
+    private Path getPath() {
+        return Paths.get(value);
+    }
+
+    @Override
+    public String toString() {
+        return "TargetSource{" +
+                "value='" + value + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,137 @@
+package com.nocker.portscanner.target;
+
+import com.nocker.portscanner.tasks.PortRange;
+
+import java.net.Inet4Address;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@code TargetSpace} is the product of a list of hosts and a set of ports.
+ * Every (host, port) pair has an index in {@code [0, size())}, host major, so
+ * a {@link TargetPermutation} of the indices scatters both hosts and ports.
+ * Ports are kept either as a contiguous range or as an explicit array.
+ * Hosts of an {@link Ipv4TargetSet} are read from it on demand rather than
+ * copied.
+ */
+public final class TargetSpace {
+    private final List<Inet4Address> hosts;
+    private final int lowPort;
+    private final int[] ports;
+    private final int portCount;
+
+    public TargetSpace(List<Inet4Address> hosts, PortRange portRange) {
+        this.hosts = Collections.unmodifiableList(new ArrayList<>(hosts));
+        this.lowPort = portRange.getLow();
+        this.ports = null;
+        this.portCount = portRange.getHigh() - portRange.getLow() + 1;
+    }
+
+    public TargetSpace(Ipv4TargetSet hosts, PortRange portRange) {
+        this.hosts = hosts.asList();
+        this.lowPort = portRange.getLow();
+        this.ports = null;
+        this.portCount = portRange.getHigh() - portRange.getLow() + 1;
+    }
+
+    public TargetSpace(List<Inet4Address> hosts, List<Integer> ports) {
+        this.hosts = Collections.unmodifiableList(new ArrayList<>(hosts));
+        this.lowPort = 0;
+        this.ports = new int[ports.size()];
+        for (int i = 0; i < ports.size(); i++) {
+            this.ports[i] = ports.get(i);
+        }
+        this.portCount = this.ports.length;
+    }
+
+    /**
+     * Creates the space of a list of hosts and an array of ports. The array is
+     * shared rather than copied, so spaces of many hosts can take the same ports,
+     * and it must not be modified afterwards.
+     */
+    public TargetSpace(List<Inet4Address> hosts, int[] ports) {
+        this.hosts = Collections.unmodifiableList(new ArrayList<>(hosts));
+        this.lowPort = 0;
+        this.ports = ports;
+        this.portCount = ports.length;
+    }
+
+    /**
+     * Retrieves the number of (host, port) pairs in the space.
+     *
+     * @return hosts multiplied by ports
+     */
+    public long size() {
+        return (long) hosts.size() * portCount;
+    }
+
+    public Inet4Address getHost(long index) {
+        return hosts.get((int) (index / portCount));
+    }
+
+    public int getPort(long index) {
+        int offset = (int) (index % portCount);
+        return ports == null ? lowPort + offset : ports[offset];
+    }
+
+    public Target getTarget(long index) {
+        return new Target(getHost(index), getPort(index));
+    }
+
+    public List<Inet4Address> getHosts() {
+        return hosts;
+    }
+
+    public int getPortCount() {
+        return portCount;
+    }
+
+    /**
+     * Retrieves the lowest and highest port of the space.
+     *
+     * @return the port bounds as a {@link PortRange}
+     */
+    public PortRange getPortBounds() {
+        if (ports == null) {
+            return new PortRange(lowPort, lowPort + portCount - 1);
+        }
+        int low = Integer.MAX_VALUE;
+        int high = Integer.MIN_VALUE;
+        for (int port : ports) {
+            low = Math.min(low, port);
+            high = Math.max(high, port);
+        }
+        return new PortRange(low, high);
+    }
+
+    /**
+     * Cuts the permuted visiting order of the space into consecutive slices of
+     * at most {@code sliceSize} pairs. Each slice is work for one task.
+     *
+     * @param permutation a permutation of {@code [0, size())}
+     * @param sliceSize the maximum number of pairs per slice
+     * @return the slices, covering every pair exactly once
+     */
+    public List<TargetSlice> slices(TargetPermutation permutation, int sliceSize) {
+        if (permutation.size() != size()) {
+            throw new IllegalArgumentException("permutation does not cover the target space");
+        }
+        if (sliceSize < 1) {
+            throw new IllegalArgumentException("slice size must be positive");
+        }
+        List<TargetSlice> slices = new ArrayList<>();
+        for (long from = 0; from < size(); from += sliceSize) {
+            slices.add(new TargetSlice(this, permutation, from, Math.min(size(), from + sliceSize)));
+        }
+        return slices;
+    }
+
+    @Override
+    public String toString() {
+        return "TargetSpace{" +
+                "hosts=" + hosts.size() +
+                ", ports=" + portCount +
+                '}';
+    }
+}
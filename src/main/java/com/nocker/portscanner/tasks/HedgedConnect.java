@@ -0,0 +1,108 @@
+package com.nocker.portscanner.tasks;
+
+import com.nocker.portscanner.PortState;
+import com.nocker.portscanner.control.HedgePolicy;
+import com.nocker.portscanner.engine.NioConnectEngine;
+import com.nocker.portscanner.rate.TokenBucket;
+
+import java.net.Inet4Address;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code HedgedConnect} is a connect probe of the {@link NioConnectEngine} that may
+ * be hedged. When the primary connect is still unresolved after its host's hedge
+ * delay, and the {@link HedgePolicy} has budget left, a second connect to the same
+ * port is started for what remains of the timeout. The first {@link PortState#OPEN}
+ * or {@link PortState#CLOSED} answer of either connect resolves the probe. When
+ * neither is answered, the primary's state stands.
+ * <p>
+ * Hedges are started from a single shared timer thread and never wait, for room in
+ * the engine or for the rate limit: a hedge that finds the engine at its in-flight
+ * bound, or no token left in the {@link TokenBucket}, is dropped.
+ */
+final class HedgedConnect {
+    private static final ScheduledThreadPoolExecutor HEDGE_TIMER = newHedgeTimer();
+
+    private final CompletableFuture<PortState> result = new CompletableFuture<>();
+    private PortState primaryState;
+    private int outstanding = 1;
+    private volatile boolean hedged = false;
+
+    private HedgedConnect() {
+    }
+
+    /**
+     * Starts the primary connect of a probe and, if the host has a hedge delay
+     * shorter than the timeout, arms its hedge. Blocks only while the engine is
+     * at its in-flight bound, like {@link NioConnectEngine#connect(Inet4Address, int, int)}.
+     */
+    static HedgedConnect start(NioConnectEngine connectEngine, Inet4Address host, int port, int timeoutMillis,
+                               HedgePolicy hedging, TokenBucket rateLimiter) {
+        HedgedConnect connect = new HedgedConnect();
+        long hedgeDelayMillis = hedging.hedgeDelayMillis(host);
+        CompletableFuture<PortState> primary = connectEngine.connect(host, port, timeoutMillis);
+        primary.thenAccept(state -> connect.resolve(state, true));
+        if (hedgeDelayMillis > 0L && hedgeDelayMillis < timeoutMillis && !primary.isDone()) {
+            int remainingMillis = (int) (timeoutMillis - hedgeDelayMillis);
+            ScheduledFuture<?> hedge = HEDGE_TIMER.schedule(
+                    () -> connect.hedge(connectEngine, host, port, remainingMillis, hedging, rateLimiter),
+                    hedgeDelayMillis, TimeUnit.MILLISECONDS);
+            connect.result.thenRun(() -> hedge.cancel(false));
+        }
+        return connect;
+    }
+
+    CompletableFuture<PortState> getResult() {
+        return result;
+    }
+
+    /**
+     * Whether a hedge was sent for this probe. The round trip of a hedged probe
+     * is ambiguous and must not be sampled.
+     */
+    boolean isHedged() {
+        return hedged;
+    }
+
+    private void hedge(NioConnectEngine connectEngine, Inet4Address host, int port, int remainingMillis,
+                       HedgePolicy hedging, TokenBucket rateLimiter) {
+        if (result.isDone() || !hedging.canHedge() || !rateLimiter.tryAcquire() || !hedging.tryHedge()) {
+            return;
+        }
+        CompletableFuture<PortState> copy = connectEngine.tryConnect(host, port, remainingMillis);
+        if (copy == null) {
+            hedging.refundHedge();
+            return;
+        }
+        synchronized (this) {
+            outstanding++;
+            hedged = true;
+        }
+        copy.thenAccept(state -> resolve(state, false));
+    }
+
+    private synchronized void resolve(PortState state, boolean primary) {
+        if (primary) {
+            primaryState = state;
+        }
+        outstanding--;
+        if (state == PortState.OPEN || state == PortState.CLOSED) {
+            result.complete(state);
+        } else if (outstanding == 0) {
+            result.complete(primaryState != null ? primaryState : state);
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor newHedgeTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "nocker-hedge-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+}
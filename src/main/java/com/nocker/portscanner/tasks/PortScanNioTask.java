@@ -0,0 +1,185 @@
+package com.nocker.portscanner.tasks;
+
+import com.nocker.portscanner.PortScannerUtil;
+import com.nocker.portscanner.PortState;
+import com.nocker.portscanner.control.AdaptiveConcurrency;
+import com.nocker.portscanner.engine.NioConnectEngine;
+import com.nocker.portscanner.report.PortScanResult;
+import com.nocker.portscanner.target.Target;
+import com.nocker.portscanner.target.TargetSlice;
+import org.apache.logging.log4j.core.util.UuidUtil;
+
+import java.net.Inet4Address;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code PortScanNioTask} is the connect scan counterpart of {@link PortScanSynAckTask}
+ * for the {@link NioConnectEngine}. Every port of the task is handed to the engine up
+ * front, so the connects of a task are in flight together instead of one after another,
+ * and the results are gathered once all of them resolve. With hedging, a connect still
+ * unanswered after its host's hedge delay gets a second copy, see {@link HedgedConnect}.
+ */
+public class PortScanNioTask implements PortScanTask, Callable<List<PortScanResult>> {
+    private final Inet4Address host;
+    private final List<Integer> ports;
+    private final PortRange portRange;
+    private final TargetSlice targetSlice;
+    private final int timeout;
+    private final UUID schedulerId;
+    private final UUID taskId = UuidUtil.getTimeBasedUuid();
+    private final transient NioConnectEngine connectEngine;
+    private final transient ProbeContext probeContext;
+
+    private static final long serialVersionUID = 1L;
+
+    public PortScanNioTask(UUID schedulerId, Inet4Address host, List<Integer> ports, int timeout,
+                           NioConnectEngine connectEngine) {
+        this(schedulerId, host, ports, timeout, connectEngine, ProbeContext.defaults());
+    }
+
+    public PortScanNioTask(UUID schedulerId, Inet4Address host, PortRange portRange, int timeout,
+                           NioConnectEngine connectEngine) {
+        this(schedulerId, host, portRange, timeout, connectEngine, ProbeContext.defaults());
+    }
+
+    public PortScanNioTask(UUID schedulerId, Inet4Address host, List<Integer> ports, int timeout,
+                           NioConnectEngine connectEngine, ProbeContext probeContext) {
+        this.schedulerId = schedulerId;
+        this.host = host;
+        this.ports = ports;
+        this.portRange = null;
+        this.targetSlice = null;
+        this.timeout = timeout;
+        this.connectEngine = connectEngine;
+        this.probeContext = probeContext;
+    }
+
+    public PortScanNioTask(UUID schedulerId, Inet4Address host, PortRange portRange, int timeout,
+                           NioConnectEngine connectEngine, ProbeContext probeContext) {
+        this.schedulerId = schedulerId;
+        this.host = host;
+        this.ports = null;
+        this.portRange = portRange;
+        this.targetSlice = null;
+        this.timeout = timeout;
+        this.connectEngine = connectEngine;
+        this.probeContext = probeContext;
+    }
+
+    /**
+     * Creates a task probing a slice of a permuted target space, whose targets
+     * may span several hosts.
+     */
+    public PortScanNioTask(UUID schedulerId, TargetSlice targetSlice, int timeout, NioConnectEngine connectEngine,
+                           ProbeContext probeContext) {
+        this.schedulerId = schedulerId;
+        this.host = null;
+        this.ports = null;
+        this.portRange = null;
+        this.targetSlice = targetSlice;
+        this.timeout = timeout;
+        this.connectEngine = connectEngine;
+        this.probeContext = probeContext;
+    }
+
+    @Override
+    public List<PortScanResult> call() {
+        long start = System.currentTimeMillis();
+        List<Target> targets = new ArrayList<>();
+        if (targetSlice != null) {
+            for (Target target : targetSlice) {
+                targets.add(target);
+            }
+        } else if (portRange != null && ports == null) {
+            for (int destinationPort = portRange.getLow(); destinationPort <= portRange.getHigh(); destinationPort++) {
+                targets.add(new Target(host, destinationPort));
+            }
+        } else {
+            if (ports != null && portRange == null) {
+                for (int destinationPort : ports) {
+                    targets.add(new Target(host, destinationPort));
+                }
+            }
+        }
+        List<Target> probed = new ArrayList<>(targets.size());
+        List<CompletableFuture<PortState>> probes = new ArrayList<>(targets.size());
+        for (Target target : targets) {
+            probed.add(target);
+            if (probeContext.getLiveness().skip(target.getHost())) {
+                probes.add(CompletableFuture.completedFuture(PortState.SKIPPED));
+                continue;
+            }
+            AdaptiveConcurrency.Permit permit;
+            try {
+                permit = probeContext.getAdaptiveConcurrency().acquire(target.getHost());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                probes.add(CompletableFuture.completedFuture(PortState.ERROR));
+                continue;
+            }
+            probeContext.getRateLimiter().acquire();
+            int probeTimeout = probeContext.getTimeouts().timeoutFor(target.getHost(), timeout);
+            long probeStart = System.nanoTime();
+            HedgedConnect connect = HedgedConnect.start(connectEngine, target.getHost(), target.getPort(),
+                    probeTimeout, probeContext.getHedging(), probeContext.getRateLimiter());
+            CompletableFuture<PortState> probe = connect.getResult();
+            probe.thenAccept(state -> {
+                long probeNanos = System.nanoTime() - probeStart;
+                if ((state == PortState.OPEN || state == PortState.CLOSED) && !connect.isHedged()) {
+                    probeContext.sampleRtt(target.getHost(), probeNanos);
+                }
+                permit.release(state, TimeUnit.NANOSECONDS.toMillis(probeNanos));
+                probeContext.getLiveness().record(target.getHost(), state);
+            });
+            probes.add(probe);
+        }
+        List<PortScanResult> results = new ArrayList<>(probes.size());
+        for (int i = 0; i < probes.size(); i++) {
+            PortState state = probes.get(i).join();
+            long duration = System.currentTimeMillis() - start;
+            results.add(new PortScanResult(
+                    schedulerId,
+                    taskId,
+                    probed.get(i).getHost(),
+                    probed.get(i).getPort(),
+                    state,
+                    duration
+            ));
+        }
+        return results;
+    }
+
+    @Override
+    public String getTaskIdText() {
+        return taskId.toString();
+    }
+
+    @Override
+    public String getSchedulerIdText() {
+        return schedulerId.toString();
+    }
+
+    @Override
+    public PortRange getDestinationPortRange() {
+        if (targetSlice != null) {
+            return targetSlice.getSpace().getPortBounds();
+        }
+        return portRange != null ? portRange : PortScannerUtil.getPortRange(ports);
+    }
+
+    @Override
+    public String toString() {
+        return "PortScanNioTask{" +
+                "taskId=" + taskId +
+                ", schedulerId=" + schedulerId +
+                ", host=" + (targetSlice != null ? targetSlice : host.getHostAddress()) +
+                ", ports=" + getDestinationPortRange() +
+                ", timeout=" + timeout +
+                '}';
+    }
+}
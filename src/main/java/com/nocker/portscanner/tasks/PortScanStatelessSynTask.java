@@ -0,0 +1,220 @@
+package com.nocker.portscanner.tasks;
+
+import com.nocker.portscanner.PortState;
+import com.nocker.portscanner.engine.PcapReceiveLoop;
+import com.nocker.portscanner.engine.TcpReplyListener;
+import com.nocker.portscanner.packet.SynCookie;
+import com.nocker.portscanner.packet.SynPacketTemplate;
+import com.nocker.portscanner.report.PortScanResult;
+import com.nocker.portscanner.route.ResolvedRoute;
+import com.nocker.portscanner.route.RouteCache;
+import com.nocker.portscanner.target.Target;
+import com.nocker.portscanner.target.TargetSlice;
+import org.apache.logging.log4j.core.util.UuidUtil;
+import org.pcap4j.core.PcapNativeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.Inet4Address;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * {@code PortScanStatelessSynTask} sweeps a {@link TargetSlice} of (host, port)
+ * pairs in the style of a stateless scanner. The calling thread only
+ * transmits SYNs, one after another and as fast as the scan's rate limit allows,
+ * without waiting on any of them. Replies are classified on the capture thread
+ * of the interface's {@link PcapReceiveLoop}: the initial sequence number of each
+ * probe is a {@link SynCookie} of its (destination address, destination port,
+ * source port), so a reply is accepted when it acknowledges that cookie and
+ * nothing is stored per probe in flight.
+ * <p>
+ * Once the last SYN is sent the task waits {@code timeout} milliseconds for late
+ * replies. Probes that were never answered are reported {@link PortState#FILTERED}.
+ * The cost of a sweep is the time to transmit it plus a single timeout, rather
+ * than a timeout per probe.
+ */
+public class PortScanStatelessSynTask implements PortScanTask, Callable<List<PortScanResult>> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PortScanStatelessSynTask.class);
+
+    private final TargetSlice targetSlice;
+    private final int sourcePort;
+    private final int timeout;
+    private final UUID schedulerId;
+    private final UUID taskId = UuidUtil.getTimeBasedUuid();
+    private final transient SynCookie synCookie;
+    private final transient ProbeContext probeContext;
+
+    private static final long serialVersionUID = 1L;
+
+    public PortScanStatelessSynTask(UUID schedulerId, TargetSlice targetSlice, int sourcePort, int timeout,
+                                    SynCookie synCookie, ProbeContext probeContext) {
+        this.schedulerId = schedulerId;
+        this.targetSlice = targetSlice;
+        this.sourcePort = sourcePort;
+        this.timeout = timeout;
+        this.synCookie = synCookie;
+        this.probeContext = probeContext;
+    }
+
+    @Override
+    public List<PortScanResult> call() {
+        long start = System.currentTimeMillis();
+        ConcurrentHashMap<Long, PortState> replies = new ConcurrentHashMap<>();
+        TcpReplyListener replyListener = (sourceAddress, remotePort, localPort, state, acknowledgmentNumber) -> {
+            if (synCookie.isValidAcknowledgment(sourceAddress, remotePort, localPort, acknowledgmentNumber)) {
+                replies.putIfAbsent(replyKey(sourceAddress, remotePort), state);
+            }
+        };
+        Map<Inet4Address, Transmission> transmissions = new HashMap<>();
+        Set<PcapReceiveLoop> receiveLoops = new HashSet<>();
+        try {
+            for (Target target : targetSlice) {
+                Inet4Address host = target.getHost();
+                if (!transmissions.containsKey(host)) {
+                    transmissions.put(host, openTransmission(host, replyListener, receiveLoops));
+                }
+                transmit(transmissions.get(host), target);
+            }
+            awaitLateReplies();
+        } finally {
+            for (PcapReceiveLoop receiveLoop : receiveLoops) {
+                receiveLoop.removeReplyListener(sourcePort);
+            }
+        }
+        return collectResults(replies, transmissions, start);
+    }
+
+    /**
+     * Resolves the route to a host, once, and registers the reply listener on the
+     * receive loop of its interface.
+     *
+     * @return the transmission of the host or {@code null} if it cannot be routed
+     */
+    private Transmission openTransmission(Inet4Address host, TcpReplyListener replyListener,
+                                          Set<PcapReceiveLoop> receiveLoops) {
+        ResolvedRoute route;
+        try {
+            route = RouteCache.shared().resolve(host);
+        } catch (PcapNativeException | RuntimeException e) {
+            LOGGER.warn("Failed to resolve route to {}: {}", host.getHostAddress(), e.getMessage());
+            return null;
+        }
+        if (route == null) {
+            LOGGER.warn("No interface routes to {}", host.getHostAddress());
+            return null;
+        }
+        PcapReceiveLoop receiveLoop = PcapReceiveLoop.forInterface(route.getNetworkInterface());
+        if (receiveLoops.add(receiveLoop)) {
+            receiveLoop.addReplyListener(sourcePort, replyListener);
+        }
+        return new Transmission(receiveLoop, new SynPacketTemplate(route.getSourceAddress(), host));
+    }
+
+    private void transmit(Transmission transmission, Target target) {
+        if (transmission == null) {
+            return;
+        }
+        int sequenceNumber = synCookie.sequenceNumber(transmission.address, target.getPort(), sourcePort);
+        transmission.template.patch(transmission.packet, sourcePort, target.getPort(), sequenceNumber,
+                transmission.identification++);
+        probeContext.getRateLimiter().acquire();
+        try {
+            transmission.receiveLoop.send(transmission.packet, SynPacketTemplate.PACKET_LENGTH);
+        } catch (Exception e) {
+            LOGGER.warn("Scan error on transmission: {} - {}", target, e.getMessage());
+        }
+    }
+
+    private void awaitLateReplies() {
+        try {
+            Thread.sleep(timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Derives the result of every probe from the replies received. There is no record
+     * of which probes were sent, only of which were answered, so the slice is walked
+     * again and every pair without a reply is {@link PortState#FILTERED}.
+     */
+    private List<PortScanResult> collectResults(Map<Long, PortState> replies, Map<Inet4Address, Transmission> transmissions,
+                                                long start) {
+        long duration = System.currentTimeMillis() - start;
+        List<PortScanResult> results = new ArrayList<>((int) Math.min(targetSlice.size(), Integer.MAX_VALUE));
+        for (Target target : targetSlice) {
+            Transmission transmission = transmissions.get(target.getHost());
+            PortState state = transmission == null ? PortState.ERROR
+                    : replies.getOrDefault(replyKey(transmission.address, target.getPort()), PortState.FILTERED);
+            results.add(new PortScanResult(
+                    schedulerId,
+                    taskId,
+                    target.getHost(),
+                    target.getPort(),
+                    state,
+                    duration
+            ));
+        }
+        return results;
+    }
+
+    private static long replyKey(int address, int port) {
+        return ((address & 0xFFFFFFFFL) << 16) | (port & 0xFFFF);
+    }
+
+    public UUID getTaskId() {
+        return taskId;
+    }
+
+    @Override
+    public String getTaskIdText() {
+        return taskId.toString();
+    }
+
+    public UUID getSchedulerId() {
+        return schedulerId;
+    }
+
+    @Override
+    public String getSchedulerIdText() {
+        return schedulerId.toString();
+    }
+
+    @Override
+    public PortRange getDestinationPortRange() {
+        return targetSlice.getSpace().getPortBounds();
+    }
+
+    public TargetSlice getTargetSlice() {
+        return targetSlice;
+    }
+
+    @Override
+    public String toString() {
+        return "PortScanStatelessSynTask{" +
+                "taskId=" + taskId +
+                ", schedulerId=" + schedulerId +
+                ", targets=" + targetSlice +
+                ", sourcePort=" + sourcePort +
+                ", timeout=" + timeout +
+                '}';
+    }
+
+    private static final class Transmission {
+        private final PcapReceiveLoop receiveLoop;
+        private final SynPacketTemplate template;
+        private final byte[] packet;
+        private final int address;
+        private int identification = ThreadLocalRandom.current().nextInt(0x10000);
+
+        private Transmission(PcapReceiveLoop receiveLoop, SynPacketTemplate template) {
+            this.receiveLoop = receiveLoop;
+            this.template = template;
+            this.packet = template.newPacket();
+            this.address = PcapReceiveLoop.toInt(template.getDestinationAddress());
+        }
+    }
+}
@@ -3,6 +3,9 @@ package com.nocker.portscanner.tasks;
 import com.nocker.portscanner.report.PortScanResult;
 import com.nocker.portscanner.PortScannerUtil;
 import com.nocker.portscanner.PortState;
+import com.nocker.portscanner.control.AdaptiveConcurrency;
+import com.nocker.portscanner.target.Target;
+import com.nocker.portscanner.target.TargetSlice;
 import org.apache.logging.log4j.core.util.UuidUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,6 +16,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 // review: duration times - because of update
 public class PortScanSynAckTask implements PortScanTask, Callable<List<PortScanResult>> {
@@ -21,53 +25,102 @@ public class PortScanSynAckTask implements PortScanTask, Callable<List<PortScanR
     private final Inet4Address host;
     private final List<Integer> ports;
     private final PortRange portRange;
+    private final TargetSlice targetSlice;
     private final int timeout;
     private final UUID schedulerId;
     private final UUID taskId = UuidUtil.getTimeBasedUuid();
+    private final transient ProbeContext probeContext;
 
     private static final long serialVersionUID = 1L;
 
     public PortScanSynAckTask(UUID schedulerId, Inet4Address host, List<Integer> ports, int timeout) {
+        this(schedulerId, host, ports, timeout, ProbeContext.defaults());
+    }
+
+    public PortScanSynAckTask(UUID schedulerId, Inet4Address host, PortRange portRange, int timeout) {
+        this(schedulerId, host, portRange, timeout, ProbeContext.defaults());
+    }
+
+    public PortScanSynAckTask(UUID schedulerId, Inet4Address host, List<Integer> ports, int timeout,
+                              ProbeContext probeContext) {
         this.schedulerId = schedulerId;
         this.host = host;
         this.ports = ports;
         this.portRange = null;
+        this.targetSlice = null;
         this.timeout = timeout;
+        this.probeContext = probeContext;
     }
 
-    public PortScanSynAckTask(UUID schedulerId, Inet4Address host, PortRange portRange, int timeout) {
+    public PortScanSynAckTask(UUID schedulerId, Inet4Address host, PortRange portRange, int timeout,
+                              ProbeContext probeContext) {
         this.schedulerId = schedulerId;
         this.host = host;
         this.ports = null;
         this.portRange = portRange;
+        this.targetSlice = null;
         this.timeout = timeout;
+        this.probeContext = probeContext;
+    }
+
+    /**
+     * Creates a task probing a slice of a permuted target space, whose targets
+     * may span several hosts.
+     */
+    public PortScanSynAckTask(UUID schedulerId, TargetSlice targetSlice, int timeout, ProbeContext probeContext) {
+        this.schedulerId = schedulerId;
+        this.host = null;
+        this.ports = null;
+        this.portRange = null;
+        this.targetSlice = targetSlice;
+        this.timeout = timeout;
+        this.probeContext = probeContext;
     }
 
     @Override
     public List<PortScanResult> call() {
         long start = System.currentTimeMillis();
         List<PortScanResult> results = new ArrayList<>();
-        if (portRange != null && ports == null) {
+        if (targetSlice != null) {
+            for (Target target : targetSlice) {
+                iteratePort(results, target.getHost(), target.getPort(), start);
+            }
+        } else if (portRange != null && ports == null) {
             int lowDestinationPort = portRange.getLow();
             int highDestinationPort = portRange.getHigh();
             while (lowDestinationPort <= highDestinationPort) {
-                iteratePort(results, lowDestinationPort, start);
+                iteratePort(results, host, lowDestinationPort, start);
                 lowDestinationPort++;
             }
         } else {
             if (ports != null && portRange == null) {
                 for (int destinationPort : ports) {
-                    iteratePort(results, destinationPort, start);
+                    iteratePort(results, host, destinationPort, start);
                 }
             }
         }
         return results;
     }
 
-    private void iteratePort(List<PortScanResult> results, int destinationPort, long start) {
+    private void iteratePort(List<PortScanResult> results, Inet4Address host, int destinationPort, long start) {
+        if (probeContext.getLiveness().skip(host)) {
+            addResult(results, host, destinationPort, PortState.SKIPPED, start);
+            return;
+        }
         PortState state;
+        AdaptiveConcurrency.Permit permit;
+        try {
+            permit = probeContext.getAdaptiveConcurrency().acquire(host);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            addResult(results, host, destinationPort, PortState.ERROR, start);
+            return;
+        }
+        probeContext.getRateLimiter().acquire();
+        int probeTimeout = probeContext.getTimeouts().timeoutFor(host, timeout);
+        long probeStart = System.nanoTime();
         try (Socket socket = new Socket()) {
-            socket.connect(new InetSocketAddress(host, destinationPort), timeout);
+            socket.connect(new InetSocketAddress(host, destinationPort), probeTimeout);
             state = PortState.OPEN;
         }
         catch (SocketTimeoutException e) {
@@ -79,6 +132,17 @@ public class PortScanSynAckTask implements PortScanTask, Callable<List<PortScanR
         catch (IOException e) {
             state = PortState.ERROR;
         }
+        long probeNanos = System.nanoTime() - probeStart;
+        if (state == PortState.OPEN || state == PortState.CLOSED) {
+            probeContext.sampleRtt(host, probeNanos);
+        }
+        permit.release(state, TimeUnit.NANOSECONDS.toMillis(probeNanos));
+        probeContext.getLiveness().record(host, state);
+        addResult(results, host, destinationPort, state, start);
+    }
+
+    private void addResult(List<PortScanResult> results, Inet4Address host, int destinationPort, PortState state,
+                           long start) {
         long duration = System.currentTimeMillis() - start;
         results.add(new PortScanResult(
                 schedulerId,
@@ -102,7 +166,10 @@ public class PortScanSynAckTask implements PortScanTask, Callable<List<PortScanR
 
     @Override
     public PortRange getDestinationPortRange() {
-        return PortScannerUtil.getPortRange(ports);
+        if (targetSlice != null) {
+            return targetSlice.getSpace().getPortBounds();
+        }
+        return portRange != null ? portRange : PortScannerUtil.getPortRange(ports);
     }
 
     @Override
@@ -110,7 +177,7 @@ public class PortScanSynAckTask implements PortScanTask, Callable<List<PortScanR
         return "PortScanSynAckTask{" +
                 "taskId=" + taskId +
                 ", schedulerId=" + schedulerId +
-                ", host=" + host.getHostAddress() +
+                ", host=" + (targetSlice != null ? targetSlice : host.getHostAddress()) +
                 ", ports=" + getDestinationPortRange() +
                 ", timeout=" + timeout +
                 '}';
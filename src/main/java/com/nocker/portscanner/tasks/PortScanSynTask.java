@@ -3,20 +3,28 @@ package com.nocker.portscanner.tasks;
 import com.nocker.portscanner.report.PortScanResult;
 import com.nocker.portscanner.PortScannerUtil;
 import com.nocker.portscanner.PortState;
-import com.nocker.portscanner.packet.Ipv4TcpSynPacket;
+import com.nocker.portscanner.control.AdaptiveConcurrency;
+import com.nocker.portscanner.control.HedgePolicy;
+import com.nocker.portscanner.engine.PcapReceiveLoop;
+import com.nocker.portscanner.packet.SynPacketTemplate;
 import com.nocker.portscanner.packet.TcpSynSegment;
+import com.nocker.portscanner.route.ResolvedRoute;
+import com.nocker.portscanner.route.RouteCache;
+import com.nocker.portscanner.target.Target;
+import com.nocker.portscanner.target.TargetSlice;
 import org.apache.logging.log4j.core.util.UuidUtil;
-import org.pcap4j.core.*;
-import org.pcap4j.packet.Packet;
-import org.pcap4j.packet.TcpPacket;
+import org.pcap4j.core.PcapNativeException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.*;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.Callable;
+import java.util.concurrent.*;
 
 // review: duration times - because of update
 public class PortScanSynTask implements PortScanTask, Callable<List<PortScanResult>> {
@@ -25,140 +33,321 @@ public class PortScanSynTask implements PortScanTask, Callable<List<PortScanResu
     private final Inet4Address destinationHost;
     private final List<Integer> destinationPorts;
     private final PortRange destinationPortRange;
+    private final TargetSlice targetSlice;
     private final int sourcePort;
     private final int timeout;
     private final UUID schedulerId;
     private final UUID taskId = UuidUtil.getTimeBasedUuid();
+    private final transient ProbeContext probeContext;
+    private long nextHedgeAtMillis = Long.MAX_VALUE; // earliest hedge point of the pending probes
     // add a tll
 
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Maximum number of probes of a single task awaiting a reply at once.
+     */
+    public static final int MAX_PENDING_PROBES = 256;
+
     public PortScanSynTask(UUID schedulerId, Inet4Address destinationHost, List<Integer> destinationPorts, int sourcePort,
                            int timeout) {
+        this(schedulerId, destinationHost, destinationPorts, sourcePort, timeout, ProbeContext.defaults());
+    }
+
+    public PortScanSynTask(UUID schedulerId, Inet4Address destinationHost, PortRange destinationPortRange, int sourcePort,
+                           int timeout) {
+        this(schedulerId, destinationHost, destinationPortRange, sourcePort, timeout, ProbeContext.defaults());
+    }
+
+    public PortScanSynTask(UUID schedulerId, Inet4Address destinationHost, List<Integer> destinationPorts, int sourcePort,
+                           int timeout, ProbeContext probeContext) {
         this.schedulerId = schedulerId;
         this.destinationHost = destinationHost;
         this.destinationPorts = destinationPorts;
         this.destinationPortRange = null;
+        this.targetSlice = null;
         this.sourcePort = sourcePort;
         this.timeout = timeout;
+        this.probeContext = probeContext;
     }
 
     public PortScanSynTask(UUID schedulerId, Inet4Address destinationHost, PortRange destinationPortRange, int sourcePort,
-                           int timeout) {
+                           int timeout, ProbeContext probeContext) {
         this.schedulerId = schedulerId;
         this.destinationHost = destinationHost;
         this.destinationPorts = null;
         this.destinationPortRange = destinationPortRange;
+        this.targetSlice = null;
+        this.sourcePort = sourcePort;
+        this.timeout = timeout;
+        this.probeContext = probeContext;
+    }
+
+    /**
+     * Creates a task probing a slice of a permuted target space, whose targets
+     * may span several hosts.
+     */
+    public PortScanSynTask(UUID schedulerId, TargetSlice targetSlice, int sourcePort, int timeout,
+                           ProbeContext probeContext) {
+        this.schedulerId = schedulerId;
+        this.destinationHost = null;
+        this.destinationPorts = null;
+        this.destinationPortRange = null;
+        this.targetSlice = targetSlice;
         this.sourcePort = sourcePort;
         this.timeout = timeout;
+        this.probeContext = probeContext;
     }
 
     @Override
     public List<PortScanResult> call() {
         long start = System.currentTimeMillis();
         List<PortScanResult> results = new ArrayList<>();
-        if (destinationPortRange != null && destinationPorts == null) {
+        ArrayDeque<PendingProbe> pendingProbes = new ArrayDeque<>();
+        Map<Inet4Address, Transmission> transmissions = new HashMap<>();
+        if (targetSlice != null) {
+            for (Target target : targetSlice) {
+                iteratePort(results, pendingProbes, transmissions, target.getHost(), target.getPort(), start);
+            }
+        } else if (destinationPortRange != null && destinationPorts == null) {
             int lowDestinationPort = destinationPortRange.getLow();
             int highDestinationPort = destinationPortRange.getHigh();
             while (lowDestinationPort <= highDestinationPort) {
-                iteratePort(results, lowDestinationPort, start);
+                iteratePort(results, pendingProbes, transmissions, destinationHost, lowDestinationPort, start);
                 lowDestinationPort++;
             }
         } else {
             if (destinationPorts != null && destinationPortRange == null) {
                 for (int destinationPort : destinationPorts) {
-                    iteratePort(results, destinationPort, start);
+                    iteratePort(results, pendingProbes, transmissions, destinationHost, destinationPort, start);
                 }
             }
         }
+        while (!pendingProbes.isEmpty()) {
+            awaitReply(results, pendingProbes, start);
+        }
         return results;
     }
 
-    private void iteratePort(List<PortScanResult> ongoingResults, int destinationPort, long start) {
-        PortState finalState = PortState.FILTERED;
-        TcpSynSegment tcpSynSegment = new TcpSynSegment((short) sourcePort, (short) destinationPort, destinationHost);
-        Ipv4TcpSynPacket ipv4TcpSynPacket = generateIpv4TcpSynPacketFromTcpSynSegment(tcpSynSegment);
-        PcapHandle pcapHandle = openHandle(ipv4TcpSynPacket);
+    /**
+     * Resolves the route to a destination host and builds the SYN template the
+     * task patches for every port of that host. Returns {@code null} if the host
+     * cannot be routed, and its ports are reported as {@link PortState#ERROR}, as
+     * the stateless task reports them.
+     */
+    private Transmission openTransmission(Inet4Address host) {
         try {
-            pcapHandle.setFilter(generateFilter(destinationPort), BpfProgram.BpfCompileMode.OPTIMIZE);
-            pcapHandle.sendPacket(ipv4TcpSynPacket.createIpv4Packet());
-            long deadline = System.currentTimeMillis() + timeout;
-            while (System.currentTimeMillis() < deadline) {
-                Packet packet = pcapHandle.getNextPacket();
-                if (packet == null) {
-                    continue;
-                }
-                TcpPacket tcpPacket = packet.get(TcpPacket.class);
-                if (tcpPacket == null) {
-                    continue;
-                }
-                TcpPacket.TcpHeader header = tcpPacket.getHeader();
-                if (header.getSyn() && header.getAck()) {
-                    finalState = PortState.OPEN;
-                    break;
+            ResolvedRoute route = RouteCache.shared().resolve(host);
+            if (route == null) {
+                LOGGER.warn("No interface routes to {}", host.getHostAddress());
+                return null;
+            }
+            return new Transmission(PcapReceiveLoop.forInterface(route.getNetworkInterface()),
+                    new SynPacketTemplate(route.getSourceAddress(), host));
+        } catch (PcapNativeException | RuntimeException e) {
+            LOGGER.warn("Failed to resolve route to {}: {}", host.getHostAddress(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Sends the SYN for a single destination port. Replies are collected by the
+     * interface's shared {@link PcapReceiveLoop}, so up to {@code MAX_PENDING_PROBES}
+     * probes of this task are in flight before the oldest one is awaited.
+     */
+    private void iteratePort(List<PortScanResult> ongoingResults, ArrayDeque<PendingProbe> pendingProbes,
+                             Map<Inet4Address, Transmission> transmissions, Inet4Address host, int destinationPort,
+                             long start) {
+        if (pendingProbes.size() >= MAX_PENDING_PROBES) {
+            awaitReply(ongoingResults, pendingProbes, start);
+        } else if (System.currentTimeMillis() >= nextHedgeAtMillis) {
+            nextHedgeAtMillis = sendDueHedges(null, pendingProbes, System.currentTimeMillis());
+        }
+        if (probeContext.getLiveness().skip(host)) {
+            addResult(ongoingResults, host, destinationPort, PortState.SKIPPED, start);
+            return;
+        }
+        if (!transmissions.containsKey(host)) {
+            transmissions.put(host, openTransmission(host));
+        }
+        Transmission transmission = transmissions.get(host);
+        if (transmission == null) {
+            addResult(ongoingResults, host, destinationPort, PortState.ERROR, start);
+            return;
+        }
+        AdaptiveConcurrency.Permit permit = acquirePermit(ongoingResults, pendingProbes, host, start);
+        if (permit == null) {
+            addResult(ongoingResults, host, destinationPort, PortState.ERROR, start);
+            return;
+        }
+        PcapReceiveLoop receiveLoop = transmission.receiveLoop;
+        probeContext.getRateLimiter().acquire();
+        try {
+            transmission.template.patch(transmission.packet, sourcePort, destinationPort,
+                    TcpSynSegment.DEFAULT_SEQ_NUMBER, transmission.identification++);
+            CompletableFuture<PortState> reply = receiveLoop.expect(host, destinationPort, sourcePort);
+            int probeTimeout = probeContext.getTimeouts().timeoutFor(host, timeout);
+            long hedgeDelayMillis = probeContext.getHedging().hedgeDelayMillis(host);
+            long sentNanos = System.nanoTime();
+            receiveLoop.send(transmission.packet, SynPacketTemplate.PACKET_LENGTH);
+            long sentMillis = System.currentTimeMillis();
+            PendingProbe pendingProbe = new PendingProbe(transmission, host, destinationPort, reply, permit,
+                    sentNanos, sentMillis + probeTimeout,
+                    hedgeDelayMillis > 0L && hedgeDelayMillis < probeTimeout ? sentMillis + hedgeDelayMillis : 0L);
+            reply.thenRun(() -> pendingProbe.repliedNanos = System.nanoTime());
+            pendingProbes.add(pendingProbe);
+            if (pendingProbe.hedgeAtMillis != 0L) {
+                nextHedgeAtMillis = Math.min(nextHedgeAtMillis, pendingProbe.hedgeAtMillis);
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Scan error on transmission: {}:{} - {}", host,
+                    destinationPort, e.getMessage());
+            receiveLoop.cancel(host, destinationPort, sourcePort);
+            permit.cancel();
+            addResult(ongoingResults, host, destinationPort, PortState.FILTERED, start);
+        }
+    }
+
+    /**
+     * Takes room for a probe of the host in the scan's concurrency windows. The
+     * room of this task's own pending probes is only given back once they are
+     * awaited, so while the windows are full the oldest pending probe is awaited
+     * rather than blocking on room this task holds itself.
+     *
+     * @return the permit, or {@code null} if interrupted while waiting
+     */
+    private AdaptiveConcurrency.Permit acquirePermit(List<PortScanResult> ongoingResults,
+                                                     ArrayDeque<PendingProbe> pendingProbes, Inet4Address host,
+                                                     long start) {
+        AdaptiveConcurrency adaptiveConcurrency = probeContext.getAdaptiveConcurrency();
+        AdaptiveConcurrency.Permit permit;
+        while ((permit = adaptiveConcurrency.tryAcquire(host)) == null) {
+            if (pendingProbes.isEmpty()) {
+                try {
+                    return adaptiveConcurrency.acquire(host);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
                 }
-                if (header.getRst()) {
-                    finalState = PortState.CLOSED;
+            }
+            awaitReply(ongoingResults, pendingProbes, start);
+        }
+        return permit;
+    }
+
+    /**
+     * Awaits the oldest pending probe. While it waits, the hedge points of every
+     * pending probe are watched too, so a probe behind a silent one is hedged on
+     * time rather than once it reaches the head of the queue.
+     */
+    private void awaitReply(List<PortScanResult> ongoingResults, ArrayDeque<PendingProbe> pendingProbes,
+                            long start) {
+        PendingProbe pendingProbe = pendingProbes.poll();
+        PortState finalState = PortState.FILTERED;
+        PcapReceiveLoop receiveLoop = pendingProbe.transmission.receiveLoop;
+        try {
+            while (true) {
+                long now = System.currentTimeMillis();
+                nextHedgeAtMillis = sendDueHedges(pendingProbe, pendingProbes, now);
+                long remaining = Math.max(0L, Math.min(pendingProbe.deadlineMillis, nextHedgeAtMillis) - now);
+                try {
+                    finalState = pendingProbe.reply.get(remaining, TimeUnit.MILLISECONDS);
                     break;
+                } catch (TimeoutException e) {
+                    if (System.currentTimeMillis() >= pendingProbe.deadlineMillis) {
+                        receiveLoop.cancel(pendingProbe.host, pendingProbe.destinationPort, sourcePort);
+                        break;
+                    }
                 }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            receiveLoop.cancel(pendingProbe.host, pendingProbe.destinationPort, sourcePort);
+        } catch (ExecutionException e) {
+            LOGGER.warn("Scan error on reception: {}:{} - {}", pendingProbe.host,
+                    pendingProbe.destinationPort, e.getMessage());
+        }
+        boolean replied = pendingProbe.repliedNanos != 0L;
+        long probeNanos = (replied ? pendingProbe.repliedNanos : System.nanoTime()) - pendingProbe.sentNanos;
+        if (replied && !pendingProbe.hedged && (finalState == PortState.OPEN || finalState == PortState.CLOSED)) {
+            probeContext.sampleRtt(pendingProbe.host, probeNanos);
+        }
+        pendingProbe.permit.release(finalState, TimeUnit.NANOSECONDS.toMillis(probeNanos));
+        probeContext.getLiveness().record(pendingProbe.host, finalState);
+        addResult(ongoingResults, pendingProbe.host, pendingProbe.destinationPort, finalState, start);
+    }
+
+    /**
+     * Hedges every pending probe whose hedge point has passed without a reply,
+     * the probe being awaited included. Each probe is considered for a hedge once.
+     *
+     * @param awaited the probe taken off the queue to be awaited, or {@code null}
+     * @return the next hedge point still ahead, or {@link Long#MAX_VALUE} if none
+     */
+    private long sendDueHedges(PendingProbe awaited, ArrayDeque<PendingProbe> pendingProbes, long now) {
+        if (!probeContext.getHedging().isEnabled()) {
+            return Long.MAX_VALUE;
+        }
+        long nextHedgeAt = awaited != null ? considerHedge(awaited, now, Long.MAX_VALUE) : Long.MAX_VALUE;
+        for (PendingProbe pendingProbe : pendingProbes) {
+            nextHedgeAt = considerHedge(pendingProbe, now, nextHedgeAt);
+        }
+        return nextHedgeAt;
+    }
+
+    private long considerHedge(PendingProbe pendingProbe, long now, long nextHedgeAt) {
+        if (pendingProbe.hedgeAtMillis == 0L) {
+            return nextHedgeAt;
+        }
+        if (pendingProbe.reply.isDone() || now >= pendingProbe.deadlineMillis) {
+            pendingProbe.hedgeAtMillis = 0L;
+            return nextHedgeAt;
+        }
+        if (now < pendingProbe.hedgeAtMillis) {
+            return Math.min(nextHedgeAt, pendingProbe.hedgeAtMillis);
+        }
+        pendingProbe.hedgeAtMillis = 0L;
+        hedge(pendingProbe);
+        return nextHedgeAt;
+    }
+
+    /**
+     * Sends the SYN of an unanswered probe again, if the rate limit has a token
+     * to spare without waiting and the hedge budget allows. The budget is drawn
+     * last and refunded if the send fails. Both copies carry the same ports and
+     * sequence number, so a reply to either completes the same expectation and
+     * the first answer wins.
+     */
+    private void hedge(PendingProbe pendingProbe) {
+        HedgePolicy hedging = probeContext.getHedging();
+        if (!hedging.canHedge() || !probeContext.getRateLimiter().tryAcquire() || !hedging.tryHedge()) {
+            return;
+        }
+        Transmission transmission = pendingProbe.transmission;
+        try {
+            transmission.template.patch(transmission.packet, sourcePort, pendingProbe.destinationPort,
+                    TcpSynSegment.DEFAULT_SEQ_NUMBER, transmission.identification++);
+            transmission.receiveLoop.send(transmission.packet, SynPacketTemplate.PACKET_LENGTH);
+            pendingProbe.hedged = true;
         } catch (Exception e) {
-            LOGGER.warn("Scan error on transmission: {}:{} - {}", destinationHost,
-                    destinationPort, e.getMessage());
-        } finally {
-            if (pcapHandle.isOpen()) {
-                pcapHandle.close();
-            }
+            hedging.refundHedge();
+            LOGGER.debug("Hedge failed: {}:{} - {}", pendingProbe.host, pendingProbe.destinationPort, e.getMessage());
         }
+    }
+
+    private void addResult(List<PortScanResult> ongoingResults, Inet4Address host, int destinationPort,
+                           PortState state, long start) {
         long duration = System.currentTimeMillis() - start;
         ongoingResults.add(new PortScanResult(
                 schedulerId,
                 taskId,
-                destinationHost,
+                host,
                 destinationPort,
-                finalState,
+                state,
                 duration
         ));
     }
 
-    protected Ipv4TcpSynPacket generateIpv4TcpSynPacketFromTcpSynSegment(TcpSynSegment tcpSynSegment) {
-        Ipv4TcpSynPacket ipv4TcpSynPacket;
-        try {
-            ipv4TcpSynPacket = new Ipv4TcpSynPacket(tcpSynSegment, destinationHost);
-        } catch (PcapNativeException | SocketException e) {
-            LOGGER.error("Failed to initialize IPv4 Syn Packet: {}", e.getMessage());
-            throw new RuntimeException("Failed to initialize IPv4 SYN packet", e);
-        }
-        return ipv4TcpSynPacket;
-    }
-
-    protected PcapHandle openHandle(Ipv4TcpSynPacket ipv4TcpSynPacket) {
-        PcapHandle pcapHandle = null;
-        try {
-            String nif = ipv4TcpSynPacket.getNetworkInterface().getName();
-            LOGGER.info("Attempting to initialize PcapHandle with interface: {}", nif);
-            pcapHandle = new PcapHandle.Builder(nif)
-                    .snaplen(65536)
-                    .promiscuousMode(PcapNetworkInterface.PromiscuousMode.NONPROMISCUOUS)
-                    .immediateMode(true)
-                    .timeoutMillis(10)
-                    .build();
-            LOGGER.info("PcapHandle successfully initialized.");
-        } catch (PcapNativeException e) {
-            LOGGER.error("Failed to initialize PcapHandle: {}", e.getMessage());
-        }
-        return pcapHandle;
-    }
-
-    protected String generateFilter(int destinationPort) {
-        StringBuilder filter = new StringBuilder();
-        filter.append("tcp and src host ").append(destinationHost.getHostAddress());
-        filter.append(" and src port ").append(destinationPort);
-        filter.append(" and dst port ").append(sourcePort);
-        filter.append(" and (tcp[tcpflags] & (tcp-syn|tcp-ack|tcp-rst) != 0)");
-        return filter.toString();
-    }
-
     public UUID getTaskId() {
         return taskId;
     }
@@ -179,7 +368,10 @@ public class PortScanSynTask implements PortScanTask, Callable<List<PortScanResu
 
     @Override
     public PortRange getDestinationPortRange() {
-        return PortScannerUtil.getPortRange(destinationPorts);
+        if (targetSlice != null) {
+            return targetSlice.getSpace().getPortBounds();
+        }
+        return destinationPortRange != null ? destinationPortRange : PortScannerUtil.getPortRange(destinationPorts);
     }
 
     @Override
@@ -187,10 +379,49 @@ public class PortScanSynTask implements PortScanTask, Callable<List<PortScanResu
         return "PortScanSynTask{" +
                 "taskId=" + taskId +
                 ", schedulerId=" + schedulerId +
-                ", destinationHost=" + destinationHost.getHostAddress() +
+                ", destinationHost=" + (targetSlice != null ? targetSlice : destinationHost.getHostAddress()) +
                 ", destinationPorts=" + getDestinationPortRange() +
                 ", sourcePort=" + sourcePort +
                 ", timeout=" + timeout +
                 '}';
     }
+
+    private static final class Transmission {
+        private final PcapReceiveLoop receiveLoop;
+        private final SynPacketTemplate template;
+        private final byte[] packet;
+        private int identification = ThreadLocalRandom.current().nextInt(0x10000);
+
+        private Transmission(PcapReceiveLoop receiveLoop, SynPacketTemplate template) {
+            this.receiveLoop = receiveLoop;
+            this.template = template;
+            this.packet = template.newPacket();
+        }
+    }
+
+    private static final class PendingProbe {
+        private final Transmission transmission;
+        private final Inet4Address host;
+        private final int destinationPort;
+        private final CompletableFuture<PortState> reply;
+        private final AdaptiveConcurrency.Permit permit;
+        private final long sentNanos;
+        private final long deadlineMillis;
+        private long hedgeAtMillis; // 0 once the probe was considered for a hedge
+        private boolean hedged = false;
+        private volatile long repliedNanos = 0L;
+
+        private PendingProbe(Transmission transmission, Inet4Address host, int destinationPort,
+                             CompletableFuture<PortState> reply, AdaptiveConcurrency.Permit permit, long sentNanos,
+                             long deadlineMillis, long hedgeAtMillis) {
+            this.transmission = transmission;
+            this.host = host;
+            this.destinationPort = destinationPort;
+            this.reply = reply;
+            this.permit = permit;
+            this.sentNanos = sentNanos;
+            this.deadlineMillis = deadlineMillis;
+            this.hedgeAtMillis = hedgeAtMillis;
+        }
+    }
 }
@@ -0,0 +1,116 @@
+package com.nocker.portscanner.tasks;
+
+import com.nocker.portscanner.control.AdaptiveConcurrency;
+import com.nocker.portscanner.control.AdaptiveTimeouts;
+import com.nocker.portscanner.control.HedgePolicy;
+import com.nocker.portscanner.control.HostLiveness;
+import com.nocker.portscanner.rate.TokenBucket;
+
+import java.net.Inet4Address;
+
+/**
+ * {@code ProbeContext} carries the scan-wide collaborators every probe of a
+ * task consults, independent of the host and ports the task covers. A single
+ * context is built per scan and handed to each task, so state such as the rate
+ * limit is shared by the tasks of every scheduler.
+ * <p>
+ * Instances are immutable and constructed with a {@link Builder}; unset
+ * collaborators default to ones that do not change probing behavior.
+ */
+public class ProbeContext {
+    private static final ProbeContext DEFAULTS = new Builder().build();
+
+    private final TokenBucket rateLimiter;
+    private final AdaptiveConcurrency adaptiveConcurrency;
+    private final AdaptiveTimeouts timeouts;
+    private final HedgePolicy hedging;
+    private final HostLiveness liveness;
+
+    ProbeContext(Builder builder) {
+        this.rateLimiter = builder.rateLimiter != null ? builder.rateLimiter : TokenBucket.unlimited();
+        this.adaptiveConcurrency = builder.adaptiveConcurrency != null ? builder.adaptiveConcurrency
+                : AdaptiveConcurrency.unlimited();
+        this.timeouts = builder.timeouts != null ? builder.timeouts : AdaptiveTimeouts.fixed();
+        this.hedging = builder.hedging != null ? builder.hedging : HedgePolicy.disabled();
+        this.liveness = builder.liveness != null ? builder.liveness : HostLiveness.disabled();
+    }
+
+    /**
+     * Retrieves a context with every collaborator at its default.
+     *
+     * @return the default {@code ProbeContext}
+     */
+    public static ProbeContext defaults() {
+        return DEFAULTS;
+    }
+
+    public TokenBucket getRateLimiter() {
+        return rateLimiter;
+    }
+
+    public AdaptiveConcurrency getAdaptiveConcurrency() {
+        return adaptiveConcurrency;
+    }
+
+    public AdaptiveTimeouts getTimeouts() {
+        return timeouts;
+    }
+
+    public HedgePolicy getHedging() {
+        return hedging;
+    }
+
+    public HostLiveness getLiveness() {
+        return liveness;
+    }
+
+    /**
+     * Feeds the round trip of a probe answered with a SYN-ACK or a RST to every
+     * collaborator learning from round trips. Hedged probes are left out, their
+     * reply may belong to either copy.
+     *
+     * @param host the host that answered
+     * @param rttNanos the time from sending the probe to its reply, in nanoseconds
+     */
+    public void sampleRtt(Inet4Address host, long rttNanos) {
+        timeouts.sample(host, rttNanos);
+        hedging.sample(host, rttNanos);
+    }
+
+    public static class Builder {
+        private TokenBucket rateLimiter;
+        private AdaptiveConcurrency adaptiveConcurrency;
+        private AdaptiveTimeouts timeouts;
+        private HedgePolicy hedging;
+        private HostLiveness liveness;
+
+        public Builder rateLimiter(TokenBucket rateLimiter) {
+            this.rateLimiter = rateLimiter;
+            return this;
+        }
+
+        public Builder adaptiveConcurrency(AdaptiveConcurrency adaptiveConcurrency) {
+            this.adaptiveConcurrency = adaptiveConcurrency;
+            return this;
+        }
+
+        public Builder timeouts(AdaptiveTimeouts timeouts) {
+            this.timeouts = timeouts;
+            return this;
+        }
+
+        public Builder hedging(HedgePolicy hedging) {
+            this.hedging = hedging;
+            return this;
+        }
+
+        public Builder liveness(HostLiveness liveness) {
+            this.liveness = liveness;
+            return this;
+        }
+
+        public ProbeContext build() {
+            return new ProbeContext(this);
+        }
+    }
+}
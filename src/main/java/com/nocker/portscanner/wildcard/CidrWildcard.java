@@ -1,75 +1,33 @@
 package com.nocker.portscanner.wildcard;
 
-import static com.nocker.portscanner.PortScannerUtil.*;
+import com.nocker.portscanner.target.Ipv4TargetSet;
 
+/**
+ * {@code CidrWildcard} is the {@code --hosts} argument of {@code cidr-scan}: one
+ * or more comma separated CIDR blocks with a prefix from {@code /8} to
+ * {@code /32}, dash ranges and addresses, parsed into an {@link Ipv4TargetSet}.
+ */
 public class CidrWildcard {
     private final String value;
-    private String address;
-    private final String cidr;
-    private final Integer[] octets;
-
-    private static final String ALLOWED_CIDR = "/24";
+    private final Ipv4TargetSet targets;
 
     public CidrWildcard(String value) {
         this.value = value;
-        if (!value.contains("/")) {
+        if (value == null || !value.contains("/") && !value.contains("-")) {
             throw new IllegalArgumentException("Missing CIDR suffix: " + value);
         }
-        String[] parts = value.split("/");
-        this.address = parts[0];
-        this.cidr = "/" + parts[1];
-        if (!ALLOWED_CIDR.equals(cidr)) {
-            throw new IllegalArgumentException("Unsupported CIDR: " + cidr);
-        }
-        this.octets = convertToIntegerArray(address.split("\\."));
-        if (!isValidIPOctets()) {
-            throw new IllegalArgumentException("Invalid IP address: " + address);
-        }
+        this.targets = Ipv4TargetSet.parse(value);
     }
 
     public String getValue() {
         return value;
     }
 
-    public String getAddress() {
-        return address;
-    }
-
-    public String getCidr() {
-        return cidr;
-    }
-
-    public Integer[] getOctets() {
-        return octets;
+    public Ipv4TargetSet getTargets() {
+        return targets;
     }
 
     public boolean isValidCIDRWildcard() {
-        return containsValidOctets();
-    }
-
-    public void incrementLastOctet() {
-        if (octets[3] < 255) {
-            ++octets[3];
-            address = stringifyArray(octets);
-        }
-    }
-
-    private boolean containsValidOctets() {
-        if (!value.contains(".")) {
-            return false;
-        }
-        return cidr.equals(ALLOWED_CIDR) && isValidIPOctets();
-    }
-
-    private boolean isValidIPOctets() {
-        if (octets == null || octets.length != 4) {
-            return false;
-        }
-        for (int octetValue : octets) {
-            if (octetValue < 0 || octetValue > 255) {
-                return false;
-            }
-        }
-        return true;
+        return !targets.isEmpty();
     }
 }
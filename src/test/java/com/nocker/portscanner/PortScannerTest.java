@@ -7,9 +7,9 @@ import com.nocker.portscanner.command.CommandMethod;
 import com.nocker.portscanner.command.InvocationRequest;
 import com.nocker.portscanner.report.PortScanReport;
 import com.nocker.portscanner.report.PortScanResult;
-import com.nocker.portscanner.scheduler.PortScanScheduler;
 import com.nocker.portscanner.scheduler.PortScanSchedulerFactory;
 import com.nocker.portscanner.scheduler.PortScanSynAckScheduler;
+import com.nocker.portscanner.scheduler.SharedWorkerPool;
 import com.nocker.portscanner.tasks.PortRange;
 import com.nocker.portscanner.tasks.PortScanSynAckTask;
 import com.nocker.portscanner.tasks.PortScanSynTask;
@@ -25,9 +25,11 @@ import java.lang.reflect.Method;
 import java.net.Inet4Address;
 import java.net.UnknownHostException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import static com.nocker.portscanner.PortScanner.MAX_SCHEDULERS;
+import static com.nocker.portscanner.PortScanner.MIN_SCHEDULERS;
 import static com.nocker.portscanner.PortState.CLOSED;
 import static com.nocker.portscanner.PortState.OPEN;
 import static org.junit.jupiter.api.Assertions.*;
@@ -132,19 +134,32 @@ class PortScannerTest {
     void testCidrScanWithHostsWildcard() {
         CidrWildcard cidrWildcard = new CidrWildcard("127.0.0.254/24");
         PortScanner portScanner = new PortScanner(BASIC_SYN_ACK_CXT);
-        PortScanSynAckScheduler mockScheduler = Mockito.mock(PortScanSynAckScheduler.class);
-        PortScanReport mockPortScanReport = Mockito.mock(PortScanReport.class);
-        when(BASIC_SCHEDULER_FACTORY.create()).thenReturn(mockScheduler);
-        when(mockScheduler.shutdownAndCollect(any(AtomicInteger.class)))
-                .thenReturn(mockPortScanReport);
+        List<PortScanSynAckScheduler> mockSchedulers = new CopyOnWriteArrayList<>();
+        Map<Inet4Address, PortScanReport> mockHostReports = new ConcurrentHashMap<>();
+        // every block of hosts gets a scheduler of its own
+        when(BASIC_SCHEDULER_FACTORY.create()).thenAnswer(invocation -> {
+            PortScanSynAckScheduler mockScheduler = Mockito.mock(PortScanSynAckScheduler.class);
+            PortScanReport mockBlockReport = Mockito.mock(PortScanReport.class);
+            when(mockScheduler.shutdownAndCollect(any(AtomicInteger.class))).thenReturn(mockBlockReport);
+            when(mockBlockReport.getHostReport(any(Inet4Address.class))).thenAnswer(host ->
+                    mockHostReports.computeIfAbsent(host.getArgument(0), h -> Mockito.mock(PortScanReport.class)));
+            mockSchedulers.add(mockScheduler);
+            return mockScheduler;
+        });
 
         portScanner.cidrScan(cidrWildcard);
-        verify(mockScheduler, times(1)).shutdownAndCollect(any(AtomicInteger.class));
-        verify(mockScheduler).shutdownAndCollect(argThat(count -> count.get() > 0));
-        // the basic context is not sneaky
-        verify(mockScheduler, atLeast(1)).submit(isA(PortScanSynAckTask.class));
-        // this is not flagged with robust and sends a human-readable summary
-        verify(mockPortScanReport, times(1)).getSummary();
+        assertEquals((254 + PortScanner.HOSTS_PER_BLOCK - 1) / PortScanner.HOSTS_PER_BLOCK, mockSchedulers.size());
+        for (PortScanSynAckScheduler mockScheduler : mockSchedulers) {
+            verify(mockScheduler, times(1)).shutdownAndCollect(any(AtomicInteger.class));
+            verify(mockScheduler).shutdownAndCollect(argThat(count -> count.get() > 0));
+            // the basic context is not sneaky
+            verify(mockScheduler, atLeast(1)).submit(isA(PortScanSynAckTask.class));
+        }
+        // one collected report per host, each merged into the human-readable summary
+        assertEquals(254, mockHostReports.size());
+        for (PortScanReport mockHostReport : mockHostReports.values()) {
+            verify(mockHostReport, times(1)).getSummary();
+        }
     }
 
     @Test
@@ -174,26 +189,33 @@ class PortScannerTest {
         assertEquals(2, report.getSummary().getOpenPortsCount());
         assertEquals(4, report.getSummary().getTotalPortsScanned());
         assertEquals(5, report.getSummary().durationMillis());
-        assertTrue(report.getSummary().getOpenHostPorts().containsKey(address.getHostName()));
+        assertTrue(report.getSummary().getOpenHostPorts().containsKey(address.getHostAddress()));
         assertEquals(command, report.getSummary().getInvocationCommand()
                 .getCommandLineInput().getCommand());
-        assertEquals(openPorts, report.getSummary().getOpenHostPorts().get(address.getHostName()));
+        assertEquals(openPorts, report.getSummary().getOpenHostPorts().get(address.getHostAddress()));
     }
 
     @Test
     void testSpawnSchedulersReturnsRequestedSize() {
         PortScanner portScanner = new PortScanner(BASIC_SYN_ACK_CXT);
-        List<PortScanScheduler> schedulers = portScanner.spawnSchedulers(3);
-        assertEquals(3, schedulers.size());
+        List<PortScanner.ScanLane> lanes = portScanner.spawnLanes(3);
+        assertEquals(3, lanes.size());
     }
 
     @Test
     void testSpawnSchedulersReturnsMaxSchedulersSizeAndNotRequestedSize() {
         PortScanner portScanner = new PortScanner(BASIC_SYN_ACK_CXT);
-        int requestedSize = MAX_SCHEDULERS + 25;
-        List<PortScanScheduler> schedulers = portScanner.spawnSchedulers(requestedSize);
-        assertNotEquals(requestedSize, schedulers.size());
-        assertEquals(MAX_SCHEDULERS, schedulers.size());
+        int requestedSize = portScanner.getMaxSchedulers() + 25;
+        List<PortScanner.ScanLane> lanes = portScanner.spawnLanes(requestedSize);
+        assertNotEquals(requestedSize, lanes.size());
+        assertEquals(portScanner.getMaxSchedulers(), lanes.size());
+    }
+
+    @Test
+    void testMaxSchedulersFollowsSharedWorkerPool() {
+        PortScanner portScanner = new PortScanner(BASIC_SYN_ACK_CXT);
+        assertEquals(SharedWorkerPool.MAX_WORKERS / 100, portScanner.getMaxSchedulers());
+        assertTrue(portScanner.getMaxSchedulers() > MIN_SCHEDULERS);
     }
 
     @Test
@@ -209,81 +231,4 @@ class PortScannerTest {
         long actualDuration = portScanner.sumSequentialDuration(results);
         assertEquals(6, actualDuration);
     }
-
-    @Test
-    void testGetChunksValidScenario() {
-        PortScanner portScanner = new PortScanner(BASIC_SYN_ACK_CXT);
-
-        int startPort = 1;
-        int endPort = 100;
-        int batchSize = 20;
-
-        List<PortRange> chunks = portScanner.getChunks(startPort, endPort, batchSize);
-
-        assertEquals(5, chunks.size());
-        assertEquals(new PortRange(1, 20).toString(), chunks.get(0).toString());
-        assertEquals(new PortRange(21, 40).toString(), chunks.get(1).toString());
-        assertEquals(new PortRange(41, 60).toString(), chunks.get(2).toString());
-        assertEquals(new PortRange(61, 80).toString(), chunks.get(3).toString());
-        assertEquals(new PortRange(81, 100).toString(), chunks.get(4).toString());
-    }
-
-    @Test
-    void testGetChunksValidScenarioSinglePortScan() {
-        PortScanner portScanner = new PortScanner(BASIC_SYN_ACK_CXT);
-
-        int startPort = 4331;
-        int endPort = 4332;
-        int batchSize = 100;
-
-        List<PortRange> chucks = portScanner.getChunks(startPort, endPort, batchSize);
-
-        assertEquals(1, chucks.size());
-        assertEquals(new PortRange(4331, 4332).toString(), chucks.get(0).toString());
-    }
-
-    @Test
-    void testGetChunksSingleBatch() {
-        PortScanner portScanner = new PortScanner(BASIC_SYN_ACK_CXT);
-
-        int startPort = 1;
-        int endPort = 50;
-        int batchSize = 100;
-
-        List<PortRange> chunks = portScanner.getChunks(startPort, endPort, batchSize);
-
-        assertEquals(1, chunks.size());
-        assertEquals(new PortRange(1, 50).toString(), chunks.get(0).toString());
-    }
-
-    @Test
-    void testGetChunksRemainingPorts() {
-        PortScanner portScanner = new PortScanner(BASIC_SYN_ACK_CXT);
-
-        int startPort = 1;
-        int endPort = 55;
-        int batchSize = 20;
-
-        List<PortRange> chunks = portScanner.getChunks(startPort, endPort, batchSize);
-
-        assertEquals(3, chunks.size());
-        assertEquals(new PortRange(1, 20).toString(), chunks.get(0).toString());
-        assertEquals(new PortRange(21, 40).toString(), chunks.get(1).toString());
-        assertEquals(new PortRange(41, 55).toString(), chunks.get(2).toString());
-    }
-
-    @Test
-    void testGetChunksInvalidRange() {
-        PortScanner portScanner = new PortScanner(BASIC_SYN_ACK_CXT);
-
-        int startPort = 100;
-        int endPort = 50;
-        int batchSize = 10;
-
-        Exception exception = assertThrows(IllegalStateException.class, () -> {
-            portScanner.getChunks(startPort, endPort, batchSize);
-        });
-
-        assertEquals("ending port can not be less than starting port", exception.getMessage());
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,78 @@
+package com.nocker.portscanner.control;
+
+import com.nocker.portscanner.PortState;
+import org.junit.jupiter.api.Test;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyTest {
+
+    @Test
+    void slowRepliesCountAsLost() throws Exception {
+        AdaptiveConcurrency adaptiveConcurrency = new AdaptiveConcurrency(8, 100, 100);
+        Inet4Address host = address("10.0.0.1");
+        for (int i = 0; i < 8; i++) {
+            adaptiveConcurrency.acquire(host).release(PortState.CLOSED, 90);
+        }
+        assertEquals(4, adaptiveConcurrency.getHostConcurrency(host));
+        assertEquals(4, adaptiveConcurrency.getEffectiveConcurrency());
+        for (int i = 0; i < 4; i++) {
+            adaptiveConcurrency.acquire(host).release(PortState.OPEN, 5);
+        }
+        assertEquals(5, adaptiveConcurrency.getHostConcurrency(host));
+    }
+
+    @Test
+    void repliesAreSlowFromTheLastQuarterOfTheTimeout() throws Exception {
+        AdaptiveConcurrency adaptiveConcurrency = new AdaptiveConcurrency(8, 100, 100);
+        Inet4Address host = address("10.0.0.1");
+        for (int i = 0; i < 8; i++) {
+            adaptiveConcurrency.acquire(host).release(PortState.OPEN, 74);
+        }
+        assertEquals(9, adaptiveConcurrency.getHostConcurrency(host));
+        assertEquals(9, adaptiveConcurrency.getEffectiveConcurrency());
+        for (int i = 0; i < 9; i++) {
+            adaptiveConcurrency.acquire(host).release(PortState.OPEN, 75);
+        }
+        assertEquals(4, adaptiveConcurrency.getHostConcurrency(host));
+        assertEquals(4, adaptiveConcurrency.getEffectiveConcurrency());
+    }
+
+    @Test
+    void filteredProbesOnlyShrinkTheirHost() throws Exception {
+        AdaptiveConcurrency adaptiveConcurrency = new AdaptiveConcurrency(8, 100, 100);
+        Inet4Address filtered = address("10.0.0.1");
+        for (int i = 0; i < 8; i++) {
+            adaptiveConcurrency.acquire(filtered).release(PortState.FILTERED, 100);
+        }
+        assertEquals(4, adaptiveConcurrency.getHostConcurrency(filtered));
+        assertEquals(9, adaptiveConcurrency.getEffectiveConcurrency());
+        Inet4Address other = address("10.0.0.3");
+        adaptiveConcurrency.acquire(other).release(PortState.OPEN, 5);
+        assertEquals(8, adaptiveConcurrency.getHostConcurrency(other));
+        Inet4Address failing = address("10.0.0.2");
+        for (int i = 0; i < 9; i++) {
+            adaptiveConcurrency.acquire(failing).release(PortState.ERROR, 1);
+        }
+        assertEquals(4, adaptiveConcurrency.getEffectiveConcurrency());
+    }
+
+    @Test
+    void unlimitedControllerNeverBlocks() throws Exception {
+        AdaptiveConcurrency unlimited = AdaptiveConcurrency.unlimited();
+        Inet4Address host = address("10.0.0.1");
+        for (int i = 0; i < 10000; i++) {
+            assertNotNull(unlimited.tryAcquire(host));
+        }
+        assertFalse(unlimited.isEnabled());
+        assertEquals(0, unlimited.getEffectiveConcurrency());
+    }
+
+    private static Inet4Address address(String address) throws UnknownHostException {
+        return (Inet4Address) InetAddress.getByName(address);
+    }
+}
@@ -0,0 +1,90 @@
+package com.nocker.portscanner.control;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveTimeoutsTest {
+
+    @Test
+    void hostsCalibrateBeforeTheEstimateIsUsed() throws UnknownHostException {
+        AdaptiveTimeouts timeouts = AdaptiveTimeouts.adaptive();
+        Inet4Address host = host("10.0.0.1");
+        assertEquals(AdaptiveTimeouts.CALIBRATION_TIMEOUT_MILLIS, timeouts.timeoutFor(host, 200));
+        for (int i = 0; i < AdaptiveTimeouts.CALIBRATION_SAMPLES; i++) {
+            timeouts.sample(host, millis(30));
+        }
+        // srtt 30, rttvar 15 decayed by 3/4 over three identical samples
+        assertEquals(56, timeouts.timeoutFor(host, 200));
+    }
+
+    @Test
+    void calibrationNeverShortensTheConfiguredTimeout() throws UnknownHostException {
+        AdaptiveTimeouts timeouts = AdaptiveTimeouts.adaptive();
+        Inet4Address host = host("10.0.0.1");
+        assertEquals(1500, timeouts.timeoutFor(host, 1500));
+        for (int i = 1; i < AdaptiveTimeouts.CALIBRATION_SAMPLES; i++) {
+            timeouts.sample(host, millis(30));
+        }
+        assertEquals(AdaptiveTimeouts.CALIBRATION_TIMEOUT_MILLIS, timeouts.timeoutFor(host, 200));
+    }
+
+    @Test
+    void estimatesAreClamped() throws UnknownHostException {
+        AdaptiveTimeouts timeouts = AdaptiveTimeouts.adaptive();
+        Inet4Address near = host("10.0.0.1");
+        Inet4Address far = host("10.0.0.2");
+        for (int i = 0; i < AdaptiveTimeouts.CALIBRATION_SAMPLES; i++) {
+            timeouts.sample(near, TimeUnit.MICROSECONDS.toNanos(200));
+            timeouts.sample(far, millis(5000));
+        }
+        assertEquals(AdaptiveTimeouts.MIN_TIMEOUT_MILLIS, timeouts.timeoutFor(near, 200));
+        assertEquals(AdaptiveTimeouts.MAX_TIMEOUT_MILLIS, timeouts.timeoutFor(far, 200));
+        assertEquals(AdaptiveTimeouts.MAX_TIMEOUT_MILLIS, timeouts.timeoutFor(far, 5000));
+    }
+
+    @Test
+    void silentHostsFallBackToTheConfiguredTimeout() throws UnknownHostException {
+        AdaptiveTimeouts timeouts = AdaptiveTimeouts.adaptive();
+        Inet4Address host = host("10.0.0.1");
+        for (int i = 0; i < AdaptiveTimeouts.CALIBRATION_PROBES; i++) {
+            assertEquals(AdaptiveTimeouts.CALIBRATION_TIMEOUT_MILLIS, timeouts.timeoutFor(host, 200));
+        }
+        assertEquals(200, timeouts.timeoutFor(host, 200));
+        assertEquals(AdaptiveTimeouts.CALIBRATION_TIMEOUT_MILLIS, timeouts.timeoutFor(host("10.0.0.2"), 200));
+    }
+
+    @Test
+    void answeringHostsKeepCalibrating() throws UnknownHostException {
+        AdaptiveTimeouts timeouts = AdaptiveTimeouts.adaptive();
+        Inet4Address host = host("10.0.0.1");
+        timeouts.sample(host, millis(30));
+        for (int i = 0; i <= AdaptiveTimeouts.CALIBRATION_PROBES; i++) {
+            assertEquals(AdaptiveTimeouts.CALIBRATION_TIMEOUT_MILLIS, timeouts.timeoutFor(host, 200));
+        }
+    }
+
+    @Test
+    void fixedTimeoutsNeverAdapt() throws UnknownHostException {
+        AdaptiveTimeouts timeouts = AdaptiveTimeouts.fixed();
+        Inet4Address host = host("10.0.0.1");
+        for (int i = 0; i < AdaptiveTimeouts.CALIBRATION_SAMPLES; i++) {
+            timeouts.sample(host, millis(30));
+        }
+        assertEquals(200, timeouts.timeoutFor(host, 200));
+        assertNull(timeouts.getEstimator(host));
+    }
+
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    private static Inet4Address host(String address) throws UnknownHostException {
+        return (Inet4Address) InetAddress.getByName(address);
+    }
+}
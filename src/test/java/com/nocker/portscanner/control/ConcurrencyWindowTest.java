@@ -0,0 +1,57 @@
+package com.nocker.portscanner.control;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrencyWindowTest {
+
+    @Test
+    void cleanRoundsGrowTheWindowByOne() {
+        ConcurrencyWindow window = new ConcurrencyWindow(10, 2, 100);
+        completeRound(window, 0);
+        assertEquals(11, window.getWindow());
+        completeRound(window, 0);
+        assertEquals(12, window.getWindow());
+    }
+
+    @Test
+    void lossyRoundsHalveTheWindowDownToTheMinimum() {
+        ConcurrencyWindow window = new ConcurrencyWindow(40, 2, 100);
+        completeRound(window, 20);
+        assertEquals(20, window.getWindow());
+        for (int i = 0; i < 10; i++) {
+            completeRound(window, window.getWindow());
+        }
+        assertEquals(2, window.getWindow());
+    }
+
+    @Test
+    void lossesUnderTheThresholdStillGrowTheWindow() {
+        ConcurrencyWindow window = new ConcurrencyWindow(10, 2, 100);
+        completeRound(window, 2);
+        assertEquals(11, window.getWindow());
+    }
+
+    @Test
+    void windowBoundsProbesInFlight() {
+        ConcurrencyWindow window = new ConcurrencyWindow(3, 2, 100);
+        assertTrue(window.tryAcquire());
+        assertTrue(window.tryAcquire());
+        assertTrue(window.tryAcquire());
+        assertFalse(window.tryAcquire());
+        window.cancel();
+        assertTrue(window.tryAcquire());
+        assertEquals(3, window.getInFlight());
+    }
+
+    private static void completeRound(ConcurrencyWindow window, int lost) {
+        int size = window.getWindow();
+        for (int i = 0; i < size; i++) {
+            assertTrue(window.tryAcquire());
+        }
+        for (int i = 0; i < size; i++) {
+            window.release(i < lost);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.nocker.portscanner.control;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HedgePolicyTest {
+
+    @Test
+    void hostsAreNotHedgedUntilTheirDistributionIsLearned() throws UnknownHostException {
+        HedgePolicy hedging = new HedgePolicy(0.95, new HedgeBudget(1.0));
+        Inet4Address host = host();
+        for (int i = 0; i < HedgePolicy.MIN_SAMPLES - 1; i++) {
+            hedging.sample(host, millis(10));
+        }
+        assertEquals(0L, hedging.hedgeDelayMillis(host));
+        hedging.sample(host, millis(10));
+        assertEquals(10L, hedging.hedgeDelayMillis(host));
+    }
+
+    @Test
+    void hedgeDelayIsThePercentileOfRecentRoundTrips() throws UnknownHostException {
+        HedgePolicy hedging = new HedgePolicy(0.95, new HedgeBudget(1.0));
+        Inet4Address host = host();
+        for (int rtt = 1; rtt <= 100; rtt++) {
+            hedging.sample(host, millis(rtt));
+        }
+        // only the last 64 samples, 37 to 100 ms, are kept
+        assertEquals(millis(97), hedging.getPercentileNanos(host));
+        assertEquals(97L, hedging.hedgeDelayMillis(host));
+    }
+
+    @Test
+    void budgetCapsHedgesToItsShareOfProbes() {
+        HedgeBudget budget = new HedgeBudget(0.05);
+        assertFalse(budget.tryWithdraw());
+        for (int i = 0; i < 100; i++) {
+            budget.deposit();
+        }
+        int hedges = 0;
+        while (budget.tryWithdraw()) {
+            hedges++;
+        }
+        assertEquals(5, hedges);
+        assertEquals(5L, budget.getHedges());
+        assertEquals(100L, budget.getProbes());
+    }
+
+    @Test
+    void budgetBanksOnlyAFewHedges() {
+        HedgeBudget budget = new HedgeBudget(1.0);
+        for (int i = 0; i < 1000; i++) {
+            budget.deposit();
+        }
+        int hedges = 0;
+        while (budget.tryWithdraw()) {
+            hedges++;
+        }
+        assertEquals(HedgeBudget.MAX_BANKED_HEDGES, hedges);
+    }
+
+    @Test
+    void unsentHedgesAreRefunded() {
+        HedgePolicy hedging = new HedgePolicy(0.95, new HedgeBudget(0.5));
+        assertFalse(hedging.canHedge());
+        hedging.getBudget().deposit();
+        hedging.getBudget().deposit();
+        assertTrue(hedging.canHedge());
+        assertTrue(hedging.tryHedge());
+        assertFalse(hedging.canHedge());
+        hedging.refundHedge();
+        assertTrue(hedging.canHedge());
+        assertEquals(0L, hedging.getBudget().getHedges());
+        assertTrue(hedging.tryHedge());
+        assertEquals(1L, hedging.getBudget().getHedges());
+    }
+
+    @Test
+    void disabledPolicyNeverHedges() throws UnknownHostException {
+        HedgePolicy hedging = HedgePolicy.disabled();
+        Inet4Address host = host();
+        for (int i = 0; i < HedgePolicy.MIN_SAMPLES; i++) {
+            hedging.sample(host, millis(10));
+        }
+        assertEquals(0L, hedging.hedgeDelayMillis(host));
+        assertFalse(hedging.tryHedge());
+        assertFalse(hedging.canHedge());
+    }
+
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    private static Inet4Address host() throws UnknownHostException {
+        return (Inet4Address) InetAddress.getByName("10.0.0.1");
+    }
+}
@@ -0,0 +1,100 @@
+package com.nocker.portscanner.control;
+
+import com.nocker.portscanner.PortState;
+import com.nocker.portscanner.report.PortScanResult;
+import com.nocker.portscanner.tasks.PortScanSynAckTask;
+import com.nocker.portscanner.tasks.ProbeContext;
+import org.junit.jupiter.api.Test;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HostLivenessTest {
+
+    @Test
+    void silentHostsAreAbandonedAfterTheThreshold() throws UnknownHostException {
+        HostLiveness liveness = new HostLiveness(4);
+        Inet4Address host = host("10.0.0.1");
+        for (int i = 0; i < 3; i++) {
+            liveness.record(host, PortState.FILTERED);
+        }
+        assertFalse(liveness.skip(host));
+        liveness.record(host, PortState.FILTERED);
+        assertTrue(liveness.isUnresponsive(host));
+        assertTrue(liveness.skip(host));
+        assertTrue(liveness.skip(host));
+        assertEquals(2L, liveness.getSkippedProbes(host));
+        assertEquals(Collections.singletonList(host), liveness.getUnresponsiveHosts());
+    }
+
+    @Test
+    void hostsThatAnswerOnceAreNeverAbandoned() throws UnknownHostException {
+        HostLiveness liveness = new HostLiveness(4);
+        Inet4Address host = host("10.0.0.1");
+        liveness.record(host, PortState.CLOSED);
+        for (int i = 0; i < 100; i++) {
+            liveness.record(host, PortState.FILTERED);
+        }
+        assertFalse(liveness.isUnresponsive(host));
+        assertFalse(liveness.skip(host));
+    }
+
+    @Test
+    void errorsDoNotCountAsSilence() throws UnknownHostException {
+        HostLiveness liveness = new HostLiveness(2);
+        Inet4Address host = host("10.0.0.1");
+        liveness.record(host, PortState.ERROR);
+        liveness.record(host, PortState.ERROR);
+        liveness.record(host, PortState.FILTERED);
+        assertFalse(liveness.isUnresponsive(host));
+    }
+
+    @Test
+    void hostsAreTrackedIndependently() throws UnknownHostException {
+        HostLiveness liveness = new HostLiveness(2);
+        Inet4Address dead = host("10.0.0.1");
+        Inet4Address alive = host("10.0.0.2");
+        liveness.record(dead, PortState.FILTERED);
+        liveness.record(alive, PortState.OPEN);
+        liveness.record(dead, PortState.FILTERED);
+        liveness.record(alive, PortState.FILTERED);
+        assertTrue(liveness.skip(dead));
+        assertFalse(liveness.skip(alive));
+    }
+
+    @Test
+    void skippedPortsAreReportedAsSkipped() throws UnknownHostException {
+        HostLiveness liveness = new HostLiveness(1);
+        Inet4Address host = host("192.0.2.1");
+        liveness.record(host, PortState.FILTERED);
+        ProbeContext probeContext = new ProbeContext.Builder().liveness(liveness).build();
+        List<PortScanResult> results = new PortScanSynAckTask(null, host, Arrays.asList(22, 80, 443), 100,
+                probeContext).call();
+        assertEquals(3, results.size());
+        for (PortScanResult result : results) {
+            assertEquals(PortState.SKIPPED, result.getState());
+        }
+        assertEquals(3L, liveness.getSkippedProbes(host));
+    }
+
+    @Test
+    void disabledTrackerNeverSkips() throws UnknownHostException {
+        HostLiveness liveness = HostLiveness.disabled();
+        Inet4Address host = host("10.0.0.1");
+        for (int i = 0; i < 1000; i++) {
+            liveness.record(host, PortState.FILTERED);
+        }
+        assertFalse(liveness.skip(host));
+        assertTrue(liveness.getUnresponsiveHosts().isEmpty());
+    }
+
+    private static Inet4Address host(String address) throws UnknownHostException {
+        return (Inet4Address) InetAddress.getByName(address);
+    }
+}
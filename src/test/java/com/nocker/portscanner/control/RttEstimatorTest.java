@@ -0,0 +1,37 @@
+package com.nocker.portscanner.control;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RttEstimatorTest {
+
+    @Test
+    void firstSampleSeedsTheEstimate() {
+        RttEstimator estimator = new RttEstimator();
+        estimator.sample(millis(40));
+        assertEquals(40.0, estimator.getSmoothedRttMillis(), 0.001);
+        assertEquals(20.0, estimator.getRttVarianceMillis(), 0.001);
+        assertEquals(120.0, estimator.timeoutMillis(), 0.001);
+    }
+
+    @Test
+    void laterSamplesAreSmoothed() {
+        RttEstimator estimator = new RttEstimator();
+        estimator.sample(millis(40));
+        estimator.sample(millis(80));
+        assertEquals(45.0, estimator.getSmoothedRttMillis(), 0.001);
+        assertEquals(25.0, estimator.getRttVarianceMillis(), 0.001);
+        for (int i = 0; i < 200; i++) {
+            estimator.sample(millis(10));
+        }
+        assertEquals(10.0, estimator.getSmoothedRttMillis(), 0.01);
+        assertTrue(estimator.getRttVarianceMillis() < 0.01);
+    }
+
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
@@ -0,0 +1,73 @@
+package com.nocker.portscanner.discovery;
+
+import com.nocker.portscanner.engine.PcapReceiveLoop;
+import org.junit.jupiter.api.Test;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArpSweepTest {
+    private static final byte[] SOURCE_MAC = {0x02, 0x42, (byte) 0xAC, 0x11, 0x00, 0x02};
+
+    @Test
+    void requestIsABroadcastWhoHas() throws UnknownHostException {
+        byte[] frame = new byte[ArpSweep.FRAME_LENGTH];
+        ArpSweep.writeRequest(frame, SOURCE_MAC, address("192.168.1.10"), address("192.168.1.77"));
+        for (int i = 0; i < 6; i++) {
+            assertEquals((byte) 0xFF, frame[i]);
+        }
+        assertEquals("02:42:ac:11:00:02", ArpSweep.formatMac(frame, 6));
+        assertEquals(0x08, frame[12]);
+        assertEquals(0x06, frame[13]);
+        assertEquals(ArpSweep.OPERATION_REQUEST, frame[21]);
+        assertEquals("02:42:ac:11:00:02", ArpSweep.formatMac(frame, 22));
+        assertEquals(address("192.168.1.10"), ArpSweep.senderAddress(frame));
+        assertEquals("00:00:00:00:00:00", ArpSweep.formatMac(frame, 32));
+        assertFalse(ArpSweep.isReplyTo(frame, address("192.168.1.10")));
+    }
+
+    @Test
+    void replyIsMatchedToTheAskingHost() throws UnknownHostException {
+        byte[] frame = reply(address("192.168.1.77"), address("192.168.1.10"));
+        assertTrue(ArpSweep.isReplyTo(frame, address("192.168.1.10")));
+        assertFalse(ArpSweep.isReplyTo(frame, address("192.168.1.11")));
+        assertEquals(address("192.168.1.77"), ArpSweep.senderAddress(frame));
+        assertEquals("0a:0b:0c:0d:0e:0f", ArpSweep.formatMac(frame, 22));
+    }
+
+    @Test
+    void truncatedFramesAreNotReplies() throws UnknownHostException {
+        byte[] frame = Arrays.copyOf(reply(address("192.168.1.77"), address("192.168.1.10")), 40);
+        assertFalse(ArpSweep.isReplyTo(frame, address("192.168.1.10")));
+    }
+
+    @Test
+    void targetsMustAllShareTheSourceSubnet() throws UnknownHostException {
+        int source = address("192.168.1.10");
+        int netmask = address("255.255.255.0");
+        assertTrue(ArpSweep.isOnLink(source, netmask, Arrays.asList(host("192.168.1.1"), host("192.168.1.254"))));
+        assertFalse(ArpSweep.isOnLink(source, netmask, Arrays.asList(host("192.168.1.1"), host("192.168.2.1"))));
+        assertTrue(ArpSweep.isOnLink(source, address("255.255.0.0"), Arrays.asList(host("192.168.2.1"))));
+        assertFalse(ArpSweep.isOnLink(source, -1, Arrays.asList(host("192.168.1.10"))));
+    }
+
+    private static byte[] reply(int sender, int target) {
+        byte[] frame = new byte[ArpSweep.FRAME_LENGTH];
+        byte[] senderMac = {0x0A, 0x0B, 0x0C, 0x0D, 0x0E, 0x0F};
+        ArpSweep.writeRequest(frame, senderMac, sender, target);
+        frame[21] = ArpSweep.OPERATION_REPLY;
+        return frame;
+    }
+
+    private static int address(String address) throws UnknownHostException {
+        return PcapReceiveLoop.toInt(host(address));
+    }
+
+    private static Inet4Address host(String address) throws UnknownHostException {
+        return (Inet4Address) InetAddress.getByName(address);
+    }
+}
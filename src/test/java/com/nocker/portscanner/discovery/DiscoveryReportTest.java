@@ -0,0 +1,47 @@
+package com.nocker.portscanner.discovery;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiscoveryReportTest {
+
+    @Test
+    void liveHostsKeepSweepOrder() throws UnknownHostException {
+        Inet4Address first = host("10.0.0.1");
+        Inet4Address second = host("10.0.0.2");
+        Inet4Address third = host("10.0.0.3");
+        DiscoveryReport report = new DiscoveryReport(Arrays.asList(
+                DiscoveredHost.up(first, "tcp/80", 3L),
+                DiscoveredHost.down(second),
+                DiscoveredHost.up(third, "echo", 7L)), 310L);
+        assertEquals(Arrays.asList(first, third), report.getLiveHosts());
+    }
+
+    @Test
+    void summaryListsOnlyLiveHosts() throws UnknownHostException {
+        DiscoveryReport report = new DiscoveryReport(Arrays.asList(
+                DiscoveredHost.up(host("10.0.0.1"), "tcp/443", 4L),
+                DiscoveredHost.down(host("10.0.0.2"))), 305L);
+        String summary = report.toSummary();
+        assertTrue(summary.startsWith("Host Discovery: 1 of 2 hosts up"));
+        assertTrue(summary.contains("Host: 10.0.0.1    [up, tcp/443, 4 ms]"));
+        assertFalse(summary.contains("10.0.0.2"));
+    }
+
+    @Test
+    void emptySweepHasNoLiveHosts() {
+        DiscoveryReport report = new DiscoveryReport(Collections.emptyList(), 0L);
+        assertTrue(report.getLiveHosts().isEmpty());
+    }
+
+    private static Inet4Address host(String address) throws UnknownHostException {
+        return (Inet4Address) InetAddress.getByName(address);
+    }
+}
@@ -0,0 +1,68 @@
+package com.nocker.portscanner.discovery;
+
+import com.nocker.portscanner.rate.TokenBucket;
+import org.junit.jupiter.api.Test;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HostDiscoveryTest {
+    private static final int TIMEOUT_MILLIS = HostDiscovery.MIN_TIMEOUT_MILLIS;
+
+    @Test
+    void echoRepliesFindHostsUp() throws UnknownHostException {
+        Inet4Address up = host("127.1.0.1");
+        Inet4Address down = host("127.1.0.2");
+        HostDiscovery discovery = new HostDiscovery(TIMEOUT_MILLIS, true, TokenBucket.unlimited(),
+                Collections.emptyList(), (host, timeoutMillis) -> host.equals(up));
+        DiscoveryReport report = discovery.discover(Arrays.asList(up, down, up));
+        assertEquals(Collections.singletonList(up), report.getLiveHosts());
+        assertEquals(2, report.getHosts().size());
+    }
+
+    @Test
+    void echoChecksShareOneDeadline() throws UnknownHostException {
+        List<Inet4Address> hosts = new ArrayList<>();
+        for (int i = 0; i < HostDiscovery.ECHO_CONCURRENCY * 8; i++) {
+            hosts.add(host("127.2." + (i / 256) + "." + (i % 256)));
+        }
+        AtomicInteger checks = new AtomicInteger();
+        HostDiscovery discovery = new HostDiscovery(TIMEOUT_MILLIS, true, TokenBucket.unlimited(),
+                Collections.emptyList(), (host, timeoutMillis) -> {
+            checks.incrementAndGet();
+            try {
+                Thread.sleep(timeoutMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        });
+        long startNanos = System.nanoTime();
+        DiscoveryReport report = discovery.discover(hosts);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        assertTrue(report.getLiveHosts().isEmpty());
+        assertEquals(hosts.size(), report.getHosts().size());
+        assertTrue(elapsedMillis < 5L * TIMEOUT_MILLIS, "swept in " + elapsedMillis + " ms");
+        assertTrue(checks.get() < hosts.size());
+    }
+
+    @Test
+    void emptySweepFindsNothing() {
+        DiscoveryReport report = new HostDiscovery(TIMEOUT_MILLIS, true, TokenBucket.unlimited())
+                .discover(Collections.emptyList());
+        assertTrue(report.getHosts().isEmpty());
+    }
+
+    private static Inet4Address host(String address) throws UnknownHostException {
+        return (Inet4Address) InetAddress.getByName(address);
+    }
+}
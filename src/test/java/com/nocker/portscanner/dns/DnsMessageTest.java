@@ -0,0 +1,72 @@
+package com.nocker.portscanner.dns;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DnsMessageTest {
+
+    @Test
+    void responsesSurviveARoundTrip() throws UnknownHostException {
+        DnsMessage query = DnsMessage.query(0xBEEF, "www.example.com", DnsMessage.TYPE_A);
+        DnsMessage response = query.respond(DnsMessage.RCODE_NOERROR, Arrays.asList(
+                DnsMessage.Record.cname("www.example.com", 300, "web.example.com"),
+                DnsMessage.Record.a("web.example.com", 60, address("93.184.216.34"))),
+                Collections.singletonList(DnsMessage.Record.soa("example.com", 3600, 120)));
+        DnsMessage decoded = DnsMessage.decode(ByteBuffer.wrap(response.encode()));
+        assertEquals(0xBEEF, decoded.getId());
+        assertTrue(decoded.isResponse());
+        assertTrue(decoded.answers(query));
+        assertEquals(2, decoded.getAnswers().size());
+        assertEquals("web.example.com", decoded.getAnswers().get(0).getTarget());
+        assertEquals(address("93.184.216.34"), decoded.getAnswers().get(1).getAddress());
+        assertEquals(60, decoded.getAnswers().get(1).getTtlSeconds());
+        assertEquals(120, decoded.getAuthorities().get(0).getMinimumSeconds());
+    }
+
+    @Test
+    void compressedNamesAreFollowed() throws UnknownHostException {
+        byte[] encoded = DnsMessage.query(7, "a.example", DnsMessage.TYPE_A).encode();
+        ByteBuffer message = ByteBuffer.allocate(encoded.length + 16);
+        message.put(encoded);
+        message.putShort(6, (short) 1); // one answer
+        message.put(new byte[] {(byte) 0xC0, 12}); // name points at the question
+        message.putShort((short) DnsMessage.TYPE_A).putShort((short) DnsMessage.CLASS_IN).putInt(30);
+        message.putShort((short) 4).put(new byte[] {10, 0, 0, 7});
+        message.flip();
+        DnsMessage decoded = DnsMessage.decode(message);
+        assertEquals("a.example", decoded.getAnswers().get(0).getName());
+        assertEquals(address("10.0.0.7"), decoded.getAnswers().get(0).getAddress());
+    }
+
+    @Test
+    void malformedMessagesAreRejected() {
+        byte[] encoded = DnsMessage.query(7, "a.example", DnsMessage.TYPE_A).encode();
+        assertThrows(IllegalArgumentException.class,
+                () -> DnsMessage.decode(ByteBuffer.wrap(Arrays.copyOf(encoded, encoded.length - 3))));
+        byte[] loop = Arrays.copyOf(encoded, encoded.length);
+        loop[12] = (byte) 0xC0;
+        loop[13] = 12; // a name pointing at itself
+        assertThrows(IllegalArgumentException.class, () -> DnsMessage.decode(ByteBuffer.wrap(loop)));
+        char[] label = new char[64];
+        Arrays.fill(label, 'a');
+        assertThrows(IllegalArgumentException.class,
+                () -> DnsMessage.query(1, new String(label) + ".example", DnsMessage.TYPE_A).encode());
+    }
+
+    @Test
+    void reverseNamesListTheOctetsBackwards() throws UnknownHostException {
+        assertEquals("4.3.2.1.in-addr.arpa", DnsMessage.reverseName(address("1.2.3.4")));
+    }
+
+    private static Inet4Address address(String address) throws UnknownHostException {
+        return (Inet4Address) InetAddress.getByName(address);
+    }
+}
@@ -0,0 +1,175 @@
+package com.nocker.portscanner.dns;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HostResolverTest {
+    private static final long POSITIVE_TTL = 1_000L;
+    private static final long NEGATIVE_TTL = 100L;
+
+    private final AtomicLong clock = new AtomicLong();
+    private final Map<String, AtomicInteger> lookups = new ConcurrentHashMap<>();
+
+    @Test
+    void resolvedNamesAreCachedUntilTheyExpire() throws UnknownHostException {
+        HostResolver resolver = resolver(0);
+        assertEquals(host("10.0.0.1"), resolver.resolve("one.example"));
+        clock.set(POSITIVE_TTL - 1);
+        assertEquals(host("10.0.0.1"), resolver.resolve("one.example"));
+        assertEquals(1, lookups("one.example"));
+        clock.set(POSITIVE_TTL);
+        resolver.resolve("one.example");
+        assertEquals(2, lookups("one.example"));
+    }
+
+    @Test
+    void unknownNamesAreCachedForTheNegativeTtl() {
+        HostResolver resolver = resolver(0);
+        assertNull(resolver.resolve("missing.example"));
+        assertNull(resolver.resolve("missing.example"));
+        assertEquals(1, lookups("missing.example"));
+        clock.set(NEGATIVE_TTL);
+        assertNull(resolver.resolve("missing.example"));
+        assertEquals(2, lookups("missing.example"));
+    }
+
+    @Test
+    void listsAreResolvedInOrderAndEachHostOnce() throws UnknownHostException {
+        HostResolver resolver = resolver(0);
+        Map<String, Inet4Address> addresses = resolver.resolveAll(
+                Arrays.asList("three.example", "one.example", "missing.example", "three.example"));
+        assertEquals(Arrays.asList("three.example", "one.example", "missing.example"),
+                new ArrayList<>(addresses.keySet()));
+        assertEquals(host("10.0.0.3"), addresses.get("three.example"));
+        assertNull(addresses.get("missing.example"));
+        assertEquals(1, lookups("three.example"));
+
+        Map<Inet4Address, String> hostNames = resolver.hostNamesOf(
+                Arrays.asList(host("10.0.0.3"), host("10.0.0.1")));
+        assertEquals("ptr-10.0.0.3", hostNames.get(host("10.0.0.3")));
+        assertEquals("ptr-10.0.0.1", resolver.hostName(host("10.0.0.1")));
+        assertEquals(1, lookups("10.0.0.1"));
+    }
+
+    @Test
+    void slowLookupsOfAListOverlap() {
+        HostResolver resolver = resolver(200);
+        List<String> hosts = new ArrayList<>();
+        for (int i = 1; i <= 8; i++) {
+            hosts.add("host" + i + ".example");
+        }
+        long start = System.nanoTime();
+        Map<String, Inet4Address> addresses = resolver.resolveAll(hosts);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000L;
+        assertEquals(8, addresses.size());
+        assertTrue(elapsedMillis < 8 * 200, "lookups ran one after another: " + elapsedMillis + " ms");
+    }
+
+    @Test
+    void listsJoinQueryAnswersAndLookUpOnlyFailedNames() throws UnknownHostException {
+        Map<String, AtomicInteger> queries = new ConcurrentHashMap<>();
+        Function<String, CompletableFuture<Inet4Address>> addressQuery = host -> {
+            if (!host.endsWith(".example")) {
+                return null;
+            }
+            queries.computeIfAbsent(host, k -> new AtomicInteger()).incrementAndGet();
+            return CompletableFuture.supplyAsync(() -> {
+                pause(50);
+                if (host.startsWith("broken")) {
+                    throw new IllegalStateException("timed out");
+                }
+                return address(new byte[] {10, 0, 1, (byte) wordValue(host)});
+            });
+        };
+        Function<String, Inet4Address> addressLookup = host -> {
+            count(host);
+            return address(new byte[] {10, 0, 2, 7});
+        };
+        HostResolver resolver = new HostResolver(POSITIVE_TTL, NEGATIVE_TTL, addressQuery, addressLookup,
+                address -> null, address -> "ptr", clock::get);
+        Map<String, Inet4Address> addresses = resolver.resolveAll(
+                Arrays.asList("one.example", "broken.example", "three.example", "localname"));
+        assertEquals(Arrays.asList("one.example", "broken.example", "three.example", "localname"),
+                new ArrayList<>(addresses.keySet()));
+        assertEquals(host("10.0.1.1"), addresses.get("one.example"));
+        assertEquals(host("10.0.1.3"), addresses.get("three.example"));
+        assertEquals(host("10.0.2.7"), addresses.get("broken.example"));
+        assertEquals(host("10.0.2.7"), addresses.get("localname"));
+        assertEquals(0, lookups("one.example"));
+        assertEquals(1, lookups("broken.example"));
+        assertEquals(1, lookups("localname"));
+        assertEquals(host("10.0.1.1"), resolver.resolve("one.example"));
+        assertEquals(1, queries.get("one.example").get());
+    }
+
+    @Test
+    void invalidateDropsEveryEntry() {
+        HostResolver resolver = resolver(0);
+        resolver.resolve("one.example");
+        resolver.invalidate();
+        resolver.resolve("one.example");
+        assertEquals(2, lookups("one.example"));
+    }
+
+    private HostResolver resolver(long delayMillis) {
+        Function<String, Inet4Address> addressLookup = host -> {
+            count(host);
+            pause(delayMillis);
+            if (host.startsWith("missing")) {
+                return null;
+            }
+            String digits = host.replaceAll("\\D", "");
+            int last = digits.isEmpty() ? wordValue(host) : Integer.parseInt(digits);
+            return address(new byte[] {10, 0, 0, (byte) last});
+        };
+        Function<Inet4Address, String> hostNameLookup = address -> {
+            count(address.getHostAddress());
+            return "ptr-" + address.getHostAddress();
+        };
+        return new HostResolver(POSITIVE_TTL, NEGATIVE_TTL, addressLookup, hostNameLookup, clock::get);
+    }
+
+    private static int wordValue(String host) {
+        return host.startsWith("one") ? 1 : host.startsWith("three") ? 3 : 99;
+    }
+
+    private void count(String key) {
+        lookups.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+    }
+
+    private int lookups(String key) {
+        AtomicInteger count = lookups.get(key);
+        return count == null ? 0 : count.get();
+    }
+
+    private static void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Inet4Address address(byte[] bytes) {
+        try {
+            return (Inet4Address) InetAddress.getByAddress(bytes);
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Inet4Address host(String address) throws UnknownHostException {
+        return (Inet4Address) InetAddress.getByName(address);
+    }
+}
@@ -0,0 +1,37 @@
+package com.nocker.portscanner.dns;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResolvConfTest {
+
+    @Test
+    void parsesNameserversAndOptions() {
+        ResolvConf conf = ResolvConf.parse(Arrays.asList(
+                "# generated",
+                "search corp.example",
+                "nameserver 10.0.0.53",
+                "nameserver dns.corp.example",
+                "nameserver fd00::53",
+                "options ndots:2 timeout:1 attempts:9",
+                "nameserver 10.0.1.53",
+                "nameserver 10.0.2.53"));
+        assertEquals(3, conf.getNameservers().size());
+        assertEquals("10.0.0.53", conf.getNameservers().get(0).getHostAddress());
+        assertEquals("10.0.1.53", conf.getNameservers().get(2).getHostAddress());
+        assertEquals(1, conf.getTimeoutSeconds());
+        assertEquals(ResolvConf.MAX_ATTEMPTS, conf.getAttempts());
+    }
+
+    @Test
+    void defaultsWithoutConfiguration() {
+        ResolvConf conf = ResolvConf.parse(Collections.<String>emptyList());
+        assertTrue(conf.getNameservers().isEmpty());
+        assertEquals(ResolvConf.DEFAULT_TIMEOUT_SECONDS, conf.getTimeoutSeconds());
+        assertEquals(ResolvConf.DEFAULT_ATTEMPTS, conf.getAttempts());
+    }
+}
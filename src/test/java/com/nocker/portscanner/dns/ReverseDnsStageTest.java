@@ -0,0 +1,80 @@
+package com.nocker.portscanner.dns;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReverseDnsStageTest {
+    private final Map<Inet4Address, AtomicInteger> lookups = new ConcurrentHashMap<>();
+
+    @Test
+    void requestedNamesAreJoinedOnce() throws UnknownHostException {
+        ReverseDnsStage stage = new ReverseDnsStage(resolver(new CountDownLatch(0)), 1_000L);
+        stage.requestAll(Arrays.asList(address("10.0.0.1"), address("10.0.0.2"), address("10.0.0.1")));
+        assertEquals("ptr-10.0.0.1", stage.hostName(address("10.0.0.1")));
+        assertEquals("ptr-10.0.0.2", stage.hostName(address("10.0.0.2")));
+        assertEquals("ptr-10.0.0.3", stage.hostName(address("10.0.0.3")));
+        stage.hostName(address("10.0.0.1"));
+        assertEquals(1, lookups.get(address("10.0.0.1")).get());
+    }
+
+    @Test
+    void pendingNamesAreWrittenAsAddresses() throws UnknownHostException {
+        CountDownLatch zoneAnswers = new CountDownLatch(1);
+        ReverseDnsStage stage = new ReverseDnsStage(resolver(zoneAnswers), 50L);
+        try {
+            assertEquals("10.0.0.9", stage.hostName(address("10.0.0.9")));
+        } finally {
+            zoneAnswers.countDown();
+        }
+    }
+
+    @Test
+    void blockNamesShareOneDeadline() throws UnknownHostException {
+        CountDownLatch zoneAnswers = new CountDownLatch(1);
+        ReverseDnsStage stage = new ReverseDnsStage(resolver(zoneAnswers), 200L);
+        try {
+            long startNanos = System.nanoTime();
+            Map<Inet4Address, String> names = stage.hostNames(Arrays.asList(
+                    address("10.0.0.1"), address("10.0.0.2"), address("10.0.0.3"), address("10.0.0.4")));
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            assertEquals("10.0.0.4", names.get(address("10.0.0.4")));
+            assertEquals(4, names.size());
+            assertTrue(elapsedMillis < 600L, "joined in " + elapsedMillis + " ms");
+        } finally {
+            zoneAnswers.countDown();
+        }
+    }
+
+    @Test
+    void disabledStageNeverLooksUp() throws UnknownHostException {
+        assertEquals("10.0.0.1", ReverseDnsStage.disabled().hostName(address("10.0.0.1")));
+        assertFalse(ReverseDnsStage.disabled().isEnabled());
+    }
+
+    private HostResolver resolver(CountDownLatch zoneAnswers) {
+        return new HostResolver(1_000L, 1_000L, host -> null, address -> {
+            lookups.computeIfAbsent(address, a -> new AtomicInteger()).incrementAndGet();
+            try {
+                zoneAnswers.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "ptr-" + address.getHostAddress();
+        }, System::currentTimeMillis);
+    }
+
+    private static Inet4Address address(String address) throws UnknownHostException {
+        return (Inet4Address) InetAddress.getByName(address);
+    }
+}
@@ -0,0 +1,205 @@
+package com.nocker.portscanner.dns;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StubResolverTest {
+    private final List<Closeable> closeables = new ArrayList<>();
+
+    @AfterEach
+    void close() {
+        for (Closeable closeable : closeables) {
+            closeable.close();
+        }
+    }
+
+    @Test
+    void resolvesAddressesAndNames() throws Exception {
+        Responder responder = responder(StubResolverTest::answer);
+        StubResolver resolver = resolver(responder.address(), 1_000, 1);
+        assertEquals(Collections.singletonList(address("10.0.0.7")), resolver.lookupAddresses("host7.example").get());
+        assertEquals("host9.example", resolver.lookupHostName(address("10.0.0.9")).get());
+        assertTrue(resolver.lookupAddresses("missing.example").get().isEmpty());
+        assertNull(resolver.lookupHostName(address("10.0.0.250")).get());
+    }
+
+    @Test
+    void answersAndNegativeAnswersAreCached() throws Exception {
+        Responder responder = responder(StubResolverTest::answer);
+        StubResolver resolver = resolver(responder.address(), 1_000, 1);
+        resolver.lookupAddresses("host7.example").get();
+        resolver.lookupAddresses("HOST7.example").get();
+        resolver.lookupAddresses("missing.example").get();
+        resolver.lookupAddresses("missing.example").get();
+        assertEquals(2, responder.queries.get());
+    }
+
+    @Test
+    void unansweredQueriesAreSentAgain() throws Exception {
+        Set<String> dropped = ConcurrentHashMap.newKeySet();
+        Responder responder = responder(query -> dropped.add(query.getQuestions().get(0).getName())
+                ? null : answer(query));
+        StubResolver resolver = resolver(responder.address(), 100, 2);
+        assertEquals(Collections.singletonList(address("10.0.0.3")), resolver.lookupAddresses("host3.example").get());
+        assertEquals(2, responder.queries.get());
+    }
+
+    @Test
+    void lookupsFailOnceEveryAttemptIsUnanswered() throws Exception {
+        Responder responder = responder(query -> null);
+        StubResolver resolver = resolver(responder.address(), 50, 2);
+        ExecutionException failure = assertThrows(ExecutionException.class,
+                () -> resolver.lookupAddresses("host3.example").get());
+        assertTrue(failure.getCause() instanceof IOException);
+        assertEquals(2, responder.queries.get());
+    }
+
+    @Test
+    void responsesThatDoNotMatchTheirQueryAreIgnored() throws Exception {
+        Responder responder = responder(query -> {
+            DnsMessage spoofed = DnsMessage.query(query.getId(), "other.example", DnsMessage.TYPE_A)
+                    .respond(DnsMessage.RCODE_NOERROR, Collections.singletonList(
+                            DnsMessage.Record.a("other.example", 60, address("6.6.6.6"))),
+                            Collections.<DnsMessage.Record>emptyList());
+            return Arrays.asList(spoofed, answer(query).get(0));
+        });
+        StubResolver resolver = resolver(responder.address(), 1_000, 1);
+        assertEquals(Collections.singletonList(address("10.0.0.5")), resolver.lookupAddresses("host5.example").get());
+    }
+
+    @Test
+    void queriesArePipelined() throws Exception {
+        Responder responder = responder(StubResolverTest::answer);
+        responder.delayMillis = 100;
+        StubResolver resolver = resolver(responder.address(), 2_000, 1);
+        List<CompletableFuture<List<Inet4Address>>> lookups = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 1; i <= 50; i++) {
+            lookups.add(resolver.lookupAddresses("host" + i + ".example"));
+        }
+        for (int i = 1; i <= 50; i++) {
+            assertEquals(address("10.0.0." + i), lookups.get(i - 1).get().get(0));
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMillis < 50 * 100 / 4, "queries were answered one after another: " + elapsedMillis + " ms");
+    }
+
+    /**
+     * Answers {@code hostN.example} with {@code 10.0.0.N} and the reverse names
+     * of {@code 10.0.0.N} below 200 with {@code hostN.example}, and everything
+     * else with a name error.
+     */
+    private static List<DnsMessage> answer(DnsMessage query) throws UnknownHostException {
+        DnsMessage.Question question = query.getQuestions().get(0);
+        String name = question.getName().toLowerCase(Locale.ROOT);
+        List<DnsMessage.Record> answers = new ArrayList<>();
+        if (question.getType() == DnsMessage.TYPE_A && name.matches("host\\d+\\.example")) {
+            int last = Integer.parseInt(name.substring(4, name.indexOf('.')));
+            answers.add(DnsMessage.Record.a(question.getName(), 60, address("10.0.0." + last)));
+        } else if (question.getType() == DnsMessage.TYPE_PTR && name.matches("\\d+\\.0\\.0\\.10\\.in-addr\\.arpa")) {
+            int last = Integer.parseInt(name.substring(0, name.indexOf('.')));
+            if (last < 200) {
+                answers.add(DnsMessage.Record.ptr(question.getName(), 60, "host" + last + ".example"));
+            }
+        }
+        return Collections.singletonList(query.respond(
+                answers.isEmpty() ? DnsMessage.RCODE_NXDOMAIN : DnsMessage.RCODE_NOERROR, answers,
+                answers.isEmpty() ? Collections.singletonList(DnsMessage.Record.soa("example", 60, 30))
+                        : Collections.<DnsMessage.Record>emptyList()));
+    }
+
+    private Responder responder(Handler handler) throws IOException {
+        Responder responder = new Responder(handler);
+        closeables.add(responder);
+        return responder;
+    }
+
+    private StubResolver resolver(InetSocketAddress server, int timeoutMillis, int attempts) throws IOException {
+        StubResolver resolver = new StubResolver(Collections.singletonList(server), timeoutMillis, attempts);
+        closeables.add(resolver::close);
+        return resolver;
+    }
+
+    private static Inet4Address address(String address) throws UnknownHostException {
+        return (Inet4Address) InetAddress.getByName(address);
+    }
+
+    private interface Closeable {
+        void close();
+    }
+
+    private interface Handler {
+        List<DnsMessage> respond(DnsMessage query) throws UnknownHostException;
+    }
+
+    /**
+     * A stand-in DNS server on the loopback address. Each query is answered
+     * with what the handler returns, nothing when it returns {@code null},
+     * after the configured delay and on a thread of its own, so answers may
+     * arrive in any order.
+     */
+    private static final class Responder implements Closeable {
+        private final DatagramSocket socket;
+        private final ExecutorService senders = Executors.newCachedThreadPool();
+        private final AtomicInteger queries = new AtomicInteger();
+        private volatile long delayMillis = 0;
+
+        private Responder(Handler handler) throws IOException {
+            this.socket = new DatagramSocket(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            Thread thread = new Thread(() -> serve(handler), "dns-responder");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private InetSocketAddress address() {
+            return (InetSocketAddress) socket.getLocalSocketAddress();
+        }
+
+        private void serve(Handler handler) {
+            byte[] buffer = new byte[DnsMessage.MAX_UDP_SIZE];
+            while (!socket.isClosed()) {
+                try {
+                    DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                    socket.receive(packet);
+                    queries.incrementAndGet();
+                    DnsMessage query = DnsMessage.decode(ByteBuffer.wrap(packet.getData(), 0, packet.getLength()));
+                    SocketAddress client = packet.getSocketAddress();
+                    List<DnsMessage> responses = handler.respond(query);
+                    if (responses != null) {
+                        senders.execute(() -> send(responses, client));
+                    }
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void send(List<DnsMessage> responses, SocketAddress client) {
+            try {
+                Thread.sleep(delayMillis);
+                for (DnsMessage response : responses) {
+                    byte[] encoded = response.encode();
+                    socket.send(new DatagramPacket(encoded, encoded.length, client));
+                }
+            } catch (IOException | InterruptedException e) {
+                // the responder was closed
+            }
+        }
+
+        @Override
+        public void close() {
+            socket.close();
+            senders.shutdownNow();
+        }
+    }
+}
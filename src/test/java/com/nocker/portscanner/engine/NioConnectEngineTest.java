@@ -0,0 +1,65 @@
+package com.nocker.portscanner.engine;
+
+import com.nocker.portscanner.PortState;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NioConnectEngineTest {
+    private static final int TIMEOUT = 1000;
+
+    @Test
+    void connectToListeningPortIsOpen() throws IOException {
+        Inet4Address loopback = (Inet4Address) InetAddress.getByName("127.0.0.1");
+        try (ServerSocket serverSocket = new ServerSocket(0, 50, loopback);
+             NioConnectEngine engine = new NioConnectEngine(10, 1)) {
+            PortState state = engine.connect(loopback, serverSocket.getLocalPort(), TIMEOUT).join();
+            assertEquals(PortState.OPEN, state);
+        }
+    }
+
+    @Test
+    void connectToUnboundPortIsClosed() throws IOException {
+        Inet4Address loopback = (Inet4Address) InetAddress.getByName("127.0.0.1");
+        int unboundPort;
+        try (ServerSocket serverSocket = new ServerSocket(0, 50, loopback)) {
+            unboundPort = serverSocket.getLocalPort();
+        }
+        try (NioConnectEngine engine = new NioConnectEngine(10, 1)) {
+            PortState state = engine.connect(loopback, unboundPort, TIMEOUT).join();
+            assertEquals(PortState.CLOSED, state);
+        }
+    }
+
+    @Test
+    void connectsBeyondInFlightBoundAllResolve() throws IOException {
+        Inet4Address loopback = (Inet4Address) InetAddress.getByName("127.0.0.1");
+        try (ServerSocket serverSocket = new ServerSocket(0, 200, loopback);
+             NioConnectEngine engine = new NioConnectEngine(4, 2)) {
+            List<CompletableFuture<PortState>> probes = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                probes.add(engine.connect(loopback, serverSocket.getLocalPort(), TIMEOUT));
+            }
+            for (CompletableFuture<PortState> probe : probes) {
+                assertEquals(PortState.OPEN, probe.join());
+            }
+            assertEquals(0, engine.getInFlight());
+        }
+    }
+
+    @Test
+    void connectAfterCloseThrows() throws IOException {
+        Inet4Address loopback = (Inet4Address) InetAddress.getByName("127.0.0.1");
+        NioConnectEngine engine = new NioConnectEngine(1, 1);
+        engine.close();
+        assertThrows(IllegalStateException.class, () -> engine.connect(loopback, 80, TIMEOUT));
+    }
+}
@@ -0,0 +1,128 @@
+package com.nocker.portscanner.engine;
+
+import com.nocker.portscanner.PortState;
+import org.junit.jupiter.api.Test;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static com.nocker.portscanner.engine.PcapReceiveLoop.ETHERNET_HEADER_LENGTH;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PcapReceiveLoopTest {
+    private static final int SYN_ACK = 0x12;
+    private static final int RST_ACK = 0x14;
+    private static final int ACK = 0x10;
+
+    @Test
+    void repliesAreClassifiedByTheirFlags() {
+        assertEquals(PortState.OPEN, PcapReceiveLoop.replyState(SYN_ACK));
+        assertEquals(PortState.CLOSED, PcapReceiveLoop.replyState(RST_ACK));
+        assertEquals(PortState.CLOSED, PcapReceiveLoop.replyState(0x04));
+        assertNull(PcapReceiveLoop.replyState(0x02));
+        assertNull(PcapReceiveLoop.replyState(ACK));
+    }
+
+    @Test
+    void ipHeaderIsFoundPastTheLinkHeader() throws UnknownHostException {
+        byte[] frame = ethernet(tcp(host("10.0.0.7"), 443, 40000, SYN_ACK, 0));
+        assertEquals(ETHERNET_HEADER_LENGTH, PcapReceiveLoop.ipOffset(frame, ETHERNET_HEADER_LENGTH));
+        assertEquals(ETHERNET_HEADER_LENGTH + 4, PcapReceiveLoop.ipOffset(vlan(frame), ETHERNET_HEADER_LENGTH));
+        frame[12] = 0x08;
+        frame[13] = 0x06; // ARP
+        assertEquals(-1, PcapReceiveLoop.ipOffset(frame, ETHERNET_HEADER_LENGTH));
+        assertEquals(-1, PcapReceiveLoop.ipOffset(new byte[10], ETHERNET_HEADER_LENGTH));
+        assertEquals(0, PcapReceiveLoop.ipOffset(new byte[10], 0));
+    }
+
+    @Test
+    void probeKeysKeepEveryPartOfTheTriple() {
+        long key = PcapReceiveLoop.probeKey(0xC0A80101, 443, 40000);
+        assertEquals(0xC0A80101L, key >>> 32);
+        assertEquals(443, (key >>> 16) & 0xFFFF);
+        assertEquals(40000, key & 0xFFFF);
+        assertNotEquals(key, PcapReceiveLoop.probeKey(0xC0A80101, 40000, 443));
+        assertNotEquals(key, PcapReceiveLoop.probeKey(0xC0A80102, 443, 40000));
+    }
+
+    @Test
+    void repliesCompleteTheExpectedProbe() throws UnknownHostException {
+        PcapReceiveLoop receiveLoop = new PcapReceiveLoop(ETHERNET_HEADER_LENGTH);
+        Inet4Address host = host("10.0.0.7");
+        CompletableFuture<PortState> open = receiveLoop.expect(host, 443, 40000);
+        CompletableFuture<PortState> closed = receiveLoop.expect(host, 22, 40000);
+        CompletableFuture<PortState> silent = receiveLoop.expect(host, 80, 40000);
+        receiveLoop.gotPacket(ethernet(tcp(host, 443, 40000, SYN_ACK, 0)));
+        receiveLoop.gotPacket(vlan(ethernet(tcp(host, 22, 40000, RST_ACK, 0))));
+        receiveLoop.gotPacket(ethernet(tcp(host, 80, 40000, ACK, 0)));
+        receiveLoop.gotPacket(ethernet(tcp(host("10.0.0.8"), 80, 40000, SYN_ACK, 0)));
+        assertEquals(PortState.OPEN, open.getNow(null));
+        assertEquals(PortState.CLOSED, closed.getNow(null));
+        assertFalse(silent.isDone());
+        assertEquals(1, receiveLoop.getWaitingProbes());
+        receiveLoop.cancel(host, 80, 40000);
+        assertEquals(0, receiveLoop.getWaitingProbes());
+    }
+
+    @Test
+    void unexpectedRepliesGoToTheListenerOfTheirPort() throws UnknownHostException {
+        PcapReceiveLoop receiveLoop = new PcapReceiveLoop(0);
+        List<String> replies = new ArrayList<>();
+        receiveLoop.addReplyListener(40001, (address, sourcePort, destinationPort, state, ack) ->
+                replies.add(Integer.toHexString(address) + ":" + sourcePort + ">" + destinationPort
+                        + " " + state + " " + ack));
+        receiveLoop.gotPacket(tcp(host("10.0.0.9"), 8080, 40001, SYN_ACK, 1235));
+        receiveLoop.gotPacket(tcp(host("10.0.0.9"), 8080, 40002, SYN_ACK, 1235));
+        receiveLoop.gotPacket(Arrays.copyOf(tcp(host("10.0.0.9"), 8081, 40001, RST_ACK, 0), 30));
+        receiveLoop.removeReplyListener(40001);
+        receiveLoop.gotPacket(tcp(host("10.0.0.9"), 8082, 40001, RST_ACK, 0));
+        assertEquals(Arrays.asList("a000009:8080>40001 OPEN 1235"), replies);
+    }
+
+    /**
+     * Builds an IPv4 packet holding a 20 byte TCP header from {@code source:sourcePort}.
+     */
+    private static byte[] tcp(Inet4Address source, int sourcePort, int destinationPort, int flags, int ack) {
+        byte[] packet = new byte[40];
+        packet[0] = 0x45;
+        packet[9] = 6;
+        System.arraycopy(source.getAddress(), 0, packet, 12, 4);
+        packet[20] = (byte) (sourcePort >>> 8);
+        packet[21] = (byte) sourcePort;
+        packet[22] = (byte) (destinationPort >>> 8);
+        packet[23] = (byte) destinationPort;
+        packet[28] = (byte) (ack >>> 24);
+        packet[29] = (byte) (ack >>> 16);
+        packet[30] = (byte) (ack >>> 8);
+        packet[31] = (byte) ack;
+        packet[32] = 0x50;
+        packet[33] = (byte) flags;
+        return packet;
+    }
+
+    private static byte[] ethernet(byte[] packet) {
+        byte[] frame = new byte[ETHERNET_HEADER_LENGTH + packet.length];
+        frame[12] = 0x08;
+        System.arraycopy(packet, 0, frame, ETHERNET_HEADER_LENGTH, packet.length);
+        return frame;
+    }
+
+    private static byte[] vlan(byte[] frame) {
+        byte[] tagged = new byte[frame.length + 4];
+        System.arraycopy(frame, 0, tagged, 0, 12);
+        tagged[12] = (byte) 0x81;
+        tagged[16] = frame[12];
+        tagged[17] = frame[13];
+        System.arraycopy(frame, 14, tagged, 18, frame.length - 14);
+        return tagged;
+    }
+
+    private static Inet4Address host(String address) throws UnknownHostException {
+        return (Inet4Address) InetAddress.getByName(address);
+    }
+}
@@ -0,0 +1,35 @@
+package com.nocker.portscanner.packet;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SynCookieTest {
+    private static final int ADDRESS = 0xC0A80101; // 192.168.1.1
+
+    @Test
+    void sequenceNumberIsDeterministicForTheSameKey() {
+        SynCookie cookie = new SynCookie(1L, 2L);
+        assertEquals(cookie.sequenceNumber(ADDRESS, 443, 50000),
+                new SynCookie(1L, 2L).sequenceNumber(ADDRESS, 443, 50000));
+        assertNotEquals(cookie.sequenceNumber(ADDRESS, 443, 50000),
+                new SynCookie(3L, 4L).sequenceNumber(ADDRESS, 443, 50000));
+    }
+
+    @Test
+    void acceptsAcknowledgmentOfTheCookie() {
+        SynCookie cookie = new SynCookie(1L, 2L);
+        int sequenceNumber = cookie.sequenceNumber(ADDRESS, 443, 50000);
+        assertTrue(cookie.isValidAcknowledgment(ADDRESS, 443, 50000, sequenceNumber + 1));
+    }
+
+    @Test
+    void rejectsAcknowledgmentOfAnotherProbe() {
+        SynCookie cookie = new SynCookie(1L, 2L);
+        int sequenceNumber = cookie.sequenceNumber(ADDRESS, 443, 50000);
+        assertFalse(cookie.isValidAcknowledgment(ADDRESS, 443, 50000, sequenceNumber));
+        assertFalse(cookie.isValidAcknowledgment(ADDRESS, 444, 50000, sequenceNumber + 1));
+        assertFalse(cookie.isValidAcknowledgment(ADDRESS + 1, 443, 50000, sequenceNumber + 1));
+        assertFalse(cookie.isValidAcknowledgment(ADDRESS, 443, 50001, sequenceNumber + 1));
+    }
+}
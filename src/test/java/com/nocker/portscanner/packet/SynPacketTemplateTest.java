@@ -0,0 +1,77 @@
+package com.nocker.portscanner.packet;
+
+import org.junit.jupiter.api.Test;
+import org.pcap4j.packet.IpV4Packet;
+import org.pcap4j.packet.IpV4Rfc791Tos;
+import org.pcap4j.packet.namednumber.IpNumber;
+import org.pcap4j.packet.namednumber.IpVersion;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Random;
+
+import static com.nocker.portscanner.packet.SynPacketTemplate.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SynPacketTemplateTest {
+
+    @Test
+    void patchedPacketMatchesBuiltPacket() throws UnknownHostException {
+        Inet4Address source = (Inet4Address) InetAddress.getByName("192.168.1.20");
+        Inet4Address destination = (Inet4Address) InetAddress.getByName("10.0.0.7");
+        SynPacketTemplate template = new SynPacketTemplate(source, destination);
+        byte[] packet = template.newPacket();
+        template.patch(packet, 50000, 443, TcpSynSegment.DEFAULT_SEQ_NUMBER, 0);
+
+        TcpSynSegment tcpSynSegment = new TcpSynSegment((short) 50000, (short) 443, destination);
+        byte[] built = buildWithPcap4j(tcpSynSegment, source, destination);
+        assertArrayEquals(built, packet);
+    }
+
+    @Test
+    void repeatedPatchesKeepChecksumsValid() throws UnknownHostException {
+        Inet4Address source = (Inet4Address) InetAddress.getByName("172.16.4.1");
+        Inet4Address destination = (Inet4Address) InetAddress.getByName("172.16.9.254");
+        SynPacketTemplate template = new SynPacketTemplate(source, destination);
+        byte[] packet = template.newPacket();
+        Random random = new Random(7);
+        for (int i = 0; i < 10000; i++) {
+            template.patch(packet, random.nextInt(0x10000), random.nextInt(0x10000), random.nextInt(),
+                    random.nextInt(0x10000));
+            assertEquals(0, checksum(packet, 0, TCP_OFFSET, 0), "ip checksum after patch " + i);
+            int tcpLength = PACKET_LENGTH - TCP_OFFSET;
+            assertEquals(0, checksum(packet, TCP_OFFSET, tcpLength,
+                    pseudoHeaderSum(source.getAddress(), destination.getAddress(), tcpLength)),
+                    "tcp checksum after patch " + i);
+        }
+    }
+
+    @Test
+    void incrementalUpdateMatchesFullChecksum() {
+        byte[] data = {0x12, 0x34, (byte) 0xAB, (byte) 0xCD, 0x00, 0x01};
+        int full = checksum(data, 0, data.length, 0);
+        int updated = updateChecksum(full, 0xABCD, 0xFFFF);
+        data[2] = (byte) 0xFF;
+        data[3] = (byte) 0xFF;
+        assertEquals(checksum(data, 0, data.length, 0), updated);
+    }
+
+    /**
+     * Builds the packet the pcap4j builder chain of {@link Ipv4TcpSynPacket} produces.
+     */
+    private static byte[] buildWithPcap4j(TcpSynSegment tcpSynSegment, Inet4Address source, Inet4Address destination) {
+        return new IpV4Packet.Builder()
+                .version(IpVersion.IPV4)
+                .tos(IpV4Rfc791Tos.newInstance((byte) 0))
+                .ttl((byte) 64)
+                .protocol(IpNumber.TCP)
+                .srcAddr(source)
+                .dstAddr(destination)
+                .payloadBuilder(tcpSynSegment.createTcpSynSegment(source).getBuilder())
+                .correctChecksumAtBuild(true)
+                .correctLengthAtBuild(true)
+                .build()
+                .getRawData();
+    }
+}
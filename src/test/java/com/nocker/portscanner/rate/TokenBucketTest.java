@@ -0,0 +1,80 @@
+package com.nocker.portscanner.rate;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTest {
+
+    @Test
+    void unlimitedBucketNeverBlocks() {
+        TokenBucket tokenBucket = TokenBucket.unlimited();
+        long start = System.nanoTime();
+        for (int i = 0; i < 100_000; i++) {
+            tokenBucket.acquire();
+        }
+        assertTrue(tokenBucket.isUnlimited());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+    }
+
+    @Test
+    void acquirePacesToRate() {
+        TokenBucket tokenBucket = new TokenBucket(1000);
+        long start = System.nanoTime();
+        for (int i = 0; i < 200; i++) {
+            tokenBucket.acquire();
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        // 200 probes at 1000/s, less the single token the bucket starts with
+        assertTrue(elapsedMillis >= 180, "elapsed " + elapsedMillis);
+        assertTrue(elapsedMillis < 2000, "elapsed " + elapsedMillis);
+    }
+
+    @Test
+    void rateIsSharedAcrossThreads() throws InterruptedException {
+        TokenBucket tokenBucket = new TokenBucket(2000);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < 100; j++) {
+                    tokenBucket.acquire();
+                }
+            }));
+        }
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        // 400 probes at 2000/s take about 200ms no matter how many threads send them
+        assertTrue(elapsedMillis >= 180, "elapsed " + elapsedMillis);
+    }
+
+    @Test
+    void tryAcquireNeverWaitsOrReserves() {
+        TokenBucket tokenBucket = new TokenBucket(10);
+        assertTrue(tokenBucket.tryAcquire());
+        long start = System.nanoTime();
+        assertFalse(tokenBucket.tryAcquire());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 50);
+        // a failed attempt takes nothing, the next token is due a tenth of a second after the first
+        long before = System.nanoTime();
+        tokenBucket.acquire();
+        long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - before);
+        assertTrue(waitedMillis < 150, "waited " + waitedMillis);
+        assertFalse(tokenBucket.tryAcquire());
+        assertTrue(TokenBucket.unlimited().tryAcquire());
+    }
+
+    @Test
+    void rejectsNonPositiveRate() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0));
+    }
+}
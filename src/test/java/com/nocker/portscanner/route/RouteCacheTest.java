@@ -0,0 +1,49 @@
+package com.nocker.portscanner.route;
+
+import org.junit.jupiter.api.Test;
+import org.pcap4j.core.PcapAddress;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RouteCacheTest {
+
+    @Test
+    void sourceIsOnTheSubnetOfTheNextHop() throws UnknownHostException {
+        List<PcapAddress> addresses = Arrays.asList(
+                pcapAddress("fe80::1", null),
+                pcapAddress("10.8.0.2", "255.255.255.0"),
+                pcapAddress("192.168.1.20", "255.255.255.0"));
+        assertEquals(address("192.168.1.20"), RouteCache.selectSourceAddress(addresses, 0xC0A80101));
+        assertEquals(address("10.8.0.2"), RouteCache.selectSourceAddress(addresses, 0x0A080063));
+    }
+
+    @Test
+    void sourceFallsBackToTheFirstIpv4Address() throws UnknownHostException {
+        List<PcapAddress> addresses = Arrays.asList(
+                pcapAddress("10.8.0.2", "255.255.255.0"),
+                pcapAddress("192.168.1.20", null));
+        assertEquals(address("10.8.0.2"), RouteCache.selectSourceAddress(addresses, 0xAC100001));
+        assertNull(RouteCache.selectSourceAddress(Collections.singletonList(pcapAddress("fe80::1", null)),
+                0xC0A80101));
+    }
+
+    private static PcapAddress pcapAddress(String address, String netmask) throws UnknownHostException {
+        PcapAddress pcapAddress = mock(PcapAddress.class);
+        when(pcapAddress.getAddress()).thenReturn(InetAddress.getByName(address));
+        when(pcapAddress.getNetmask()).thenReturn(netmask == null ? null : InetAddress.getByName(netmask));
+        return pcapAddress;
+    }
+
+    private static Inet4Address address(String address) throws UnknownHostException {
+        return (Inet4Address) InetAddress.getByName(address);
+    }
+}
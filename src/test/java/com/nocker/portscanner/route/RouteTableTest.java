@@ -0,0 +1,58 @@
+package com.nocker.portscanner.route;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteTableTest {
+    private static final List<String> PROC_NET_ROUTE = Arrays.asList(
+            "Iface\tDestination\tGateway \tFlags\tRefCnt\tUse\tMetric\tMask\t\tMTU\tWindow\tIRTT",
+            "eth0\t00000000\t0101A8C0\t0003\t0\t0\t100\t00000000\t0\t0\t0",
+            "wlan0\t00000000\t0102A8C0\t0003\t0\t0\t600\t00000000\t0\t0\t0",
+            "eth0\t0001A8C0\t00000000\t0001\t0\t0\t100\t00FFFFFF\t0\t0\t0",
+            "tun0\t0000000A\t00000000\t0001\t0\t0\t0\t000000FF\t0\t0\t0",
+            "down0\t0002000A\t00000000\t0000\t0\t0\t0\t00FFFFFF\t0\t0\t0",
+            "garbage"
+    );
+
+    @Test
+    void parsesRoutesThatAreUp() {
+        RouteTable routeTable = RouteTable.parse(PROC_NET_ROUTE);
+        assertEquals(4, routeTable.getRoutes().size());
+        RouteTable.Route route = routeTable.getRoutes().get(2);
+        assertEquals("eth0", route.getInterfaceName());
+        assertEquals(0xC0A80100, route.getDestination());
+        assertEquals(0xFFFFFF00, route.getMask());
+        assertEquals(24, route.getPrefixLength());
+    }
+
+    @Test
+    void lookupPrefersLongestPrefix() throws UnknownHostException {
+        RouteTable routeTable = RouteTable.parse(PROC_NET_ROUTE);
+        assertEquals("eth0", routeTable.lookup(address("192.168.1.77")).getInterfaceName());
+        assertEquals("tun0", routeTable.lookup(address("10.2.0.9")).getInterfaceName());
+        assertEquals(8, routeTable.lookup(address("10.2.0.9")).getPrefixLength());
+    }
+
+    @Test
+    void lookupPrefersLowestMetricOnDefaultRoute() throws UnknownHostException {
+        RouteTable.Route route = RouteTable.parse(PROC_NET_ROUTE).lookup(address("8.8.8.8"));
+        assertEquals("eth0", route.getInterfaceName());
+        assertEquals(0xC0A80101, route.getGateway());
+    }
+
+    @Test
+    void emptyTableHasNoRoute() throws UnknownHostException {
+        assertNull(RouteTable.parse(Arrays.asList("Iface\tDestination")).lookup(address("8.8.8.8")));
+    }
+
+    private static Inet4Address address(String address) throws UnknownHostException {
+        return (Inet4Address) InetAddress.getByName(address);
+    }
+}
@@ -0,0 +1,91 @@
+package com.nocker.portscanner.scheduler;
+
+import com.nocker.portscanner.PortState;
+import com.nocker.portscanner.report.HostShard;
+import com.nocker.portscanner.report.PortScanReport;
+import com.nocker.portscanner.report.PortScanResult;
+import com.nocker.portscanner.report.ScanSummary;
+import org.junit.jupiter.api.Test;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilteredRetryStageTest {
+
+    @Test
+    void retriesOnlyFilteredPortsUntilTheyAnswer() throws Exception {
+        Inet4Address host = host();
+        FilteredRetryStage retryStage = new FilteredRetryStage(3);
+        retryStage.accept(Arrays.asList(
+                result(host, 22, PortState.OPEN),
+                result(host, 80, PortState.FILTERED),
+                result(host, 443, PortState.FILTERED),
+                result(host, 8080, PortState.CLOSED)));
+        assertEquals(2, retryStage.getFilteredCount());
+
+        AtomicInteger attempts = new AtomicInteger(0);
+        List<Integer> probed = Collections.synchronizedList(new ArrayList<>());
+        List<PortScanResult> recovered = retryStage.run(4, (retryHost, ports) -> {
+            int attempt = attempts.incrementAndGet();
+            probed.addAll(ports);
+            return () -> {
+                List<PortScanResult> results = new ArrayList<>();
+                for (int port : ports) {
+                    // 80 answers on the second attempt, 443 never does
+                    PortState state = port == 80 && attempt == 2 ? PortState.OPEN : PortState.FILTERED;
+                    results.add(result(retryHost, port, state));
+                }
+                return results;
+            };
+        });
+
+        assertEquals(3, attempts.get());
+        assertEquals(Arrays.asList(80, 443, 80, 443, 443), probed);
+        assertEquals(1, recovered.size());
+        assertEquals(80, recovered.get(0).getPort());
+        assertEquals(PortState.OPEN, recovered.get(0).getState());
+        assertEquals(1, retryStage.getFilteredCount());
+    }
+
+    @Test
+    void backoffDoublesUpToTheMaximum() {
+        assertEquals(FilteredRetryStage.BASE_BACKOFF_MILLIS, FilteredRetryStage.backoffMillis(1));
+        assertEquals(FilteredRetryStage.BASE_BACKOFF_MILLIS * 2, FilteredRetryStage.backoffMillis(2));
+        assertEquals(FilteredRetryStage.BASE_BACKOFF_MILLIS * 4, FilteredRetryStage.backoffMillis(3));
+        assertEquals(FilteredRetryStage.MAX_BACKOFF_MILLIS, FilteredRetryStage.backoffMillis(40));
+    }
+
+    @Test
+    void recoveredPortsAreReclassifiedInTheReport() throws Exception {
+        Inet4Address host = host();
+        ReportAggregator aggregator = new ReportAggregator(System.nanoTime(), UUID.randomUUID(), null, true);
+        aggregator.accept(Arrays.asList(
+                result(host, 80, PortState.FILTERED),
+                result(host, 443, PortState.FILTERED)));
+        PortScanReport report = aggregator.toReport(null);
+
+        report.reclassify(Collections.singletonList(result(host, 443, PortState.CLOSED)));
+
+        ScanSummary summary = report.getSummary();
+        assertEquals(2, summary.getTotalPortsScanned());
+        assertEquals(1, summary.getFilteredPortsCount());
+        assertEquals(1, summary.getClosedPortsCount());
+        assertEquals(PortState.CLOSED, report.getResults().get(1).getState());
+        HostShard hostShard = report.getHostShards().get(host);
+        assertEquals(1, hostShard.getSummary().getFilteredPortsCount());
+        assertEquals(PortState.CLOSED, hostShard.getResults().get(1).getState());
+    }
+
+    private static PortScanResult result(Inet4Address host, int port, PortState state) {
+        return new PortScanResult(null, null, host, port, state, 0L);
+    }
+
+    private static Inet4Address host() throws UnknownHostException {
+        return (Inet4Address) InetAddress.getByName("127.0.0.1");
+    }
+}
@@ -0,0 +1,47 @@
+package com.nocker.portscanner.scheduler;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HostAffinityTest {
+
+    @Test
+    void hostStaysOnItsLane() throws UnknownHostException {
+        Inet4Address host = host("192.168.7.42");
+        int lane = HostAffinity.laneOf(host, 8);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(lane, HostAffinity.laneOf(host("192.168.7.42"), 8));
+        }
+        assertEquals(0, HostAffinity.laneOf(host, 1));
+    }
+
+    @Test
+    void neighbouringHostsSpreadAcrossLanes() throws UnknownHostException {
+        int lanes = 8;
+        int[] hostsPerLane = new int[lanes];
+        for (int i = 0; i < 1024; i++) {
+            int lane = HostAffinity.laneOf(host("10.0." + (i / 256) + "." + (i % 256)), lanes);
+            assertTrue(lane >= 0 && lane < lanes);
+            hostsPerLane[lane]++;
+        }
+        for (int count : hostsPerLane) {
+            // 128 per lane when even, allow a wide margin
+            assertTrue(count > 64 && count < 192, "lane holds " + count + " hosts");
+        }
+    }
+
+    @Test
+    void lanesMustBePositive() throws UnknownHostException {
+        Inet4Address host = host("10.0.0.1");
+        assertThrows(IllegalArgumentException.class, () -> HostAffinity.laneOf(host, 0));
+    }
+
+    private static Inet4Address host(String address) throws UnknownHostException {
+        return (Inet4Address) InetAddress.getByName(address);
+    }
+}
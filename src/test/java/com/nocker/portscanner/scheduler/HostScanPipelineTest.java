@@ -0,0 +1,80 @@
+package com.nocker.portscanner.scheduler;
+
+import com.nocker.portscanner.target.Ipv4TargetSet;
+import org.junit.jupiter.api.Test;
+
+import java.net.Inet4Address;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HostScanPipelineTest {
+
+    @Test
+    void everyHostIsEmittedOnceWithinTheInFlightCap() {
+        Ipv4TargetSet targets = Ipv4TargetSet.parse("10.0.0.0/26");
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        List<Inet4Address> emitted = new ArrayList<>();
+        int count = new HostScanPipeline(4).run(targets.iterator(), host -> {
+            peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            sleep(2);
+            inFlight.decrementAndGet();
+            return host.getHostAddress();
+        }, (host, result) -> {
+            assertEquals(host.getHostAddress(), result);
+            emitted.add(host);
+        });
+        assertEquals(targets.size(), count);
+        assertEquals(targets.size(), emitted.size());
+        assertEquals(targets.size(), new HashSet<>(emitted).size());
+        assertTrue(peak.get() <= 4);
+        assertTrue(peak.get() > 1);
+    }
+
+    @Test
+    void failedHostsAreSkipped() {
+        Ipv4TargetSet targets = Ipv4TargetSet.parse("10.0.0.1-10");
+        List<Inet4Address> emitted = new ArrayList<>();
+        int count = new HostScanPipeline(3).run(targets.iterator(), host -> {
+            if (host.getAddress()[3] % 2 == 0) {
+                throw new IllegalStateException("unreachable");
+            }
+            return host;
+        }, (host, result) -> emitted.add(result));
+        assertEquals(5, count);
+        assertEquals(5, emitted.size());
+    }
+
+    @Test
+    void blocksHoldConsecutiveHosts() {
+        Ipv4TargetSet targets = Ipv4TargetSet.parse("10.0.0.1-10");
+        List<List<Inet4Address>> blocks = new ArrayList<>();
+        int count = new HostScanPipeline(2).runBlocks(targets.iterator(), 4, block -> block.size(),
+                (block, size) -> {
+                    assertEquals(block.size(), size.intValue());
+                    blocks.add(block);
+                });
+        assertEquals(10, count);
+        assertEquals(3, blocks.size());
+        List<Inet4Address> hosts = new ArrayList<>();
+        for (List<Inet4Address> block : blocks) {
+            assertTrue(block.size() <= 4);
+            hosts.addAll(block);
+        }
+        assertEquals(new HashSet<>(targets.asList()), new HashSet<>(hosts));
+        assertThrows(IllegalArgumentException.class,
+                () -> new HostScanPipeline(2).runBlocks(targets.iterator(), 0, block -> block, (block, r) -> { }));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.nocker.portscanner.scheduler;
+
+import com.nocker.portscanner.PortState;
+import com.nocker.portscanner.report.HostShard;
+import com.nocker.portscanner.report.PortScanResult;
+import com.nocker.portscanner.report.ScanSummary;
+import org.junit.jupiter.api.Test;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HostShardTest {
+
+    @Test
+    void resultsAreCountedAndKept() throws UnknownHostException {
+        HostShard shard = new HostShard(host(), new ScanSummary(System.nanoTime(), null, null));
+        shard.add(result(22, PortState.OPEN));
+        shard.add(result(23, PortState.CLOSED));
+        shard.add(result(24, PortState.FILTERED));
+        assertEquals(3, shard.getResults().size());
+        assertEquals(1, shard.getSummary().getOpenPortsCount());
+        assertEquals(1, shard.getSummary().getClosedPortsCount());
+        assertEquals(1, shard.getSummary().getFilteredPortsCount());
+    }
+
+    @Test
+    void summaryOnlyShardKeepsNoResults() throws UnknownHostException {
+        HostShard shard = new HostShard(host(), new ScanSummary(System.nanoTime(), null, null), false);
+        shard.add(result(22, PortState.OPEN));
+        assertTrue(shard.getResults().isEmpty());
+        assertEquals(1, shard.getSummary().getTotalPortsScanned());
+    }
+
+    @Test
+    void retriedPortsReplaceFilteredResults() throws UnknownHostException {
+        HostShard shard = new HostShard(host(), new ScanSummary(System.nanoTime(), null, null));
+        shard.add(result(22, PortState.FILTERED));
+        shard.add(result(80, PortState.FILTERED));
+        shard.reclassify(Collections.singletonMap(80, result(80, PortState.OPEN)));
+        assertEquals(PortState.FILTERED, shard.getResults().get(0).getState());
+        assertEquals(PortState.OPEN, shard.getResults().get(1).getState());
+        assertEquals(1, shard.getSummary().getFilteredPortsCount());
+        assertEquals(1, shard.getSummary().getOpenPortsCount());
+        assertEquals(2, shard.getSummary().getTotalPortsScanned());
+    }
+
+    private static PortScanResult result(int port, PortState state) throws UnknownHostException {
+        return new PortScanResult(null, null, host(), port, state, 0);
+    }
+
+    private static Inet4Address host() throws UnknownHostException {
+        return (Inet4Address) InetAddress.getByName("10.0.0.1");
+    }
+}
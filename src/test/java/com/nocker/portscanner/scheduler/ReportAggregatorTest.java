@@ -0,0 +1,72 @@
+package com.nocker.portscanner.scheduler;
+
+import com.nocker.portscanner.PortState;
+import com.nocker.portscanner.report.PortScanReport;
+import com.nocker.portscanner.report.PortScanResult;
+import org.junit.jupiter.api.Test;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReportAggregatorTest {
+
+    @Test
+    void resultsAreShardedByHost() throws UnknownHostException {
+        ReportAggregator aggregator = new ReportAggregator(System.nanoTime(), UUID.randomUUID(), null, true);
+        aggregator.accept(Arrays.asList(
+                result("10.0.0.2", 22, PortState.OPEN),
+                result("10.0.0.1", 22, PortState.CLOSED),
+                result("10.0.0.2", 80, PortState.FILTERED)));
+        aggregator.accept(Arrays.asList(result("10.0.0.1", 443, PortState.OPEN)));
+        PortScanReport report = aggregator.toReport(null);
+        assertEquals(4, report.getResults().size());
+        assertEquals(2, report.getSummary().getOpenPortsCount());
+        assertEquals(Arrays.asList(host("10.0.0.2"), host("10.0.0.1")),
+                new ArrayList<>(report.getHostShards().keySet()));
+        assertEquals(2, report.getHostShards().get(host("10.0.0.2")).getSummary().getTotalPortsScanned());
+    }
+
+    @Test
+    void summaryOnlyReportKeepsNoResults() throws UnknownHostException {
+        ReportAggregator aggregator = new ReportAggregator(System.nanoTime(), UUID.randomUUID(), null, false);
+        aggregator.accept(Arrays.asList(result("10.0.0.1", 22, PortState.OPEN),
+                result("10.0.0.1", 23, PortState.CLOSED)));
+        PortScanReport report = aggregator.toReport(null);
+        assertTrue(report.getResults().isEmpty());
+        assertTrue(report.getHostShards().get(host("10.0.0.1")).getResults().isEmpty());
+        assertEquals(2, report.getSummary().getTotalPortsScanned());
+    }
+
+    @Test
+    void hostReportIsNarrowedToItsShard() throws UnknownHostException {
+        ReportAggregator aggregator = new ReportAggregator(System.nanoTime(), UUID.randomUUID(), null, true);
+        aggregator.accept(Arrays.asList(
+                result("10.0.0.1", 22, PortState.OPEN),
+                result("10.0.0.2", 22, PortState.CLOSED),
+                result("10.0.0.1", 80, PortState.OPEN)));
+        PortScanReport report = aggregator.toReport(null);
+        PortScanReport hostReport = report.getHostReport(host("10.0.0.1"));
+        assertEquals(2, hostReport.getResults().size());
+        for (PortScanResult result : hostReport.getResults()) {
+            assertEquals(host("10.0.0.1"), result.getHostAddress());
+        }
+        assertEquals(2, hostReport.getSummary().getOpenPortsCount());
+        assertEquals(0, hostReport.getSummary().getClosedPortsCount());
+        assertEquals(1, hostReport.getHostShards().size());
+        assertNull(report.getHostReport(host("10.0.0.3")));
+    }
+
+    private static PortScanResult result(String host, int port, PortState state) throws UnknownHostException {
+        return new PortScanResult(null, null, host(host), port, state, 0);
+    }
+
+    private static Inet4Address host(String address) throws UnknownHostException {
+        return (Inet4Address) InetAddress.getByName(address);
+    }
+}
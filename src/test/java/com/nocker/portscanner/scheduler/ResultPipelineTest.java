@@ -0,0 +1,84 @@
+package com.nocker.portscanner.scheduler;
+
+import com.nocker.portscanner.PortState;
+import com.nocker.portscanner.report.PortScanResult;
+import com.nocker.portscanner.report.ResultSink;
+import org.junit.jupiter.api.Test;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultPipelineTest {
+
+    @Test
+    void deliversEveryBatchInOrderThenCompletes() throws Exception {
+        ResultPipeline pipeline = new ResultPipeline(4);
+        List<Integer> ports = new ArrayList<>();
+        AtomicInteger completions = new AtomicInteger(0);
+        pipeline.addSink(new ResultSink() {
+            @Override
+            public void accept(List<PortScanResult> results) {
+                for (PortScanResult result : results) {
+                    ports.add(result.getPort());
+                }
+            }
+
+            @Override
+            public void complete() {
+                completions.incrementAndGet();
+            }
+        });
+        for (int port = 1; port <= 100; port++) {
+            pipeline.publish(Collections.singletonList(result(port)));
+        }
+        pipeline.publish(Collections.emptyList());
+        pipeline.close();
+        assertEquals(100, ports.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i + 1, ports.get(i));
+        }
+        assertEquals(1, completions.get());
+    }
+
+    @Test
+    void publishBlocksWhileSinksFallBehind() throws Exception {
+        ResultPipeline pipeline = new ResultPipeline(2);
+        CountDownLatch release = new CountDownLatch(1);
+        pipeline.addSink(results -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        CountDownLatch published = new CountDownLatch(1);
+        Thread publisher = new Thread(() -> {
+            try {
+                for (int port = 1; port <= 4; port++) {
+                    pipeline.publish(Collections.singletonList(result(port)));
+                }
+                published.countDown();
+            } catch (InterruptedException | UnknownHostException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        publisher.start();
+        // one batch held by the stalled sink and two queued, the fourth has to wait
+        assertFalse(published.await(200, TimeUnit.MILLISECONDS));
+        release.countDown();
+        assertTrue(published.await(5, TimeUnit.SECONDS));
+        pipeline.close();
+    }
+
+    private static PortScanResult result(int port) throws UnknownHostException {
+        Inet4Address host = (Inet4Address) InetAddress.getByName("10.0.0.1");
+        return new PortScanResult(null, null, host, port, PortState.OPEN, 0);
+    }
+}
@@ -0,0 +1,56 @@
+package com.nocker.portscanner.scheduler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScanJobTest {
+
+    @Test
+    void runsNoMoreThanItsConcurrency() throws Exception {
+        SharedWorkerPool pool = new SharedWorkerPool(16);
+        ScanJob job = pool.newJob(3);
+        AtomicInteger running = new AtomicInteger(0);
+        AtomicInteger peak = new AtomicInteger(0);
+        for (int i = 0; i < 30; i++) {
+            job.submit(() -> {
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(5);
+                running.decrementAndGet();
+                return null;
+            });
+        }
+        job.shutdown();
+        assertTrue(job.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(3, peak.get());
+    }
+
+    @Test
+    void shutdownNowEndsOnlyTheJob() throws Exception {
+        SharedWorkerPool pool = new SharedWorkerPool(4);
+        ScanJob job = pool.newJob(1);
+        CountDownLatch started = new CountDownLatch(1);
+        Future<Object> blocked = job.submit(() -> {
+            started.countDown();
+            Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            return null;
+        });
+        job.submit(() -> null);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        List<Runnable> dropped = job.shutdownNow();
+        assertEquals(1, dropped.size());
+        assertTrue(job.awaitTermination(5, TimeUnit.SECONDS));
+        assertTrue(blocked.isDone());
+
+        // the interrupted worker is reused by the next job without a stale interrupt
+        ScanJob next = pool.newJob(1);
+        assertFalse(next.submit(() -> Thread.currentThread().isInterrupted()).get(5, TimeUnit.SECONDS));
+        next.shutdown();
+    }
+}
@@ -0,0 +1,68 @@
+package com.nocker.portscanner.scheduler;
+
+import com.nocker.portscanner.PortState;
+import com.nocker.portscanner.report.PortScanResult;
+import com.nocker.portscanner.target.Target;
+import com.nocker.portscanner.target.TargetPermutation;
+import com.nocker.portscanner.target.TargetSlice;
+import com.nocker.portscanner.target.TargetSpace;
+import com.nocker.portscanner.tasks.PortRange;
+import org.junit.jupiter.api.Test;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SplittingScanTaskTest {
+
+    @Test
+    void everyTargetIsProbedOnce() throws UnknownHostException {
+        TargetSpace space = new TargetSpace(Arrays.asList(address("10.0.0.1"), address("10.0.0.2")),
+                new PortRange(1, 5000));
+        TargetSlice slice = new TargetSlice(space, new TargetPermutation(space.size(), 11L), 0, space.size());
+        AtomicInteger leaves = new AtomicInteger(0);
+        ForkJoinPool pool = new ForkJoinPool(8);
+        try {
+            List<PortScanResult> results = pool.invoke(new SplittingScanTask(slice, leaf -> () -> {
+                leaves.incrementAndGet();
+                List<PortScanResult> leafResults = new ArrayList<>();
+                for (Target target : leaf) {
+                    leafResults.add(new PortScanResult(null, null, target.getHost(), target.getPort(),
+                            PortState.CLOSED, 0));
+                }
+                return leafResults;
+            }));
+            Set<String> probed = new HashSet<>();
+            for (PortScanResult result : results) {
+                assertTrue(probed.add(result.getHostAddress().getHostAddress() + ":" + result.getPort()));
+            }
+            assertEquals(space.size(), probed.size());
+            assertTrue(leaves.get() >= space.size() / SplittingScanTask.LEAF_TARGETS);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void smallSliceRunsAsSingleLeaf() throws UnknownHostException {
+        TargetSpace space = new TargetSpace(Collections.singletonList(address("10.0.0.1")), new PortRange(80, 85));
+        TargetSlice slice = new TargetSlice(space, new TargetPermutation(space.size(), 3L), 0, space.size());
+        AtomicInteger leaves = new AtomicInteger(0);
+        List<PortScanResult> results = new ForkJoinPool(2).invoke(new SplittingScanTask(slice, leaf -> () -> {
+            leaves.incrementAndGet();
+            assertEquals(6, leaf.size());
+            return Collections.emptyList();
+        }));
+        assertTrue(results.isEmpty());
+        assertEquals(1, leaves.get());
+    }
+
+    private static Inet4Address address(String address) throws UnknownHostException {
+        return (Inet4Address) InetAddress.getByName(address);
+    }
+}
@@ -0,0 +1,81 @@
+package com.nocker.portscanner.target;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExclusionIndexTest {
+
+    @Test
+    void blocksCoverNetworkAndBroadcast() throws UnknownHostException {
+        ExclusionIndex exclusions = ExclusionIndex.parse("10.0.1.0/24, 192.168.0.5-9 172.16.0.1");
+        assertTrue(exclusions.excludesHost(host("10.0.1.0")));
+        assertTrue(exclusions.excludesHost(host("10.0.1.255")));
+        assertFalse(exclusions.excludesHost(host("10.0.2.0")));
+        assertTrue(exclusions.excludesHost(host("192.168.0.9")));
+        assertFalse(exclusions.excludesHost(host("192.168.0.10")));
+        assertTrue(exclusions.excludesHost(host("172.16.0.1")));
+        assertFalse(exclusions.hasPortExclusions());
+        assertTrue(ExclusionIndex.parse("0.0.0.0/0").excludesHost(host("203.0.113.7")));
+    }
+
+    @Test
+    void portsAreExcludedOnEveryHost() {
+        ExclusionIndex exclusions = ExclusionIndex.parse("22,8000-8002,65535");
+        assertTrue(exclusions.excludesPort(22));
+        assertTrue(exclusions.excludesPort(8001));
+        assertFalse(exclusions.excludesPort(8003));
+        assertFalse(exclusions.hasHostExclusions());
+        assertArrayEquals(new int[] {21, 23, 7999, 8003}, exclusions.remainingPorts(Arrays.asList(21, 22, 23, 7999,
+                8000, 8003)).stream().mapToInt(Integer::intValue).toArray());
+        assertArrayEquals(new int[] {20, 21, 23}, exclusions.remainingPorts(20, 23));
+        assertEquals(65535 - 5, exclusions.remainingPorts(1, 65535).length);
+    }
+
+    @Test
+    void excludedHostsAreSkippedWhileIterating() throws UnknownHostException {
+        ExclusionIndex exclusions = ExclusionIndex.parse("10.0.0.2-3");
+        List<Inet4Address> hosts = new ArrayList<>();
+        exclusions.filterHosts(Ipv4TargetSet.parse("10.0.0.1-6").iterator()).forEachRemaining(hosts::add);
+        assertEquals(Arrays.asList(host("10.0.0.1"), host("10.0.0.4"), host("10.0.0.5"), host("10.0.0.6")), hosts);
+    }
+
+    @Test
+    void largeListsMergeIntoFewIntervals() throws IOException, UnknownHostException {
+        StringBuilder list = new StringBuilder("# protected\n");
+        for (int i = 0; i < 40_000; i++) {
+            list.append("10.").append(i >> 8).append('.').append(i & 0xFF).append(".0/24 # site ").append(i).append('\n');
+        }
+        ExclusionIndex exclusions = new ExclusionIndex.Builder()
+                .addAll(new StringReader(list.toString()))
+                .add("443")
+                .build();
+        assertTrue(exclusions.excludesHost(host("10.156.63.200")));
+        assertFalse(exclusions.excludesHost(host("10.156.64.1")));
+        assertTrue(exclusions.excludesPort(443));
+        assertEquals("ExclusionIndex{hostRanges=1, portRanges=1}", exclusions.toString());
+    }
+
+    @Test
+    void invalidExclusionsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> ExclusionIndex.parse("70000"));
+        assertThrows(IllegalArgumentException.class, () -> ExclusionIndex.parse("10.0.0.0/33"));
+        assertThrows(IllegalArgumentException.class, () -> ExclusionIndex.parse("9000-80"));
+        assertThrows(IllegalArgumentException.class, () -> ExclusionIndex.parse(" "));
+        IllegalArgumentException failure = assertThrows(IllegalArgumentException.class,
+                () -> new ExclusionIndex.Builder().addAll(new StringReader("22\nssh\n")));
+        assertTrue(failure.getMessage().startsWith("line 2"));
+        assertTrue(new ExclusionIndex.Builder().build().isEmpty());
+    }
+
+    private static Inet4Address host(String address) throws UnknownHostException {
+        return (Inet4Address) InetAddress.getByName(address);
+    }
+}
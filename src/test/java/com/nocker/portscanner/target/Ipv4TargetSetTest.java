@@ -0,0 +1,90 @@
+package com.nocker.portscanner.target;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Ipv4TargetSetTest {
+
+    @Test
+    void blocksLeaveOutNetworkAndBroadcast() throws UnknownHostException {
+        Ipv4TargetSet targets = Ipv4TargetSet.parse("192.168.1.77/24");
+        assertEquals(254, targets.size());
+        assertEquals(host("192.168.1.1"), targets.get(0));
+        assertEquals(host("192.168.1.254"), targets.get(253));
+        assertEquals(2, Ipv4TargetSet.parse("10.0.0.0/31").size());
+        assertEquals(1, Ipv4TargetSet.parse("10.0.0.9/32").size());
+        assertEquals(65534, Ipv4TargetSet.parse("10.1.0.0/16").size());
+        assertEquals((1L << 24) - 2, Ipv4TargetSet.parse("10.0.0.0/8").size());
+    }
+
+    @Test
+    void listsAndRangesAreMergedInAddressOrder() throws UnknownHostException {
+        Ipv4TargetSet targets = Ipv4TargetSet.parse("10.0.0.20-25, 10.0.0.1, 10.0.0.24-10.0.0.30");
+        assertEquals(12, targets.size());
+        assertEquals(host("10.0.0.1"), targets.get(0));
+        assertEquals(host("10.0.0.20"), targets.get(1));
+        assertEquals(host("10.0.0.30"), targets.get(11));
+        assertTrue(targets.contains(host("10.0.0.27")));
+        assertFalse(targets.contains(host("10.0.0.2")));
+    }
+
+    @Test
+    void rangesMayCrossOctets() throws UnknownHostException {
+        Ipv4TargetSet targets = Ipv4TargetSet.parse("10.0.0.250-10.0.1.5");
+        assertEquals(12, targets.size());
+        assertEquals(host("10.0.1.0"), targets.get(6));
+    }
+
+    @Test
+    void invalidTargetsAreRejected() {
+        for (String spec : Arrays.asList("10.0.0.0/7", "10.0.0.0/33", "10.0.0/24", "10.0.0.256", "10.0.0.9-3",
+                "10.0.0.1,,10.0.0.2", "host.example/24", "10.0.0.1-10.0.0.2-10.0.0.3", "")) {
+            assertThrows(IllegalArgumentException.class, () -> Ipv4TargetSet.parse(spec), spec);
+        }
+    }
+
+    @Test
+    void iterationMatchesIndexing() {
+        Ipv4TargetSet targets = Ipv4TargetSet.parse("10.0.0.0/28,10.0.5.1-3,172.16.0.0/30");
+        List<Inet4Address> iterated = new ArrayList<>();
+        for (Inet4Address address : targets) {
+            iterated.add(address);
+        }
+        assertEquals(targets.size(), iterated.size());
+        for (int i = 0; i < iterated.size(); i++) {
+            assertEquals(targets.get(i), iterated.get(i));
+        }
+        assertEquals(iterated, targets.asList());
+    }
+
+    @Test
+    void parallelStreamCoversEveryAddressOnce() {
+        Ipv4TargetSet targets = Ipv4TargetSet.parse("10.1.0.0/16,10.3.0.0/24");
+        Set<Inet4Address> seen = targets.parallelStream().collect(Collectors.toSet());
+        assertEquals(targets.size(), seen.size());
+        assertEquals(targets.size(), targets.parallelStream().count());
+    }
+
+    @Test
+    void splitsHalveTheIndices() {
+        Spliterator<Inet4Address> spliterator = Ipv4TargetSet.parse("10.0.0.0/24").spliterator();
+        Spliterator<Inet4Address> prefix = spliterator.trySplit();
+        assertNotNull(prefix);
+        assertEquals(127, prefix.estimateSize());
+        assertEquals(127, spliterator.estimateSize());
+        List<Inet4Address> rest = new ArrayList<>();
+        spliterator.forEachRemaining(rest::add);
+        assertEquals("10.0.0.128", rest.get(0).getHostAddress());
+    }
+
+    private static Inet4Address host(String address) throws UnknownHostException {
+        return (Inet4Address) InetAddress.getByName(address);
+    }
+}
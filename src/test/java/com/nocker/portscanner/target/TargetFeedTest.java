@@ -0,0 +1,82 @@
+package com.nocker.portscanner.target;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.*;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TargetFeedTest {
+
+    @Test
+    void listsAreExpandedAndResolvedInOrder() throws UnknownHostException {
+        String list = "# asset inventory\n"
+                + "10.0.0.1, 10.0.0.8/30\n"
+                + "\n"
+                + "web.example   10.0.1.5-7 # edge hosts\n"
+                + "missing.example,10.0.0.300\n";
+        List<Inet4Address> targets = new ArrayList<>();
+        try (TargetFeed feed = new TargetFeed(new StringReader(list), names(), 4)) {
+            feed.forEachRemaining(targets::add);
+            assertEquals(7, feed.getProduced());
+            assertEquals(2, feed.getSkipped());
+        }
+        assertEquals(Arrays.asList(host("10.0.0.1"), host("10.0.0.9"), host("10.0.0.10"), host("10.0.1.5"),
+                host("10.0.1.6"), host("10.0.1.7"), host("10.0.2.1")), targets);
+    }
+
+    @Test
+    void largeBlocksDrainThroughASmallQueue() {
+        long count = 0;
+        try (TargetFeed feed = new TargetFeed(new StringReader("10.1.0.0/16\n"), names(), 8)) {
+            while (feed.hasNext()) {
+                feed.next();
+                count++;
+            }
+        }
+        assertEquals(65534, count);
+    }
+
+    @Test
+    void closingStopsTheProducer() {
+        TargetFeed feed = new TargetFeed(new StringReader("10.0.0.0/8\n"), names(), 8);
+        assertTrue(feed.hasNext());
+        feed.next();
+        feed.close();
+        assertFalse(feed.hasNext());
+        assertThrows(NoSuchElementException.class, feed::next);
+    }
+
+    @Test
+    void emptyListsEndAtOnce() {
+        Reader list = new StringReader("# nothing to scan\n\n");
+        try (TargetFeed feed = new TargetFeed(list, names(), TargetFeed.DEFAULT_CAPACITY)) {
+            assertFalse(feed.hasNext());
+            assertEquals(0, feed.getProduced());
+        }
+        assertThrows(IllegalArgumentException.class, () -> new TargetFeed(new StringReader(""), names(), 0));
+    }
+
+    /**
+     * Resolves {@code web.example} to {@code 10.0.2.1} and no other name.
+     */
+    private static Function<Collection<String>, Map<String, Inet4Address>> names() {
+        return names -> {
+            Map<String, Inet4Address> addresses = new LinkedHashMap<>();
+            for (String name : names) {
+                addresses.put(name, "web.example".equals(name) ? Ipv4TargetSet.toAddress(0x0A000201) : null);
+            }
+            return addresses;
+        };
+    }
+
+    private static Inet4Address host(String address) throws UnknownHostException {
+        return (Inet4Address) InetAddress.getByName(address);
+    }
+}
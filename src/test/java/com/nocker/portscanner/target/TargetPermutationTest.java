@@ -0,0 +1,90 @@
+package com.nocker.portscanner.target;
+
+import com.nocker.portscanner.tasks.PortRange;
+import org.junit.jupiter.api.Test;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TargetPermutationTest {
+
+    @Test
+    void permutationVisitsEveryIndexOnce() {
+        for (long size : new long[]{1, 2, 3, 17, 1000, 65535, 196605}) {
+            TargetPermutation permutation = new TargetPermutation(size, 42L);
+            BitSet visited = new BitSet((int) size);
+            for (long position = 0; position < size; position++) {
+                long index = permutation.permute(position);
+                assertTrue(index >= 0 && index < size, "index out of range for size " + size);
+                assertFalse(visited.get((int) index), "index visited twice for size " + size);
+                visited.set((int) index);
+            }
+            assertEquals(size, visited.cardinality());
+        }
+    }
+
+    @Test
+    void sameSeedGivesSameOrder() {
+        TargetPermutation first = new TargetPermutation(5000, 7L);
+        TargetPermutation second = new TargetPermutation(5000, 7L);
+        TargetPermutation other = new TargetPermutation(5000, 8L);
+        boolean differs = false;
+        for (long position = 0; position < 5000; position++) {
+            assertEquals(first.permute(position), second.permute(position));
+            differs |= first.permute(position) != other.permute(position);
+        }
+        assertTrue(differs);
+    }
+
+    @Test
+    void orderIsScattered() {
+        TargetPermutation permutation = new TargetPermutation(65535, 3L);
+        int ascending = 0;
+        for (long position = 1; position < 1000; position++) {
+            if (permutation.permute(position) == permutation.permute(position - 1) + 1) {
+                ascending++;
+            }
+        }
+        assertTrue(ascending < 10, "adjacent indices visited in a row: " + ascending);
+    }
+
+    @Test
+    void slicesCoverTargetSpaceOnceAndResume() throws UnknownHostException {
+        List<Inet4Address> hosts = Arrays.asList(
+                (Inet4Address) InetAddress.getByName("10.0.0.1"),
+                (Inet4Address) InetAddress.getByName("10.0.0.2"),
+                (Inet4Address) InetAddress.getByName("10.0.0.3"));
+        TargetSpace targetSpace = new TargetSpace(hosts, new PortRange(1, 1000));
+        TargetPermutation permutation = new TargetPermutation(targetSpace.size(), 11L);
+        List<TargetSlice> slices = targetSpace.slices(permutation, 128);
+        assertEquals(24, slices.size());
+
+        Set<String> visited = new HashSet<>();
+        for (TargetSlice slice : slices) {
+            for (Target target : slice) {
+                assertTrue(visited.add(target.toString()), "target visited twice: " + target);
+            }
+        }
+        assertEquals(3000, visited.size());
+
+        TargetSlice slice = slices.get(5);
+        TargetSlice.TargetIterator iterator = slice.iterator();
+        List<String> expected = new ArrayList<>();
+        iterator.next();
+        iterator.next();
+        long resumePosition = iterator.getPosition();
+        while (iterator.hasNext()) {
+            expected.add(iterator.next().toString());
+        }
+        List<String> resumed = new ArrayList<>();
+        TargetSlice.TargetIterator resumedIterator = slice.resumeFrom(resumePosition);
+        while (resumedIterator.hasNext()) {
+            resumed.add(resumedIterator.next().toString());
+        }
+        assertEquals(expected, resumed);
+    }
+}